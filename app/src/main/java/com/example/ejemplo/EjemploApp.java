@@ -0,0 +1,75 @@
+package com.example.ejemplo;
+
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.pm.ApplicationInfo;
+
+import com.example.ejemplo.database.DBAsync;
+import com.example.ejemplo.database.DBHelper;
+import com.example.ejemplo.metricas.FileExporter;
+import com.example.ejemplo.metricas.LogcatExporter;
+import com.example.ejemplo.metricas.Metrics;
+
+import java.io.File;
+
+/**
+ * `EjemploApp` representa a la aplicacion completa (no a una pantalla). Android la crea antes que
+ * cualquier Activity y vive mientras viva el proceso.
+ *
+ * La usamos como dueña de los recursos compartidos por todas las pantallas, como la conexion a la
+ * base de datos: `DBHelper.getInstance(...)` mantiene una sola conexion abierta para todo el proceso
+ * y la cerramos aca, al terminar la aplicacion.
+ *
+ * Para que Android use esta clase hay que declararla en el AndroidManifest.xml:
+ * <application android:name=".EjemploApp" ... >
+ */
+public class EjemploApp extends Application {
+
+    /**
+     * onCreate:
+     * - Es lo primero que se ejecuta al arrancar la app, y todo lo que hagamos aca retrasa la primera
+     *   pantalla: por eso no tocamos la base. La preparacion de la base (copia desde assets + apertura +
+     *   migraciones) y los usuarios de prueba quedan para despues del primer frame (ver StartupTasks).
+     * - En las compilaciones debug encendemos las metricas (ver Metrics) antes que nada, para medir
+     *   tambien la copia y la apertura de la base. En release quedan apagadas y no cuestan nada.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        boolean debug = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        if (debug) {
+            Metrics.setEnabled(true);
+            Metrics.addExporter(new LogcatExporter());
+            Metrics.addExporter(new FileExporter(new File(getFilesDir(), "metricas.txt")));
+        }
+        StartupTasks.install(this, debug);
+    }
+
+    /**
+     * onTrimMemory:
+     * - Con TRIM_MEMORY_UI_HIDDEN el usuario acaba de salir de la app (ya no se ve ninguna pantalla).
+     *   Es un buen momento para volcar las metricas: no compite con nada que el usuario este mirando, y
+     *   para cerrar las bases de las organizaciones que no estan en uso (ver TenantDatabases).
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            Metrics.export();
+            DBAsync.getInstance(this).trimTenants();
+        }
+    }
+
+    /**
+     * onTerminate:
+     * - Se llama cuando el proceso de la aplicacion termina de forma ordenada (por ejemplo en el emulador).
+     * - En un dispositivo real el sistema puede matar el proceso sin avisar; en ese caso el sistema
+     *   operativo libera el archivo y el modo WAL garantiza que no se pierdan transacciones confirmadas.
+     */
+    @Override
+    public void onTerminate() {
+        DBAsync.getInstance(this).getTenants().closeAll(); // las de las demas organizaciones, si hay
+        DBHelper.getInstance(this).close();
+        super.onTerminate();
+    }
+}
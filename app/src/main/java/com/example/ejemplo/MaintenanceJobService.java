@@ -0,0 +1,79 @@
+package com.example.ejemplo;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.example.ejemplo.database.DBAsync;
+import com.example.ejemplo.database.StorageMaintenance;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * `MaintenanceJobService` corre el mantenimiento de la base (ver StorageMaintenance) una vez por dia, y solo
+ * cuando el telefono esta sin usar y cargando: el VACUUM y el ANALYZE leen y escriben todo el archivo, y
+ * asi no le cuestan bateria ni fluidez a nadie.
+ *
+ * Lo programa StartupTasks en cada arranque si no estaba programado (tambien despues de reiniciar el
+ * telefono, cuando JobScheduler se olvida de los trabajos no persistidos).
+ */
+public final class MaintenanceJobService extends JobService {
+
+    private static final String TAG = "MaintenanceJobService";
+    static final int JOB_ID = 1_024;
+
+    @Nullable private Future<StorageMaintenance.Report> enCurso;
+
+    /**
+     * schedule:
+     * - Programa el trabajo diario si todavia no lo esta. Barato: no toca la base.
+     */
+    static void schedule(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null || scheduler.getPendingJob(JOB_ID) != null) return;
+
+        JobInfo trabajo = new JobInfo.Builder(JOB_ID, new ComponentName(context, MaintenanceJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPeriodic(TimeUnit.DAYS.toMillis(1))
+                .build();
+        if (scheduler.schedule(trabajo) != JobScheduler.RESULT_SUCCESS) {
+            Log.w(TAG, "No se pudo programar el mantenimiento de la base");
+        }
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        enCurso = DBAsync.getInstance(this).maintain(null, new DBAsync.Callback<StorageMaintenance.Report>() {
+            @Override
+            public void onResult(StorageMaintenance.Report result) {
+                jobFinished(params, false);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                Log.w(TAG, "Fallo el mantenimiento de la base", error);
+                jobFinished(params, false); // es periodico: se vuelve a intentar mañana
+            }
+        });
+        return true; // sigue en el hilo de transferencias
+    }
+
+    /**
+     * onStopJob:
+     * - El telefono dejo de estar sin usar o de cargar: se corta despues del paso en curso (lo hecho queda)
+     *   y se pide repetirlo la proxima vez que se cumplan las condiciones.
+     */
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        if (enCurso != null) enCurso.cancel(true);
+        return true;
+    }
+}
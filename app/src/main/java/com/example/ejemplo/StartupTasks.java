@@ -0,0 +1,143 @@
+package com.example.ejemplo;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import com.example.ejemplo.database.DBAsync;
+import com.example.ejemplo.modelos.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * `StartupTasks` junta lo que la app tiene que hacer al arrancar, pero NO antes de mostrar la primera
+ * pantalla.
+ *
+ * En un telefono de gama baja el arranque en frio es lo que mas se nota: todo lo que corre antes del primer
+ * frame (aunque sea en otro hilo, compite por los mismos nucleos) el usuario lo paga mirando una pantalla
+ * vacia. Por eso se espera a que la primera Activity, la que sea, dibuje su primer frame, y recien ahi:
+ * 1. Se prepara la base (`DBAsync.warmUp`): copia desde assets, apertura, migraciones y calibracion del hash.
+ *    MainActivity deja el boton "Ingresar" deshabilitado hasta que termina (ver DBAsync.whenReady).
+ * 2. Se programa el mantenimiento diario de la base (ver MaintenanceJobService), si no lo estaba.
+ * 3. Solo en las compilaciones debug: se cargan los usuarios de prueba, una sola vez por instalacion, y se
+ *    anotan en el Logcat los ajustes de SQLite que quedaron aplicados.
+ *
+ * Se instala desde EjemploApp.onCreate: StartupTasks.install(this, debug);
+ */
+final class StartupTasks implements Application.ActivityLifecycleCallbacks {
+
+    static final int USUARIOS_PRUEBA = 10;
+    private static final String TAG = "StartupTasks";
+    private static final String PREFS = "arranque";
+    private static final String PREF_USUARIOS_PRUEBA = "usuarios_prueba_cargados";
+
+    private final Application app;
+    private final boolean debug;
+    private final Handler hiloPrincipal = new Handler(Looper.getMainLooper());
+    private boolean hecho;
+
+    private StartupTasks(Application app, boolean debug) {
+        this.app = app;
+        this.debug = debug;
+    }
+
+    static void install(Application app, boolean debug) {
+        app.registerActivityLifecycleCallbacks(new StartupTasks(app, debug));
+    }
+
+    /**
+     * onActivityStarted:
+     * - Cada Activity que arranca (mientras no se hayan hecho las tareas) se vigila hasta su primer frame.
+     *   Alcanza con que una dibuje; si la primera se cierra sin dibujar, se espera a la siguiente.
+     */
+    @Override
+    public void onActivityStarted(Activity activity) {
+        if (hecho) return;
+        View decor = activity.getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean dibujado;
+
+            @Override
+            public void onDraw() {
+                if (dibujado) return;
+                dibujado = true;
+                // No se puede quitar un OnDrawListener mientras se esta dibujando; y las tareas se encolan
+                // detras del frame, no dentro de el
+                hiloPrincipal.post(() -> {
+                    decor.getViewTreeObserver().removeOnDrawListener(this);
+                    ejecutar();
+                });
+            }
+        });
+    }
+
+    private void ejecutar() {
+        if (hecho) return;
+        hecho = true;
+        app.unregisterActivityLifecycleCallbacks(this);
+
+        DBAsync db = DBAsync.getInstance(app);
+        db.warmUp();
+        MaintenanceJobService.schedule(app);
+        if (debug) {
+            // Los ajustes de SQLite que quedaron de verdad (ver SqliteTuning): adb logcat -s StartupTasks
+            db.read(null, () -> db.getHelper().dumpSettings(), ajustes -> Log.i(TAG, "SQLite: " + ajustes));
+            cargarUsuariosDePrueba(db);
+        }
+    }
+
+    /**
+     * cargarUsuariosDePrueba:
+     * - Inserta "usuario_test1" ... "usuario_testN" (contraseñas "pass1" ... "passN") la primera vez que
+     *   arranca una instalacion debug. Los que ya existen se omiten sin calcular su hash.
+     * - Que ya se hizo queda anotado en SharedPreferences: los arranques siguientes no hashean ni consultan
+     *   nada. Se lee en un hilo de lectura (leer el archivo la primera vez es ir al disco).
+     * - La insercion queda en el hilo de escritura detras de warmUp: no le disputa la base a la apertura.
+     */
+    private void cargarUsuariosDePrueba(DBAsync db) {
+        SharedPreferences prefs = app.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        db.read(null, () -> prefs.getBoolean(PREF_USUARIOS_PRUEBA, false), cargados -> {
+            if (cargados) return;
+            List<User> usuarios = new ArrayList<>(USUARIOS_PRUEBA);
+            for (int i = 1; i <= USUARIOS_PRUEBA; i++) {
+                usuarios.add(new User(0, "usuario_test" + i, "pass" + i));
+            }
+            db.addUsers(null, usuarios, resultado -> {
+                Log.i(TAG, "Usuarios de prueba: " + resultado);
+                prefs.edit().putBoolean(PREF_USUARIOS_PRUEBA, true).apply();
+            });
+        });
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+    }
+}
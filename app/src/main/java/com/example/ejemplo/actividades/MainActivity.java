@@ -2,10 +2,12 @@ package com.example.ejemplo.actividades;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.util.Log;
 import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
@@ -15,8 +17,13 @@ import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
 import com.example.ejemplo.R;
-import com.example.ejemplo.database.DBHelper;
+import com.example.ejemplo.database.DBAsync;
+import com.example.ejemplo.database.LoginController;
+import com.example.ejemplo.metricas.Metrics;
 import com.example.ejemplo.modelos.User;
+
+import java.util.Arrays;
+
 /**
  ███╗   ███╗     █████╗     ██╗    ███╗   ██╗
  ████╗ ████║    ██╔══██╗    ██║    ████╗  ██║
@@ -32,28 +39,35 @@ import com.example.ejemplo.modelos.User;
  ██║  ██║    ╚██████╗       ██║       ██║     ╚████╔╝     ██║       ██║          ██║
  ╚═╝  ╚═╝     ╚═════╝       ╚═╝       ╚═╝      ╚═══╝      ╚═╝       ╚═╝          ╚═╝
  * MainActivity:
- * - Muestra campos de usuario y contraseña.
- * - Intenta loguear localmente consultando DBHelper.
+ * - Muestra la organizacion (cada una tiene su propia base, ver TenantDatabases) y los campos de usuario y
+ *   contraseña.
+ * - Intenta loguear localmente consultando DBHelper (a traves de LoginController, que ignora los
+ *   toques repetidos y hace esperar cada vez mas despues de varios intentos fallidos).
  * - Si el usuario existe lanza la actividad Principal.
  *
  * Notas importantes:
- * - En onCreate se inserta un usuario "admin"/"admin". Esto está bien para pruebas,
- *   pero en producción deberías evitar insertar repetidamente el mismo usuario
- *   (podría crear duplicados) o envolverlo en una verificación previa.
- * - Las contraseñas se manejan en texto plano en este ejemplo. En producción usa
- *   hashing+salt y nunca almacenes passwords en claro.
+ * - Esta pantalla no abre la base ni carga datos en onCreate: el boton "Ingresar" se habilita cuando la
+ *   base termina de prepararse, despues del primer frame. Los usuarios de prueba ("usuario_test1"/"pass1",
+ *   ...) los carga StartupTasks una sola vez, y solo en las compilaciones debug.
+ * - Las contraseñas se guardan como hash PBKDF2 con sal (ver PasswordHasher); las filas viejas en
+ *   texto plano se migran solas la primera vez que ese usuario ingresa.
  */
 public class MainActivity extends AppCompatActivity {
 
     // Vistas del layout
     EditText input_usuario, input_contrasena;
     Button btn_ingresar;
+    Spinner spinner_tenant;
 
     // Variables para mantener texto ingresado
     String nombreUsuario, contraseña;
 
-    // Helper para DB (clase que ya tenés con los métodos CRUD)
-    DBHelper dbHelper;
+    // Acceso asincronico a la DB: las consultas corren en hilos secundarios y el resultado vuelve
+    // al hilo principal. Nunca tocamos SQLite directamente desde esta pantalla.
+    DBAsync db;
+
+    // Login con filtro de toques repetidos y espera despues de varios fallos
+    LoginController login;
 
 
     /**
@@ -66,6 +80,9 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        // Medimos cuanto tarda esta pantalla en dibujarse por primera vez (solo si las metricas estan encendidas)
+        Metrics.trackFirstFrame(this, Metrics.Op.TTFF_MAIN, null);
+
         /******************************************************
          *                                                    *
          *   Esta seccion por lo general viene cargada por    *
@@ -95,23 +112,64 @@ public class MainActivity extends AppCompatActivity {
         input_usuario = findViewById(R.id.main__input_usuario);
         input_contrasena = findViewById(R.id.main__input_contrasena);
         btn_ingresar = findViewById(R.id.main__button_ingresar);
+        spinner_tenant = findViewById(R.id.main__spinner_tenant);
+
+        // Obtenemos el acceso asincronico a la DB. La apertura (y la copia desde assets si corresponde)
+        // ocurre en un hilo secundario despues del primer frame, no aca.
+        db = DBAsync.getInstance(MainActivity.this);
+
+        // El boton empieza deshabilitado (ver activity_main.xml): la base se prepara recien despues del
+        // primer frame (ver StartupTasks) y hasta que no este lista no tiene sentido intentar ingresar.
+        // Con el boton habilitado la pantalla ya esta completa: reportFullyDrawn lo anota para las
+        // mediciones de arranque (ver el modulo baselineprofile).
+        db.whenReady(this, () -> {
+            btn_ingresar.setEnabled(true);
+            reportFullyDrawn();
+        });
 
-        // Instanciamos DBHelper (esto también asegura copiar DB desde assets si corresponde)
-        dbHelper = new DBHelper(MainActivity.this);
+        // Organizaciones (res/values/arrays.xml). Elegir una abre su base en segundo plano mientras se escribe
+        // usuario y contraseña; las usadas hace poco siguen abiertas (ver TenantDatabases), asi que volver a
+        // una no toca el disco.
+        String[] tenants = getResources().getStringArray(R.array.tenants);
+        ArrayAdapter<String> adapterTenants = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, tenants);
+        adapterTenants.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinner_tenant.setAdapter(adapterTenants);
+        spinner_tenant.setSelection(Math.max(0, Arrays.asList(tenants).indexOf(db.getTenant())));
+        spinner_tenant.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                String elegido = tenants[position];
+                if (!elegido.equals(db.getTenant())) db.switchTenant(MainActivity.this, elegido, null);
+            }
 
-        /**
-         * Atención: aquí estás creando e insertando un usuario "admin" en cada onCreate.
-         * - Útil para development/testing.
-         * - Riesgo: si la tabla no evita duplicados, se crearán múltiples filas "admin".
-         * - Recomendación: envolver en un getUserByUsername(...) y solo insertar si no existe.
-         *
-         *   +---------+
-         *   | admin   |  <- usuario de prueba
-         *   +---------+
-         */
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
 
+        // El controlador de login filtra los toques repetidos y frena los intentos fallidos seguidos
+        // (ver LoginController). Las respuestas llegan en el hilo principal.
+        login = new LoginController(this, db, this);
+        login.setListener(new LoginController.Listener() {
+            @Override
+            public void onSuccess(User user) {
+                alComprobarUsuario(user);
+            }
 
-        populateTestUsers(10);
+            @Override
+            public void onFailure(long waitMs) {
+                if (waitMs > 0) {
+                    mostrarEspera(waitMs);
+                } else {
+                    alComprobarUsuario(new User(-1, nombreUsuario, null));
+                }
+            }
+
+            @Override
+            public void onBlocked(long waitMs) {
+                mostrarEspera(waitMs);
+            }
+        });
 
         // Listener del botón de ingresar
         btn_ingresar.setOnClickListener(new View.OnClickListener() {
@@ -122,25 +180,10 @@ public class MainActivity extends AppCompatActivity {
                 nombreUsuario = input_usuario.getText().toString();
                 contraseña = input_contrasena.getText().toString();
 
-                // Consultamos localmente si existe un usuario con ese nombre + contraseña
-                User usuarioIngresado = dbHelper.comprobarUsuarioLocal(nombreUsuario, contraseña);
-
-                /*
-                 * Lógica de navegación:
-                 * - Si usuarioIngresado tiene id != -1 => existe en la DB => abrimos Principal.
-                 * - Si no existe mostramos un Toast indicando que no existe.
-                 *
-                 * Nota de seguridad: comprobarUsuarioLocal compara contraseña en texto plano.
-                 * Mejor usar hashes y validar con funciones seguras.
-                 */
-                if (usuarioIngresado.getId() != -1) {
-                    // Usuario válido -> vamos a la pantalla principal
-                    Intent intent = new Intent(MainActivity.this, Principal.class);
-                    startActivity(intent);
-                } else {
-                    // Usuario inválido -> feedback al usuario
-                    Toast.makeText(MainActivity.this, "Usuario no existe", Toast.LENGTH_SHORT).show();
-                }
+                // Consultamos localmente si existe un usuario con ese nombre + contraseña.
+                // La consulta corre en segundo plano; el resultado llega al listener de arriba
+                // en el hilo principal (y se descarta si la pantalla se destruye antes).
+                login.login(nombreUsuario, contraseña);
 
             }
         });
@@ -149,73 +192,32 @@ public class MainActivity extends AppCompatActivity {
 
 
     /**
-     * --- MÉTODO DE AYUDA PARA POBLAR LA BASE DE DATOS ---
-     *
-     * `populateTestUsers` es una función de utilidad diseñada para facilitar las pruebas de la aplicación.
-     * Su objetivo es crear y añadir un número específico de usuarios de prueba a la base de datos
-     * de forma automática.
-     *
-     * Una característica clave es que **evita crear duplicados**: antes de insertar un nuevo usuario,
-     * comprueba si ya existe uno con el mismo nombre.
+     * Lógica de navegación:
+     * - Si usuarioIngresado tiene id != -1 => existe en la DB => abrimos Principal.
+     * - Si no existe mostramos un Toast indicando que no existe.
      *
-     * Al final, muestra un resumen de cuántos usuarios se insertaron y cuántos se omitieron
-     * (porque ya existían), tanto en el Logcat como en un mensaje Toast en pantalla.
-     *
-     * @param count La cantidad de usuarios de prueba que se intentarán crear.
+     * Nota de seguridad: comprobarUsuarioLocal valida contra el hash PBKDF2 guardado (ver PasswordHasher).
      */
-    private void populateTestUsers(int count) {
-        // --- Validación Inicial ---
-        // Si el número de usuarios a crear es cero o negativo, no hacemos nada y salimos del método.
-        if (count <= 0) return;
-
-        // --- Contadores ---
-        // `inserted`: Lleva la cuenta de los nuevos usuarios que se han añadido con éxito.
-        // `skipped`: Lleva la cuenta de los usuarios que se omitieron porque ya existían en la BD.
-        int inserted = 0;
-        int skipped = 0;
-
-        // --- Bucle de Creación de Usuarios ---
-        // Iteramos desde 1 hasta el número (`count`) de usuarios que queremos crear.
-        for (int i = 1; i <= count; i++) {
-            // Creamos un nombre de usuario único para cada iteración, ej: "usuario_test1", "usuario_test2", etc.
-            String username = "usuario_test" + i;
-
-            // --- Verificación de Duplicados ---
-            // Antes de insertar, usamos el `DBHelper` para buscar si ya existe un usuario con este `username`.
-            User existing = dbHelper.getUserByUsername(username);
-
-            // Si `existing` no es nulo y su ID no es -1, significa que el usuario ya existe.
-            if (existing != null && existing.getId() != -1) {
-                skipped++; // Incrementamos el contador de omitidos.
-                continue;  // `continue` salta al siguiente ciclo del bucle, ignorando el resto del código.
-            }
-
-            // --- Inserción del Nuevo Usuario ---
-            // Si el usuario no existía, creamos un nuevo objeto `User`.
-            // El ID se pone en 0 porque la base de datos lo generará automáticamente (autoincremental).
-            User usuarioNuevo = new User(0, username, "pass" + i);
-
-            // Llamamos a `addUser` para insertar el nuevo usuario en la base de datos.
-            // El método devuelve el ID del nuevo usuario si fue exitoso, o -1 si hubo un error.
-            long id = dbHelper.addUser(usuarioNuevo);
-
-            // Verificamos el resultado de la inserción.
-            if (id != -1) {
-                inserted++; // Si el ID es válido, incrementamos el contador de insertados.
-            } else {
-                // Si hubo un error, lo registramos en el Logcat para depuración.
-                Log.w("Prueba", "Falló la inserción del usuario: " + username);
-            }
+    private void alComprobarUsuario(User usuarioIngresado) {
+        if (usuarioIngresado.getId() != -1) {
+            // Usuario válido -> vamos a la pantalla principal
+            Intent intent = new Intent(MainActivity.this, Principal.class);
+            startActivity(intent);
+        } else {
+            // Usuario inválido -> feedback al usuario
+            Toast.makeText(MainActivity.this, "Usuario no existe", Toast.LENGTH_SHORT).show();
         }
+    }
 
-        // --- Feedback Final ---
-        // Creamos un mensaje que resume la operación.
-        String message = "Usuarios de prueba: insertados=" + inserted + " omitidos=" + skipped;
 
-        // Mostramos el mensaje en el Logcat (visible para desarrolladores en Android Studio).
-        Log.i("Prueba", message);
-        // Mostramos un mensaje Toast en la pantalla (visible para el usuario final).
-        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+    /**
+     * mostrarEspera:
+     * - Despues de varios intentos fallidos hay que esperar antes de volver a probar (ver LoginThrottle).
+     */
+    private void mostrarEspera(long waitMs) {
+        long segundos = (waitMs + 999) / 1000;
+        String espera = segundos >= 60 ? ((segundos + 59) / 60) + " min" : segundos + " s";
+        Toast.makeText(MainActivity.this, "Demasiados intentos. Espere " + espera + " para volver a probar", Toast.LENGTH_SHORT).show();
     }
 
 
@@ -1,20 +1,25 @@
 package com.example.ejemplo.actividades;
 
 import android.os.Bundle;
-import android.widget.ListView;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.widget.EditText;
 
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.ejemplo.R;
+import com.example.ejemplo.adaptadores.SearchAdapter;
 import com.example.ejemplo.adaptadores.UsersAdapter;
-import com.example.ejemplo.database.DBHelper;
-import com.example.ejemplo.modelos.User;
-
-import java.util.List;
+import com.example.ejemplo.database.DBAsync;
+import com.example.ejemplo.database.UserChanges;
+import com.example.ejemplo.database.UserPager;
+import com.example.ejemplo.database.UserSearcher;
+import com.example.ejemplo.metricas.Metrics;
 
 /**
  * `Principal` es una `Activity` (una pantalla) que se muestra después de que el usuario
@@ -22,8 +27,9 @@ import java.util.List;
  *
  * Su principal objetivo es demostrar cómo:
  * 1. Cargar datos desde una base de datos local (SQLite).
- * 2. Mostrar esos datos en una lista usando un `ListView`.
+ * 2. Mostrar esos datos en una lista usando un `RecyclerView`, cargandolos de a paginas (`UserPager`).
  * 3. Conectar los datos con la interfaz de usuario a través de un adaptador personalizado (`UsersAdapter`).
+ * 4. Buscar usuarios mientras se escribe (`UserSearcher` + `SearchAdapter`).
  */
 public class Principal extends AppCompatActivity {
 
@@ -31,17 +37,32 @@ public class Principal extends AppCompatActivity {
 
     /**
      * `listaUsuarios`:
-     * Es la referencia al componente `ListView` definido en el archivo de layout `activity_principal.xml`.
-     * Un ListView es un widget que muestra una lista de elementos desplazables verticalmente.
+     * Es la referencia al componente `RecyclerView` definido en el archivo de layout `activity_principal.xml`.
+     * Un RecyclerView es un widget que muestra una lista desplazable reutilizando ("reciclando") las filas
+     * que salen de pantalla. El `LinearLayoutManager` (declarado en el XML) las acomoda verticalmente.
+     */
+    private RecyclerView listaUsuarios;
+
+    /**
+     * `adapter`:
+     * Nuestro adaptador. Lo guardamos para poder refrescar la lista al volver a esta pantalla.
+     */
+    private UsersAdapter adapter;
+
+    /**
+     * `searcher` y `searchAdapter`:
+     * La busqueda por nombre. Mientras el buscador tiene texto, la lista muestra `searchAdapter` (los
+     * resultados); al borrarlo vuelve a mostrar `adapter` (todos los usuarios).
      */
-    private ListView listaUsuarios;
+    private UserSearcher searcher;
+    private SearchAdapter searchAdapter;
 
     /**
-     * `dbHelper`:
-     * Es una instancia de nuestra clase de ayuda `DBHelper`.
-     * Nos proporciona todos los métodos para interactuar con la base de datos (leer, escribir, etc.).
+     * `db`:
+     * Es el acceso asincronico a nuestra clase de ayuda `DBHelper` (la misma instancia que usa `MainActivity`).
+     * Cada consulta corre en un hilo secundario y el resultado vuelve al hilo principal.
      */
-    private DBHelper dbHelper;
+    private DBAsync db;
 
 
     /**
@@ -61,6 +82,10 @@ public class Principal extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState); // Llamada obligatoria al método de la clase padre.
 
+        // Medimos cuanto tarda esta pantalla en dibujarse. Ese mismo primer frame cierra la medicion del
+        // login que empezo con el click en `MainActivity`.
+        Metrics.trackFirstFrame(this, Metrics.Op.TTFF_PRINCIPAL, Metrics.Op.LOGIN);
+
         // --- CONFIGURACIÓN BÁSICA DE LA UI ---
 
         // `EdgeToEdge.enable(this)` permite que la app se dibuje a pantalla completa, ocupando el espacio
@@ -83,32 +108,86 @@ public class Principal extends AppCompatActivity {
 
         // --- INICIALIZACIÓN Y CARGA DE DATOS ---
 
-        // 1. Vinculamos la variable `listaUsuarios` con el componente ListView del XML usando su ID.
+        // 1. Vinculamos la variable `listaUsuarios` con el componente RecyclerView del XML usando su ID.
         listaUsuarios = findViewById(R.id.lista_usuarios);
 
-        // 2. Creamos una instancia de nuestro `DBHelper`. El `this` se refiere al contexto de esta actividad,
-        // que es necesario para que el helper pueda encontrar y gestionar la base de datos.
-        dbHelper = new DBHelper(this);
-
-        // 3. Obtenemos la lista de usuarios de la base de datos.
-        // Llamamos al método `getAllUsersSafe()`, que nos devuelve una lista de objetos `User`.
-        // NOTA IMPORTANTE: Esta operación se está ejecutando en el "hilo principal" (Main Thread).
-        // Para listas pequeñas está bien, pero para bases de datos grandes, esto podría bloquear
-        // la interfaz de usuario y hacer que la app no responda. En una app real, esto debería
-        // hacerse en un hilo secundario (background thread) usando, por ejemplo, AsyncTask, Coroutines o LiveData.
-        List<User> users = dbHelper.getAllUsersSafe(); // El método "Safe" no incluye las contraseñas.
-
-        // 4. Creamos una instancia de nuestro adaptador personalizado, `UsersAdapter`.
-        // Le pasamos:
-        // - El contexto (`Principal.this`).
-        // - El layout para cada fila (`R.layout.row_usuario`).
-        // - La lista de datos que acabamos de obtener (`users`).
-        UsersAdapter adapter = new UsersAdapter(Principal.this, R.layout.row_usuario, users);
-
-        // 5. Asignamos el adaptador a nuestro `ListView`.
-        // En este momento, el ListView le pide al adaptador que cree y configure una vista para cada
-        // usuario en la lista, y luego las muestra en pantalla.
+        // 2. Obtenemos el acceso asincronico a la base de datos. La conexion ya quedo abierta desde
+        // `MainActivity`, asi que no pagamos otra vez el costo de abrir la base de datos.
+        db = DBAsync.getInstance(this);
+
+        // 3. Creamos la fuente de datos paginada (`UserPager`).
+        // En lugar de traer toda la tabla con `getAllUsersSafe()`, el pager carga paginas de 50 usuarios
+        // a medida que se hace scroll y libera las que quedan lejos. Las consultas corren en un hilo
+        // secundario (background thread) y se cancelan solas si el usuario cierra la pantalla.
+        UserPager pager = new UserPager(db, this);
+
+        // 4. Creamos una instancia de nuestro adaptador personalizado, `UsersAdapter`,
+        // pasandole la fuente paginada de usuarios (`pager`). El layout de cada fila
+        // (`R.layout.row_usuario`) ya lo conoce el adaptador.
+        adapter = new UsersAdapter(pager);
+
+        // 5. Asignamos el adaptador a nuestro `RecyclerView`.
+        // El RecyclerView solo pide las filas que entran en pantalla; cada fila le avisa al pager que
+        // posicion se esta mostrando para que cargue esa pagina y las siguientes.
         listaUsuarios.setAdapter(adapter);
 
+        // 6. Arrancamos: se cuenta la tabla y se carga la primera pagina.
+        pager.start();
+
+        // 7. Buscador. Cada tecla le pasa el texto al `UserSearcher`, que espera a que se deje de escribir,
+        // cancela la busqueda anterior si seguia corriendo y consulta el indice de busqueda de la base.
+        searcher = new UserSearcher(db, this);
+        searchAdapter = new SearchAdapter(searcher);
+        EditText buscador = findViewById(R.id.principal__input_buscar);
+        buscador.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searcher.setQuery(s.toString());
+                if (!searcher.isSearching()) mostrar(adapter);
+            }
+        });
+        searcher.setListener(new UserSearcher.Listener() {
+            @Override
+            public void onResultsReplaced(String texto) {
+                searchAdapter.onResultsReplaced(texto);
+                if (searcher.isSearching()) mostrar(searchAdapter);
+            }
+
+            @Override
+            public void onResultsAppended(int start, int count) {
+                searchAdapter.onResultsAppended(start, count);
+            }
+        });
+
+        // 8. Nos suscribimos a los cambios de la tabla: cuando alguien agrega, modifica o borra usuarios
+        // la lista se actualiza sola (solo las filas afectadas), sin recrear la pantalla.
+        db.observeUsers(this, this::alCambiarUsuarios);
+    }
+
+    /**
+     * Refresca la lista cuando la base avisa que cambiaron usuarios. Los avisos llegan a lo sumo uno por
+     * frame, y si la pantalla no estaba visible llegan todos juntos al volver a ella.
+     */
+    private void alCambiarUsuarios(UserChanges cambios) {
+        adapter.onUsersChanged(cambios);
+        searcher.refresh(); // no hace nada si no se esta buscando
     }
-}
\ No newline at end of file
+
+    /**
+     * Cambia lo que muestra la lista (todos los usuarios o los resultados de la busqueda).
+     */
+    private void mostrar(RecyclerView.Adapter<?> nuevo) {
+        if (listaUsuarios.getAdapter() != nuevo) {
+            listaUsuarios.setAdapter(nuevo);
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.example.ejemplo.adaptadores;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.ejemplo.R;
+import com.example.ejemplo.database.UserSearcher;
+import com.example.ejemplo.modelos.User;
+
+/**
+ * `SearchAdapter` muestra los resultados de la busqueda de usuarios (`UserSearcher`) con las mismas filas
+ * (`row_usuario.xml`) y el mismo `ViewHolder` que `UsersAdapter`.
+ *
+ * A diferencia de la lista completa, aca los resultados vienen ordenados por parecido con el texto buscado
+ * y se van agregando al final a medida que se hace scroll.
+ *
+ * No se registra solo como listener del searcher: la pantalla le reenvia los avisos, porque ademas tiene
+ * que decidir cuando cambiar la lista completa por los resultados.
+ */
+public class SearchAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHolder> implements UserSearcher.Listener {
+
+    private final UserSearcher searcher;
+
+    public SearchAdapter(@NonNull UserSearcher searcher) {
+        this.searcher = searcher;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public int getItemCount() {
+        return searcher.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return searcher.get(position).getId();
+    }
+
+    @Override
+    public void onResultsReplaced(String texto) {
+        // Es otra lista (otro texto buscado): no tiene sentido animar fila por fila.
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public void onResultsAppended(int start, int count) {
+        notifyItemRangeInserted(start, count);
+    }
+
+    @NonNull
+    @Override
+    public UsersAdapter.UserViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.row_usuario, parent, false);
+        return new UsersAdapter.UserViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull UsersAdapter.UserViewHolder holder, int position) {
+        // Si la fila esta cerca del final, el searcher pide la pagina siguiente de resultados.
+        searcher.loadAround(position);
+        User user = searcher.get(position);
+
+        holder.usuarioNombre.setText(user.getNombreUsuario() != null ? user.getNombreUsuario() : "—");
+        holder.bindId(user.getId());
+        holder.usuarioExtra.setText("");
+    }
+}
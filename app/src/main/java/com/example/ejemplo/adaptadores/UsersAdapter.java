@@ -1,127 +1,282 @@
 package com.example.ejemplo.adaptadores;
 
-import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.ejemplo.R;
-import com.example.ejemplo.modelos.User;
-
-import java.util.List;
+import com.example.ejemplo.database.UserChanges;
+import com.example.ejemplo.database.UserList;
+import com.example.ejemplo.database.UserPager;
 
 /**
  * Un Adaptador es un componente crucial en Android que sirve como puente entre una fuente de datos
  * (como una lista de usuarios) y una vista de colección (como un ListView o un RecyclerView).
  * Su principal responsabilidad es "adaptar" cada objeto de la fuente de datos a una vista individual (una fila).
  *
- * Esta clase, `UsersAdapter`, extiende `ArrayAdapter<User>`, especializándose en manejar una lista de objetos `User`.
+ * Esta clase, `UsersAdapter`, es un adaptador de `RecyclerView` que toma los usuarios de un `UserPager`:
+ * en lugar de recibir la tabla completa en una lista, pide las paginas a medida que las filas aparecen en pantalla.
+ *
+ * Diferencias con el viejo `ArrayAdapter` + `ListView`:
+ * - Cada fila guarda sus vistas en un `ViewHolder`, asi `findViewById` se llama una sola vez por fila creada
+ *   y no cada vez que la fila se reutiliza.
+ * - Los IDs son estables (`User.getId()`), asi RecyclerView sabe que fila es cual aunque cambien de posicion.
+ * - Al refrescar, la lista vieja se compara con la nueva en segundo plano (`DiffUtil`) y solo se
+ *   animan las filas que realmente se insertaron, cambiaron o se borraron.
+ * - Los usuarios no son objetos `User`: el pager los guarda en una `UserList` (arreglos de ids y letras)
+ *   y cada fila copia su nombre y su id a buffers propios del `ViewHolder`. Hacer scroll no crea
+ *   objetos, asi que el recolector de basura no tiene que frenar la pantalla.
  */
-public class UsersAdapter extends ArrayAdapter<User> {
+public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHolder> implements UserPager.Listener {
 
     // --- MIEMBROS DE LA CLASE ---
 
     /**
-     * `mContext`:
-     * Guarda la referencia al contexto de la actividad que está usando este adaptador.
-     * El contexto es necesario para operaciones como "inflar" layouts.
+     * `pager`:
+     * La fuente de datos paginada. Solo tiene en memoria las paginas cercanas a lo que se ve en pantalla.
      */
-    private Context mContext;
+    private final UserPager pager;
+
 
     /**
-     * `resourceLayout`:
-     * Almacena el ID del archivo de layout XML que define la apariencia de CADA fila
-     * en el ListView. Por ejemplo, `R.layout.row_usuario`.
+     * --- CONSTRUCTOR ---
+     *
+     * @param pager La fuente paginada de los usuarios que se van a mostrar.
      */
-    private int resourceLayout;
+    public UsersAdapter(@NonNull UserPager pager) {
+        this.pager = pager;
+
+        // Cada vez que el pager cargue una pagina nos avisa para refrescar solo esas filas.
+        pager.setListener(this);
+
+        // Le decimos a RecyclerView que cada fila tiene un ID que no cambia (el id del usuario).
+        setHasStableIds(true);
+    }
+
 
     /**
-     * `users`:
-     * Una copia de la lista de objetos `User` que el adaptador mostrará.
+     * --- VIEWHOLDER ---
+     *
+     * Guarda las referencias a las vistas de una fila (`row_usuario.xml`). Se crea una vez por fila
+     * inflada y se reutiliza cuando la fila sale de pantalla y vuelve a usarse para otro usuario.
+     *
+     * `nombre` e `id` son los buffers con el texto que muestra la fila. `TextView.setText(char[], ...)`
+     * NO copia el arreglo: lo lee cada vez que dibuja. Por eso cada fila tiene los suyos y solo los
+     * cambia justo antes de volver a llamar a setText.
      */
-    private List<User> users;
+    static class UserViewHolder extends RecyclerView.ViewHolder {
+        final TextView usuarioNombre;
+        final TextView usuarioId;
+        final TextView usuarioExtra;
+
+        private char[] nombre = new char[32];
+        private final char[] id = new char[20]; // entra cualquier long
+
+        UserViewHolder(@NonNull View view) {
+            super(view);
+            usuarioNombre = view.findViewById(R.id.usuario_fila__nombre);
+            usuarioId = view.findViewById(R.id.usuario_fila__ID);
+            usuarioExtra = view.findViewById(R.id.usuario_fila__extra); // Aunque no se use, lo guardamos.
+        }
+
+        /**
+         * Muestra el nombre de la fila `i` de `users` sin crear un String.
+         */
+        void bindName(UserList users, int i) {
+            if (!users.hasName(i)) {
+                usuarioNombre.setText("—");
+                return;
+            }
+            int largo = users.getNameLength(i);
+            if (largo > nombre.length) nombre = new char[Math.max(largo, nombre.length * 2)];
+            System.arraycopy(users.getNameChars(), users.getNameStart(i), nombre, 0, largo);
+            usuarioNombre.setText(nombre, 0, largo);
+        }
+
+        /**
+         * Muestra el id escribiendo sus digitos en el buffer (de atras para adelante), en lugar de
+         * `String.valueOf(id)`, que crea un String nuevo en cada fila dibujada.
+         */
+        void bindId(long valor) {
+            int pos = id.length;
+            long resto = valor;
+            do {
+                id[--pos] = (char) ('0' + Math.abs(resto % 10));
+                resto /= 10;
+            } while (resto != 0);
+            if (valor < 0) id[--pos] = '-';
+            usuarioId.setText(id, pos, id.length - pos);
+        }
+    }
 
 
+    // --- DATOS ---
+
+    @Override
+    public int getItemCount() {
+        return pager.size();
+    }
+
     /**
-     * --- CONSTRUCTOR ---
-     * El constructor inicializa el adaptador con todo lo que necesita para funcionar.
-     *
-     * @param context El contexto de la aplicación/actividad (ej. `MainActivity.this`).
-     * @param resource El ID del layout para cada fila (ej. `R.layout.row_usuario`).
-     * @param objects La lista de datos (los usuarios) que se van a mostrar.
+     * Las filas que todavia se estan cargando no tienen usuario: les damos un ID negativo unico por posicion
+     * para que nunca se confundan con un usuario real.
      */
-    public UsersAdapter(@NonNull Context context, int resource, @NonNull List<User> objects) {
-        // La llamada a `super` es fundamental. Pasa los parámetros básicos a la clase base `ArrayAdapter`.
-        super(context, resource, objects);
-
-        // Guardamos las referencias en nuestras variables miembro para usarlas más tarde, especialmente en `getView`.
-        this.mContext = context;
-        this.resourceLayout = resource;
-        this.users = objects;
+    @Override
+    public long getItemId(int position) {
+        int i = pager.indexOf(position);
+        return i >= 0 ? pager.getWindow().getId(i) : -(position + 2L);
+    }
+
+    @Override
+    public void onSizeChanged(int size) {
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public void onPageLoaded(int start, int count) {
+        notifyItemRangeChanged(start, count);
     }
 
 
     /**
-     * --- MÉTODO PRINCIPAL: getView ---
-     *
-     * Este es el corazón del adaptador. Android llama a este método para cada elemento de la lista
-     * que necesita ser mostrado en pantalla. Su trabajo es crear y configurar una vista (una fila)
-     * para una posición específica.
-     *
-     * @param position La posición del elemento en la lista de datos (`users`) para el que se debe crear la vista. Empieza en 0.
-     * @param convertView La vista "vieja" o reciclada. Si no es nula, podemos reutilizarla para mejorar el rendimiento.
-     *                    Esto es clave para que listas largas funcionen de forma fluida.
-     * @param parent El `ViewGroup` padre al que esta vista se adjuntará (normalmente, el propio `ListView`).
+     * --- CREACIÓN DE FILAS: onCreateViewHolder ---
      *
-     * @return La vista (ya configurada con los datos) que representa una única fila en el ListView.
+     * RecyclerView llama a este método solo cuando necesita una fila NUEVA (no hay ninguna para reciclar).
+     * Aca "inflamos" el XML y buscamos las vistas una única vez.
      */
     @NonNull
     @Override
-    public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
+    public UserViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        // `LayoutInflater` es el servicio de Android que convierte un archivo XML de layout en un objeto View en memoria.
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.row_usuario, parent, false);
+        return new UserViewHolder(view);
+    }
 
 
-        // `convertView` es una vista que ya no está en pantalla (por ejemplo, porque el usuario hizo scroll).
-        // En lugar de crear una nueva vista desde cero cada vez (lo cual es costoso),
-        // podemos reutilizar `convertView` si existe.
+    /**
+     * --- VINCULACIÓN DE DATOS: onBindViewHolder ---
+     *
+     * Se llama cada vez que una fila (nueva o reciclada) tiene que mostrar la posición `position`.
+     * Solo copia datos a vistas que ya tenemos guardadas en el `holder`.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull UserViewHolder holder, int position) {
+        // 1. Avisamos al pager que esta posicion se esta mostrando: si hace falta carga la pagina siguiente.
+        pager.loadAround(position);
+        int i = pager.indexOf(position);
+
+        // 2. Si la pagina todavia no llegó mostramos un texto provisorio; al cargarse se vuelve a vincular.
+        if (i < 0) {
+            holder.usuarioNombre.setText("Cargando…");
+            holder.usuarioId.setText("");
+            holder.usuarioExtra.setText("");
+            return;
+        }
 
-        View view = convertView; // Empezamos asumiendo que podemos reciclar la vista.
+        // 3. Poblar las vistas con la fila `i` de la ventana del pager (sin crear Strings, ver UserViewHolder).
+        UserList ventana = pager.getWindow();
+        holder.bindName(ventana, i);
+        holder.bindId(ventana.getId(i));
+        holder.usuarioExtra.setText(""); // Dejamos este campo vacío como en el código original.
+    }
 
-        if (view == null) {
-            // Si `view` (o `convertView`) es nulo, significa que no hay una vista para reciclar.
-            // Esto suele pasar con las primeras filas que se muestran en pantalla.
-            // Por lo tanto, debemos "inflar" (crear) una nueva vista desde nuestro archivo XML.
 
-            // `LayoutInflater` es el servicio de Android que convierte un archivo XML de layout en un objeto View en memoria.
-            LayoutInflater inflater = LayoutInflater.from(mContext);
-            view = inflater.inflate(resourceLayout, parent, false);
+    /**
+     * --- REFRESCO INCREMENTAL ---
+     *
+     * `refresh` vuelve a leer de la base de datos la parte visible de la lista. La comparación entre la
+     * versión vieja y la nueva se calcula en un hilo secundario; en el hilo principal solo se aplican los
+     * cambios mínimos (insertar / mover / cambiar / borrar filas), con su animación.
+     */
+    public void refresh() {
+        pager.refresh(UsersAdapter::calcularDiff, this::aplicarRefresco);
+    }
+
+    /**
+     * onUsersChanged:
+     * - Se llama cuando la base avisa que cambiaron usuarios (ver UserChangeNotifier). Si ninguno de los
+     *   cambios toca lo que se esta mostrando (por ejemplo, se actualizo un usuario que no esta cargado),
+     *   no se consulta nada; si no, se hace el mismo refresco incremental de arriba.
+     */
+    public void onUsersChanged(UserChanges cambios) {
+        if (pager.isAffectedBy(cambios)) {
+            refresh();
         }
+    }
+
+    private static DiffUtil.DiffResult calcularDiff(UserList viejos, UserList nuevos) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return viejos.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return nuevos.size();
+            }
 
-        // En este punto, `view` ya no es nulo. O era una vista reciclada o una recién creada.
+            @Override
+            public boolean areItemsTheSame(int oldPos, int newPos) {
+                return viejos.getId(oldPos) == nuevos.getId(newPos);
+            }
 
-        // --- VINCULACIÓN DE DATOS (DATA BINDING) ---
+            @Override
+            public boolean areContentsTheSame(int oldPos, int newPos) {
+                return viejos.sameName(oldPos, nuevos, newPos);
+            }
+        }, false); // los ids estan ordenados: no hace falta buscar filas movidas
+    }
 
-        // 1. Obtener el objeto de datos para esta posición.
-        User user = users.get(position);
+    /**
+     * Traduce el resultado del refresco a notificaciones de RecyclerView:
+     * 1. Filas que aparecieron / desaparecieron ANTES de la parte visible (solo cambia su cantidad).
+     * 2. Cambios dentro de la parte visible, segun el `DiffUtil`.
+     * 3. Filas que aparecieron / desaparecieron DESPUES de la parte visible.
+     */
+    private void aplicarRefresco(int oldStart, int oldCount, int oldSize,
+                                 int newStart, int newCount, int newSize, DiffUtil.DiffResult diff) {
+        int antes = newStart - oldStart;
+        if (antes > 0) {
+            notifyItemRangeInserted(oldStart, antes);
+        } else if (antes < 0) {
+            notifyItemRangeRemoved(newStart, -antes);
+        }
 
-        // 2. Encontrar las vistas (Widgets) dentro del layout de la fila.
-        // Usamos `view.findViewById` porque estamos buscando dentro del layout de la fila, no de toda la actividad.
-        TextView usuarioNombre = view.findViewById(R.id.usuario_fila__nombre);
-        TextView usuarioId = view.findViewById(R.id.usuario_fila__ID);
-        TextView usuarioExtra = view.findViewById(R.id.usuario_fila__extra); // Aunque no se use, lo encontramos.
+        diff.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(newStart + position, count);
+            }
 
-        // 3. Poblar las vistas con los datos del objeto `user`.
-        // Es una buena práctica verificar si los datos son nulos para evitar errores.
-        usuarioNombre.setText(user.getNombreUsuario() != null ? user.getNombreUsuario() : "—");
-        usuarioId.setText(String.valueOf(user.getId())); // Los IDs suelen ser números, `setText` espera un String.
-        usuarioExtra.setText(""); // Dejamos este campo vacío como en el código original.
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(newStart + position, count);
+            }
 
-        // 4. Devolver la vista final.
-        // El `ListView` tomará esta vista y la mostrará en la pantalla en la posición correspondiente.
-        return view;
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(newStart + fromPosition, newStart + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                notifyItemRangeChanged(newStart + position, count, payload);
+            }
+        });
+
+        int despues = (newSize - newStart - newCount) - (oldSize - oldStart - oldCount);
+        int finVentana = newStart + newCount;
+        if (despues > 0) {
+            notifyItemRangeInserted(finVentana, despues);
+        } else if (despues < 0) {
+            notifyItemRangeRemoved(finVentana, -despues);
+        }
     }
-}
\ No newline at end of file
+}
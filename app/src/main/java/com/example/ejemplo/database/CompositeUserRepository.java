@@ -0,0 +1,221 @@
+package com.example.ejemplo.database;
+
+import android.os.CancellationSignal;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.ejemplo.modelos.User;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * `CompositeUserRepository` pone una capa en memoria (`InMemoryUserRepository`) delante de otro repositorio
+ * (normalmente la base, `DBHelper`).
+ *
+ * - Buscar un usuario por nombre o id mira primero la memoria; si no esta, lo lee de `disco` y lo deja en
+ *   memoria para la proxima vez. Asi los usuarios que mas se consultan no vuelven a tocar el disco.
+ * - Las escrituras van primero a `disco` (que es la fuente de verdad) y despues se actualiza o se descarta
+ *   la copia en memoria: nunca queda un dato viejo en la capa rapida.
+ * - Listas, conteos, busquedas y logins van directo a `disco`: la memoria solo tiene una parte de los
+ *   usuarios. (DBHelper ademas tiene sus propios caches para el login.)
+ * - La memoria tiene un maximo de usuarios; al llenarse se vacia entera y se vuelve a llenar sola con lo
+ *   que se siga consultando.
+ *
+ * Todas las escrituras tienen que pasar por este objeto: si se escribe en `disco` por otro lado, la capa
+ * en memoria no se entera.
+ *
+ * Uso:
+ * DBAsync db = DBAsync.getInstance(this);
+ * db.setRepository(new CompositeUserRepository(db.getHelper()));
+ */
+public final class CompositeUserRepository implements UserRepository {
+
+    public static final int DEFAULT_MAX_MEMORIA = 10_000;
+
+    private final UserRepository disco;
+    private final InMemoryUserRepository memoria;
+    private final int maxMemoria;
+
+    public CompositeUserRepository(UserRepository disco) {
+        this(disco, DEFAULT_MAX_MEMORIA);
+    }
+
+    public CompositeUserRepository(UserRepository disco, int maxMemoria) {
+        this.disco = disco;
+        // Los cambios se avisan una sola vez: los que publica `disco`
+        this.memoria = new InMemoryUserRepository(disco.getPasswordHasher(), disco.getChangeNotifier());
+        this.maxMemoria = maxMemoria;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Lecturas
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    @WorkerThread
+    public User comprobarUsuarioLocal(String nombreUsuario, String password) {
+        return disco.comprobarUsuarioLocal(nombreUsuario, password);
+    }
+
+    @Override
+    public User getUserByUsername(String nombreUsuario) {
+        User user = memoria.getUserByUsername(nombreUsuario);
+        if (user.getId() != -1) return user;
+        return recordar(disco.getUserByUsername(nombreUsuario));
+    }
+
+    @Override
+    public User getUserById(long id) {
+        User user = memoria.getUserById(id);
+        if (user.getId() != -1) return user;
+        return recordar(disco.getUserById(id));
+    }
+
+    private User recordar(User user) {
+        if (user.getId() == -1 || user.getNombreUsuario() == null) return user;
+        if (memoria.countUsers() >= maxMemoria) memoria.forgetAll();
+        memoria.put(user.getId(), user.getNombreUsuario(), user.getPassword());
+        return user;
+    }
+
+    @Override
+    public boolean existsByUsername(String nombreUsuario) {
+        return idByUsername(nombreUsuario) != -1;
+    }
+
+    @Override
+    public long idByUsername(String nombreUsuario) {
+        long id = memoria.idByUsername(nombreUsuario);
+        return id != -1 ? id : disco.idByUsername(nombreUsuario); // sin recordar: no se trajo la fila entera
+    }
+
+    @Override
+    public long countUsers() {
+        return disco.countUsers();
+    }
+
+    @Override
+    public long countUsersBefore(long id) {
+        return disco.countUsersBefore(id);
+    }
+
+    @Override
+    public UserList getAllUsersList() {
+        return disco.getAllUsersList();
+    }
+
+    @Override
+    public UserList getUserListPage(long afterId, int limit) {
+        return disco.getUserListPage(afterId, limit);
+    }
+
+    @Override
+    public UserList getUserListPageBefore(long beforeId, int limit) {
+        return disco.getUserListPageBefore(beforeId, limit);
+    }
+
+    @Override
+    public UserList getUserListAtOffset(int offset, int limit) {
+        return disco.getUserListAtOffset(offset, limit);
+    }
+
+    @Override
+    public List<User> searchUsers(String texto, int offset, int limit, @Nullable CancellationSignal senal) {
+        return disco.searchUsers(texto, offset, limit, senal);
+    }
+
+    @Override
+    public void forEachUser(UserVisitor visitor, @Nullable CancellationSignal senal) {
+        disco.forEachUser(visitor, senal);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Escrituras: primero el disco, despues la memoria
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    @WorkerThread
+    public long addUser(User user) {
+        if (user == null) return -1;
+        return addUserHashed(user.getNombreUsuario(), getPasswordHasher().hash(user.getPassword()));
+    }
+
+    @Override
+    public long addUserHashed(String nombreUsuario, @Nullable String hash) {
+        long id = disco.addUserHashed(nombreUsuario, hash);
+        if (id != -1) recordar(new User(id, nombreUsuario, hash)); // recien creado: seguramente se consulte
+        return id;
+    }
+
+    @Override
+    @WorkerThread
+    public DBHelper.BatchResult addUsers(Iterator<User> users) {
+        return disco.addUsers(users); // nombres nuevos: no hay nada en memoria que actualizar
+    }
+
+    @Override
+    @WorkerThread
+    public PreparedBatch prepareUsers(Iterator<User> users) {
+        return disco.prepareUsers(users);
+    }
+
+    @Override
+    public DBHelper.BatchResult addPreparedUsers(PreparedBatch lote) {
+        return disco.addPreparedUsers(lote);
+    }
+
+    @Override
+    @WorkerThread
+    public boolean updatePassword(String nombreUsuario, String nuevaPassword) {
+        return updatePasswordHash(nombreUsuario, getPasswordHasher().hash(nuevaPassword));
+    }
+
+    @Override
+    public boolean updatePasswordHash(String nombreUsuario, @Nullable String hash) {
+        boolean actualizado = disco.updatePasswordHash(nombreUsuario, hash);
+        memoria.forget(nombreUsuario);
+        return actualizado;
+    }
+
+    @Override
+    public int deleteUser(String nombreUsuario) {
+        int borrados = disco.deleteUser(nombreUsuario);
+        memoria.forget(nombreUsuario);
+        return borrados;
+    }
+
+    @Override
+    public long[] applyWrites(List<Write> escrituras) {
+        long[] resultados = disco.applyWrites(escrituras);
+        for (int i = 0; i < resultados.length; i++) {
+            Write w = escrituras.get(i);
+            if (w.tipo == UserChanges.INSERT) {
+                if (resultados[i] != -1) recordar(new User(resultados[i], w.nombreUsuario, w.hash));
+            } else {
+                memoria.forget(w.nombreUsuario);
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * forgetMemory:
+     * - Vacia la capa en memoria. Para cuando `disco` se escribio sin pasar por aca (por ejemplo la
+     *   sincronizacion, ver DBAsync.sync): se vuelve a llenar sola con las proximas lecturas.
+     */
+    void forgetMemory() {
+        memoria.forgetAll();
+    }
+
+    @Override
+    public PasswordHasher getPasswordHasher() {
+        return disco.getPasswordHasher();
+    }
+
+    @Override
+    public UserChangeNotifier getChangeNotifier() {
+        return disco.getChangeNotifier();
+    }
+}
@@ -0,0 +1,738 @@
+package com.example.ejemplo.database;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.example.ejemplo.modelos.User;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * `DBAsync` es la version asincronica de `DBHelper` (o del `UserRepository` que se le configure, ver
+ * setRepository).
+ *
+ * Las consultas a SQLite leen del disco y pueden tardar. Si se ejecutan en el hilo principal (el que dibuja
+ * la pantalla) la app se "congela" y Android puede mostrar el cartel de "la aplicacion no responde" (ANR).
+ *
+ * Esta clase ejecuta cada operacion en un hilo secundario y devuelve el resultado en el hilo principal:
+ * - Lecturas: un grupo acotado de hilos (varias lecturas pueden correr en paralelo gracias al modo WAL).
+ * - Escrituras (`addUser`, `updatePassword`, `deleteUser`): un UNICO hilo, asi se aplican en orden y nunca
+ *   compiten entre si por el bloqueo de escritura de SQLite.
+ *
+ * Si se pasa un `LifecycleOwner` (cualquier Activity lo es), el resultado solo se entrega mientras la pantalla
+ * exista: al destruirse la Activity las lecturas pendientes se cancelan y los callbacks se descartan.
+ *
+ * Uso:
+ * DBAsync.getInstance(this).comprobarUsuarioLocal(this, nombre, pass, user -> { ... });
+ */
+public final class DBAsync {
+
+    private static final String TAG = "DBAsync";
+
+    /**
+     * ConsultaCancelable:
+     * - Una consulta que recibe un `CancellationSignal` para pasarselo a SQLite. Cancelar el Future
+     *   cancela la senal y SQLite corta la consulta aunque ya este ejecutandose.
+     */
+    public interface ConsultaCancelable<T> {
+        T call(CancellationSignal senal) throws Exception;
+    }
+
+    /**
+     * Callback:
+     * - Recibe el resultado de una operacion, SIEMPRE en el hilo principal.
+     * - `onError` es opcional: por defecto solo registra el error en el Logcat.
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+
+        default void onError(Throwable error) {
+            Log.e(TAG, "Fallo una operacion de base de datos", error);
+        }
+    }
+
+    private static volatile DBAsync instancia;
+
+    public static DBAsync getInstance(Context context) {
+        DBAsync local = instancia;
+        if (local == null) {
+            synchronized (DBAsync.class) {
+                local = instancia;
+                if (local == null) {
+                    local = new DBAsync(context.getApplicationContext());
+                    instancia = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    // Cantidad de hilos de lectura: entre 2 y 4 segun los nucleos del dispositivo.
+    private static final int HILOS_LECTURA = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    // Hilos de computo: 1 o 2. Un PBKDF2 ocupa un nucleo entero; mas hilos le quitarian CPU a la pantalla.
+    private static final int HILOS_COMPUTO = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2));
+
+    private final Context appContext;
+    private final ExecutorService lecturas;
+    private final ExecutorService escrituras;
+    private final ExecutorService computo;
+    private final ExecutorService transferencias;
+    private final Handler hiloPrincipal = new Handler(Looper.getMainLooper());
+    private final GroupCommitWriter grupo;
+
+    private DBAsync(Context appContext) {
+        this.appContext = appContext;
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(HILOS_LECTURA, HILOS_LECTURA,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new FabricaHilos("db-lectura"));
+        pool.allowCoreThreadTimeOut(true); // si no hay consultas, los hilos se liberan solos
+        this.lecturas = pool;
+        this.escrituras = Executors.newSingleThreadExecutor(new FabricaHilos("db-escritura"));
+
+        // Calculos caros que no son de la base (hash de contraseñas): tienen sus propios hilos para no
+        // ocupar los de lectura ni demorar las escrituras mientras se calcula un PBKDF2.
+        ThreadPoolExecutor cpu = new ThreadPoolExecutor(HILOS_COMPUTO, HILOS_COMPUTO,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new FabricaHilos("computo"));
+        cpu.allowCoreThreadTimeOut(true);
+        this.computo = cpu;
+
+        // Exportar / importar puede tardar minutos: un hilo aparte, para no dejar sin lecturas ni computo a
+        // las pantallas mientras tanto (y de a una transferencia por vez).
+        ThreadPoolExecutor transferir = new ThreadPoolExecutor(1, 1,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new FabricaHilos("transferencia"));
+        transferir.allowCoreThreadTimeOut(true);
+        this.transferencias = transferir;
+
+        // addUser / updatePassword / deleteUser sueltos se confirman de a grupos (ver GroupCommitWriter)
+        this.grupo = new GroupCommitWriter(escrituras, this::getRepository);
+
+        // Las bases de cada organizacion se cierran en el hilo de escritura, detras de sus escrituras pendientes
+        this.tenants = new TenantDatabases(appContext, grupo);
+    }
+
+    /**
+     * getHelper:
+     * - Devuelve el `DBHelper` de la organizacion actual (ver switchTenant). Obtenerlo es barato; lo que abre
+     *   (y si hace falta copia) la base es su primera consulta, que debe hacerse desde los hilos de esta clase.
+     */
+    public DBHelper getHelper() {
+        return tenants.get(tenant);
+    }
+
+    /**
+     * tenant:
+     * - La organizacion cuya base usan todas las operaciones (ver TenantDatabases). Empieza en la de por
+     *   defecto, `ejemplo.db`.
+     */
+    private final TenantDatabases tenants;
+    private volatile String tenant = TenantDatabases.DEFAULT_TENANT;
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public TenantDatabases getTenants() {
+        return tenants;
+    }
+
+    /**
+     * switchTenant:
+     * - Cambia de organizacion: las operaciones que se pidan desde ahora usan su base. Las escrituras ya
+     *   pedidas terminan en la base anterior.
+     * - Ademas abre la base nueva en el hilo de escritura (copiandola de la plantilla si es la primera vez),
+     *   asi el login siguiente no tiene que esperarlo. Si la organizacion se uso hace poco sigue abierta y
+     *   el cambio no toca el disco. El callback avisa cuando la base esta lista.
+     * - Con un repositorio propio (setRepository) las operaciones siguen usandolo: no cambia nada.
+     * - Lanza IllegalArgumentException si el nombre no es valido (ver TenantDatabases.get).
+     */
+    @MainThread
+    public Future<Void> switchTenant(@Nullable LifecycleOwner owner, String nuevo, @Nullable Callback<Void> callback) {
+        TenantDatabases.checkTenant(nuevo);
+        tenant = nuevo;
+        return write(owner, () -> {
+            if (nuevo.equals(tenant)) tenants.get(nuevo).countUsers(); // la primera consulta abre la base
+            return null;
+        }, callback);
+    }
+
+    /**
+     * trimTenants:
+     * - Cierra las bases de las organizaciones que no estan en uso (ver EjemploApp.onTrimMemory).
+     */
+    public void trimTenants() {
+        tenants.trim(tenant);
+    }
+
+    /**
+     * repositorio:
+     * - De donde salen los usuarios de todas las operaciones de esta clase (y de UserPager y UserSearcher).
+     *   Por defecto es la base SQLite (`DBHelper`); se puede cambiar por otro `UserRepository`, por ejemplo
+     *   uno en memoria para medir las pantallas sin disco.
+     */
+    @Nullable private volatile UserRepository repositorio;
+
+    public UserRepository getRepository() {
+        UserRepository local = repositorio;
+        return local != null ? local : getHelper();
+    }
+
+    /**
+     * setRepository:
+     * - Cambia el repositorio (null vuelve a la base SQLite). Las operaciones ya encoladas terminan con el
+     *   anterior. Conviene llamarlo antes de abrir cualquier pantalla.
+     */
+    public void setRepository(@Nullable UserRepository nuevo) {
+        repositorio = nuevo;
+    }
+
+    // Preparacion de la base (ver warmUp / whenReady). Solo se tocan desde el hilo principal.
+    @Nullable private Future<Void> preparacion;
+    private boolean lista;
+    private final List<Espera> esperando = new ArrayList<>();
+
+    /**
+     * warmUp:
+     * - Prepara la base en segundo plano: la copia desde assets si es el primer arranque, la abre y
+     *   aplica las migraciones pendientes, para que la primera consulta de una pantalla no tenga que
+     *   esperar todo eso. (Con otro repositorio es una consulta mas.)
+     * - Se llama una sola vez (EjemploApp la dispara despues del primer frame, ver StartupTasks); las
+     *   llamadas siguientes devuelven la misma tarea.
+     * - Corre en el hilo de escritura, asi cualquier escritura posterior espera a que termine.
+     * - En paralelo, calibra el hash de contraseñas (solo la primera vez en cada dispositivo) para que
+     *   el primer login no tenga que esperar la calibracion.
+     */
+    @MainThread
+    public Future<Void> warmUp() {
+        if (preparacion != null) return preparacion;
+        enviar(computo, null, () -> getRepository().getPasswordHasher().getIterations(), null, false);
+        preparacion = write(null, () -> {
+            getRepository().countUsers(); // la primera consulta abre la base
+            return null;
+        }, new Callback<Void>() {
+            @Override
+            public void onResult(Void result) {
+                avisarLista();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                // Se avisa igual: la primera operacion de la pantalla vuelve a intentar abrir la base y
+                // muestra su propio error, en lugar de dejar la pantalla esperando para siempre.
+                Callback.super.onError(error);
+                avisarLista();
+            }
+        });
+        return preparacion;
+    }
+
+    /**
+     * whenReady:
+     * - Ejecuta `accion` en el hilo principal cuando termino warmUp (en el momento, si ya termino). No
+     *   dispara warmUp: solo espera a que alguien lo haga.
+     * - Si `owner` se destruye antes, `accion` se descarta.
+     *
+     * Uso: db.whenReady(this, () -> btn_ingresar.setEnabled(true));
+     */
+    @MainThread
+    public void whenReady(LifecycleOwner owner, Runnable accion) {
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) return;
+        if (lista) {
+            accion.run();
+            return;
+        }
+        Espera espera = new Espera(owner, accion);
+        esperando.add(espera);
+        owner.getLifecycle().addObserver(espera);
+    }
+
+    private void avisarLista() {
+        lista = true;
+        List<Espera> avisar = new ArrayList<>(esperando);
+        esperando.clear();
+        for (Espera espera : avisar) espera.avisar();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Operaciones genericas
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * read:
+     * - Ejecuta `consulta` en el grupo de hilos de lectura.
+     * - Si `owner` se destruye antes de terminar, la consulta se cancela y el callback no se llama.
+     */
+    @MainThread
+    public <T> Future<T> read(@Nullable LifecycleOwner owner, Callable<T> consulta, @Nullable Callback<T> callback) {
+        return enviar(lecturas, owner, consulta, callback, true);
+    }
+
+    /**
+     * write:
+     * - Ejecuta `operacion` en el hilo unico de escritura (las escrituras se aplican en orden).
+     * - Si `owner` se destruye la escritura IGUAL se completa (no queremos perder datos), pero el
+     *   callback se descarta.
+     */
+    @MainThread
+    public <T> Future<T> write(@Nullable LifecycleOwner owner, Callable<T> operacion, @Nullable Callback<T> callback) {
+        return enviar(escrituras, owner, operacion, callback, false);
+    }
+
+    /**
+     * readCancelable:
+     * - Igual que read, pero `Future.cancel(...)` (o destruir el `owner`) tambien corta la consulta que
+     *   SQLite ya esta ejecutando, en lugar de esperar a que termine para descartar el resultado.
+     */
+    @MainThread
+    public <T> Future<T> readCancelable(@Nullable LifecycleOwner owner, ConsultaCancelable<T> consulta,
+                                        @Nullable Callback<T> callback) {
+        CancellationSignal senal = new CancellationSignal();
+        Tarea<T> tarea = new Tarea<>(() -> consulta.call(senal), callback, owner, true, senal);
+        tarea.vincular();
+        lecturas.execute(tarea);
+        return tarea;
+    }
+
+    /**
+     * calcularYEscribir:
+     * - `calculo` corre en el executor de computo y devuelve la escritura a hacer con lo calculado; esa
+     *   escritura se encola en el hilo de escritura y su resultado es el que recibe el callback.
+     * - Como las escrituras, se completa aunque el `owner` se destruya (solo se descarta el callback).
+     */
+    private <T> Future<T> calcularYEscribir(@Nullable LifecycleOwner owner, Callable<Callable<T>> calculo,
+                                            @Nullable Callback<T> callback) {
+        return enviar(computo, owner, () -> {
+            Callable<T> escritura = calculo.call();
+            return esperar(escrituras.submit(escritura));
+        }, callback, false);
+    }
+
+    // Espera el resultado de otra tarea y relanza su error tal cual (sin envolverlo en ExecutionException)
+    private static <T> T esperar(Future<T> tarea) throws Exception {
+        try {
+            return tarea.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof Exception) throw (Exception) causa;
+            throw e;
+        }
+    }
+
+    private <T> Future<T> enviar(ExecutorService executor, @Nullable LifecycleOwner owner, Callable<T> operacion,
+                                 @Nullable Callback<T> callback, boolean cancelarAlDestruir) {
+        Tarea<T> tarea = new Tarea<>(operacion, callback, owner, cancelarAlDestruir, null);
+        tarea.vincular();
+        executor.execute(tarea);
+        return tarea;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Atajos para cada metodo del repositorio (ver UserRepository)
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * comprobarUsuarioLocal:
+     * - Corre en el executor de computo: la verificacion calcula un PBKDF2 (~100 ms) y no debe ocupar un
+     *   hilo de lectura mientras tanto. La consulta del usuario en si es una lectura rapida (o sale del cache).
+     */
+    public Future<User> comprobarUsuarioLocal(@Nullable LifecycleOwner owner, String nombreUsuario, String password,
+                                              Callback<User> callback) {
+        return enviar(computo, owner, () -> getRepository().comprobarUsuarioLocal(nombreUsuario, password), callback, true);
+    }
+
+    public Future<User> getUserByUsername(@Nullable LifecycleOwner owner, String nombreUsuario, Callback<User> callback) {
+        return read(owner, () -> getRepository().getUserByUsername(nombreUsuario), callback);
+    }
+
+    /**
+     * existsByUsername / idByUsername / countUsers:
+     * - Consultas de un solo valor (ver DBHelper.existsByUsername): para saber si un usuario existe no hace
+     *   falta traerlo entero con getUserByUsername.
+     */
+    public Future<Boolean> existsByUsername(@Nullable LifecycleOwner owner, String nombreUsuario, Callback<Boolean> callback) {
+        return read(owner, () -> getRepository().existsByUsername(nombreUsuario), callback);
+    }
+
+    public Future<Long> idByUsername(@Nullable LifecycleOwner owner, String nombreUsuario, Callback<Long> callback) {
+        return read(owner, () -> getRepository().idByUsername(nombreUsuario), callback);
+    }
+
+    public Future<Long> countUsers(@Nullable LifecycleOwner owner, Callback<Long> callback) {
+        return read(owner, () -> getRepository().countUsers(), callback);
+    }
+
+    public Future<List<User>> getAllUsersSafe(@Nullable LifecycleOwner owner, Callback<List<User>> callback) {
+        return read(owner, () -> getRepository().getAllUsersList().toUsers(), callback);
+    }
+
+    /**
+     * getAllUsersList:
+     * - La tabla completa (sin contraseñas) en una `UserList`: para listas grandes, en lugar de getAllUsersSafe.
+     */
+    public Future<UserList> getAllUsersList(@Nullable LifecycleOwner owner, Callback<UserList> callback) {
+        return read(owner, () -> getRepository().getAllUsersList(), callback);
+    }
+
+    public Future<List<User>> searchUsers(@Nullable LifecycleOwner owner, String texto, int offset, int limit,
+                                          Callback<List<User>> callback) {
+        return readCancelable(owner, senal -> getRepository().searchUsers(texto, offset, limit, senal), callback);
+    }
+
+    /*
+     * addUser / addUsers / updatePassword:
+     * - El hash de la contraseña se calcula en el executor de computo; recien con el hash listo se encola la
+     *   escritura. Asi el hilo de escritura nunca queda ocupado con PBKDF2 y las demas escrituras no esperan.
+     * - addUser, updatePassword y deleteUser no se confirman de a una: se juntan con las que lleguen casi al
+     *   mismo tiempo y van en una sola transaccion (ver GroupCommitWriter). Cada callback recibe el
+     *   resultado de su propia escritura.
+     * - El repositorio se toma al llamar: si mientras se calcula el hash se cambia de organizacion (ver
+     *   switchTenant), la escritura igual va a la base en la que se pidio. Y queda reservada en el grupo
+     *   desde el principio: si esa base se cierra mientras tanto, el cierre la espera (ver TenantDatabases).
+     */
+
+    public Future<Long> addUser(@Nullable LifecycleOwner owner, User user, @Nullable Callback<Long> callback) {
+        UserRepository repo = getRepository();
+        return escribirAgrupado(owner, prepararYAgrupar(repo, () -> UserRepository.Write.insert(
+                user.getNombreUsuario(), repo.getPasswordHasher().hash(user.getPassword()))), id -> id, callback);
+    }
+
+    public Future<DBHelper.BatchResult> addUsers(@Nullable LifecycleOwner owner, Iterable<User> users,
+                                                 @Nullable Callback<DBHelper.BatchResult> callback) {
+        UserRepository repo = getRepository();
+        return calcularYEscribir(owner, () -> {
+            UserRepository.PreparedBatch lote = repo.prepareUsers(users.iterator());
+            return () -> repo.addPreparedUsers(lote);
+        }, callback);
+    }
+
+    public Future<Boolean> updatePassword(@Nullable LifecycleOwner owner, String nombreUsuario, String nuevaPassword,
+                                          @Nullable Callback<Boolean> callback) {
+        UserRepository repo = getRepository();
+        return escribirAgrupado(owner, prepararYAgrupar(repo, () -> UserRepository.Write.update(
+                nombreUsuario, repo.getPasswordHasher().hash(nuevaPassword))), filas -> filas > 0, callback);
+    }
+
+    public Future<Integer> deleteUser(@Nullable LifecycleOwner owner, String nombreUsuario,
+                                      @Nullable Callback<Integer> callback) {
+        return escribirAgrupado(owner, grupo.submit(getRepository(), UserRepository.Write.delete(nombreUsuario)),
+                filas -> (int) (long) filas, callback);
+    }
+
+    // Prepara la escritura (el hash) en computo y la encola en el grupo, reservada desde ahora
+    private CompletableFuture<Long> prepararYAgrupar(UserRepository repo, Supplier<UserRepository.Write> preparar) {
+        GroupCommitWriter.Reserva reserva = grupo.reserve(repo);
+        try {
+            return CompletableFuture.supplyAsync(preparar, computo)
+                    .whenComplete((w, error) -> {
+                        if (error != null) reserva.cancel();
+                    })
+                    .thenCompose(reserva::submit);
+        } catch (RuntimeException e) {
+            reserva.cancel(); // computo no la acepto
+            throw e;
+        }
+    }
+
+    /**
+     * escribirAgrupado:
+     * - Entrega el resultado de una escritura del grupo (`escritura`) al callback, convertido con `resultado`.
+     * - La Tarea corre recien cuando el grupo se confirmo, en el hilo que lo confirmo: ningun hilo queda
+     *   bloqueado esperando. Como las escrituras, se completa aunque el `owner` se destruya.
+     */
+    private <T> Future<T> escribirAgrupado(@Nullable LifecycleOwner owner, CompletableFuture<Long> escritura,
+                                           Function<Long, T> resultado, @Nullable Callback<T> callback) {
+        Tarea<T> tarea = new Tarea<>(() -> resultado.apply(esperar(escritura)), callback, owner, false, null);
+        tarea.vincular();
+        escritura.whenComplete((r, error) -> tarea.run());
+        return tarea;
+    }
+
+    /**
+     * exportUsers:
+     * - Escribe todos los usuarios (con el hash de su contraseña) en `archivo`, fila por fila (ver UserTransfer).
+     *   El callback recibe cuantos se exportaron.
+     * - Corre en el hilo de transferencias. `progress` se llama en el hilo principal.
+     * - `Future.cancel(true)` (o destruir el `owner`) corta la exportacion y deja `archivo` como estaba.
+     */
+    public Future<Long> exportUsers(@Nullable LifecycleOwner owner, File archivo, UserTransfer.Format formato,
+                                    @Nullable UserTransfer.Progress progress, @Nullable Callback<Long> callback) {
+        CancellationSignal senal = new CancellationSignal();
+        Tarea<Long> tarea = new Tarea<>(() -> new UserTransfer(getRepository())
+                .setCancellationSignal(senal)
+                .setProgress(enHiloPrincipal(owner, progress))
+                .exportUsers(archivo, formato), callback, owner, true, senal);
+        tarea.vincular();
+        transferencias.execute(tarea);
+        return tarea;
+    }
+
+    /**
+     * importUsers:
+     * - Inserta los usuarios de `archivo` de a `batchSize` por transaccion (ver UserTransfer). El callback
+     *   recibe cuantos se insertaron y cuantos se omitieron.
+     * - El archivo se lee (y las contraseñas en texto plano se convierten en hash) en el hilo de
+     *   transferencias; cada lote se escribe en el hilo de escritura, asi las demas escrituras de la app
+     *   se intercalan entre lote y lote en lugar de esperar a que termine toda la importacion.
+     * - Como las escrituras, sigue aunque el `owner` se destruya. `Future.cancel(true)` la corta despues del
+     *   lote en curso: los lotes ya escritos quedan guardados.
+     */
+    public Future<DBHelper.BatchResult> importUsers(@Nullable LifecycleOwner owner, File archivo,
+                                                    UserTransfer.Format formato, int batchSize,
+                                                    @Nullable UserTransfer.Progress progress,
+                                                    @Nullable Callback<DBHelper.BatchResult> callback) {
+        CancellationSignal senal = new CancellationSignal();
+        Tarea<DBHelper.BatchResult> tarea = new Tarea<>(() -> {
+            UserRepository repo = getRepository();
+            return new UserTransfer(repo)
+                    .setBatchSize(batchSize)
+                    .setCancellationSignal(senal)
+                    .setProgress(enHiloPrincipal(owner, progress))
+                    .setBatchWriter(lote -> esperar(escrituras.submit(() -> repo.addPreparedUsers(lote))))
+                    .importUsers(archivo, formato);
+        }, callback, owner, false, senal);
+        tarea.vincular();
+        transferencias.execute(tarea);
+        return tarea;
+    }
+
+    /**
+     * sync:
+     * - Sincroniza la tabla de usuarios con el directorio remoto (ver UserSync). El callback recibe cuantos
+     *   cambios se trajeron, cuantos se enviaron y cuantos conflictos hubo.
+     * - La red se espera en el hilo de transferencias; cada pagina se guarda en el hilo de escritura, asi
+     *   las demas escrituras de la app no esperan a que termine toda la sincronizacion.
+     * - Como las escrituras, sigue aunque el `owner` se destruya. `Future.cancel(true)` la corta despues de
+     *   la pagina en curso: lo ya guardado queda.
+     *
+     * Uso: db.sync(this, UserSync.forDatabase(db.getHelper(), transporte), callback);
+     */
+    public Future<UserSync.SyncResult> sync(@Nullable LifecycleOwner owner, UserSync sync,
+                                            @Nullable Callback<UserSync.SyncResult> callback) {
+        CancellationSignal senal = new CancellationSignal();
+        Tarea<UserSync.SyncResult> tarea = new Tarea<>(() -> {
+            UserSync.SyncResult r = null;
+            try {
+                r = sync.setCancellationSignal(senal).setWriter(this::escribirYEsperar).sync();
+                return r;
+            } finally {
+                // Lo que se trajo se escribio directo en la base: la capa en memoria no se entero
+                UserRepository repo = getRepository();
+                if ((r == null || r.pulled > 0) && repo instanceof CompositeUserRepository) {
+                    ((CompositeUserRepository) repo).forgetMemory();
+                }
+            }
+        }, callback, owner, false, senal);
+        tarea.vincular();
+        transferencias.execute(tarea);
+        return tarea;
+    }
+
+    /**
+     * maintain:
+     * - Limpieza de fondo de la base de la organizacion actual (ver StorageMaintenance): purga los borrados suaves viejos, devuelve el
+     *   espacio libre al sistema de a poco, ANALYZE y checkpoint del WAL. El callback recibe el reporte.
+     * - Corre en el hilo de transferencias; cada paso que escribe va al hilo de escritura, asi la app puede
+     *   seguir escribiendo entre paso y paso.
+     * - Sigue aunque el `owner` se destruya. `Future.cancel(true)` la corta despues del paso en curso.
+     */
+    public Future<StorageMaintenance.Report> maintain(@Nullable LifecycleOwner owner,
+                                                      @Nullable Callback<StorageMaintenance.Report> callback) {
+        CancellationSignal senal = new CancellationSignal();
+        Tarea<StorageMaintenance.Report> tarea = new Tarea<>(() -> new StorageMaintenance(getHelper())
+                .setCancellationSignal(senal)
+                .setWriter(this::escribirYEsperar)
+                .run(), callback, owner, false, senal);
+        tarea.vincular();
+        transferencias.execute(tarea);
+        return tarea;
+    }
+
+    private <T> T escribirYEsperar(Callable<T> escritura) throws Exception {
+        return esperar(escrituras.submit(escritura));
+    }
+
+    // Pasa cada aviso de progreso al hilo principal, mientras la pantalla exista
+    @Nullable
+    private UserTransfer.Progress enHiloPrincipal(@Nullable LifecycleOwner owner, @Nullable UserTransfer.Progress progress) {
+        if (progress == null) return null;
+        return (filas, porcentaje) -> hiloPrincipal.post(() -> {
+            if (owner == null || owner.getLifecycle().getCurrentState() != Lifecycle.State.DESTROYED) {
+                progress.onProgress(filas, porcentaje);
+            }
+        });
+    }
+
+    /**
+     * observeUsers:
+     * - Suscribe `observer` a los cambios de la tabla de usuarios (ver UserChangeNotifier). Mientras la
+     *   pantalla no esta visible los cambios se acumulan; en ON_DESTROY la suscripcion se quita sola.
+     * - Solo registra el observador: no abre la base ni hace ninguna consulta.
+     */
+    @MainThread
+    public void observeUsers(LifecycleOwner owner, UserChangeNotifier.Observer observer) {
+        getRepository().getChangeNotifier().observe(owner, observer);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Implementacion
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Tarea:
+     * - Es un `FutureTask` (se puede esperar con get() o cancelar con cancel()) que ademas:
+     *   1. Entrega el resultado al callback en el hilo principal.
+     *   2. Observa el ciclo de vida del `owner` para cancelarse cuando la pantalla se destruye.
+     */
+    private final class Tarea<T> extends FutureTask<T> implements LifecycleEventObserver {
+
+        @Nullable private final Callback<T> callback;
+        @Nullable private final LifecycleOwner owner;
+        private final boolean cancelarAlDestruir;
+        @Nullable private final CancellationSignal senal;
+        private volatile boolean descartada;
+
+        Tarea(Callable<T> operacion, @Nullable Callback<T> callback, @Nullable LifecycleOwner owner,
+              boolean cancelarAlDestruir, @Nullable CancellationSignal senal) {
+            super(operacion);
+            this.callback = callback;
+            this.owner = owner;
+            this.cancelarAlDestruir = cancelarAlDestruir;
+            this.senal = senal;
+        }
+
+        @Override
+        public boolean cancel(boolean interrumpir) {
+            boolean cancelada = super.cancel(interrumpir);
+            if (cancelada && senal != null) {
+                senal.cancel(); // corta la consulta en SQLite si ya habia empezado
+            }
+            return cancelada;
+        }
+
+        void vincular() {
+            if (owner == null) return;
+            if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+                alDestruirse();
+            } else {
+                owner.getLifecycle().addObserver(this);
+            }
+        }
+
+        @Override
+        public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                source.getLifecycle().removeObserver(this);
+                alDestruirse();
+            }
+        }
+
+        private void alDestruirse() {
+            descartada = true;
+            if (cancelarAlDestruir) {
+                cancel(false);
+            }
+        }
+
+        /**
+         * done:
+         * - Lo llama FutureTask cuando la operacion termina (bien, con error o cancelada), desde el hilo
+         *   secundario. Desde aca saltamos al hilo principal para avisar al callback.
+         */
+        @Override
+        protected void done() {
+            hiloPrincipal.post(this::entregar);
+        }
+
+        private void entregar() {
+            if (owner != null) {
+                owner.getLifecycle().removeObserver(this);
+            }
+            if (callback == null || descartada || isCancelled()) return;
+
+            try {
+                callback.onResult(get());
+            } catch (ExecutionException e) {
+                callback.onError(e.getCause() != null ? e.getCause() : e);
+            } catch (CancellationException | InterruptedException e) {
+                // La tarea fue cancelada: no hay nada que entregar.
+            }
+        }
+    }
+
+    /**
+     * Espera:
+     * - Una accion de whenReady esperando a que la base este lista. Se quita sola si su pantalla se
+     *   destruye antes (asi la lista no retiene Activities muertas).
+     */
+    private final class Espera implements LifecycleEventObserver {
+        private final LifecycleOwner owner;
+        private final Runnable accion;
+
+        Espera(LifecycleOwner owner, Runnable accion) {
+            this.owner = owner;
+            this.accion = accion;
+        }
+
+        @Override
+        public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                source.getLifecycle().removeObserver(this);
+                esperando.remove(this);
+            }
+        }
+
+        void avisar() {
+            owner.getLifecycle().removeObserver(this);
+            accion.run();
+        }
+    }
+
+    /**
+     * FabricaHilos:
+     * - Crea hilos con nombre (se ven asi en el profiler y en los logs) y con prioridad baja para que
+     *   nunca le quiten tiempo de CPU al hilo que dibuja la pantalla.
+     */
+    private static final class FabricaHilos implements ThreadFactory {
+        private final String prefijo;
+        private final AtomicInteger contador = new AtomicInteger(1);
+
+        FabricaHilos(String prefijo) {
+            this.prefijo = prefijo;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread hilo = new Thread(() -> {
+                android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, prefijo + "-" + contador.getAndIncrement());
+            hilo.setDaemon(true);
+            return hilo;
+        }
+    }
+}
@@ -2,19 +2,28 @@ package com.example.ejemplo.database;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.CharArrayBuffer;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.ejemplo.R;
+import com.example.ejemplo.metricas.Metrics;
 import com.example.ejemplo.modelos.User;
 import com.readystatesoftware.sqliteasset.SQLiteAssetHelper;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
      ██████╗ ██████╗     ██╗  ██╗███████╗██╗     ██████╗ ███████╗██████╗
@@ -40,7 +49,7 @@ import java.util.List;
  * implementation 'com.readystatesoftware.sqliteasset:sqliteassethelper:+'
  */
 
-public class DBHelper extends SQLiteAssetHelper {
+public class DBHelper extends SQLiteAssetHelper implements UserRepository {
 
 
     /**
@@ -50,40 +59,227 @@ public class DBHelper extends SQLiteAssetHelper {
      * ---------------------------------------------------------------------------------------------
      */
     private static final String DATABASE_NAME = "ejemplo.db"; // Este nombre depende de la database guardada en app/src/main/assets/databases.
-    private static final int DATABASE_VERSION = 1; // esto casi nunca se cambia
+    private static final int DATABASE_VERSION = 6; // sube con cada cambio de esquema: ver SchemaMigrations
 
-    public DBHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    /**
+     * instancia:
+     * - Instancia de DBHelper de la base por defecto (`ejemplo.db`) para todo el proceso (patron Singleton).
+     *   Las bases de las demas organizaciones las crea y cierra TenantDatabases, tambien una por archivo.
+     * - Todas las pantallas comparten la misma conexion abierta en lugar de abrir y cerrar la base
+     *   de datos en cada consulta (cada apertura implica abrir el archivo, validar el esquema y
+     *   volver a calentar la cache de paginas de SQLite).
+     */
+    private static volatile DBHelper instancia;
 
-        SQLiteDatabase db = getWritableDatabase();
-        if (!checkDatabaseExistence(db)) {
-            try {
-                copyDatabase(context);
-            } catch (IOException e) {
-                e.printStackTrace();
+    /**
+     * getInstance:
+     * - Devuelve la instancia compartida, creandola la primera vez que se pide.
+     * - Se guarda el contexto de la APLICACION (no el de la Activity) para no retener pantallas
+     *   destruidas en memoria.
+     *
+     * Uso: DBHelper dbHelper = DBHelper.getInstance(this);
+     */
+    public static DBHelper getInstance(Context context) {
+        DBHelper local = instancia;
+        if (local == null) {
+            synchronized (DBHelper.class) {
+                local = instancia;
+                if (local == null) {
+                    local = new DBHelper(context.getApplicationContext());
+                    instancia = local;
+                }
             }
         }
+        return local;
+    }
+
+    private DBHelper(Context context) {
+        this(context, TenantDatabases.DEFAULT_TENANT);
+    }
+
+    /**
+     * DBHelper (de una organizacion):
+     * - La base de `tenant` es su propio archivo (ver databaseName), copiado de la misma plantilla de
+     *   assets la primera vez que se abre. No usar directamente: TenantDatabases se asegura de que haya un
+     *   solo DBHelper por archivo.
+     */
+    DBHelper(Context context, String tenant) {
+        super(context, databaseName(tenant), null, DATABASE_VERSION);
+        this.context = context;
+        this.tenant = tenant;
+        this.nombreArchivo = databaseName(tenant);
+
+        // El constructor no toca el disco: la base se copia (si hace falta) y se abre con la primera consulta.
+        hasher = new PasswordHasher(context.getSharedPreferences(PREFS_SEGURIDAD, Context.MODE_PRIVATE));
+        // Perfil de ajustes de SQLite del build type (app/build.gradle, resValue "sqlite_tuning")
+        tuning = SqliteTuning.forName(context.getString(R.string.sqlite_tuning), context);
+    }
+
+    private final Context context;
+    private final String tenant;
+    private final String nombreArchivo;
+    private volatile boolean provisionada;
+    private boolean abierta; // solo para medir la primera apertura (ver Metrics.Op.OPEN)
+
+    /**
+     * getWritableDatabase / getReadableDatabase:
+     * - Antes de la primera apertura, si es el primer arranque, copiamos la base desde assets
+     *   (DatabaseProvisioner) en lugar de dejar que lo haga SQLiteAssetHelper.
+     * - Asi crear el DBHelper es gratis y se puede hacer desde el hilo principal; el trabajo de disco
+     *   queda en el hilo que hace la primera consulta.
+     * - La primera apertura (con sus migraciones) se mide como Metrics.Op.OPEN; las siguientes devuelven
+     *   la conexion ya abierta y no se miden.
+     */
+    @Override
+    public synchronized SQLiteDatabase getWritableDatabase() {
+        provisionar();
+        if (abierta) return super.getWritableDatabase();
+        return abrir(true);
+    }
+
+    @Override
+    public synchronized SQLiteDatabase getReadableDatabase() {
+        provisionar();
+        if (abierta) return super.getReadableDatabase();
+        return abrir(false);
+    }
+
+    private SQLiteDatabase abrir(boolean escritura) {
+        // Se marca antes: SQLiteAssetHelper abre la de lectura llamando a getWritableDatabase por dentro
+        abierta = true;
+        long inicio = Metrics.begin(Metrics.Op.OPEN);
+        try {
+            return escritura ? super.getWritableDatabase() : super.getReadableDatabase();
+        } catch (RuntimeException e) {
+            abierta = false;
+            throw e;
+        } finally {
+            Metrics.end(Metrics.Op.OPEN, inicio);
+        }
+    }
+
+    private void provisionar() {
+        if (provisionada) return;
+        DatabaseProvisioner.ensureProvisioned(context, DATABASE_NAME, nombreArchivo);
+        provisionada = true;
+    }
+
+    /**
+     * databaseName:
+     * - El archivo de la base de `tenant`: `ejemplo.db` para la organizacion por defecto (la base de siempre)
+     *   y `ejemplo_<tenant>.db` para las demas.
+     */
+    static String databaseName(String tenant) {
+        if (TenantDatabases.DEFAULT_TENANT.equals(tenant)) return DATABASE_NAME;
+        return DATABASE_NAME.substring(0, DATABASE_NAME.length() - ".db".length()) + "_" + tenant + ".db";
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * onCreate / onUpgrade:
+     * - SQLiteAssetHelper llama a onCreate cuando acaba de copiar la base desde assets (version 0) y a
+     *   onUpgrade cuando la base instalada tiene una version menor a DATABASE_VERSION.
+     * - En ambos casos ya estamos dentro de una transaccion abierta por SQLiteAssetHelper.
+     * - Los cambios de esquema en si estan en SchemaMigrations: aca solo se decide desde que version aplicar.
+     */
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // La base recien copiada tiene el esquema del asset (version 1)
+        SchemaMigrations.migrate(db, SchemaMigrations.ASSET_VERSION, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion >= newVersion) return; // nunca se "desmigra" una base mas nueva
+        SchemaMigrations.migrate(db, oldVersion, newVersion);
+    }
+
+    // Ajustes de SQLite (ver SqliteTuning) y la conexion a la que se aplicaron
+    private volatile SqliteTuning tuning;
+    @Nullable private SQLiteDatabase conexion;
+
+    /**
+     * onOpen:
+     * - Se ejecuta cada vez que SQLiteAssetHelper abre la conexion (normalmente una sola vez por proceso).
+     * - Aplicamos el perfil de ajustes: WAL (Write-Ahead Logging: las lecturas no bloquean a las escrituras
+     *   y cada commit escribe menos en disco que con el journal clasico), synchronous, cache, mmap, etc.
+     *   SQLiteAssetHelper no deja usar onConfigure (es final), por eso va aca.
+     */
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        tuning.applyTo(db);
+        conexion = db;
+    }
+
+    public SqliteTuning getTuning() {
+        return tuning;
+    }
+
+    /**
+     * setTuning:
+     * - Cambia el perfil de ajustes. Si la base ya esta abierta se aplica en el momento; si no, al abrirla.
+     * - Conviene llamarlo desde un hilo secundario (ver DBAsync.write): cambiar el journal espera a que
+     *   terminen las consultas en curso.
+     */
+    @WorkerThread
+    public synchronized void setTuning(SqliteTuning nuevo) {
+        tuning = nuevo;
+        if (conexion != null && conexion.isOpen()) nuevo.applyTo(conexion);
+    }
+
+    /**
+     * dumpSettings:
+     * - Diagnostico: el perfil configurado y lo que SQLite tiene de verdad en una conexion (journal_mode,
+     *   synchronous, cache_size, mmap_size, temp_store, ...). Abre la base si hacia falta.
+     */
+    @WorkerThread
+    public Map<String, String> dumpSettings() {
+        Map<String, String> ajustes = new LinkedHashMap<>();
+        ajustes.put("profile", tuning.toString());
+        ajustes.putAll(SqliteTuning.dump(getReadableDatabase()));
+        return ajustes;
     }
-    private boolean checkDatabaseExistence(SQLiteDatabase db) {
-        String path = db.getPath();
-        File file = new File(path);
-        return file.exists();
-    }
-    private void copyDatabase(Context context) throws IOException {
-        close();
-        OutputStream output = new FileOutputStream(getDatabasePath(context));
-        InputStream input = context.getAssets().open("databases/" + DATABASE_NAME);
-        byte[] buffer = new byte[1024];
-        int length;
-        while ((length = input.read(buffer)) > 0) {
-            output.write(buffer, 0, length);
+
+    // Sentencias precompiladas de la conexion abierta (ver UserStatements)
+    private UserStatements statements;
+
+    /**
+     * statements:
+     * - Devuelve las sentencias precompiladas de la conexion actual. Si la conexion se cerro y se volvio
+     *   a abrir, se descartan las viejas y se compilan de nuevo.
+     */
+    synchronized UserStatements statements() {
+        SQLiteDatabase db = getWritableDatabase();
+        if (statements == null || !statements.isFor(db)) {
+            if (statements != null) statements.close();
+            statements = new UserStatements(db);
         }
-        input.close();
-        output.flush();
-        output.close();
+        return statements;
     }
-    private String getDatabasePath(Context context) {
-        return context.getDatabasePath(DATABASE_NAME).getPath();
+
+    /**
+     * close:
+     * - Cierra las sentencias compiladas antes de cerrar la conexion.
+     * - Si el perfil lo pide, antes corre `PRAGMA optimize` (ver SqliteTuning.optimize).
+     * - Vacia el cache de usuarios y los logins recordados: una base cerrada (por ejemplo la de una
+     *   organizacion que salio del pool, ver TenantDatabases) no ocupa memoria con sus usuarios.
+     */
+    @Override
+    public synchronized void close() {
+        cache.invalidateAll();
+        verificados.invalidateAll();
+        if (statements != null) {
+            statements.close();
+            statements = null;
+        }
+        if (conexion != null && conexion.isOpen()) tuning.optimize(conexion);
+        conexion = null;
+        abierta = false;
+        super.close();
     }
 
     /**
@@ -96,14 +292,100 @@ public class DBHelper extends SQLiteAssetHelper {
     /**
      * Aca solo se declaran nombres de tablas para ahorrar codigo-----------------------------------//
      */                                                                                             //
-    private static final String TABLE_USUARIO = "tabla_usuario";                                    //
-    private static final String COL_ID = "id_usuario";                                              //
-    private static final String COL_NOMBRE = "nombre_usuario";                                      //
-    private static final String COL_PASSWORD = "password";                                          //
+    static final String TABLE_USUARIO = "tabla_usuario";                                            //
+    static final String COL_ID = "id_usuario";                                                      //
+    static final String COL_NOMBRE = "nombre_usuario";                                              //
+    static final String COL_PASSWORD = "password";                                                  //
+    static final String TABLE_USUARIO_FTS = "usuario_fts"; // indice de busqueda, ver UserSearch       //
+    static final String COL_REV = "rev_remota"; // revision del servidor, ver UserSync                //
+    static final String TABLE_CAMBIOS = "usuario_cambios"; // cambios sin enviar, ver UserSync          //
+    static final String TABLE_SYNC = "sync_estado"; // marca de la sincronizacion                       //
+    static final String COL_BORRADO = "borrado_en"; // borrado suave: cuando se borro (NULL = vivo)     //
+    static final String VIVO = COL_BORRADO + " IS NULL"; // condicion de las filas no borradas          //
 
     // ---------------------------------------------------------------------------------------------//
 
 
+    /**
+     * Consultas SQL armadas UNA sola vez (son constantes). Android guarda un cache de sentencias
+     * compiladas por conexion, indexado por el texto SQL: si el texto es siempre el mismo (los valores van
+     * en los `?`), la sentencia se compila una vez y despues se reutiliza.
+     * Ademas se piden solo las columnas que se usan, nunca `SELECT *`.
+     */
+    private static final String COLS_USUARIO = COL_ID + ", " + COL_NOMBRE + ", " + COL_PASSWORD;
+    private static final String COLS_USUARIO_SAFE = COL_ID + ", " + COL_NOMBRE;
+
+    // Todas filtran las filas con borrado suave (VIVO): para la app esas filas ya no existen
+    private static final String SQL_USER_BY_NAME = "SELECT " + COLS_USUARIO + " FROM " + TABLE_USUARIO
+            + " WHERE " + COL_NOMBRE + " = ? AND " + VIVO;
+    private static final String SQL_USER_BY_ID = "SELECT " + COLS_USUARIO + " FROM " + TABLE_USUARIO
+            + " WHERE " + COL_ID + " = ? AND " + VIVO;
+    private static final String SQL_ALL_USERS =
+            "SELECT " + COLS_USUARIO + " FROM " + TABLE_USUARIO + " WHERE " + VIVO;
+    private static final String SQL_ALL_USERS_SAFE =
+            "SELECT " + COLS_USUARIO_SAFE + " FROM " + TABLE_USUARIO + " WHERE " + VIVO;
+    private static final String SQL_PAGE_AFTER = "SELECT " + COLS_USUARIO_SAFE + " FROM " + TABLE_USUARIO
+            + " WHERE " + COL_ID + " > ? AND " + VIVO + " ORDER BY " + COL_ID + " LIMIT ?";
+    private static final String SQL_PAGE_BEFORE = "SELECT " + COLS_USUARIO_SAFE + " FROM " + TABLE_USUARIO
+            + " WHERE " + COL_ID + " < ? AND " + VIVO + " ORDER BY " + COL_ID + " DESC LIMIT ?";
+    private static final String SQL_PAGE_AT_OFFSET = "SELECT " + COLS_USUARIO_SAFE + " FROM " + TABLE_USUARIO
+            + " WHERE " + VIVO + " ORDER BY " + COL_ID + " LIMIT ? OFFSET ?";
+    // Bloques de forEachUser (con la contraseña: es para exportar)
+    private static final String SQL_USERS_AFTER = "SELECT " + COLS_USUARIO + " FROM " + TABLE_USUARIO
+            + " WHERE " + COL_ID + " > ? AND " + VIVO + " ORDER BY " + COL_ID + " LIMIT ?";
+    // Por nombre, sin tocar las filas con borrado suave (UPDATE y DELETE)
+    private static final String WHERE_NOMBRE_VIVO = COL_NOMBRE + " = ? AND " + VIVO;
+    private static final int FILAS_POR_BLOQUE = 2_000;
+    // La pagina anterior ya en orden ascendente (SQLite ordena las `limit` filas, no hay que dar vuelta la lista)
+    private static final String SQL_PAGE_BEFORE_ASC = "SELECT " + COLS_USUARIO_SAFE + " FROM (" + SQL_PAGE_BEFORE
+            + ") ORDER BY " + COL_ID;
+
+
+    /**
+     * cache:
+     * - Usuarios consultados recientemente (ver UserCache). Cada metodo que escribe en la tabla invalida
+     *   el nombre que toco, asi el cache nunca queda desactualizado.
+     */
+    private final UserCache cache = new UserCache();
+
+    /**
+     * getUserCache:
+     * - Da acceso al cache para ver sus contadores (getStats) o cambiar su tamaño (resize).
+     */
+    public UserCache getUserCache() {
+        return cache;
+    }
+
+    /**
+     * hasher / verificados:
+     * - Las contraseñas se guardan como hash PBKDF2 (ver PasswordHasher), nunca en texto plano.
+     * - `verificados` recuerda por un minuto los logins correctos para no recalcular el hash si el mismo
+     *   usuario vuelve a ingresar enseguida (ver PasswordVerifierCache).
+     */
+    private static final String PREFS_SEGURIDAD = "seguridad";
+    private final PasswordHasher hasher;
+    private final PasswordVerifierCache verificados = new PasswordVerifierCache();
+
+    @Override
+    public PasswordHasher getPasswordHasher() {
+        return hasher;
+    }
+
+    /**
+     * cambios:
+     * - Cada escritura de esta clase publica aca que filas toco (ver UserChangeNotifier). Las pantallas
+     *   se suscriben para refrescar solo lo que cambio.
+     * - Se publica DESPUES de confirmar la transaccion: quien reciba el aviso y vuelva a consultar ya ve
+     *   los datos nuevos.
+     */
+    private final UserChangeNotifier cambios = new UserChangeNotifier();
+
+    @Override
+    public UserChangeNotifier getChangeNotifier() {
+        return cambios;
+    }
+
+
     /**
      * Desde aca en adelante son los metodos encargados de manejar la logica de escritura y lectura. Esto siempre se adapta
      * a las tablas personalizadas que hayan creado ustedes
@@ -112,38 +394,94 @@ public class DBHelper extends SQLiteAssetHelper {
     /**
      * comprobarUsuarioLocal:
      * - Busca en la tabla de usuarios un registro que coincida con el nombre y password dados.
-     * - Si lo encuentra rellena y devuelve un objeto User con los datos.
+     * - Si lo encuentra rellena y devuelve un objeto User con los datos (sin la contraseña).
      * - Si no lo encuentra devuelve un User con id = -1 (indicador "no encontrado").
      *
      * NOTAS DE SEGURIDAD:
-     * - Este ejemplo compara contraseñas en texto plano (como viene de la DB). En la realidad es recomendable
-     *   almacenar y comparar hashes en lugar de passwords en claro. ESTO NO IMPORTA PARA EL TRANSCURSO DE ESTA CLASE.
+     * - La contraseña se verifica contra el hash PBKDF2 guardado. Es lento a proposito (~100 ms): llamar
+     *   siempre desde un hilo secundario (DBAsync lo corre en su executor de computo).
+     * - Si la fila todavia tiene la contraseña en texto plano (usuarios de antes de los hashes) y coincide,
+     *   se reemplaza por un hash en ese momento. Asi la base se migra sola, de a un usuario por login, sin
+     *   una pasada larga que recorra toda la tabla.
      */
+    @Override
+    @WorkerThread
     public User comprobarUsuarioLocal(String nombreUsuario, String password) {
-        User user = new User();
-        user.setId(-1); // default "not found" indicator
+        // Buscamos por nombre (usa el cache si el usuario se consulto hace poco) y comparamos la contraseña aca.
+        User user = getUserByUsername(nombreUsuario);
+        String guardado = user.getPassword();
 
-        // Obtenemos DB en modo lectura
-        SQLiteDatabase db = getReadableDatabase();
+        if (user.getId() == -1 || guardado == null || password == null) {
+            return noEncontrado();
+        }
 
-        // Query parametrizada para evitar inyección SQL
-        String query = "SELECT * FROM " + TABLE_USUARIO + " WHERE " + COL_NOMBRE + " = ? AND " + COL_PASSWORD + " = ?";
-        Cursor cursor = db.rawQuery(query, new String[]{nombreUsuario, password});
+        // Login repetido hace poco con la misma contraseña: no hace falta recalcular PBKDF2.
+        if (verificados.matches(nombreUsuario, guardado, password)) {
+            Metrics.increment(Metrics.Counter.LOGIN_CACHE_HITS);
+            user.setPassword(null);
+            return user;
+        }
 
-        // Si el cursor tiene resultados, movemos al primero y leemos columnas
-        if (cursor != null && cursor.moveToFirst()) {
-            user.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_ID)));
-            user.setNombreUsuario(cursor.getString(cursor.getColumnIndexOrThrow(COL_NOMBRE)));
-            user.setPassword(cursor.getString(cursor.getColumnIndexOrThrow(COL_PASSWORD)));
+        boolean correcta;
+        if (PasswordHasher.isHash(guardado)) {
+            correcta = hasher.verify(password, guardado);
+            if (correcta && hasher.needsRehash(guardado)) {
+                guardado = rehacerHash(nombreUsuario, guardado, password); // hash viejo (menos iteraciones)
+            }
+        } else {
+            // Fila en texto plano: comparacion en tiempo constante y, si coincide, migracion a hash.
+            correcta = MessageDigest.isEqual(guardado.getBytes(StandardCharsets.UTF_8),
+                    password.getBytes(StandardCharsets.UTF_8));
+            if (correcta) {
+                guardado = rehacerHash(nombreUsuario, guardado, password);
+            }
         }
 
-        // Cerramos cursor y DB para liberar recursos
-        if (cursor != null) cursor.close();
-        db.close();
+        if (!correcta) return noEncontrado();
 
+        verificados.put(nombreUsuario, guardado, password);
+        user.setPassword(null); // el hash no sale de DBHelper
         return user;
     }
 
+    /**
+     * Guarda un hash nuevo para `nombreUsuario`, solo si la fila sigue teniendo `anterior` (si otro hilo
+     * cambio la contraseña mientras tanto, no la pisamos). Devuelve lo que quedo guardado.
+     */
+    private String rehacerHash(String nombreUsuario, String anterior, String password) {
+        String nuevo = hasher.hash(password);
+        ContentValues values = new ContentValues();
+        values.put(COL_PASSWORD, nuevo);
+        long inicio = Metrics.begin(Metrics.Op.UPDATE);
+        int filas;
+        try {
+            filas = getWritableDatabase().update(TABLE_USUARIO, values,
+                    WHERE_NOMBRE_VIVO + " AND " + COL_PASSWORD + " = ?", new String[]{nombreUsuario, anterior});
+        } finally {
+            Metrics.end(Metrics.Op.UPDATE, inicio);
+        }
+        Metrics.count(Metrics.Counter.ROWS_WRITTEN, filas);
+        cache.invalidate(nombreUsuario);
+        if (filas > 0) cambios.publish(UserChanges.UPDATE, idByUsername(nombreUsuario));
+        return filas > 0 ? nuevo : anterior;
+    }
+
+    /**
+     * invalidate:
+     * - Olvida lo que los caches tienen de `nombreUsuario` (el usuario y su ultimo login correcto). Lo
+     *   usan las escrituras que no pasan por los metodos de esta clase (ver SqliteSyncStore).
+     */
+    void invalidate(String nombreUsuario) {
+        cache.invalidate(nombreUsuario);
+        verificados.invalidate(nombreUsuario);
+    }
+
+    private static User noEncontrado() {
+        User noEncontrado = new User();
+        noEncontrado.setId(-1); // default "not found" indicator
+        return noEncontrado;
+    }
+
     /**
      * addUser:
      * - Inserta un nuevo usuario en la tabla.
@@ -158,41 +496,311 @@ public class DBHelper extends SQLiteAssetHelper {
      *   +------------+
      *       \/
      */
+    @Override
+    @WorkerThread
     public long addUser(User user) {
         if (user == null) return -1;
+        return addUserHashed(user.getNombreUsuario(), hasher.hash(user.getPassword()));
+    }
 
+    /**
+     * addUserHashed:
+     * - Igual que addUser pero con la contraseña ya convertida en hash (DBAsync calcula el hash en su
+     *   executor de computo y solo la escritura pasa por el hilo de escritura).
+     */
+    @Override
+    public long addUserHashed(String nombreUsuario, @Nullable String hash) {
         SQLiteDatabase db = getWritableDatabase();
         ContentValues values = new ContentValues();
-        values.put(COL_NOMBRE, user.getNombreUsuario());
-        values.put(COL_PASSWORD, user.getPassword());
+        values.put(COL_NOMBRE, nombreUsuario);
+        values.put(COL_PASSWORD, hash);
 
-        long id = db.insert(TABLE_USUARIO, null, values);
-        db.close();
+        long inicio = Metrics.begin(Metrics.Op.INSERT);
+        long id;
+        try {
+            id = db.insert(TABLE_USUARIO, null, values);
+        } finally {
+            Metrics.end(Metrics.Op.INSERT, inicio);
+        }
+        if (id != -1) Metrics.increment(Metrics.Counter.ROWS_WRITTEN);
+        cache.invalidate(nombreUsuario); // puede haber un "no existe" guardado para este nombre
+        if (id != -1) cambios.publish(UserChanges.INSERT, id);
         return id;
     }
 
+    /**
+     * BatchResult:
+     * - Resultado de una insercion en lote: cuantos usuarios se insertaron y cuantos se omitieron
+     *   (porque ya existia uno con el mismo nombre o porque venian vacios).
+     */
+    public static final class BatchResult {
+        public final int inserted;
+        public final int skipped;
+
+        public BatchResult(int inserted, int skipped) {
+            this.inserted = inserted;
+            this.skipped = skipped;
+        }
+
+        @Override
+        public String toString() {
+            return "insertados=" + inserted + " omitidos=" + skipped;
+        }
+    }
+
+    /**
+     * addUsers:
+     * - Inserta muchos usuarios de una sola vez y devuelve cuantos se insertaron y cuantos se omitieron.
+     * - Todo el lote va en UNA transaccion: SQLite escribe en disco una sola vez al final, en lugar de una
+     *   vez por usuario como pasa llamando a addUser en un bucle.
+     * - La sentencia se compila una sola vez y se reutiliza para cada fila.
+     * - "INSERT OR IGNORE" + el indice unico sobre nombre_usuario descartan los repetidos sin tener que
+     *   buscar antes cada usuario.
+     *
+     * Uso:
+     * BatchResult r = dbHelper.addUsers(listaDeUsuarios);
+     *
+     *   [u1][u2][u3]...[uN]  -->  1 transaccion
+     */
+    @WorkerThread
+    public BatchResult addUsers(Iterable<User> users) {
+        return addUsers(users.iterator());
+    }
+
+    @Override
+    @WorkerThread
+    public BatchResult addUsers(Iterator<User> users) {
+        return addPreparedUsers(prepareUsers(users));
+    }
+
+    /**
+     * prepareUsers:
+     * - Calcula el hash de cada contraseña. Los nombres que ya existen se descartan ANTES (una consulta
+     *   compilada, microsegundos) para no gastar un PBKDF2 entero en filas que el INSERT OR IGNORE va a omitir.
+     */
+    @Override
+    @WorkerThread
+    public PreparedBatch prepareUsers(Iterator<User> users) {
+        List<User> hasheados = new ArrayList<>();
+        int skipped = 0;
+        while (users.hasNext()) {
+            User user = users.next();
+            if (user == null || user.getNombreUsuario() == null || existsByUsername(user.getNombreUsuario())) {
+                skipped++;
+                continue;
+            }
+            hasheados.add(new User(user.getId(), user.getNombreUsuario(), hasher.hash(user.getPassword())));
+        }
+        return new PreparedBatch(hasheados, skipped);
+    }
+
+    /**
+     * addPreparedUsers:
+     * - La insercion en lote propiamente dicha, con las contraseñas ya convertidas en hash.
+     */
+    @Override
+    public BatchResult addPreparedUsers(PreparedBatch lote) {
+        BatchResult r = addUsersHashed(lote.users.iterator());
+        return new BatchResult(r.inserted, r.skipped + lote.skipped);
+    }
+
+    BatchResult addUsersHashed(Iterator<User> users) {
+        int inserted = 0;
+        int skipped = 0;
+        UserChanges.Builder insertados = new UserChanges.Builder();
+
+        SQLiteDatabase db = getWritableDatabase();
+        // Sentencia ya compilada (se compila una vez por conexion, no una vez por lote)
+        SQLiteStatement insert = statements().insertOrIgnore();
+
+        long inicio = Metrics.begin(Metrics.Op.INSERT); // todo el lote cuenta como una medicion
+        synchronized (insert) {
+            db.beginTransactionNonExclusive();
+            try {
+                while (users.hasNext()) {
+                    User user = users.next();
+                    if (user == null || user.getNombreUsuario() == null) {
+                        skipped++;
+                        continue;
+                    }
+
+                    insert.clearBindings();
+                    insert.bindString(1, user.getNombreUsuario());
+                    if (user.getPassword() != null) {
+                        insert.bindString(2, user.getPassword());
+                    } else {
+                        insert.bindNull(2);
+                    }
+
+                    // executeInsert devuelve -1 cuando el IGNORE descarto la fila (nombre repetido)
+                    long id = insert.executeInsert();
+                    if (id != -1) {
+                        cache.invalidate(user.getNombreUsuario());
+                        insertados.add(UserChanges.INSERT, id);
+                        inserted++;
+                    } else {
+                        skipped++;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                insert.clearBindings();
+                db.endTransaction();
+                Metrics.end(Metrics.Op.INSERT, inicio);
+            }
+        }
+        Metrics.count(Metrics.Counter.ROWS_WRITTEN, inserted);
+
+        // Un solo aviso para todo el lote, ya confirmado
+        cambios.publish(insertados.build());
+        return new BatchResult(inserted, skipped);
+    }
+
+    /**
+     * applyWrites:
+     * - Aplica un grupo de escrituras (ver GroupCommitWriter) en UNA transaccion: un solo commit, y un solo
+     *   fsync del WAL, para todo el grupo. Con escrituras seguidas (varios usuarios cambiando su contraseña
+     *   a la vez, una pantalla que guarda en rafaga) son pocas transacciones por segundo en lugar de cientos.
+     * - Los caches se limpian y los cambios se publican DESPUES del commit. Una lectura que corra mientras
+     *   tanto ve los datos de antes, pero no los vuelve a guardar en el cache (ver UserCache.generation).
+     */
+    @Override
+    public long[] applyWrites(List<Write> escrituras) {
+        long[] resultados = new long[escrituras.size()];
+        UserChanges.Builder avisos = new UserChanges.Builder();
+        int filas = 0;
+
+        SQLiteDatabase db = getWritableDatabase();
+        UserStatements st = statements();
+        long inicio = Metrics.begin(Metrics.Op.GROUP_COMMIT);
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < resultados.length; i++) {
+                Write w = escrituras.get(i);
+                String[] nombre = {w.nombreUsuario};
+                if (w.tipo == UserChanges.INSERT) {
+                    ContentValues values = new ContentValues();
+                    values.put(COL_NOMBRE, w.nombreUsuario);
+                    values.put(COL_PASSWORD, w.hash);
+                    long id = db.insert(TABLE_USUARIO, null, values);
+                    if (id != -1) avisos.add(UserChanges.INSERT, id);
+                    resultados[i] = id;
+                    continue;
+                }
+                long id = st.idByName(w.nombreUsuario); // sin cache: dentro de la transaccion manda la base
+                if (id == -1) continue;
+                if (w.tipo == UserChanges.UPDATE) {
+                    ContentValues values = new ContentValues();
+                    values.put(COL_PASSWORD, w.hash);
+                    resultados[i] = db.update(TABLE_USUARIO, values, WHERE_NOMBRE_VIVO, nombre);
+                } else {
+                    resultados[i] = borrar(db, w.nombreUsuario);
+                }
+                if (resultados[i] > 0) avisos.add(w.tipo, id);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            Metrics.end(Metrics.Op.GROUP_COMMIT, inicio);
+        }
+
+        for (int i = 0; i < resultados.length; i++) {
+            Write w = escrituras.get(i);
+            if (w.tipo == UserChanges.INSERT ? resultados[i] != -1 : resultados[i] > 0) filas++;
+            invalidate(w.nombreUsuario);
+        }
+        Metrics.count(Metrics.Counter.ROWS_WRITTEN, filas);
+        cambios.publish(avisos.build());
+        return resultados;
+    }
+
     /**
      * getUserByUsername:
      * - Busca un usuario por su nombre y devuelve un objeto User con los datos.
      * - Si no existe, devuelve un User con id = -1 (indicador "no encontrado").
      */
+    @Override
     public User getUserByUsername(String nombreUsuario) {
+        // Primero el cache: si este nombre se consulto hace poco no hace falta ir al disco.
+        User cacheado = cache.getByUsername(nombreUsuario);
+        if (cacheado != null) {
+            Metrics.increment(Metrics.Counter.CACHE_HITS);
+            return cacheado;
+        }
+        Metrics.increment(Metrics.Counter.CACHE_MISSES);
+        long generacion = cache.generation(); // antes de consultar: ver UserCache.generation
+
         User user = new User();
         user.setId(-1);
 
         SQLiteDatabase db = getReadableDatabase();
-        String query = "SELECT * FROM " + TABLE_USUARIO + " WHERE " + COL_NOMBRE + " = ?";
-        Cursor cursor = db.rawQuery(query, new String[]{nombreUsuario});
+        long inicio = Metrics.begin(Metrics.Op.QUERY);
+        Metrics.CursorWatch watch = Metrics.watchCursor();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(SQL_USER_BY_NAME, new String[]{nombreUsuario});
+
+            if (cursor != null && cursor.moveToFirst()) {
+                if (watch != null) watch.row(cursor);
+                leerUsuario(cursor, user);
+            }
+        } finally {
+            if (cursor != null) cursor.close();
+            Metrics.endQuery(inicio, watch);
+        }
+
+        // Guardamos el resultado (tambien el "no existe") para las proximas consultas.
+        cache.put(nombreUsuario, user, generacion);
+        return user;
+    }
+
+    /**
+     * leerUsuario:
+     * - Copia la fila actual del cursor (id, nombre, password) al objeto `user`.
+     * - Las columnas se buscan por nombre una sola vez, no una vez por columna leida.
+     */
+    private static void leerUsuario(Cursor cursor, User user) {
+        int idxId = cursor.getColumnIndexOrThrow(COL_ID);
+        int idxNombre = cursor.getColumnIndexOrThrow(COL_NOMBRE);
+        int idxPassword = cursor.getColumnIndexOrThrow(COL_PASSWORD);
+        user.setId(cursor.getLong(idxId));
+        user.setNombreUsuario(cursor.getString(idxNombre));
+        user.setPassword(cursor.getString(idxPassword));
+    }
 
-        if (cursor != null && cursor.moveToFirst()) {
-            user.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_ID)));
-            user.setNombreUsuario(cursor.getString(cursor.getColumnIndexOrThrow(COL_NOMBRE)));
-            user.setPassword(cursor.getString(cursor.getColumnIndexOrThrow(COL_PASSWORD)));
+    /**
+     * getUserById:
+     * - Igual que getUserByUsername pero buscando por id.
+     */
+    @Override
+    public User getUserById(long id) {
+        User cacheado = cache.getById(id);
+        if (cacheado != null) {
+            Metrics.increment(Metrics.Counter.CACHE_HITS);
+            return cacheado;
         }
+        Metrics.increment(Metrics.Counter.CACHE_MISSES);
+        long generacion = cache.generation(); // antes de consultar: ver UserCache.generation
+
+        User user = new User();
+        user.setId(-1);
 
-        if (cursor != null) cursor.close();
-        db.close();
+        SQLiteDatabase db = getReadableDatabase();
+        long inicio = Metrics.begin(Metrics.Op.QUERY);
+        Metrics.CursorWatch watch = Metrics.watchCursor();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(SQL_USER_BY_ID, new String[]{String.valueOf(id)});
 
+            if (cursor != null && cursor.moveToFirst()) {
+                if (watch != null) watch.row(cursor);
+                leerUsuario(cursor, user);
+                cache.put(user.getNombreUsuario(), user, generacion);
+            }
+        } finally {
+            if (cursor != null) cursor.close();
+            Metrics.endQuery(inicio, watch);
+        }
         return user;
     }
 
@@ -204,13 +812,33 @@ public class DBHelper extends SQLiteAssetHelper {
      *   (cambiar pass)
      *    [nombre] --> [nueva pass]
      */
+    @Override
+    @WorkerThread
     public boolean updatePassword(String nombreUsuario, String nuevaPassword) {
+        return updatePasswordHash(nombreUsuario, hasher.hash(nuevaPassword));
+    }
+
+    /**
+     * updatePasswordHash:
+     * - Igual que updatePassword pero con la contraseña ya convertida en hash.
+     */
+    @Override
+    public boolean updatePasswordHash(String nombreUsuario, @Nullable String hash) {
         SQLiteDatabase db = getWritableDatabase();
         ContentValues values = new ContentValues();
-        values.put(COL_PASSWORD, nuevaPassword);
+        values.put(COL_PASSWORD, hash);
 
-        int rowsUpdated = db.update(TABLE_USUARIO, values, COL_NOMBRE + " = ?", new String[]{nombreUsuario});
-        db.close();
+        long inicio = Metrics.begin(Metrics.Op.UPDATE);
+        int rowsUpdated;
+        try {
+            rowsUpdated = db.update(TABLE_USUARIO, values, WHERE_NOMBRE_VIVO, new String[]{nombreUsuario});
+        } finally {
+            Metrics.end(Metrics.Op.UPDATE, inicio);
+        }
+        Metrics.count(Metrics.Counter.ROWS_WRITTEN, rowsUpdated);
+        cache.invalidate(nombreUsuario);
+        verificados.invalidate(nombreUsuario);
+        if (rowsUpdated > 0) cambios.publish(UserChanges.UPDATE, idByUsername(nombreUsuario));
         return rowsUpdated > 0;
     }
 
@@ -223,60 +851,362 @@ public class DBHelper extends SQLiteAssetHelper {
      *
      *   ( ¯\_(ツ)_/¯ )  -> Se borra para siempre
      */
+    @Override
     public int deleteUser(String nombreUsuario) {
         SQLiteDatabase db = getWritableDatabase();
-        int rowsDeleted = db.delete(TABLE_USUARIO, COL_NOMBRE + " = ?", new String[]{nombreUsuario});
-        db.close();
+        long id = idByUsername(nombreUsuario); // despues del DELETE ya no se podria saber
+        long inicio = Metrics.begin(Metrics.Op.DELETE);
+        int rowsDeleted;
+        try {
+            rowsDeleted = borrar(db, nombreUsuario);
+        } finally {
+            Metrics.end(Metrics.Op.DELETE, inicio);
+        }
+        Metrics.count(Metrics.Counter.ROWS_WRITTEN, rowsDeleted);
+        cache.invalidate(nombreUsuario);
+        verificados.invalidate(nombreUsuario);
+        if (rowsDeleted > 0) cambios.publish(UserChanges.DELETE, id);
         return rowsDeleted;
     }
 
+    /**
+     * softDeletes:
+     * - Con el borrado suave activado, deleteUser no borra la fila: le pone la fecha en `borrado_en` (un
+     *   UPDATE de una columna, sin reacomodar los indices ni el de busqueda). Todas las consultas ignoran
+     *   esas filas, y el mantenimiento (ver StorageMaintenance) las borra de verdad mas tarde, de a lotes,
+     *   cuando el dispositivo esta sin usar y cargando.
+     * - Volver a crear un usuario con el mismo nombre saca la fila vieja en el momento (trigger de la
+     *   migracion 5).
+     * - Apagado (lo normal) se borra en el momento, como siempre.
+     */
+    private volatile boolean softDeletes;
+
+    public boolean isSoftDeletes() {
+        return softDeletes;
+    }
+
+    public void setSoftDeletes(boolean softDeletes) {
+        this.softDeletes = softDeletes;
+    }
+
+    private int borrar(SQLiteDatabase db, String nombreUsuario) {
+        String[] nombre = {nombreUsuario};
+        if (!softDeletes) return db.delete(TABLE_USUARIO, WHERE_NOMBRE_VIVO, nombre);
+
+        ContentValues values = new ContentValues();
+        values.put(COL_BORRADO, System.currentTimeMillis());
+        return db.update(TABLE_USUARIO, values, WHERE_NOMBRE_VIVO, nombre);
+    }
+
     public List<User> getAllUsers() {
         List<User> users = new ArrayList<>();
         SQLiteDatabase db = getReadableDatabase();
         Cursor cursor = null;
+        long inicio = Metrics.begin(Metrics.Op.QUERY);
+        Metrics.CursorWatch watch = Metrics.watchCursor();
 
         try {
-            String query = "SELECT * FROM " + TABLE_USUARIO;
-            cursor = db.rawQuery(query, null);
+            cursor = db.rawQuery(SQL_ALL_USERS, null);
 
             if (cursor != null && cursor.moveToFirst()) {
+                // Los indices de columna se resuelven una vez por cursor, no una vez por fila
+                int idxId = cursor.getColumnIndexOrThrow(COL_ID);
+                int idxNombre = cursor.getColumnIndexOrThrow(COL_NOMBRE);
+                int idxPassword = cursor.getColumnIndexOrThrow(COL_PASSWORD);
                 do {
+                    if (watch != null) watch.row(cursor);
                     User user = new User();
-                    user.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_ID)));
-                    user.setNombreUsuario(cursor.getString(cursor.getColumnIndexOrThrow(COL_NOMBRE)));
-                    user.setPassword(cursor.getString(cursor.getColumnIndexOrThrow(COL_PASSWORD)));
+                    user.setId(cursor.getLong(idxId));
+                    user.setNombreUsuario(cursor.getString(idxNombre));
+                    user.setPassword(cursor.getString(idxPassword));
                     users.add(user);
                 } while (cursor.moveToNext());
             }
         } finally {
             if (cursor != null) cursor.close();
-            db.close();
+            Metrics.endQuery(inicio, watch);
         }
 
         return users;
     }
 
+    /**
+     * getAllUsersSafe:
+     * - Todos los usuarios sin contraseña, un objeto User por fila. Para mostrar listas grandes conviene
+     *   getAllUsersList, que guarda lo mismo en mucha menos memoria.
+     */
     public List<User> getAllUsersSafe() {
         List<User> users = new ArrayList<>();
         SQLiteDatabase db = getReadableDatabase();
         Cursor cursor = null;
+        long inicio = Metrics.begin(Metrics.Op.QUERY);
+        Metrics.CursorWatch watch = Metrics.watchCursor();
 
         try {
-            String query = "SELECT " + COL_ID + ", " + COL_NOMBRE + " FROM " + TABLE_USUARIO;
-            cursor = db.rawQuery(query, null);
+            cursor = db.rawQuery(SQL_ALL_USERS_SAFE, null);
 
             if (cursor != null && cursor.moveToFirst()) {
+                int idxId = cursor.getColumnIndexOrThrow(COL_ID);
+                int idxNombre = cursor.getColumnIndexOrThrow(COL_NOMBRE);
                 do {
+                    if (watch != null) watch.row(cursor);
                     User user = new User();
-                    user.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_ID)));
-                    user.setNombreUsuario(cursor.getString(cursor.getColumnIndexOrThrow(COL_NOMBRE)));
+                    user.setId(cursor.getLong(idxId));
+                    user.setNombreUsuario(cursor.getString(idxNombre));
                     user.setPassword(null); // intentionally blank
                     users.add(user);
                 } while (cursor.moveToNext());
             }
         } finally {
             if (cursor != null) cursor.close();
-            db.close();
+            Metrics.endQuery(inicio, watch);
+        }
+
+        return users;
+    }
+
+    /**
+     * existsByUsername / idByUsername / countUsers:
+     * - Consultas de un solo valor con sentencias ya compiladas (ver UserStatements): no crean Cursor, ni
+     *   CursorWindow, ni User. Para saber si un nombre existe o cual es su id, usar estas y no
+     *   getUserByUsername, que trae la fila entera.
+     * - Las dos primeras miran antes el cache (sin copiar el usuario guardado).
+     *
+     * Uso: if (!dbHelper.existsByUsername("admin")) { ... }
+     */
+    @Override
+    public boolean existsByUsername(String nombreUsuario) {
+        return idByUsername(nombreUsuario) != -1;
+    }
+
+    /**
+     * idByUsername:
+     * - El id del usuario, o -1 si no existe.
+     */
+    @Override
+    public long idByUsername(String nombreUsuario) {
+        long cacheado = cache.getIdByUsername(nombreUsuario);
+        if (cacheado != UserCache.UNKNOWN) {
+            Metrics.increment(Metrics.Counter.CACHE_HITS);
+            return cacheado;
+        }
+        Metrics.increment(Metrics.Counter.CACHE_MISSES);
+
+        long inicio = Metrics.begin(Metrics.Op.QUERY);
+        try {
+            return statements().idByName(nombreUsuario);
+        } finally {
+            Metrics.end(Metrics.Op.QUERY, inicio);
+        }
+    }
+
+    @Override
+    public long countUsers() {
+        long inicio = Metrics.begin(Metrics.Op.QUERY);
+        try {
+            return statements().count();
+        } finally {
+            Metrics.end(Metrics.Op.QUERY, inicio);
+        }
+    }
+
+    /**
+     * getUsersPage:
+     * - Devuelve hasta `limit` usuarios (sin contraseña) con id mayor a `afterId`, ordenados por id.
+     * - Es paginacion por "clave" (keyset): en lugar de saltar N filas con OFFSET, SQLite va directo al
+     *   id indicado usando la clave primaria, asi que cargar la pagina 1000 cuesta lo mismo que la pagina 1.
+     *
+     * Uso: primera pagina -> getUsersPage(0, 50); siguiente -> getUsersPage(idDelUltimoUsuario, 50)
+     */
+    public List<User> getUsersPage(long afterId, int limit) {
+        return leerPagina(SQL_PAGE_AFTER, new String[]{String.valueOf(afterId), String.valueOf(limit)}, limit);
+    }
+
+    /**
+     * getUsersPageBefore:
+     * - La pagina ANTERIOR a `beforeId`: hasta `limit` usuarios con id menor, devueltos en orden ascendente.
+     * - Se usa al hacer scroll hacia arriba despues de haber liberado las paginas de arriba.
+     */
+    public List<User> getUsersPageBefore(long beforeId, int limit) {
+        List<User> users = leerPagina(SQL_PAGE_BEFORE, new String[]{String.valueOf(beforeId), String.valueOf(limit)}, limit);
+        Collections.reverse(users);
+        return users;
+    }
+
+    /**
+     * countUsersBefore:
+     * - Cuantos usuarios tienen id menor a `id`, es decir, en que posicion de la lista quedaria ese id.
+     */
+    @Override
+    public long countUsersBefore(long id) {
+        return statements().countBefore(id);
+    }
+
+    /**
+     * getUsersPageAtOffset:
+     * - Igual que getUsersPage pero empezando en la posicion `offset`.
+     * - Solo se usa cuando se salta a una pagina cuyo id de inicio todavia no se conoce (por ejemplo al
+     *   arrastrar la barra de scroll); el costo crece con `offset`, por eso no es el camino normal.
+     */
+    public List<User> getUsersPageAtOffset(int offset, int limit) {
+        return leerPagina(SQL_PAGE_AT_OFFSET, new String[]{String.valueOf(limit), String.valueOf(offset)}, limit);
+    }
+
+    /**
+     * getAllUsersList / getUserListPage / getUserListPageBefore / getUserListAtOffset:
+     * - Lo mismo que getAllUsersSafe / getUsersPage / getUsersPageBefore / getUsersPageAtOffset, pero en
+     *   una `UserList` (ids en un long[] y nombres en un char[]) en lugar de un objeto User por fila.
+     * - Es lo que usa la lista de `Principal`: ocupa varias veces menos memoria y dibujar una fila no crea
+     *   objetos (ver UserList).
+     */
+    @Override
+    public UserList getAllUsersList() {
+        return leerLista(SQL_ALL_USERS_SAFE, null, 256);
+    }
+
+    @Override
+    public UserList getUserListPage(long afterId, int limit) {
+        return leerLista(SQL_PAGE_AFTER, new String[]{String.valueOf(afterId), String.valueOf(limit)}, limit);
+    }
+
+    @Override
+    public UserList getUserListPageBefore(long beforeId, int limit) {
+        return leerLista(SQL_PAGE_BEFORE_ASC, new String[]{String.valueOf(beforeId), String.valueOf(limit)}, limit);
+    }
+
+    @Override
+    public UserList getUserListAtOffset(int offset, int limit) {
+        return leerLista(SQL_PAGE_AT_OFFSET, new String[]{String.valueOf(limit), String.valueOf(offset)}, limit);
+    }
+
+    /**
+     * searchUsers:
+     * - Busca usuarios (sin contraseña) cuyo nombre contenga palabras que EMPIECEN con lo escrito:
+     *   "ju" encuentra "juan" y "maria_julia". Devuelve hasta `limit` resultados desde la posicion `offset`,
+     *   los mas parecidos primero (ver UserSearch).
+     * - Usa el indice de texto completo `usuario_fts`, que los triggers mantienen al dia con cada
+     *   insert/update/delete: no se recorre la tabla ni se carga la lista en memoria para filtrarla.
+     * - `senal` permite cortar la consulta a mitad de camino si ya no hace falta (el usuario siguio
+     *   escribiendo). En ese caso se lanza OperationCanceledException.
+     *
+     * Uso: List<User> primeros = dbHelper.searchUsers("ju", 0, 50, null);
+     */
+    @Override
+    public List<User> searchUsers(String texto, int offset, int limit, @Nullable CancellationSignal senal) {
+        String match = UserSearch.matchQuery(texto);
+        if (match == null) return new ArrayList<>();
+
+        return leerPagina(UserSearch.SQL_SEARCH,
+                UserSearch.args(match, UserSearch.normalizar(texto), offset, limit), limit, senal);
+    }
+
+    /**
+     * forEachUser:
+     * - Recorre la tabla entera con el hash de cada contraseña, sin juntar las filas en una lista.
+     * - Va de a bloques de `FILAS_POR_BLOQUE` filas por clave primaria (como getUsersPage), cada bloque con
+     *   su propio cursor. Un solo cursor sobre toda la tabla tendria que volver a recorrerla desde el principio
+     *   cada vez que llena su ventana, y con escrituras en el medio podria repetir o saltear filas; por id,
+     *   cada bloque empieza justo despues del ultimo usuario visto.
+     */
+    @Override
+    @WorkerThread
+    public void forEachUser(UserVisitor visitor, @Nullable CancellationSignal senal) {
+        SQLiteDatabase db = getReadableDatabase();
+        String[] args = {String.valueOf(Long.MIN_VALUE), String.valueOf(FILAS_POR_BLOQUE)};
+        while (true) {
+            int filas = 0;
+            Cursor cursor = null;
+            long inicio = Metrics.begin(Metrics.Op.QUERY);
+            Metrics.CursorWatch watch = Metrics.watchCursor();
+
+            try {
+                cursor = db.rawQuery(SQL_USERS_AFTER, args, senal);
+
+                if (cursor != null && cursor.moveToFirst()) {
+                    int idxId = cursor.getColumnIndexOrThrow(COL_ID);
+                    int idxNombre = cursor.getColumnIndexOrThrow(COL_NOMBRE);
+                    int idxPassword = cursor.getColumnIndexOrThrow(COL_PASSWORD);
+                    do {
+                        if (watch != null) watch.row(cursor);
+                        long id = cursor.getLong(idxId);
+                        filas++;
+                        args[0] = String.valueOf(id);
+                        if (!visitor.visit(id, cursor.getString(idxNombre), cursor.getString(idxPassword))) return;
+                    } while (cursor.moveToNext());
+                }
+            } finally {
+                if (cursor != null) cursor.close();
+                Metrics.endQuery(inicio, watch);
+            }
+
+            if (filas < FILAS_POR_BLOQUE) return;
+            if (senal != null) senal.throwIfCanceled();
+        }
+    }
+
+    private List<User> leerPagina(String query, String[] args, int limit) {
+        return leerPagina(query, args, limit, null);
+    }
+
+    private List<User> leerPagina(String query, String[] args, int limit, @Nullable CancellationSignal senal) {
+        List<User> users = new ArrayList<>(limit);
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = null;
+        long inicio = Metrics.begin(Metrics.Op.QUERY);
+        Metrics.CursorWatch watch = Metrics.watchCursor();
+
+        try {
+            cursor = db.rawQuery(query, args, senal);
+
+            if (cursor != null && cursor.moveToFirst()) {
+                int idxId = cursor.getColumnIndexOrThrow(COL_ID);
+                int idxNombre = cursor.getColumnIndexOrThrow(COL_NOMBRE);
+                do {
+                    if (watch != null) watch.row(cursor);
+                    users.add(new User(cursor.getLong(idxId), cursor.getString(idxNombre), null));
+                } while (cursor.moveToNext());
+            }
+        } finally {
+            if (cursor != null) cursor.close();
+            Metrics.endQuery(inicio, watch);
+        }
+
+        return users;
+    }
+
+    /**
+     * leerLista:
+     * - Como leerPagina, pero copia cada nombre del cursor directo al arreglo de la lista
+     *   (`copyStringToBuffer` + un solo buffer reutilizado), sin crear un String ni un User por fila.
+     */
+    private UserList leerLista(String query, @Nullable String[] args, int filasEstimadas) {
+        UserList users = new UserList(filasEstimadas, filasEstimadas * 12);
+        CharArrayBuffer nombre = new CharArrayBuffer(32);
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = null;
+        long inicio = Metrics.begin(Metrics.Op.QUERY);
+        Metrics.CursorWatch watch = Metrics.watchCursor();
+
+        try {
+            cursor = db.rawQuery(query, args);
+
+            if (cursor != null && cursor.moveToFirst()) {
+                int idxId = cursor.getColumnIndexOrThrow(COL_ID);
+                int idxNombre = cursor.getColumnIndexOrThrow(COL_NOMBRE);
+                do {
+                    if (watch != null) watch.row(cursor);
+                    long id = cursor.getLong(idxId);
+                    if (cursor.isNull(idxNombre)) {
+                        users.add(id, null, 0, 0);
+                    } else {
+                        cursor.copyStringToBuffer(idxNombre, nombre); // agranda `nombre.data` si no entra
+                        users.add(id, nombre.data, 0, nombre.sizeCopied);
+                    }
+                } while (cursor.moveToNext());
+            }
+        } finally {
+            if (cursor != null) cursor.close();
+            Metrics.endQuery(inicio, watch);
         }
 
         return users;
@@ -0,0 +1,198 @@
+package com.example.ejemplo.database;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import com.example.ejemplo.metricas.Metrics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * `DatabaseProvisioner` se encarga de que exista el archivo de la base de datos antes de abrirla por
+ * primera vez, copiandolo desde `assets/databases`.
+ *
+ * Es la parte mas lenta del primer arranque, por eso:
+ * - Si el archivo ya existe no hace nada: solo mira si el archivo esta, NO abre la base. (Una vez copiada,
+ *   la base tiene datos del usuario y nunca se pisa; los cambios de esquema van por SchemaMigrations.)
+ * - Copia con buffers grandes o, si el asset no esta comprimido, directo de canal a canal (`transferTo`).
+ * - Escribe en un archivo temporal, lo fuerza a disco (fsync) y recien ahi lo renombra al nombre final.
+ *   Si la app se corta a mitad de la copia no queda una base rota: queda un temporal que se descarta.
+ * - Verifica que lo escrito coincida con el asset (CRC32) antes de renombrar.
+ *
+ * Debe llamarse desde un hilo secundario (ver `DBAsync.warmUp`).
+ */
+final class DatabaseProvisioner {
+
+    private static final String TAG = "DatabaseProvisioner";
+    private static final String ASSET_DIR = "databases/";
+    private static final int BUFFER = 64 * 1024;
+
+    private DatabaseProvisioner() {
+    }
+
+    /**
+     * ensureProvisioned:
+     * - Deja el archivo `nombre` listo en la carpeta de bases de datos de la app.
+     * - Es seguro llamarlo muchas veces y desde varios hilos: la copia se hace una sola vez.
+     */
+    @WorkerThread
+    static void ensureProvisioned(Context context, String nombre) {
+        ensureProvisioned(context, nombre, nombre);
+    }
+
+    /**
+     * ensureProvisioned (con plantilla):
+     * - Igual, pero el archivo `nombre` se copia del asset `plantilla`. Asi cada organizacion (ver
+     *   TenantDatabases) tiene su propia base, todas nacidas del mismo `ejemplo.db`.
+     */
+    @WorkerThread
+    static synchronized void ensureProvisioned(Context context, String plantilla, String nombre) {
+        File destino = context.getDatabasePath(nombre);
+        if (destino.exists()) return;
+
+        long medicion = Metrics.begin(Metrics.Op.COPY);
+        try {
+            instalar(context, plantilla, nombre, destino);
+        } finally {
+            Metrics.end(Metrics.Op.COPY, medicion);
+        }
+    }
+
+    private static void instalar(Context context, String plantilla, String nombre, File destino) {
+        long inicio = SystemClock.elapsedRealtime();
+        File carpeta = destino.getParentFile();
+        if (carpeta != null && !carpeta.exists() && !carpeta.mkdirs()) {
+            Log.e(TAG, "No se pudo crear " + carpeta);
+            return;
+        }
+
+        File temporal = new File(destino.getPath() + ".tmp");
+        try {
+            long crc = copiar(context, ASSET_DIR + plantilla, temporal);
+            verificar(temporal, crc);
+
+            // Restos de una base anterior (WAL/journal) no deben aplicarse sobre la copia nueva
+            borrar(new File(destino.getPath() + "-wal"));
+            borrar(new File(destino.getPath() + "-shm"));
+            borrar(new File(destino.getPath() + "-journal"));
+
+            if (!temporal.renameTo(destino)) {
+                throw new IOException("No se pudo renombrar " + temporal + " a " + destino);
+            }
+            Log.i(TAG, "Base " + nombre + " copiada (" + destino.length() + " bytes) en "
+                    + (SystemClock.elapsedRealtime() - inicio) + " ms");
+        } catch (IOException e) {
+            // Si algo falla, SQLiteAssetHelper intentara su propia copia al abrir la base.
+            Log.e(TAG, "Fallo la copia de " + nombre, e);
+            borrar(temporal);
+        }
+    }
+
+    /**
+     * copiar:
+     * - Copia el asset a `destino` y devuelve el CRC32 de los bytes leidos del asset.
+     */
+    private static long copiar(Context context, String asset, File destino) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileOutputStream salida = new FileOutputStream(destino)) {
+            FileChannel canalSalida = salida.getChannel();
+
+            AssetFileDescriptor fd = abrirSinComprimir(context, asset);
+            if (fd != null) {
+                // Asset sin comprimir: el kernel copia directo entre archivos, sin pasar por buffers de Java.
+                try (FileInputStream entrada = fd.createInputStream()) {
+                    FileChannel canalEntrada = entrada.getChannel();
+                    long posicion = fd.getStartOffset();
+                    long restante = fd.getLength();
+                    while (restante > 0) {
+                        long copiados = canalEntrada.transferTo(posicion, restante, canalSalida);
+                        if (copiados <= 0) throw new IOException("Copia incompleta de " + asset);
+                        posicion += copiados;
+                        restante -= copiados;
+                    }
+                    // Con transferTo no vemos pasar los bytes: el CRC del asset se calcula leyendo su region.
+                    actualizarCrc(crc, canalEntrada, fd.getStartOffset(), fd.getLength());
+                } finally {
+                    fd.close();
+                }
+            } else {
+                // Asset comprimido dentro del APK: hay que descomprimirlo leyendo por stream.
+                try (InputStream entrada = context.getAssets().open(asset)) {
+                    byte[] buffer = new byte[BUFFER];
+                    int leidos;
+                    while ((leidos = entrada.read(buffer)) != -1) {
+                        crc.update(buffer, 0, leidos);
+                        salida.write(buffer, 0, leidos);
+                    }
+                }
+            }
+
+            canalSalida.force(true); // fsync: los bytes estan en disco antes de renombrar
+        }
+        return crc.getValue();
+    }
+
+    private static AssetFileDescriptor abrirSinComprimir(Context context, String asset) {
+        try {
+            return context.getAssets().openFd(asset);
+        } catch (FileNotFoundException e) {
+            return null; // el asset esta comprimido: openFd no lo puede abrir
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void actualizarCrc(CRC32 crc, FileChannel canal, long inicio, long largo) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+        long posicion = inicio;
+        long fin = inicio + largo;
+        while (posicion < fin) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER, fin - posicion));
+            int leidos = canal.read(buffer, posicion);
+            if (leidos <= 0) throw new IOException("Asset truncado");
+            buffer.flip();
+            crc.update(buffer);
+            posicion += leidos;
+        }
+    }
+
+    /**
+     * verificar:
+     * - Vuelve a leer el archivo escrito y compara su CRC32 con el del asset.
+     */
+    private static void verificar(File archivo, long crcEsperado) throws IOException {
+        long crcLeido = leerCrc(archivo).getValue();
+        if (crcLeido != crcEsperado) {
+            throw new IOException("CRC distinto al copiar " + archivo.getName()
+                    + ": esperado=" + Long.toHexString(crcEsperado) + " leido=" + Long.toHexString(crcLeido));
+        }
+    }
+
+    private static CRC32 leerCrc(File archivo) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileInputStream entrada = new FileInputStream(archivo)) {
+            FileChannel canal = entrada.getChannel();
+            actualizarCrc(crc, canal, 0, canal.size());
+        }
+        return crc;
+    }
+
+    private static void borrar(File archivo) {
+        if (archivo.exists() && !archivo.delete()) {
+            Log.w(TAG, "No se pudo borrar " + archivo);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.ejemplo.database;
+
+import androidx.annotation.WorkerThread;
+
+import com.example.ejemplo.metricas.Metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * `GroupCommitWriter` junta las escrituras sueltas (addUser, updatePassword, deleteUser) que llegan casi al
+ * mismo tiempo y las confirma en UNA transaccion (`UserRepository.applyWrites`).
+ *
+ * Cada commit de SQLite espera a que el disco confirme (un fsync). Con una transaccion por escritura, 200
+ * escrituras en un segundo son 200 fsync; agrupadas son unos pocos:
+ *
+ * - Se encolan desde cualquier hilo con `submit`, que devuelve el resultado de ESA escritura como un futuro.
+ * - El grupo se confirma en el hilo de escritura cuando pasa la ventana (`ventanaMs`, contada desde la
+ *   primera escritura del grupo) o cuando se juntan `maxLote` escrituras, lo que pase primero. Mientras
+ *   el hilo de escritura esta ocupado con otra cosa el grupo sigue creciendo solo.
+ * - Las escrituras redundantes no llegan a la base: de varios updatePassword seguidos del mismo usuario solo
+ *   se aplica el ultimo, y un updatePassword seguido de un deleteUser se reduce al borrado. Quien pidio la
+ *   escritura reemplazada recibe el resultado de la que la reemplazo.
+ * - Si el grupo falla, cada escritura se reintenta sola: un error solo le llega a quien lo causo.
+ *
+ * Las altas y los borrados nunca se descartan (el id de un alta tiene que ser real).
+ *
+ * Cada escritura va al repositorio que era el actual cuando se pidio (con varias organizaciones, ver
+ * TenantDatabases, cambiar de organizacion no desvia las escrituras pendientes): un grupo con escrituras de
+ * varios repositorios se confirma en una transaccion por repositorio, respetando el orden.
+ */
+final class GroupCommitWriter {
+
+    static final long DEFAULT_VENTANA_MS = 2;
+    static final int DEFAULT_MAX_LOTE = 128;
+
+    private final Executor escritor;
+    private final Supplier<UserRepository> repositorio;
+    private final long ventanaNanos;
+    private final int maxLote;
+
+    private final Object lock = new Object();
+    private List<Pendiente> cola = new ArrayList<>();
+    private boolean programado; // hay un vaciar() encolado en `escritor`
+    private long desde; // System.nanoTime() de la primera escritura del grupo
+    // Reservas sin encolar todavia, y los afterPending que las esperan (por repositorio, ver Reserva)
+    private final Map<UserRepository, Integer> preparando = new IdentityHashMap<>();
+    private final Map<UserRepository, List<Runnable>> esperando = new IdentityHashMap<>();
+
+    GroupCommitWriter(Executor escritor, Supplier<UserRepository> repositorio) {
+        this(escritor, repositorio, DEFAULT_VENTANA_MS, DEFAULT_MAX_LOTE);
+    }
+
+    GroupCommitWriter(Executor escritor, Supplier<UserRepository> repositorio, long ventanaMs, int maxLote) {
+        if (maxLote < 1) throw new IllegalArgumentException("maxLote tiene que ser mayor a 0: " + maxLote);
+        this.escritor = escritor;
+        this.repositorio = repositorio;
+        this.ventanaNanos = TimeUnit.MILLISECONDS.toNanos(ventanaMs);
+        this.maxLote = maxLote;
+    }
+
+    /**
+     * submit:
+     * - Encola `escritura` y devuelve su resultado (ver UserRepository.applyWrites) cuando el grupo se confirme.
+     * - No bloquea: se puede llamar desde el hilo principal.
+     * - Sin `repo`, la escritura va al repositorio actual (el del `Supplier` del constructor).
+     */
+    CompletableFuture<Long> submit(UserRepository.Write escritura) {
+        return submit(repositorio.get(), escritura);
+    }
+
+    CompletableFuture<Long> submit(UserRepository repo, UserRepository.Write escritura) {
+        Pendiente p = new Pendiente(repo, escritura);
+        boolean programar;
+        synchronized (lock) {
+            if (cola.isEmpty()) desde = System.nanoTime();
+            cola.add(p);
+            if (cola.size() >= maxLote) lock.notifyAll(); // vaciar() puede estar esperando la ventana
+            programar = !programado;
+            programado = true;
+        }
+        if (programar) escritor.execute(this::vaciar);
+        return p.futuro;
+    }
+
+    /**
+     * Reserva:
+     * - Una escritura para `repo` que todavia se esta preparando: DBAsync calcula el hash (~100 ms) antes de
+     *   encolarla. Mientras haya reservas abiertas para `repo`, afterPending las espera.
+     * - Se cierra encolando la escritura (`submit`) o, si no se pudo preparar, con `cancel`. Hay que cerrarla
+     *   siempre: una reserva abierta deja esperando al cierre de esa base.
+     */
+    final class Reserva {
+        private final UserRepository repo;
+        private final AtomicBoolean cerrada = new AtomicBoolean();
+
+        private Reserva(UserRepository repo) {
+            this.repo = repo;
+        }
+
+        CompletableFuture<Long> submit(UserRepository.Write escritura) {
+            CompletableFuture<Long> futuro = GroupCommitWriter.this.submit(repo, escritura);
+            cancel(); // ya esta en la cola: afterPending la encuentra ahi
+            return futuro;
+        }
+
+        void cancel() {
+            if (cerrada.compareAndSet(false, true)) liberar(repo);
+        }
+    }
+
+    Reserva reserve(UserRepository repo) {
+        synchronized (lock) {
+            preparando.merge(repo, 1, Integer::sum);
+        }
+        return new Reserva(repo);
+    }
+
+    private void liberar(UserRepository repo) {
+        List<Runnable> acciones;
+        synchronized (lock) {
+            int quedan = preparando.get(repo) - 1;
+            if (quedan > 0) {
+                preparando.put(repo, quedan);
+                return;
+            }
+            preparando.remove(repo);
+            acciones = esperando.remove(repo);
+        }
+        if (acciones != null) {
+            for (Runnable accion : acciones) afterPending(repo, accion);
+        }
+    }
+
+    /**
+     * afterPending:
+     * - Corre `accion` en el hilo de escritura cuando ya se confirmaron todas las escrituras encoladas hasta
+     *   ahora para `repo`, aunque sean mas de `maxLote` y salgan en varios grupos, y tambien las reservadas
+     *   (ver Reserva). Para cerrar la base de una organizacion (ver TenantDatabases) sin que una escritura
+     *   pendiente la vuelva a abrir.
+     * - Las que se encolen para `repo` despues de llamarlo sin reserva no se esperan.
+     */
+    void afterPending(UserRepository repo, Runnable accion) {
+        Pendiente ultima = null;
+        synchronized (lock) {
+            if (preparando.containsKey(repo)) {
+                // Se vuelve a mirar la cola cuando se cierre la ultima reserva (ver liberar)
+                esperando.computeIfAbsent(repo, r -> new ArrayList<>()).add(accion);
+                return;
+            }
+            for (int i = cola.size() - 1; i >= 0 && ultima == null; i--) {
+                if (cola.get(i).repo == repo) ultima = cola.get(i);
+            }
+        }
+        if (ultima == null) {
+            // Nada en la cola: si hay un grupo de `repo` confirmandose, el hilo de escritura lo termina antes
+            escritor.execute(accion);
+        } else {
+            // Se completa en el hilo de escritura, en medio de confirmar su grupo: `accion` va despues
+            ultima.futuro.whenComplete((r, e) -> escritor.execute(accion));
+        }
+    }
+
+    // Corre en el hilo de escritura: espera lo que falte de la ventana, toma un grupo y lo confirma
+    @WorkerThread
+    private void vaciar() {
+        List<Pendiente> lote;
+        boolean quedan;
+        synchronized (lock) {
+            long restante;
+            while (cola.size() < maxLote && (restante = desde + ventanaNanos - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(lock, restante);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (cola.size() <= maxLote) {
+                lote = cola;
+                cola = new ArrayList<>();
+            } else {
+                lote = new ArrayList<>(cola.subList(0, maxLote));
+                cola = new ArrayList<>(cola.subList(maxLote, cola.size()));
+                desde = System.nanoTime() - ventanaNanos; // ya esperaron: el proximo grupo sale sin esperar
+            }
+            quedan = !cola.isEmpty();
+            programado = quedan;
+        }
+        if (quedan) escritor.execute(this::vaciar);
+        confirmar(lote);
+    }
+
+    // Tramos seguidos del mismo repositorio: casi siempre es uno solo
+    private void confirmar(List<Pendiente> lote) {
+        int desde = 0;
+        for (int i = 1; i <= lote.size(); i++) {
+            if (i == lote.size() || lote.get(i).repo != lote.get(desde).repo) {
+                confirmar(lote.get(desde).repo, lote.subList(desde, i));
+                desde = i;
+            }
+        }
+    }
+
+    private void confirmar(UserRepository repo, List<Pendiente> lote) {
+        int n = lote.size();
+
+        // reemplazo[i] = la escritura posterior del mismo usuario que vuelve innecesaria a la i (o -1)
+        int[] reemplazo = new int[n];
+        Map<String, Integer> ultimoUpdate = new HashMap<>();
+        List<UserRepository.Write> efectivas = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            reemplazo[i] = -1;
+            UserRepository.Write w = lote.get(i).escritura;
+            Integer anterior = ultimoUpdate.remove(w.nombreUsuario);
+            if (anterior != null && w.tipo != UserChanges.INSERT) reemplazo[anterior] = i;
+            if (w.tipo == UserChanges.UPDATE) ultimoUpdate.put(w.nombreUsuario, i);
+        }
+        for (int i = 0; i < n; i++) {
+            if (reemplazo[i] == -1) efectivas.add(lote.get(i).escritura);
+        }
+        Metrics.count(Metrics.Counter.WRITES_COALESCED, n - efectivas.size());
+
+        long[] aplicados;
+        try {
+            aplicados = repo.applyWrites(efectivas);
+        } catch (RuntimeException e) {
+            if (n == 1) {
+                lote.get(0).futuro.completeExceptionally(e);
+            } else {
+                for (Pendiente p : lote) confirmarSola(repo, p);
+            }
+            return;
+        }
+
+        // Resultados de atras para adelante: el de una reemplazada sale del de su reemplazo (que va despues)
+        long[] resultados = new long[n];
+        int k = efectivas.size();
+        for (int i = n - 1; i >= 0; i--) {
+            int r = reemplazo[i];
+            if (r == -1) {
+                resultados[i] = aplicados[--k];
+            } else {
+                // un UPDATE reemplazado: "se actualizo" si el usuario existia (el UPDATE o DELETE siguiente lo encontro)
+                resultados[i] = resultados[r] > 0 ? 1 : 0;
+            }
+        }
+        for (int i = 0; i < n; i++) lote.get(i).futuro.complete(resultados[i]);
+    }
+
+    private static void confirmarSola(UserRepository repo, Pendiente p) {
+        try {
+            p.futuro.complete(repo.applyWrites(Collections.singletonList(p.escritura))[0]);
+        } catch (RuntimeException e) {
+            p.futuro.completeExceptionally(e);
+        }
+    }
+
+    private static final class Pendiente {
+        final UserRepository repo;
+        final UserRepository.Write escritura;
+        final CompletableFuture<Long> futuro = new CompletableFuture<>();
+
+        Pendiente(UserRepository repo, UserRepository.Write escritura) {
+            this.repo = repo;
+            this.escritura = escritura;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.example.ejemplo.database;
+
+import android.os.CancellationSignal;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.ejemplo.modelos.User;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * `InMemoryUserRepository` guarda los usuarios solo en memoria: no toca el disco y se pierde al cerrar la app.
+ *
+ * Sirve para:
+ * - Pruebas y benchmarks de las pantallas sin el costo (ni la variacion) del disco:
+ *   DBAsync.getInstance(ctx).setRepository(new InMemoryUserRepository());
+ * - La capa rapida de `CompositeUserRepository`.
+ *
+ * Como esta guardado:
+ * - Por id en un `LongHashMap` (las claves son `long`, sin objetos Long) y por nombre en un HashMap.
+ * - Los ids ordenados en un `long[]`, para paginar y contar posiciones con busqueda binaria, igual que
+ *   la base pagina por clave primaria.
+ * - Las contraseñas como hash del mismo `PasswordHasher` que el resto de la app; los nombres son unicos,
+ *   como con el indice unico de la tabla.
+ *
+ * Es segura para usar desde varios hilos a la vez. El hash de las contraseñas se calcula fuera del lock.
+ */
+public final class InMemoryUserRepository implements UserRepository {
+
+    private static final class Fila {
+        final long id;
+        final String nombre;
+        @Nullable String hash;
+
+        Fila(long id, String nombre, @Nullable String hash) {
+            this.id = id;
+            this.nombre = nombre;
+            this.hash = hash;
+        }
+    }
+
+    private static final int TANDA = 256; // filas copiadas por vez en forEachUser
+
+    private final PasswordHasher hasher;
+    private final UserChangeNotifier cambios;
+
+    private final LongHashMap<Fila> porId = new LongHashMap<>();
+    private final HashMap<String, Fila> porNombre = new HashMap<>();
+    private long[] orden = new long[16]; // ids ordenados de menor a mayor
+    private int cantidad;
+    private long siguienteId = 1;
+
+    /**
+     * Con su propio PasswordHasher (se calibra la primera vez que se usa, como el de la base).
+     */
+    public InMemoryUserRepository() {
+        this(new PasswordHasher(null));
+    }
+
+    public InMemoryUserRepository(PasswordHasher hasher) {
+        this(hasher, new UserChangeNotifier());
+    }
+
+    InMemoryUserRepository(PasswordHasher hasher, UserChangeNotifier cambios) {
+        this.hasher = hasher;
+        this.cambios = cambios;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Lecturas
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    @WorkerThread
+    public User comprobarUsuarioLocal(String nombreUsuario, String password) {
+        User user = getUserByUsername(nombreUsuario);
+        String guardado = user.getPassword();
+        if (user.getId() == -1 || guardado == null || password == null) return noEncontrado();
+
+        // Fuera del lock: PBKDF2 tarda y no debe frenar a los demas hilos
+        boolean correcta = PasswordHasher.isHash(guardado)
+                ? hasher.verify(password, guardado)
+                : MessageDigest.isEqual(guardado.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+        if (!correcta) return noEncontrado();
+
+        user.setPassword(null);
+        return user;
+    }
+
+    @Override
+    public synchronized User getUserByUsername(String nombreUsuario) {
+        return copiar(porNombre.get(nombreUsuario));
+    }
+
+    @Override
+    public synchronized User getUserById(long id) {
+        return copiar(porId.get(id));
+    }
+
+    @Override
+    public synchronized boolean existsByUsername(String nombreUsuario) {
+        return porNombre.containsKey(nombreUsuario);
+    }
+
+    @Override
+    public synchronized long idByUsername(String nombreUsuario) {
+        Fila fila = porNombre.get(nombreUsuario);
+        return fila != null ? fila.id : -1;
+    }
+
+    @Override
+    public synchronized long countUsers() {
+        return cantidad;
+    }
+
+    @Override
+    public synchronized long countUsersBefore(long id) {
+        return posicion(id);
+    }
+
+    @Override
+    public synchronized UserList getAllUsersList() {
+        return lista(0, cantidad);
+    }
+
+    @Override
+    public synchronized UserList getUserListPage(long afterId, int limit) {
+        int desde = posicion(afterId);
+        if (desde < cantidad && orden[desde] == afterId) desde++;
+        return lista(desde, limit);
+    }
+
+    @Override
+    public synchronized UserList getUserListPageBefore(long beforeId, int limit) {
+        int hasta = posicion(beforeId);
+        int desde = Math.max(0, hasta - limit);
+        return lista(desde, hasta - desde);
+    }
+
+    @Override
+    public synchronized UserList getUserListAtOffset(int offset, int limit) {
+        return lista(Math.max(0, offset), limit);
+    }
+
+    /**
+     * searchUsers:
+     * - Mismo criterio que el indice de la base (ver UserSearch): cada palabra buscada tiene que ser el
+     *   principio de alguna palabra del nombre, y el orden es exacto / empieza con / mas corto / alfabetico.
+     * - Recorre todos los usuarios: en memoria eso sigue siendo rapido para tamaños de prueba.
+     */
+    @Override
+    public List<User> searchUsers(String texto, int offset, int limit, @Nullable CancellationSignal senal) {
+        String match = UserSearch.matchQuery(texto);
+        if (match == null) return new ArrayList<>();
+        String[] buscadas = match.replace("*", "").split(" ");
+        String normalizado = UserSearch.normalizar(texto);
+
+        List<Fila> encontradas = new ArrayList<>();
+        synchronized (this) {
+            for (int i = 0; i < cantidad; i++) {
+                if (senal != null && (i & 0xff) == 0) senal.throwIfCanceled();
+                Fila fila = porId.get(orden[i]);
+                if (fila != null && coincide(fila.nombre, buscadas)) encontradas.add(fila);
+            }
+        }
+
+        Collections.sort(encontradas, (a, b) -> {
+            String na = a.nombre.toLowerCase(Locale.ROOT), nb = b.nombre.toLowerCase(Locale.ROOT);
+            int c = Boolean.compare(nb.equals(normalizado), na.equals(normalizado));
+            if (c == 0) c = Boolean.compare(nb.startsWith(normalizado), na.startsWith(normalizado));
+            if (c == 0) c = Integer.compare(a.nombre.length(), b.nombre.length());
+            return c != 0 ? c : a.nombre.compareTo(b.nombre);
+        });
+
+        List<User> users = new ArrayList<>(Math.min(limit, encontradas.size()));
+        for (int i = Math.max(0, offset); i < encontradas.size() && users.size() < limit; i++) {
+            Fila fila = encontradas.get(i);
+            users.add(new User(fila.id, fila.nombre, null));
+        }
+        return users;
+    }
+
+    /**
+     * forEachUser:
+     * - Copia los usuarios de a tandas con el lock tomado y llama a `visitor` sin el lock: un recorrido
+     *   largo (una exportacion) no frena las escrituras de los demas hilos.
+     */
+    @Override
+    public void forEachUser(UserVisitor visitor, @Nullable CancellationSignal senal) {
+        long[] ids = new long[TANDA];
+        String[] nombres = new String[TANDA];
+        String[] hashes = new String[TANDA];
+        long ultimo = Long.MIN_VALUE;
+        while (true) {
+            int filas = 0;
+            synchronized (this) {
+                int i = posicion(ultimo);
+                if (i < cantidad && orden[i] == ultimo) i++;
+                for (; i < cantidad && filas < TANDA; i++) {
+                    Fila fila = porId.get(orden[i]);
+                    if (fila == null) continue;
+                    ids[filas] = fila.id;
+                    nombres[filas] = fila.nombre;
+                    hashes[filas] = fila.hash;
+                    filas++;
+                }
+            }
+            for (int i = 0; i < filas; i++) {
+                ultimo = ids[i];
+                if (!visitor.visit(ids[i], nombres[i], hashes[i])) return;
+            }
+            if (filas < TANDA) return;
+            if (senal != null) senal.throwIfCanceled();
+        }
+    }
+
+    private static boolean coincide(String nombre, String[] buscadas) {
+        String[] palabras = UserSearch.normalizar(nombre).split("[^\\p{L}\\p{N}]+");
+        for (String buscada : buscadas) {
+            boolean alguna = false;
+            for (String palabra : palabras) {
+                if (palabra.startsWith(buscada)) {
+                    alguna = true;
+                    break;
+                }
+            }
+            if (!alguna) return false;
+        }
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Escrituras
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    @WorkerThread
+    public long addUser(User user) {
+        if (user == null) return -1;
+        return addUserHashed(user.getNombreUsuario(), hasher.hash(user.getPassword()));
+    }
+
+    @Override
+    public long addUserHashed(String nombreUsuario, @Nullable String hash) {
+        long id;
+        synchronized (this) {
+            if (nombreUsuario == null || porNombre.containsKey(nombreUsuario)) return -1; // nombre unico
+            id = siguienteId;
+            guardar(new Fila(id, nombreUsuario, hash));
+        }
+        cambios.publish(UserChanges.INSERT, id);
+        return id;
+    }
+
+    @Override
+    @WorkerThread
+    public DBHelper.BatchResult addUsers(Iterator<User> users) {
+        return addPreparedUsers(prepareUsers(users));
+    }
+
+    @Override
+    @WorkerThread
+    public PreparedBatch prepareUsers(Iterator<User> users) {
+        List<User> hasheados = new ArrayList<>();
+        int skipped = 0;
+        while (users.hasNext()) {
+            User user = users.next();
+            boolean existe;
+            synchronized (this) {
+                existe = user == null || user.getNombreUsuario() == null || porNombre.containsKey(user.getNombreUsuario());
+            }
+            if (existe) {
+                skipped++;
+                continue;
+            }
+            hasheados.add(new User(user.getId(), user.getNombreUsuario(), hasher.hash(user.getPassword())));
+        }
+        return new PreparedBatch(hasheados, skipped);
+    }
+
+    @Override
+    public DBHelper.BatchResult addPreparedUsers(PreparedBatch lote) {
+        int inserted = 0;
+        int skipped = lote.skipped;
+        UserChanges.Builder insertados = new UserChanges.Builder();
+        synchronized (this) {
+            for (User user : lote.users) {
+                if (porNombre.containsKey(user.getNombreUsuario())) {
+                    skipped++;
+                    continue;
+                }
+                long id = siguienteId;
+                guardar(new Fila(id, user.getNombreUsuario(), user.getPassword()));
+                insertados.add(UserChanges.INSERT, id);
+                inserted++;
+            }
+        }
+        cambios.publish(insertados.build());
+        return new DBHelper.BatchResult(inserted, skipped);
+    }
+
+    @Override
+    @WorkerThread
+    public boolean updatePassword(String nombreUsuario, String nuevaPassword) {
+        return updatePasswordHash(nombreUsuario, hasher.hash(nuevaPassword));
+    }
+
+    @Override
+    public boolean updatePasswordHash(String nombreUsuario, @Nullable String hash) {
+        long id;
+        synchronized (this) {
+            Fila fila = porNombre.get(nombreUsuario);
+            if (fila == null) return false;
+            fila.hash = hash;
+            id = fila.id;
+        }
+        cambios.publish(UserChanges.UPDATE, id);
+        return true;
+    }
+
+    @Override
+    public int deleteUser(String nombreUsuario) {
+        Fila fila;
+        synchronized (this) {
+            fila = quitar(nombreUsuario);
+        }
+        if (fila == null) return 0;
+        cambios.publish(UserChanges.DELETE, fila.id);
+        return 1;
+    }
+
+    /**
+     * applyWrites:
+     * - En memoria no hay commits que ahorrar: cada escritura se aplica como si se llamara sola. Todo el
+     *   grupo va bajo el mismo lock, asi nadie ve el grupo a medias.
+     */
+    @Override
+    public synchronized long[] applyWrites(List<Write> escrituras) {
+        long[] resultados = new long[escrituras.size()];
+        for (int i = 0; i < resultados.length; i++) {
+            Write w = escrituras.get(i);
+            if (w.tipo == UserChanges.INSERT) {
+                resultados[i] = addUserHashed(w.nombreUsuario, w.hash);
+            } else if (w.tipo == UserChanges.UPDATE) {
+                resultados[i] = updatePasswordHash(w.nombreUsuario, w.hash) ? 1 : 0;
+            } else {
+                resultados[i] = deleteUser(w.nombreUsuario);
+            }
+        }
+        return resultados;
+    }
+
+    @Override
+    public PasswordHasher getPasswordHasher() {
+        return hasher;
+    }
+
+    @Override
+    public UserChangeNotifier getChangeNotifier() {
+        return cambios;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Para CompositeUserRepository: copiar filas de otro repositorio tal cual (mismo id), sin avisar cambios
+    // ---------------------------------------------------------------------------------------------
+
+    synchronized void put(long id, String nombreUsuario, @Nullable String hash) {
+        quitar(nombreUsuario);
+        Fila vieja = porId.get(id);
+        if (vieja != null) quitar(vieja.nombre);
+        guardar(new Fila(id, nombreUsuario, hash));
+    }
+
+    synchronized void forget(String nombreUsuario) {
+        quitar(nombreUsuario);
+    }
+
+    synchronized void forgetAll() {
+        porId.clear();
+        porNombre.clear();
+        cantidad = 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Implementacion (con el lock tomado)
+    // ---------------------------------------------------------------------------------------------
+
+    private void guardar(Fila fila) {
+        porId.put(fila.id, fila);
+        porNombre.put(fila.nombre, fila);
+        siguienteId = Math.max(siguienteId, fila.id + 1);
+
+        if (cantidad == orden.length) orden = Arrays.copyOf(orden, cantidad * 2);
+        int i = cantidad == 0 || orden[cantidad - 1] < fila.id ? cantidad : posicion(fila.id); // casi siempre al final
+        System.arraycopy(orden, i, orden, i + 1, cantidad - i);
+        orden[i] = fila.id;
+        cantidad++;
+    }
+
+    @Nullable
+    private Fila quitar(String nombreUsuario) {
+        Fila fila = porNombre.remove(nombreUsuario);
+        if (fila == null) return null;
+        porId.remove(fila.id);
+        int i = posicion(fila.id);
+        System.arraycopy(orden, i + 1, orden, i, cantidad - i - 1);
+        cantidad--;
+        return fila;
+    }
+
+    // Cuantos ids son menores a `id` (= donde estaria `id` en `orden`)
+    private int posicion(long id) {
+        int i = Arrays.binarySearch(orden, 0, cantidad, id);
+        return i >= 0 ? i : -(i + 1);
+    }
+
+    private UserList lista(int desde, int limit) {
+        int hasta = (int) Math.min(cantidad, (long) desde + Math.max(0, limit));
+        UserList users = new UserList(Math.max(0, hasta - desde), Math.max(0, hasta - desde) * 12);
+        for (int i = desde; i < hasta; i++) {
+            Fila fila = porId.get(orden[i]);
+            if (fila != null) users.add(fila.id, fila.nombre);
+        }
+        return users;
+    }
+
+    private static User copiar(@Nullable Fila fila) {
+        return fila != null ? new User(fila.id, fila.nombre, fila.hash) : noEncontrado();
+    }
+
+    private static User noEncontrado() {
+        User noEncontrado = new User();
+        noEncontrado.setId(-1);
+        return noEncontrado;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.ejemplo.database;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.example.ejemplo.metricas.Metrics;
+import com.example.ejemplo.modelos.User;
+
+import java.util.concurrent.Future;
+
+/**
+ * `LoginController` es lo que hay entre el boton "Ingresar" y `DBAsync.comprobarUsuarioLocal`.
+ *
+ * - Toques repetidos: un toque que llega menos de `DEBOUNCE_MS` despues del anterior se ignora (un dedo
+ *   que rebota o una prueba automatica no disparan diez consultas).
+ * - Intentos superpuestos: mientras se verifica un login, volver a pedir el mismo (mismo usuario y
+ *   contraseña) no hace nada; la respuesta llega una sola vez. Si se pide otro distinto, queda esperando
+ *   y sale cuando termina el actual (solo el ultimo que se pidio).
+ * - Fallos: cada usuario tiene su cuenta de errores con espera creciente y bloqueo (ver LoginThrottle).
+ *   Mientras un usuario tiene que esperar, sus intentos se rechazan sin tocar la base ni calcular PBKDF2.
+ *
+ * Toda la clase se usa desde el hilo principal; la verificacion corre en `DBAsync`.
+ *
+ * Uso:
+ * LoginController login = new LoginController(this, DBAsync.getInstance(this), this);
+ * login.setListener(...);
+ * btn_ingresar.setOnClickListener(v -> login.login(nombre, contraseña));
+ */
+@MainThread
+public final class LoginController {
+
+    /**
+     * Listener:
+     * - `onSuccess`: usuario y contraseña correctos (el User no trae la contraseña).
+     * - `onFailure`: incorrectos; `waitMs` es cuanto hay que esperar antes de volver a probar (0 = nada).
+     * - `onBlocked`: no se intento porque el usuario todavia tiene que esperar `waitMs`.
+     */
+    public interface Listener {
+        void onSuccess(User user);
+
+        void onFailure(long waitMs);
+
+        void onBlocked(long waitMs);
+    }
+
+    public static final long DEBOUNCE_MS = 300;
+    static final long GUARDAR_DESPUES_MS = 2_000; // los cambios de LoginThrottle se guardan juntos, no en cada intento
+
+    private final DBAsync db;
+    @Nullable private final LifecycleOwner owner;
+    private final LoginThrottle throttle;
+    private final Handler hiloPrincipal = new Handler(Looper.getMainLooper());
+    private final Runnable guardar;
+
+    @Nullable private Listener listener;
+    private long ultimoToque = -DEBOUNCE_MS;
+    @Nullable private Future<User> enCurso;
+    @Nullable private String nombreEnCurso;
+    @Nullable private String passwordEnCurso;
+    @Nullable private String nombrePendiente; // el ultimo intento distinto pedido mientras habia uno en curso
+    @Nullable private String passwordPendiente;
+
+    public LoginController(Context context, DBAsync db, @Nullable LifecycleOwner owner) {
+        this(db, owner, LoginThrottle.getInstance(context));
+    }
+
+    LoginController(DBAsync db, @Nullable LifecycleOwner owner, LoginThrottle throttle) {
+        this.db = db;
+        this.owner = owner;
+        this.throttle = throttle;
+        this.guardar = throttle::save;
+        if (owner != null) {
+            owner.getLifecycle().addObserver((LifecycleEventObserver) (source, event) -> {
+                if (event == Lifecycle.Event.ON_STOP) guardarYa();
+                if (event == Lifecycle.Event.ON_DESTROY) cancel();
+            });
+        }
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    public boolean isRunning() {
+        return enCurso != null;
+    }
+
+    /**
+     * login:
+     * - Pide verificar `nombreUsuario` / `password`. El resultado llega al Listener (o nada, si el toque se
+     *   ignoro por repetido).
+     */
+    public void login(String nombreUsuario, String password) {
+        long ahora = SystemClock.uptimeMillis();
+        if (ahora - ultimoToque < DEBOUNCE_MS) return;
+        ultimoToque = ahora;
+
+        if (enCurso != null) {
+            if (nombreUsuario.equals(nombreEnCurso) && password.equals(passwordEnCurso)) return; // ya se esta verificando
+            nombrePendiente = nombreUsuario;
+            passwordPendiente = password;
+            return;
+        }
+        intentar(nombreUsuario, password);
+    }
+
+    /**
+     * cancel:
+     * - Descarta el intento en curso y el pendiente. Se llama sola al destruirse el owner.
+     */
+    public void cancel() {
+        nombrePendiente = null;
+        passwordPendiente = null;
+        if (enCurso != null) {
+            enCurso.cancel(true);
+            terminar();
+            Metrics.cancelAsync(Metrics.Op.LOGIN);
+        }
+        guardarYa();
+    }
+
+    private void intentar(String nombreUsuario, String password) {
+        long espera = throttle.remainingMs(nombreUsuario);
+        if (espera > 0) {
+            if (listener != null) listener.onBlocked(espera);
+            return;
+        }
+
+        // Desde aca hasta que Principal se dibuja (ver Metrics.Op.LOGIN); los toques ignorados no cuentan
+        Metrics.beginAsync(Metrics.Op.LOGIN);
+        nombreEnCurso = nombreUsuario;
+        passwordEnCurso = password;
+        enCurso = db.comprobarUsuarioLocal(owner, nombreUsuario, password, new DBAsync.Callback<User>() {
+            @Override
+            public void onResult(User user) {
+                terminar();
+                if (user.getId() != -1) {
+                    throttle.recordSuccess(nombreUsuario);
+                    nombrePendiente = null; // ya entro: lo que se toco despues no importa
+                    passwordPendiente = null;
+                    guardarDespues();
+                    if (listener != null) listener.onSuccess(user);
+                    return;
+                }
+                Metrics.cancelAsync(Metrics.Op.LOGIN);
+                long espera = throttle.recordFailure(nombreUsuario);
+                guardarDespues();
+                if (listener != null) listener.onFailure(espera);
+                siguiente();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                DBAsync.Callback.super.onError(error);
+                Metrics.cancelAsync(Metrics.Op.LOGIN);
+                terminar();
+                siguiente();
+            }
+        });
+    }
+
+    private void terminar() {
+        enCurso = null;
+        nombreEnCurso = null;
+        passwordEnCurso = null;
+    }
+
+    private void siguiente() {
+        if (nombrePendiente == null) return;
+        String nombre = nombrePendiente, password = passwordPendiente;
+        nombrePendiente = null;
+        passwordPendiente = null;
+        intentar(nombre, password);
+    }
+
+    private void guardarDespues() {
+        hiloPrincipal.removeCallbacks(guardar);
+        hiloPrincipal.postDelayed(guardar, GUARDAR_DESPUES_MS);
+    }
+
+    private void guardarYa() {
+        hiloPrincipal.removeCallbacks(guardar);
+        throttle.save();
+    }
+}
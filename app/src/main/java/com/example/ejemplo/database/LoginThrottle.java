@@ -0,0 +1,212 @@
+package com.example.ejemplo.database;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * `LoginThrottle` cuenta los logins fallidos de cada nombre de usuario y decide cuanto hay que esperar antes
+ * de dejar probar otra vez.
+ *
+ * - Los primeros `FALLOS_LIBRES` errores no tienen espera (todos nos equivocamos al escribir).
+ * - Despues la espera se duplica con cada error: 1 s, 2 s, 4 s, ... hasta `ESPERA_MAX_MS`.
+ * - Con `FALLOS_BLOQUEO` errores seguidos el usuario queda bloqueado `BLOQUEO_MS`.
+ * - Un login correcto borra los errores de ese usuario; si pasa `OLVIDAR_MS` sin errores nuevos, tambien.
+ *
+ * Se recuerdan como mucho `MAX_USUARIOS` nombres (los usados hace mas tiempo se olvidan primero, pero
+ * nunca uno bloqueado mientras haya otro para olvidar): probar con miles de nombres inventados no llena
+ * la memoria ni sirve para borrar el bloqueo de un usuario real.
+ *
+ * El estado se guarda en SharedPreferences para que cerrar la app no borre un bloqueo, pero de forma
+ * perezosa: se lee la primera vez que hace falta y se escribe cuando alguien llama a `save()` (LoginController
+ * lo hace un rato despues de cada cambio y al salir de la pantalla), no en cada intento.
+ *
+ * Usa la hora del sistema (no la del proceso) para que las esperas sigan corriendo con la app cerrada.
+ * Es segura para usar desde varios hilos a la vez.
+ */
+final class LoginThrottle {
+
+    static final int FALLOS_LIBRES = 3;
+    static final long ESPERA_BASE_MS = 1_000;
+    static final long ESPERA_MAX_MS = 30_000;
+    static final int FALLOS_BLOQUEO = 10;
+    static final long BLOQUEO_MS = 15 * 60_000;
+    static final long OLVIDAR_MS = 60 * 60_000;
+    static final int MAX_USUARIOS = 256;
+
+    private static final String PREFS = "login_intentos";
+
+    private static volatile LoginThrottle instancia;
+
+    static LoginThrottle getInstance(Context context) {
+        LoginThrottle local = instancia;
+        if (local == null) {
+            synchronized (LoginThrottle.class) {
+                local = instancia;
+                if (local == null) {
+                    SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+                    local = new LoginThrottle(prefs, System::currentTimeMillis);
+                    instancia = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    private static final class Fallos {
+        int cantidad;
+        long ultimo;   // hora del ultimo error
+        long hasta;    // hasta cuando hay que esperar (0 = no hay que esperar)
+    }
+
+    @Nullable private final SharedPreferences prefs;
+    private final LongSupplier reloj;
+    private final LinkedHashMap<String, Fallos> porUsuario = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean cargado;
+    private boolean cambiado; // hay cambios sin guardar
+
+    LoginThrottle(@Nullable SharedPreferences prefs, LongSupplier reloj) {
+        this.prefs = prefs;
+        this.reloj = reloj;
+    }
+
+    /**
+     * remainingMs:
+     * - Cuantos milisegundos faltan para que `nombreUsuario` pueda volver a intentar (0 = puede ya).
+     */
+    synchronized long remainingMs(String nombreUsuario) {
+        cargar();
+        Fallos fallos = porUsuario.get(nombreUsuario);
+        if (fallos == null || fallos.hasta == 0) return 0;
+        long ahora = reloj.getAsLong();
+        long falta = fallos.hasta - ahora;
+        if (falta > BLOQUEO_MS) {
+            // La hora del sistema se atraso: la espera no puede ser mas larga que un bloqueo completo
+            fallos.hasta = ahora + BLOQUEO_MS;
+            cambiado = true;
+            return BLOQUEO_MS;
+        }
+        return Math.max(0, falta);
+    }
+
+    /**
+     * recordFailure:
+     * - Anota un login fallido y devuelve cuanto hay que esperar antes del proximo intento.
+     */
+    synchronized long recordFailure(String nombreUsuario) {
+        cargar();
+        long ahora = reloj.getAsLong();
+        Fallos fallos = porUsuario.get(nombreUsuario);
+        if (fallos == null) {
+            fallos = new Fallos();
+            porUsuario.put(nombreUsuario, fallos);
+            recortar(ahora);
+        } else if (ahora - fallos.ultimo > OLVIDAR_MS) {
+            fallos.cantidad = 0;
+        }
+        fallos.cantidad++;
+        fallos.ultimo = ahora;
+        long espera = espera(fallos.cantidad);
+        fallos.hasta = espera > 0 ? ahora + espera : 0;
+        cambiado = true;
+        return espera;
+    }
+
+    /**
+     * recordSuccess:
+     * - Login correcto: se olvidan los errores de `nombreUsuario`.
+     */
+    synchronized void recordSuccess(String nombreUsuario) {
+        cargar();
+        if (porUsuario.remove(nombreUsuario) != null) cambiado = true;
+    }
+
+    static long espera(int fallos) {
+        if (fallos >= FALLOS_BLOQUEO) return BLOQUEO_MS;
+        if (fallos <= FALLOS_LIBRES) return 0;
+        return Math.min(ESPERA_MAX_MS, ESPERA_BASE_MS << (fallos - FALLOS_LIBRES - 1));
+    }
+
+    // Al pasar el maximo se olvida el usado hace mas tiempo que no este bloqueado (o el mas viejo, si todos lo estan)
+    private void recortar(long ahora) {
+        if (porUsuario.size() <= MAX_USUARIOS) return;
+        Iterator<Fallos> it = porUsuario.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().hasta <= ahora) {
+                it.remove();
+                return;
+            }
+        }
+        it = porUsuario.values().iterator();
+        it.next();
+        it.remove();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Guardar / leer
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * save:
+     * - Escribe el estado en SharedPreferences si cambio desde la ultima vez. `apply()` escribe el archivo
+     *   en segundo plano: se puede llamar desde el hilo principal.
+     */
+    synchronized void save() {
+        if (prefs == null || !cambiado) return;
+        SharedPreferences.Editor editor = prefs.edit().clear();
+        for (Map.Entry<String, String> e : estado().entrySet()) {
+            editor.putString(e.getKey(), e.getValue());
+        }
+        editor.apply();
+        cambiado = false;
+    }
+
+    private void cargar() {
+        if (cargado) return;
+        cargado = true;
+        if (prefs != null) restaurar(prefs.getAll());
+    }
+
+    /**
+     * estado / restaurar:
+     * - El estado como "nombre -> cantidad:ultimo:hasta", solo de los usuarios que todavia importan (los
+     *   que ya se olvidarian por tiempo no se guardan).
+     */
+    synchronized Map<String, String> estado() {
+        long ahora = reloj.getAsLong();
+        Map<String, String> estado = new HashMap<>();
+        for (Map.Entry<String, Fallos> e : porUsuario.entrySet()) {
+            Fallos f = e.getValue();
+            if (ahora - f.ultimo > OLVIDAR_MS && f.hasta <= ahora) continue;
+            estado.put(e.getKey(), f.cantidad + ":" + f.ultimo + ":" + f.hasta);
+        }
+        return estado;
+    }
+
+    synchronized void restaurar(Map<String, ?> guardado) {
+        cargado = true;
+        long ahora = reloj.getAsLong();
+        for (Map.Entry<String, ?> e : guardado.entrySet()) {
+            if (!(e.getValue() instanceof String) || porUsuario.containsKey(e.getKey())) continue;
+            String[] partes = ((String) e.getValue()).split(":");
+            if (partes.length != 3) continue;
+            try {
+                Fallos f = new Fallos();
+                f.cantidad = Integer.parseInt(partes[0]);
+                f.ultimo = Long.parseLong(partes[1]);
+                f.hasta = Long.parseLong(partes[2]);
+                porUsuario.put(e.getKey(), f);
+                recortar(ahora);
+            } catch (NumberFormatException ignorado) {
+                // valor roto: ese usuario empieza de cero
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.ejemplo.database;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * `LongHashMap` es un mapa de `long` a objetos que guarda las claves en un `long[]`, sin convertirlas en
+ * objetos `Long` como hace `HashMap<Long, V>` (un objeto de 16 bytes por clave, y otro por cada busqueda).
+ *
+ * - Direccionamiento abierto con sondeo lineal: si el lugar de una clave esta ocupado se prueba el
+ *   siguiente. Las claves y los valores viven en dos arreglos paralelos, sin nodos.
+ * - Al borrar se corren las claves siguientes hacia atras, asi no quedan "lapidas" que alarguen las busquedas.
+ * - Se agranda al llegar a 3/4 de ocupacion.
+ *
+ * No es segura para usar desde varios hilos a la vez (InMemoryUserRepository la usa con un lock).
+ */
+final class LongHashMap<V> {
+
+    private long[] claves;
+    private Object[] valores; // null = lugar libre
+    private int size;
+
+    LongHashMap() {
+        this(16);
+    }
+
+    LongHashMap(int capacidad) {
+        int tamanio = Integer.highestOneBit(Math.max(4, capacidad * 4 / 3) - 1) << 1;
+        claves = new long[tamanio];
+        valores = new Object[tamanio];
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    V get(long clave) {
+        int mascara = claves.length - 1;
+        for (int i = lugar(clave, mascara); valores[i] != null; i = (i + 1) & mascara) {
+            if (claves[i] == clave) return (V) valores[i];
+        }
+        return null;
+    }
+
+    /**
+     * put:
+     * - Guarda `valor` (no null) en `clave` y devuelve el que habia antes, o null.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    V put(long clave, V valor) {
+        if (valor == null) throw new NullPointerException("valor");
+        if ((size + 1) * 4 > claves.length * 3) agrandar();
+        int mascara = claves.length - 1;
+        int i = lugar(clave, mascara);
+        while (valores[i] != null) {
+            if (claves[i] == clave) {
+                V anterior = (V) valores[i];
+                valores[i] = valor;
+                return anterior;
+            }
+            i = (i + 1) & mascara;
+        }
+        claves[i] = clave;
+        valores[i] = valor;
+        size++;
+        return null;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    V remove(long clave) {
+        int mascara = claves.length - 1;
+        int i = lugar(clave, mascara);
+        while (valores[i] != null && claves[i] != clave) i = (i + 1) & mascara;
+        if (valores[i] == null) return null;
+
+        V anterior = (V) valores[i];
+        // Borrado sin lapidas: se corren hacia el hueco las claves que quedarian inalcanzables
+        int hueco = i;
+        for (int j = (i + 1) & mascara; valores[j] != null; j = (j + 1) & mascara) {
+            int ideal = lugar(claves[j], mascara);
+            boolean alcanzable = hueco <= j ? (hueco < ideal && ideal <= j) : (hueco < ideal || ideal <= j);
+            if (!alcanzable) {
+                claves[hueco] = claves[j];
+                valores[hueco] = valores[j];
+                hueco = j;
+            }
+        }
+        valores[hueco] = null;
+        size--;
+        return anterior;
+    }
+
+    void clear() {
+        Arrays.fill(valores, null);
+        size = 0;
+    }
+
+    private void agrandar() {
+        long[] viejasClaves = claves;
+        Object[] viejosValores = valores;
+        claves = new long[viejasClaves.length * 2];
+        valores = new Object[viejosValores.length * 2];
+        int mascara = claves.length - 1;
+        for (int k = 0; k < viejasClaves.length; k++) {
+            if (viejosValores[k] == null) continue;
+            int i = lugar(viejasClaves[k], mascara);
+            while (valores[i] != null) i = (i + 1) & mascara;
+            claves[i] = viejasClaves[k];
+            valores[i] = viejosValores[k];
+        }
+    }
+
+    // Mezcla los bits de la clave: los ids consecutivos no quedan todos pegados en el arreglo
+    private static int lugar(long clave, int mascara) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.ejemplo.database;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * `PasswordHasher` guarda las contraseñas como hash PBKDF2 con "sal" en lugar de texto plano.
+ *
+ * - La sal es aleatoria por usuario: dos usuarios con la misma contraseña tienen hashes distintos.
+ * - PBKDF2 es lento A PROPOSITO (repite el calculo miles de veces) para que probar contraseñas por fuerza
+ *   bruta sea caro. Cuantas veces se repite se calibra la primera vez en cada dispositivo para que
+ *   tarde unos `TARGET_MS`, y se guarda en SharedPreferences.
+ * - Como es lento, NUNCA se llama desde el hilo principal (ver el executor de computo en `DBAsync`).
+ *
+ * Formato guardado en la columna password:
+ *   pbkdf2-sha256$<iteraciones>$<sal en hex>$<hash en hex>
+ *
+ * Un valor sin ese formato es una contraseña vieja en texto plano: `DBHelper.comprobarUsuarioLocal` la
+ * reemplaza por un hash la primera vez que el usuario ingresa bien (migracion "perezosa").
+ */
+public final class PasswordHasher {
+
+    private static final String TAG = "PasswordHasher";
+
+    public static final long TARGET_MS = 100;
+    static final int MIN_ITERACIONES = 10_000;
+    static final int MAX_ITERACIONES = 2_000_000;
+    private static final int ITERACIONES_MUESTRA = 5_000;
+
+    private static final String PREFIJO = "pbkdf2-";
+    private static final String SHA256 = "sha256";
+    private static final String SHA1 = "sha1";
+    private static final int SAL_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    static final String PREF_ITERACIONES = "pbkdf2_iteraciones";
+
+    @Nullable private final SharedPreferences prefs;
+    private final String algoritmo; // el mejor disponible en este dispositivo
+    private final SecureRandom random = new SecureRandom();
+    private volatile int iteraciones; // 0 = todavia no se calibro
+
+    /**
+     * @param prefs donde se guarda la calibracion; null para no guardarla (pruebas).
+     */
+    PasswordHasher(@Nullable SharedPreferences prefs) {
+        this.prefs = prefs;
+        this.algoritmo = disponible(SHA256) ? SHA256 : SHA1; // PBKDF2WithHmacSHA256 existe desde Android 8
+    }
+
+    /**
+     * getIterations:
+     * - Iteraciones que se usan para los hashes nuevos. La primera llamada calibra (tarda ~TARGET_MS).
+     */
+    @WorkerThread
+    public int getIterations() {
+        int actuales = iteraciones;
+        if (actuales == 0) {
+            synchronized (this) {
+                actuales = iteraciones;
+                if (actuales == 0) {
+                    actuales = prefs != null ? prefs.getInt(PREF_ITERACIONES, 0) : 0;
+                    if (actuales == 0) actuales = calibrar();
+                    iteraciones = actuales;
+                }
+            }
+        }
+        return actuales;
+    }
+
+    /**
+     * useIterations:
+     * - Fija las iteraciones sin calibrar. Solo para pruebas y benchmarks.
+     */
+    void useIterations(int fijas) {
+        iteraciones = fijas;
+    }
+
+    /**
+     * hash:
+     * - Devuelve el valor a guardar en la columna password (o null si `password` es null).
+     */
+    @WorkerThread
+    @Nullable
+    public String hash(@Nullable String password) {
+        if (password == null) return null;
+        byte[] sal = new byte[SAL_BYTES];
+        random.nextBytes(sal);
+        int iter = getIterations();
+        byte[] hash = derivar(algoritmo, password, sal, iter);
+        return PREFIJO + algoritmo + "$" + iter + "$" + hex(sal) + "$" + hex(hash);
+    }
+
+    /**
+     * verify:
+     * - true si `password` corresponde al hash `guardado`. Compara en tiempo constante.
+     */
+    @WorkerThread
+    public boolean verify(@Nullable String password, @Nullable String guardado) {
+        Partes partes = Partes.leer(guardado);
+        if (password == null || partes == null) return false;
+        byte[] calculado = derivar(partes.algoritmo, password, partes.sal, partes.iteraciones);
+        return MessageDigest.isEqual(calculado, partes.hash);
+    }
+
+    /**
+     * isHash:
+     * - false si `guardado` es una contraseña en texto plano (fila anterior a los hashes).
+     */
+    public static boolean isHash(@Nullable String guardado) {
+        return Partes.leer(guardado) != null;
+    }
+
+    /**
+     * needsRehash:
+     * - true si el hash se hizo con menos iteraciones o con un algoritmo peor que los actuales. Se
+     *   rehace al ingresar, que es el unico momento en que se conoce la contraseña.
+     */
+    @WorkerThread
+    boolean needsRehash(String guardado) {
+        Partes partes = Partes.leer(guardado);
+        return partes == null || partes.iteraciones < getIterations() || !partes.algoritmo.equals(algoritmo);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Implementacion
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * calibrar:
+     * - Mide cuanto tarda una derivacion corta y calcula cuantas iteraciones entran en TARGET_MS.
+     * - Se toma la mejor de tres mediciones para no calibrar de menos si justo el hilo fue interrumpido.
+     */
+    private int calibrar() {
+        byte[] sal = new byte[SAL_BYTES];
+        long mejor = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long inicio = System.nanoTime();
+            derivar(algoritmo, "calibracion", sal, ITERACIONES_MUESTRA);
+            mejor = Math.min(mejor, System.nanoTime() - inicio);
+        }
+
+        long objetivo = TARGET_MS * 1_000_000L * ITERACIONES_MUESTRA / Math.max(1, mejor);
+        int calibradas = (int) Math.max(MIN_ITERACIONES, Math.min(MAX_ITERACIONES, objetivo / 1_000 * 1_000));
+        if (prefs != null) prefs.edit().putInt(PREF_ITERACIONES, calibradas).apply();
+        Log.i(TAG, "PBKDF2-" + algoritmo + " calibrado: " + calibradas + " iteraciones (~" + TARGET_MS + " ms)");
+        return calibradas;
+    }
+
+    private static byte[] derivar(String algoritmo, String password, byte[] sal, int iteraciones) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), sal, iteraciones, HASH_BITS);
+        try {
+            return fabrica(algoritmo).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 no disponible", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static SecretKeyFactory fabrica(String algoritmo) throws NoSuchAlgorithmException {
+        return SecretKeyFactory.getInstance(SHA256.equals(algoritmo) ? "PBKDF2WithHmacSHA256" : "PBKDF2WithHmacSHA1");
+    }
+
+    private static boolean disponible(String algoritmo) {
+        try {
+            fabrica(algoritmo);
+            return true;
+        } catch (NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Partes:
+     * - Un valor guardado ya separado en sus campos. `leer` devuelve null si no tiene el formato de hash.
+     */
+    private static final class Partes {
+        final String algoritmo;
+        final int iteraciones;
+        final byte[] sal;
+        final byte[] hash;
+
+        private Partes(String algoritmo, int iteraciones, byte[] sal, byte[] hash) {
+            this.algoritmo = algoritmo;
+            this.iteraciones = iteraciones;
+            this.sal = sal;
+            this.hash = hash;
+        }
+
+        @Nullable
+        static Partes leer(@Nullable String guardado) {
+            if (guardado == null || !guardado.startsWith(PREFIJO)) return null;
+            String[] campos = guardado.substring(PREFIJO.length()).split("\\$");
+            if (campos.length != 4) return null;
+            if (!SHA256.equals(campos[0]) && !SHA1.equals(campos[0])) return null;
+            try {
+                int iteraciones = Integer.parseInt(campos[1]);
+                byte[] sal = unhex(campos[2]);
+                byte[] hash = unhex(campos[3]);
+                if (iteraciones <= 0 || sal == null || hash == null) return null;
+                return new Partes(campos[0], iteraciones, sal, hash);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    @Nullable
+    private static byte[] unhex(String texto) {
+        if (texto.isEmpty() || texto.length() % 2 != 0) return null;
+        byte[] bytes = new byte[texto.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int alto = Character.digit(texto.charAt(2 * i), 16);
+            int bajo = Character.digit(texto.charAt(2 * i + 1), 16);
+            if (alto < 0 || bajo < 0) return null;
+            bytes[i] = (byte) ((alto << 4) | bajo);
+        }
+        return bytes;
+    }
+}
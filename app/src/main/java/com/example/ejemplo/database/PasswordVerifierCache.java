@@ -0,0 +1,117 @@
+package com.example.ejemplo.database;
+
+import androidx.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * `PasswordVerifierCache` recuerda por un rato corto los logins que ya se verificaron bien, para no volver
+ * a pagar PBKDF2 (~100 ms) si el mismo usuario vuelve a ingresar enseguida.
+ *
+ * No guarda la contraseña: guarda un HMAC-SHA256 de ella con una clave aleatoria que solo existe en
+ * memoria mientras vive el proceso. Ademas la entrada queda atada al hash guardado en la base: si la
+ * contraseña cambia, el hash cambia y la entrada deja de servir aunque nadie la invalide.
+ *
+ * Es segura para usar desde varios hilos a la vez.
+ */
+final class PasswordVerifierCache {
+
+    static final long DEFAULT_TTL_MS = 60_000;
+    static final int DEFAULT_MAX_SIZE = 32;
+
+    private static final class Entrada {
+        final String guardado;
+        final byte[] huella;
+        final long expiraNanos;
+
+        Entrada(String guardado, byte[] huella, long expiraNanos) {
+            this.guardado = guardado;
+            this.huella = huella;
+            this.expiraNanos = expiraNanos;
+        }
+    }
+
+    private final long ttlNanos;
+    private final int maxSize;
+    private final SecretKeySpec clave;
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+
+    PasswordVerifierCache() {
+        this(DEFAULT_TTL_MS, DEFAULT_MAX_SIZE);
+    }
+
+    PasswordVerifierCache(long ttlMs, int maxSize) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.maxSize = maxSize;
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        this.clave = new SecretKeySpec(bytes, "HmacSHA256");
+    }
+
+    /**
+     * matches:
+     * - true si `nombreUsuario` ya ingreso hace poco con esta misma `password` contra este mismo hash.
+     */
+    boolean matches(String nombreUsuario, String guardado, String password) {
+        Entrada entrada;
+        synchronized (this) {
+            entrada = entradas.get(nombreUsuario);
+            if (entrada == null) return false;
+            if (System.nanoTime() - entrada.expiraNanos > 0) {
+                entradas.remove(nombreUsuario);
+                return false;
+            }
+        }
+        if (!entrada.guardado.equals(guardado)) return false;
+        byte[] huella = huella(nombreUsuario, password);
+        return huella != null && MessageDigest.isEqual(huella, entrada.huella);
+    }
+
+    /**
+     * put:
+     * - Anota un login correcto. Solo se llama despues de verificar la contraseña con PBKDF2.
+     */
+    void put(String nombreUsuario, String guardado, String password) {
+        byte[] huella = huella(nombreUsuario, password);
+        if (huella == null) return;
+        synchronized (this) {
+            entradas.put(nombreUsuario, new Entrada(guardado, huella, System.nanoTime() + ttlNanos));
+            Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+            while (entradas.size() > maxSize && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    synchronized void invalidate(String nombreUsuario) {
+        entradas.remove(nombreUsuario);
+    }
+
+    synchronized void invalidateAll() {
+        entradas.clear();
+    }
+
+    @Nullable
+    private byte[] huella(String nombreUsuario, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(clave);
+            mac.update(nombreUsuario.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            return null; // sin HMAC no hay cache: se verifica siempre con PBKDF2
+        }
+    }
+}
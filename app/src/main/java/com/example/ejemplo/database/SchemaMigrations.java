@@ -0,0 +1,336 @@
+package com.example.ejemplo.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.example.ejemplo.database.DBHelper.COL_BORRADO;
+import static com.example.ejemplo.database.DBHelper.COL_ID;
+import static com.example.ejemplo.database.DBHelper.COL_NOMBRE;
+import static com.example.ejemplo.database.DBHelper.COL_PASSWORD;
+import static com.example.ejemplo.database.DBHelper.COL_REV;
+import static com.example.ejemplo.database.DBHelper.TABLE_CAMBIOS;
+import static com.example.ejemplo.database.DBHelper.TABLE_SYNC;
+import static com.example.ejemplo.database.DBHelper.TABLE_USUARIO;
+import static com.example.ejemplo.database.DBHelper.TABLE_USUARIO_FTS;
+
+/**
+ * `SchemaMigrations` lleva la lista de cambios de esquema de `ejemplo.db`, en orden.
+ *
+ * La base de `assets/databases` corresponde a la version 1. Cada cambio posterior (un indice nuevo, una
+ * columna nueva, etc.) se agrega como una `Migration` con el numero de version siguiente, y se sube
+ * `DBHelper.DATABASE_VERSION` a ese numero. Al abrir la base:
+ * - Instalacion nueva (se acaba de copiar el asset): se aplican todas, de la 2 en adelante.
+ * - Actualizacion: se aplican solo las que faltan, una por una y en orden.
+ *
+ * Cada migracion corre dentro de su propia transaccion (anidada en la que abre SQLiteAssetHelper): si una
+ * falla, no queda nada a medias. El tiempo de cada una se registra en el Logcat.
+ *
+ * Para agregar una migracion:
+ * MIGRACIONES.add(new Migration(7, "agrega columna email") {
+ *     void migrate(SQLiteDatabase db) { db.execSQL("ALTER TABLE tabla_usuario ADD COLUMN email TEXT"); }
+ * });
+ */
+final class SchemaMigrations {
+
+    private static final String TAG = "SchemaMigrations";
+
+    // "Ahora" dentro de un trigger, en ms desde 1970 (como System.currentTimeMillis)
+    private static final String AHORA = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    /** Version del esquema que trae el archivo de assets. */
+    static final int ASSET_VERSION = 1;
+
+    /**
+     * Migration:
+     * - Un paso de esquema: lleva la base de `version - 1` a `version`.
+     */
+    abstract static class Migration {
+        final int version;
+        final String descripcion;
+
+        Migration(int version, String descripcion) {
+            this.version = version;
+            this.descripcion = descripcion;
+        }
+
+        abstract void migrate(SQLiteDatabase db);
+    }
+
+    private static final List<Migration> MIGRACIONES = new ArrayList<>();
+
+    static {
+        /*
+         * 2: indice unico sobre nombre_usuario.
+         * - Todas las busquedas filtran por nombre: sin indice SQLite recorre la tabla entera (O(n));
+         *   con indice es una busqueda en un arbol (O(log n)).
+         * - Al ser UNICO tambien permite insertar en lote con "INSERT OR IGNORE" (ver addUsers).
+         * - Si la base ya tenia duplicados (por ejemplo varios "admin") no se borra ninguno: el de id mas chico
+         *   conserva el nombre y los demas pasan a llamarse "nombre#id" (quedan en el log). Si aun asi queda
+         *   un nombre repetido, crear el indice falla y la migracion entera se deshace.
+         * - Los nombres NULL no se tocan: el indice unico permite cualquier cantidad.
+         */
+        MIGRACIONES.add(new Migration(2, "indice unico sobre " + COL_NOMBRE) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                String repetidos = " FROM " + TABLE_USUARIO + " WHERE " + COL_NOMBRE + " IS NOT NULL AND " + COL_ID
+                        + " NOT IN (SELECT MIN(" + COL_ID + ") FROM " + TABLE_USUARIO + " WHERE " + COL_NOMBRE
+                        + " IS NOT NULL GROUP BY " + COL_NOMBRE + ")";
+                try (Cursor c = db.rawQuery("SELECT " + COL_ID + ", " + COL_NOMBRE + repetidos, null)) {
+                    while (c.moveToNext()) {
+                        Log.w(TAG, "Nombre repetido: el usuario " + c.getLong(0) + " (\"" + c.getString(1)
+                                + "\") pasa a llamarse \"" + c.getString(1) + "#" + c.getLong(0) + "\"");
+                    }
+                }
+                db.execSQL("UPDATE " + TABLE_USUARIO + " SET " + COL_NOMBRE + " = " + COL_NOMBRE + " || '#' || " + COL_ID
+                        + " WHERE " + COL_ID + " IN (SELECT " + COL_ID + repetidos + ")");
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_usuario_nombre ON "
+                        + TABLE_USUARIO + "(" + COL_NOMBRE + ")");
+            }
+        });
+
+        /*
+         * 3: indice de texto completo para buscar usuarios mientras se escribe (ver UserSearch).
+         * - FTS4 "de contenido externo": el indice no guarda otra copia de los nombres, apunta a las filas de
+         *   tabla_usuario por su id (docid = id_usuario).
+         * - prefix="1,2,3" guarda ademas los prefijos de 1 a 3 letras: las primeras teclas (las busquedas
+         *   con mas resultados) no tienen que recorrer todo el indice.
+         * - Los triggers lo mantienen sincronizado con cada INSERT, UPDATE y DELETE sobre la tabla, hagalo
+         *   quien lo haga. El borrado va ANTES del cambio porque FTS necesita el nombre viejo para sacarlo.
+         * - 'rebuild' indexa los usuarios que ya estaban.
+         */
+        MIGRACIONES.add(new Migration(3, "indice de busqueda " + TABLE_USUARIO_FTS) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_USUARIO_FTS + " USING fts4("
+                        + "content=\"" + TABLE_USUARIO + "\", " + COL_NOMBRE + ", prefix=\"1,2,3\", tokenize=unicode61)");
+
+                String borrar = "DELETE FROM " + TABLE_USUARIO_FTS + " WHERE docid = old." + COL_ID + ";";
+                String insertar = "INSERT INTO " + TABLE_USUARIO_FTS + "(docid, " + COL_NOMBRE + ") VALUES (new."
+                        + COL_ID + ", new." + COL_NOMBRE + ");";
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_USUARIO_FTS + "_ai AFTER INSERT ON "
+                        + TABLE_USUARIO + " BEGIN " + insertar + " END");
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_USUARIO_FTS + "_bd BEFORE DELETE ON "
+                        + TABLE_USUARIO + " BEGIN " + borrar + " END");
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_USUARIO_FTS + "_bu BEFORE UPDATE OF " + COL_NOMBRE
+                        + " ON " + TABLE_USUARIO + " BEGIN " + borrar + " END");
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_USUARIO_FTS + "_au AFTER UPDATE OF " + COL_NOMBRE
+                        + " ON " + TABLE_USUARIO + " BEGIN " + insertar + " END");
+
+                db.execSQL("INSERT INTO " + TABLE_USUARIO_FTS + "(" + TABLE_USUARIO_FTS + ") VALUES ('rebuild')");
+            }
+        });
+
+        /*
+         * 4: registro de cambios para sincronizar con el directorio remoto (ver UserSync).
+         * - `rev_remota`: la revision del servidor que tiene cada fila (0 = nunca vino del servidor).
+         * - `usuario_cambios`: UNA fila por usuario cambiado aca y todavia no enviado. "INSERT OR REPLACE"
+         *   sobre el nombre (unico) deja solo el ultimo estado y le da un `seq` nuevo (el orden de envio).
+         *   `rev_base` es la revision del servidor sobre la que se hizo el cambio: si se cambia dos veces
+         *   antes de enviar, se conserva la primera (la mas alta que se conocia).
+         * - Los triggers anotan cada escritura, la haga quien la haga. Cambiar solo `rev_remota` no es un
+         *   cambio del usuario: el trigger de UPDATE mira solo nombre y contraseña.
+         * - `sync_estado` guarda la marca: hasta que revision del servidor ya se aplico.
+         * - Los usuarios que ya estaban quedan anotados como pendientes (el servidor todavia no los tiene).
+         */
+        MIGRACIONES.add(new Migration(4, "registro de cambios " + TABLE_CAMBIOS) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                db.execSQL("ALTER TABLE " + TABLE_USUARIO + " ADD COLUMN " + COL_REV + " INTEGER NOT NULL DEFAULT 0");
+                db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CAMBIOS + " (seq INTEGER PRIMARY KEY AUTOINCREMENT, "
+                        + COL_NOMBRE + " TEXT NOT NULL UNIQUE, borrado INTEGER NOT NULL, rev_base INTEGER NOT NULL, "
+                        + "modificado INTEGER NOT NULL)");
+                db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_SYNC + " (clave TEXT PRIMARY KEY, valor INTEGER NOT NULL)");
+
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_CAMBIOS + "_ai AFTER INSERT ON " + TABLE_USUARIO
+                        + " BEGIN " + anotar("new", 0) + " END");
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_CAMBIOS + "_au AFTER UPDATE OF " + COL_NOMBRE + ", "
+                        + COL_PASSWORD + " ON " + TABLE_USUARIO + " BEGIN " + anotar("new", 0) + " END");
+                // Renombrar es borrar el nombre viejo (para el servidor son dos usuarios distintos)
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_CAMBIOS + "_an AFTER UPDATE OF " + COL_NOMBRE
+                        + " ON " + TABLE_USUARIO + " WHEN old." + COL_NOMBRE + " <> new." + COL_NOMBRE
+                        + " BEGIN " + anotar("old", 1) + " END");
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_CAMBIOS + "_ad AFTER DELETE ON " + TABLE_USUARIO
+                        + " BEGIN " + anotar("old", 1) + " END");
+
+                db.execSQL("INSERT OR IGNORE INTO " + TABLE_CAMBIOS + "(" + COL_NOMBRE + ", borrado, rev_base, modificado) "
+                        + "SELECT " + COL_NOMBRE + ", 0, 0, " + AHORA + " FROM " + TABLE_USUARIO
+                        + " WHERE " + COL_NOMBRE + " IS NOT NULL ORDER BY " + COL_ID);
+            }
+        });
+
+        /*
+         * 5: borrado suave (ver DBHelper.setSoftDeletes y StorageMaintenance).
+         * - `borrado_en`: cuando se borro la fila (NULL = viva). Las consultas de la app solo ven las vivas.
+         * - Para la sincronizacion, marcar una fila como borrada ES el borrado: se anota en ese momento. La
+         *   purga posterior (el DELETE de verdad) ya no anota nada.
+         * - Dar de alta un nombre que esta borrado saca primero la fila vieja: el indice unico sobre el
+         *   nombre no sabe de borrados suaves.
+         * - Indice parcial sobre `borrado_en`: la purga busca las borradas hace mucho sin recorrer la tabla.
+         */
+        MIGRACIONES.add(new Migration(5, "borrado suave " + COL_BORRADO) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                db.execSQL("ALTER TABLE " + TABLE_USUARIO + " ADD COLUMN " + COL_BORRADO + " INTEGER");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_USUARIO + "_" + COL_BORRADO + " ON "
+                        + TABLE_USUARIO + "(" + COL_BORRADO + ") WHERE " + COL_BORRADO + " IS NOT NULL");
+
+                db.execSQL("DROP TRIGGER IF EXISTS " + TABLE_CAMBIOS + "_ad");
+                db.execSQL("CREATE TRIGGER " + TABLE_CAMBIOS + "_ad AFTER DELETE ON " + TABLE_USUARIO
+                        + " WHEN old." + COL_BORRADO + " IS NULL BEGIN " + anotar("old", 1) + " END");
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_CAMBIOS + "_as AFTER UPDATE OF " + COL_BORRADO
+                        + " ON " + TABLE_USUARIO + " WHEN old." + COL_BORRADO + " IS NULL AND new." + COL_BORRADO
+                        + " IS NOT NULL BEGIN " + anotar("old", 1) + " END");
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE_USUARIO + "_reusar BEFORE INSERT ON " + TABLE_USUARIO
+                        + " BEGIN DELETE FROM " + TABLE_USUARIO + " WHERE " + COL_NOMBRE + " = new." + COL_NOMBRE
+                        + " AND " + COL_BORRADO + " IS NOT NULL; END");
+            }
+        });
+
+        /*
+         * 6: los triggers del registro de cambios ya no usan "INSERT OR REPLACE".
+         * - Dentro de un trigger manda la politica de conflicto de la sentencia de afuera: un alta con
+         *   "INSERT OR IGNORE" (addUsers, importar, usuarios de prueba) convertia el REPLACE en IGNORE, y si el
+         *   nombre tenia un borrado pendiente quedaba anotado como borrado aunque el usuario volvio a existir
+         *   (la sincronizacion lo borraba en el servidor).
+         * - Ahora cada trigger inserta una fila nueva con un INSERT comun (calculando `rev_base` con la fila
+         *   anterior, que todavia esta) y despues borra las anteriores de ese nombre. Para que el INSERT no
+         *   choque nunca, el nombre deja de ser UNIQUE (queda un indice comun): sigue habiendo una fila por
+         *   nombre, la mantienen los triggers. Sin UPSERT: el SQLite de Android 7 no lo tiene.
+         * - Se reescribe la tabla conservando `seq` y su secuencia (SqliteSyncStore compara `seq`), y se
+         *   corrigen los nombres que quedaron anotados como borrados pero existen.
+         */
+        MIGRACIONES.add(new Migration(6, "registro de cambios sin OR REPLACE") {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                String[] triggers = {"_ai", "_au", "_an", "_ad", "_as"};
+                for (String t : triggers) db.execSQL("DROP TRIGGER IF EXISTS " + TABLE_CAMBIOS + t);
+
+                String nueva = TABLE_CAMBIOS + "_nueva";
+                db.execSQL("CREATE TABLE " + nueva + " (seq INTEGER PRIMARY KEY AUTOINCREMENT, " + COL_NOMBRE
+                        + " TEXT NOT NULL, borrado INTEGER NOT NULL, rev_base INTEGER NOT NULL, modificado INTEGER NOT NULL)");
+                db.execSQL("INSERT INTO " + nueva + " SELECT seq, " + COL_NOMBRE + ", borrado, rev_base, modificado FROM "
+                        + TABLE_CAMBIOS);
+                // Que los `seq` nuevos sigan siendo mayores que todos los que ya se dieron (tambien los borrados)
+                db.execSQL("DELETE FROM sqlite_sequence WHERE name = '" + nueva + "'");
+                db.execSQL("INSERT INTO sqlite_sequence(name, seq) SELECT '" + nueva + "', seq FROM sqlite_sequence "
+                        + "WHERE name = '" + TABLE_CAMBIOS + "'");
+                db.execSQL("DROP TABLE " + TABLE_CAMBIOS);
+                db.execSQL("ALTER TABLE " + nueva + " RENAME TO " + TABLE_CAMBIOS);
+                db.execSQL("CREATE INDEX idx_" + TABLE_CAMBIOS + "_" + COL_NOMBRE + " ON " + TABLE_CAMBIOS + "("
+                        + COL_NOMBRE + ")");
+
+                db.execSQL("CREATE TRIGGER " + TABLE_CAMBIOS + "_ai AFTER INSERT ON " + TABLE_USUARIO
+                        + " BEGIN " + anotarSinConflicto("new", 0) + " END");
+                // Con un nombre nuevo la revision de la fila era del nombre viejo: el nuevo parte de 0
+                db.execSQL("CREATE TRIGGER " + TABLE_CAMBIOS + "_au AFTER UPDATE OF " + COL_NOMBRE + ", " + COL_PASSWORD
+                        + " ON " + TABLE_USUARIO + " BEGIN " + anotarSinConflicto("new", 0, "CASE WHEN old." + COL_NOMBRE
+                        + " = new." + COL_NOMBRE + " THEN new." + COL_REV + " ELSE 0 END") + " END");
+                db.execSQL("CREATE TRIGGER " + TABLE_CAMBIOS + "_an AFTER UPDATE OF " + COL_NOMBRE + " ON " + TABLE_USUARIO
+                        + " WHEN old." + COL_NOMBRE + " <> new." + COL_NOMBRE
+                        + " BEGIN " + anotarSinConflicto("old", 1) + " UPDATE " + TABLE_USUARIO + " SET " + COL_REV
+                        + " = 0 WHERE " + COL_ID + " = new." + COL_ID + "; END");
+                db.execSQL("CREATE TRIGGER " + TABLE_CAMBIOS + "_ad AFTER DELETE ON " + TABLE_USUARIO
+                        + " WHEN old." + COL_BORRADO + " IS NULL BEGIN " + anotarSinConflicto("old", 1) + " END");
+                db.execSQL("CREATE TRIGGER " + TABLE_CAMBIOS + "_as AFTER UPDATE OF " + COL_BORRADO + " ON " + TABLE_USUARIO
+                        + " WHEN old." + COL_BORRADO + " IS NULL AND new." + COL_BORRADO + " IS NOT NULL"
+                        + " BEGIN " + anotarSinConflicto("old", 1) + " END");
+
+                // Lo que dejo el error: borrados pendientes de usuarios que existen
+                db.execSQL("UPDATE " + TABLE_CAMBIOS + " SET borrado = 0, modificado = " + AHORA + " WHERE borrado = 1 AND "
+                        + COL_NOMBRE + " IN (SELECT " + COL_NOMBRE + " FROM " + TABLE_USUARIO + " WHERE " + COL_BORRADO
+                        + " IS NULL)");
+            }
+        });
+    }
+
+    /**
+     * anotarSinConflicto:
+     * - Sentencias de un trigger (migracion 6 en adelante): anota la fila `fila` ("new" u "old") como
+     *   cambiada o borrada, con un `seq` nuevo, y saca la anotacion anterior de ese nombre.
+     * - `rev` es la revision del servidor sobre la que se hizo el cambio (por defecto la de la fila).
+     * - `rev_base` se conserva de la anotacion anterior (la mas alta), por eso primero se inserta y despues
+     *   se borra. Ninguna de las dos puede chocar con una restriccion: la politica de conflicto de la
+     *   sentencia que disparo el trigger (por ejemplo "INSERT OR IGNORE") no cambia lo que hacen.
+     */
+    private static String anotarSinConflicto(String fila, int borrado) {
+        return anotarSinConflicto(fila, borrado, fila + "." + COL_REV);
+    }
+
+    private static String anotarSinConflicto(String fila, int borrado, String rev) {
+        String nombre = fila + "." + COL_NOMBRE;
+        return "INSERT INTO " + TABLE_CAMBIOS + "(" + COL_NOMBRE + ", borrado, rev_base, modificado) "
+                + "VALUES (" + nombre + ", " + borrado + ", MAX(" + rev
+                + ", COALESCE((SELECT MAX(rev_base) FROM " + TABLE_CAMBIOS + " WHERE " + COL_NOMBRE + " = " + nombre
+                + "), 0)), " + AHORA + "); "
+                + "DELETE FROM " + TABLE_CAMBIOS + " WHERE " + COL_NOMBRE + " = " + nombre + " AND seq < "
+                + "(SELECT MAX(seq) FROM " + TABLE_CAMBIOS + " WHERE " + COL_NOMBRE + " = " + nombre + ");";
+    }
+
+    // Sentencia de un trigger de las migraciones 4 y 5 (reemplazada en la 6, ver anotarSinConflicto)
+    private static String anotar(String fila, int borrado) {
+        return "INSERT OR REPLACE INTO " + TABLE_CAMBIOS + "(" + COL_NOMBRE + ", borrado, rev_base, modificado) "
+                + "VALUES (" + fila + "." + COL_NOMBRE + ", " + borrado + ", MAX(" + fila + "." + COL_REV
+                + ", COALESCE((SELECT rev_base FROM " + TABLE_CAMBIOS + " WHERE " + COL_NOMBRE + " = " + fila
+                + "." + COL_NOMBRE + "), 0)), " + AHORA + ");";
+    }
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * latestVersion:
+     * - La version a la que llevan todas las migraciones registradas.
+     */
+    static int latestVersion() {
+        return MIGRACIONES.isEmpty() ? ASSET_VERSION : MIGRACIONES.get(MIGRACIONES.size() - 1).version;
+    }
+
+    /**
+     * migrate:
+     * - Aplica, en orden, todas las migraciones con version en (desde, hasta].
+     * - Lanza IllegalStateException si falta algun paso intermedio.
+     */
+    static void migrate(SQLiteDatabase db, int desde, int hasta) {
+        List<Migration> pasos = pasos(desde, hasta);
+        long inicioTotal = SystemClock.elapsedRealtime();
+
+        for (Migration m : pasos) {
+            long inicio = SystemClock.elapsedRealtime();
+            db.beginTransaction();
+            try {
+                m.migrate(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            Log.i(TAG, "Migracion " + m.version + " (" + m.descripcion + ") en "
+                    + (SystemClock.elapsedRealtime() - inicio) + " ms");
+        }
+
+        Log.i(TAG, "Esquema " + desde + " -> " + hasta + ": " + pasos.size() + " migraciones en "
+                + (SystemClock.elapsedRealtime() - inicioTotal) + " ms");
+    }
+
+    private static List<Migration> pasos(int desde, int hasta) {
+        List<Migration> pasos = new ArrayList<>();
+        int esperada = desde + 1;
+        for (Migration m : MIGRACIONES) {
+            if (m.version <= desde || m.version > hasta) continue;
+            if (m.version != esperada) {
+                throw new IllegalStateException("Falta la migracion a la version " + esperada);
+            }
+            pasos.add(m);
+            esperada++;
+        }
+        if (esperada != hasta + 1) {
+            throw new IllegalStateException("No hay migraciones de " + desde + " a " + hasta);
+        }
+        return Collections.unmodifiableList(pasos);
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.ejemplo.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.ejemplo.metricas.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.ejemplo.database.DBHelper.COL_ID;
+import static com.example.ejemplo.database.DBHelper.COL_NOMBRE;
+import static com.example.ejemplo.database.DBHelper.COL_PASSWORD;
+import static com.example.ejemplo.database.DBHelper.COL_REV;
+import static com.example.ejemplo.database.DBHelper.TABLE_CAMBIOS;
+import static com.example.ejemplo.database.DBHelper.TABLE_SYNC;
+import static com.example.ejemplo.database.DBHelper.TABLE_USUARIO;
+import static com.example.ejemplo.database.DBHelper.VIVO;
+
+/**
+ * `SqliteSyncStore` es el `SyncStore` de la base de la app (`ejemplo.db`, esquema 4 en adelante).
+ *
+ * - Los cambios locales los anotan los triggers de las migraciones 4 a 6 en `usuario_cambios`, los haga quien los
+ *   haga (DBHelper, una importacion, un login que rehace el hash). Esta clase solo los lee y los borra.
+ * - Aplicar cambios del servidor tambien dispara esos triggers: lo que anotan se borra antes de confirmar
+ *   (todo lo que tenga `seq` mayor al que habia al empezar), asi no se reenvian.
+ * - Despues de confirmar se limpian los caches de DBHelper y se avisa a las pantallas, como en cualquier
+ *   otra escritura.
+ */
+final class SqliteSyncStore implements SyncStore {
+
+    private static final String CLAVE_MARCA = "watermark";
+
+    private static final String SQL_MARCA =
+            "SELECT COALESCE(MAX(valor), 0) FROM " + TABLE_SYNC + " WHERE clave = '" + CLAVE_MARCA + "'";
+    private static final String SQL_GUARDAR_MARCA =
+            "INSERT OR REPLACE INTO " + TABLE_SYNC + "(clave, valor) VALUES ('" + CLAVE_MARCA + "', ?)";
+    private static final String SQL_ULTIMO_SEQ = "SELECT COALESCE(MAX(seq), 0) FROM " + TABLE_CAMBIOS;
+    private static final String SQL_PENDIENTES = "SELECT c.seq, c." + COL_NOMBRE + ", c.borrado, c.rev_base, "
+            + "c.modificado, u." + COL_PASSWORD + " FROM " + TABLE_CAMBIOS + " c LEFT JOIN " + TABLE_USUARIO
+            + " u ON u." + COL_NOMBRE + " = c." + COL_NOMBRE + " AND u." + VIVO;
+    private static final String SQL_PRIMEROS_PENDIENTES = SQL_PENDIENTES + " ORDER BY c.seq LIMIT ?";
+    private static final String SQL_PENDIENTE = SQL_PENDIENTES + " WHERE c." + COL_NOMBRE + " = ?";
+    private static final String SQL_FILA = "SELECT " + COL_ID + ", " + COL_REV + " FROM " + TABLE_USUARIO
+            + " WHERE " + COL_NOMBRE + " = ? AND " + VIVO;
+    private static final String WHERE_NOMBRE_VIVO = COL_NOMBRE + " = ? AND " + VIVO;
+
+    private final DBHelper helper;
+
+    SqliteSyncStore(DBHelper helper) {
+        this.helper = helper;
+    }
+
+    @Override
+    @WorkerThread
+    public long getWatermark() {
+        return DatabaseUtils.longForQuery(helper.getReadableDatabase(), SQL_MARCA, null);
+    }
+
+    @Override
+    @WorkerThread
+    public List<SyncChange> pendingChanges(int limit) {
+        List<SyncChange> cambios = new ArrayList<>(Math.min(limit, 1_024));
+        long inicio = Metrics.begin(Metrics.Op.QUERY);
+        try (Cursor c = helper.getReadableDatabase().rawQuery(SQL_PRIMEROS_PENDIENTES,
+                new String[]{String.valueOf(limit)})) {
+            while (c.moveToNext()) cambios.add(leerPendiente(c));
+        } finally {
+            Metrics.end(Metrics.Op.QUERY, inicio);
+        }
+        return cambios;
+    }
+
+    @Override
+    @WorkerThread
+    public UserSync.SyncResult applyRemote(List<SyncChange> remotos, long watermark, UserSync.ConflictPolicy politica) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        UserChanges.Builder avisos = new UserChanges.Builder();
+        List<String> tocados = new ArrayList<>();
+        int aplicados = 0;
+        int conflictos = 0;
+
+        long inicio = Metrics.begin(Metrics.Op.UPDATE); // toda la pagina cuenta como una medicion
+        db.beginTransactionNonExclusive();
+        try {
+            // Lo que los triggers anoten desde aca es nuestro, no del usuario: se borra al final
+            long antes = DatabaseUtils.longForQuery(db, SQL_ULTIMO_SEQ, null);
+
+            for (SyncChange remoto : remotos) {
+                String nombre = remoto.getNombreUsuario();
+                long[] fila = fila(db, nombre); // {id, rev_remota} o null
+                if (fila != null && fila[1] >= remoto.getRev()) continue; // ya aplicado
+
+                SyncChange local = pendiente(db, nombre);
+                if (local != null && local.seq <= antes) {
+                    if (local.getRev() >= remoto.getRev()) continue; // el cambio local ya partia de este
+                    if (!local.sameContentAs(remoto)) {
+                        conflictos++;
+                        if (politica.keepLocal(local, remoto)) {
+                            // Gana el local: se enviara como si se hubiera hecho sobre la revision del servidor
+                            db.execSQL("UPDATE " + TABLE_CAMBIOS + " SET rev_base = ? WHERE seq = ?",
+                                    new Object[]{remoto.getRev(), local.seq});
+                            continue;
+                        }
+                    }
+                    db.execSQL("DELETE FROM " + TABLE_CAMBIOS + " WHERE seq = ?", new Object[]{local.seq});
+                }
+
+                if (fila == null && remoto.isDeleted()) continue; // ya no estaba: nada que aplicar
+                aplicar(db, remoto, fila, avisos);
+                tocados.add(nombre);
+                aplicados++;
+            }
+
+            db.execSQL("DELETE FROM " + TABLE_CAMBIOS + " WHERE seq > ?", new Object[]{antes});
+            db.execSQL(SQL_GUARDAR_MARCA, new Object[]{watermark});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            Metrics.end(Metrics.Op.UPDATE, inicio);
+        }
+        Metrics.count(Metrics.Counter.ROWS_WRITTEN, aplicados);
+
+        for (String nombre : tocados) helper.invalidate(nombre);
+        helper.getChangeNotifier().publish(avisos.build());
+        return new UserSync.SyncResult(aplicados, 0, conflictos);
+    }
+
+    // Escribe el estado del servidor en la tabla (insert, update o delete segun lo que haya)
+    private static void aplicar(SQLiteDatabase db, SyncChange remoto, @Nullable long[] fila,
+                                UserChanges.Builder avisos) {
+        String[] nombre = {remoto.getNombreUsuario()};
+        if (remoto.isDeleted()) {
+            if (db.delete(TABLE_USUARIO, WHERE_NOMBRE_VIVO, nombre) > 0) {
+                avisos.add(UserChanges.DELETE, fila[0]);
+            }
+            return;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(COL_PASSWORD, remoto.getHash());
+        values.put(COL_REV, remoto.getRev());
+        if (fila != null) {
+            db.update(TABLE_USUARIO, values, WHERE_NOMBRE_VIVO, nombre);
+            avisos.add(UserChanges.UPDATE, fila[0]);
+        } else {
+            values.put(COL_NOMBRE, remoto.getNombreUsuario());
+            long id = db.insert(TABLE_USUARIO, null, values);
+            if (id != -1) avisos.add(UserChanges.INSERT, id);
+        }
+    }
+
+    @Override
+    @WorkerThread
+    public void markPushed(List<SyncChange> locales, long[] revs) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < locales.size(); i++) {
+                SyncChange local = locales.get(i);
+                Object[] args = {revs[i], local.getNombreUsuario()};
+                db.execSQL("DELETE FROM " + TABLE_CAMBIOS + " WHERE seq = ?", new Object[]{local.seq});
+                // Si el usuario volvio a cambiar mientras se enviaba, ese cambio ahora parte de la revision nueva
+                db.execSQL("UPDATE " + TABLE_CAMBIOS + " SET rev_base = ? WHERE " + COL_NOMBRE + " = ?", args);
+                if (!local.isDeleted()) {
+                    db.execSQL("UPDATE " + TABLE_USUARIO + " SET " + COL_REV + " = ? WHERE " + COL_NOMBRE + " = ?", args);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Nullable
+    private static long[] fila(SQLiteDatabase db, String nombre) {
+        try (Cursor c = db.rawQuery(SQL_FILA, new String[]{nombre})) {
+            return c.moveToFirst() ? new long[]{c.getLong(0), c.getLong(1)} : null;
+        }
+    }
+
+    @Nullable
+    private static SyncChange pendiente(SQLiteDatabase db, String nombre) {
+        try (Cursor c = db.rawQuery(SQL_PENDIENTE, new String[]{nombre})) {
+            return c.moveToFirst() ? leerPendiente(c) : null;
+        }
+    }
+
+    // Columnas de SQL_PENDIENTES: seq, nombre, borrado, rev_base, modificado, password
+    private static SyncChange leerPendiente(Cursor c) {
+        return new SyncChange(c.getString(1), c.getString(5), c.getInt(2) != 0, c.getLong(3), c.getLong(4),
+                c.getLong(0));
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.ejemplo.database;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * `SqliteTuning` es un perfil de ajustes de SQLite que `DBHelper` aplica cada vez que abre la base:
+ *
+ * - journal: WAL (las lecturas no bloquean a las escrituras) o el journal clasico.
+ * - synchronous: cuanto espera cada commit a que el disco confirme. NORMAL con WAL puede perder los
+ *   ultimos commits si se corta la luz (nunca corrompe la base); FULL no pierde nada pero cada commit
+ *   cuesta un fsync mas.
+ * - cache_size: cuanta memoria usa SQLite para guardar paginas ya leidas, por conexion.
+ * - mmap_size: cuanto del archivo se lee mapeado en memoria en lugar de copiarlo (menos copias, mas
+ *   espacio de direcciones).
+ * - temp_store: si las tablas temporales (ORDER BY grandes, indices temporales) van a memoria o a disco.
+ * - optimize: `PRAGMA optimize` al cerrar, para que SQLite actualice las estadisticas que usa para
+ *   elegir indices.
+ *
+ * Hay perfiles armados para cada tipo de dispositivo (LOW_MEMORY, BALANCED, HIGH_END, DURABLE) y `AUTO`
+ * elige entre los tres primeros segun la memoria del dispositivo. Cual se usa se configura por build type
+ * (`resValue "string", "sqlite_tuning", "..."` en app/build.gradle) o en tiempo de ejecucion con
+ * `DBHelper.setTuning(...)`. Para armar uno a medida: `new SqliteTuning.Builder(BALANCED).cacheSizeKb(4096).build()`.
+ *
+ * Los objetos son inmutables.
+ */
+public final class SqliteTuning {
+
+    private static final String TAG = "SqliteTuning";
+
+    public enum Synchronous { OFF, NORMAL, FULL }
+
+    public enum TempStore { DEFAULT, FILE, MEMORY }
+
+    public static final SqliteTuning LOW_MEMORY = new Builder("low_memory")
+            .cacheSizeKb(512).mmapSizeBytes(0).tempStore(TempStore.FILE).build();
+    public static final SqliteTuning BALANCED = new Builder("balanced")
+            .cacheSizeKb(2048).mmapSizeBytes(16L << 20).build();
+    public static final SqliteTuning HIGH_END = new Builder("high_end")
+            .cacheSizeKb(8192).mmapSizeBytes(64L << 20).tempStore(TempStore.MEMORY).build();
+    public static final SqliteTuning DURABLE = new Builder("durable")
+            .synchronous(Synchronous.FULL).cacheSizeKb(2048).mmapSizeBytes(0).build();
+
+    /** Nombre que elige el perfil segun el dispositivo (ver forDevice). */
+    public static final String AUTO = "auto";
+
+    // Por debajo de esto (o si Android dice que es de poca memoria) se usa LOW_MEMORY; desde ALTA, HIGH_END
+    static final int MEMORIA_BAJA_MB = 128;
+    static final int MEMORIA_ALTA_MB = 256;
+
+    private final String name;
+    private final boolean wal;
+    private final Synchronous synchronous;
+    private final int cacheSizeKb;
+    private final long mmapSizeBytes;
+    private final TempStore tempStore;
+    private final boolean optimizeOnClose;
+
+    private SqliteTuning(Builder b) {
+        this.name = b.name;
+        this.wal = b.wal;
+        this.synchronous = b.synchronous;
+        this.cacheSizeKb = b.cacheSizeKb;
+        this.mmapSizeBytes = b.mmapSizeBytes;
+        this.tempStore = b.tempStore;
+        this.optimizeOnClose = b.optimizeOnClose;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isWal() {
+        return wal;
+    }
+
+    public Synchronous getSynchronous() {
+        return synchronous;
+    }
+
+    public int getCacheSizeKb() {
+        return cacheSizeKb;
+    }
+
+    public long getMmapSizeBytes() {
+        return mmapSizeBytes;
+    }
+
+    public TempStore getTempStore() {
+        return tempStore;
+    }
+
+    public boolean isOptimizeOnClose() {
+        return optimizeOnClose;
+    }
+
+    /**
+     * forName:
+     * - El perfil con ese nombre ("low_memory", "balanced", "high_end", "durable" o "auto").
+     * - Un nombre que no existe es un error de configuracion: falla en lugar de usar otro en silencio.
+     */
+    public static SqliteTuning forName(String nombre, Context context) {
+        if (AUTO.equals(nombre)) return forDevice(context);
+        return forName(nombre);
+    }
+
+    static SqliteTuning forName(String nombre) {
+        for (SqliteTuning t : new SqliteTuning[]{LOW_MEMORY, BALANCED, HIGH_END, DURABLE}) {
+            if (t.name.equals(nombre)) return t;
+        }
+        throw new IllegalArgumentException("Perfil de SQLite desconocido: " + nombre);
+    }
+
+    /**
+     * forDevice:
+     * - Elige segun la memoria que Android le da a cada app (`getMemoryClass`): los telefonos de gama baja
+     *   no pueden gastar megas en cache de paginas, los de gama alta si.
+     */
+    public static SqliteTuning forDevice(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (am == null) return BALANCED;
+        return forMemoryClass(am.getMemoryClass(), am.isLowRamDevice());
+    }
+
+    static SqliteTuning forMemoryClass(int memoriaMb, boolean pocaMemoria) {
+        if (pocaMemoria || memoriaMb <= MEMORIA_BAJA_MB) return LOW_MEMORY;
+        if (memoriaMb >= MEMORIA_ALTA_MB) return HIGH_END;
+        return BALANCED;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Aplicar
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * pragmas:
+     * - Las sentencias que aplican este perfil a una conexion (sin el journal, que va aparte).
+     * - `mmap_size` devuelve una fila; en Android anterior a 11 execSQL no acepta sentencias que devuelven
+     *   filas, asi que ahi se omite (`conMmap` = false).
+     */
+    List<String> pragmas(boolean conMmap) {
+        List<String> pragmas = new ArrayList<>(4);
+        pragmas.add("PRAGMA synchronous = " + synchronous.name());
+        pragmas.add("PRAGMA cache_size = -" + cacheSizeKb); // negativo = KiB en lugar de paginas
+        if (conMmap) pragmas.add("PRAGMA mmap_size = " + mmapSizeBytes);
+        pragmas.add("PRAGMA temp_store = " + tempStore.name());
+        return pragmas;
+    }
+
+    /**
+     * applyTo:
+     * - Aplica el perfil a la base recien abierta (o a una ya abierta, si se cambio el perfil).
+     * - El journal va primero: al cambiarlo Android reconfigura las conexiones y vuelve a poner su propio
+     *   synchronous, que asi queda pisado por el nuestro.
+     * - Desde Android 11 los ajustes van a TODAS las conexiones (las de lectura en paralelo de WAL tambien,
+     *   y las que se abran despues). Antes solo se puede configurar la conexion principal: la que escribe.
+     * - Si un ajuste falla se avisa en el Logcat y se sigue con los demas: abrir la base es mas importante.
+     */
+    void applyTo(SQLiteDatabase db) {
+        if (!db.isReadOnly()) {
+            if (wal) {
+                db.enableWriteAheadLogging();
+            } else {
+                db.disableWriteAheadLogging();
+            }
+        }
+        boolean todas = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+        for (String pragma : pragmas(todas)) {
+            try {
+                if (todas) {
+                    db.execPerConnectionSQL(pragma, null);
+                } else {
+                    db.execSQL(pragma);
+                }
+            } catch (SQLiteException e) {
+                Log.w(TAG, "No se pudo aplicar: " + pragma, e);
+            }
+        }
+    }
+
+    /**
+     * optimize:
+     * - `PRAGMA optimize` (se llama al cerrar la base si el perfil lo pide). Solo analiza las tablas cuyas
+     *   consultas lo necesitaron desde que se abrio la conexion, asi que suele tardar milisegundos.
+     */
+    void optimize(SQLiteDatabase db) {
+        if (!optimizeOnClose || db.isReadOnly()) return;
+        try (Cursor c = db.rawQuery("PRAGMA optimize", null)) {
+            c.moveToFirst(); // una consulta de Android no se ejecuta hasta que se lee
+        } catch (SQLiteException e) {
+            Log.w(TAG, "PRAGMA optimize fallo", e);
+        }
+    }
+
+    /**
+     * dump:
+     * - Los ajustes que SQLite tiene de verdad en una conexion (pueden no coincidir con el perfil: Android
+     *   o la version de SQLite pueden no aceptar alguno), para el Logcat o un reporte.
+     */
+    static Map<String, String> dump(SQLiteDatabase db) {
+        Map<String, String> ajustes = new LinkedHashMap<>();
+        for (String pragma : new String[]{"journal_mode", "synchronous", "cache_size", "mmap_size", "temp_store",
+                "page_size", "wal_autocheckpoint"}) {
+            String valor;
+            try (Cursor c = db.rawQuery("PRAGMA " + pragma, null)) {
+                valor = c.moveToFirst() ? c.getString(0) : "";
+            } catch (SQLiteException e) {
+                valor = "error: " + e.getMessage();
+            }
+            ajustes.put(pragma, valor);
+        }
+        return ajustes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s{wal=%b, synchronous=%s, cache=%d KiB, mmap=%d MiB, temp_store=%s, optimize=%b}",
+                name, wal, synchronous, cacheSizeKb, mmapSizeBytes >> 20, tempStore, optimizeOnClose);
+    }
+
+    /**
+     * Builder:
+     * - `new Builder(nombre)` arranca con WAL, synchronous NORMAL, 2 MiB de cache, sin mmap y con optimize.
+     * - `new Builder(perfil)` copia otro perfil; en los dos casos se cambia solo lo que se indique.
+     */
+    public static final class Builder {
+        private final String name;
+        private boolean wal = true;
+        private Synchronous synchronous = Synchronous.NORMAL;
+        private int cacheSizeKb = 2048;
+        private long mmapSizeBytes;
+        private TempStore tempStore = TempStore.DEFAULT;
+        private boolean optimizeOnClose = true;
+
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder(SqliteTuning base) {
+            this(base.name + "+");
+            wal = base.wal;
+            synchronous = base.synchronous;
+            cacheSizeKb = base.cacheSizeKb;
+            mmapSizeBytes = base.mmapSizeBytes;
+            tempStore = base.tempStore;
+            optimizeOnClose = base.optimizeOnClose;
+        }
+
+        public Builder wal(boolean wal) {
+            this.wal = wal;
+            return this;
+        }
+
+        public Builder synchronous(Synchronous synchronous) {
+            this.synchronous = synchronous;
+            return this;
+        }
+
+        public Builder cacheSizeKb(int cacheSizeKb) {
+            if (cacheSizeKb < 0) throw new IllegalArgumentException("cacheSizeKb < 0");
+            this.cacheSizeKb = cacheSizeKb;
+            return this;
+        }
+
+        public Builder mmapSizeBytes(long mmapSizeBytes) {
+            if (mmapSizeBytes < 0) throw new IllegalArgumentException("mmapSizeBytes < 0");
+            this.mmapSizeBytes = mmapSizeBytes;
+            return this;
+        }
+
+        public Builder tempStore(TempStore tempStore) {
+            this.tempStore = tempStore;
+            return this;
+        }
+
+        public Builder optimizeOnClose(boolean optimizeOnClose) {
+            this.optimizeOnClose = optimizeOnClose;
+            return this;
+        }
+
+        public SqliteTuning build() {
+            return new SqliteTuning(this);
+        }
+    }
+}
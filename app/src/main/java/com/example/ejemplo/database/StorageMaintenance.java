@@ -0,0 +1,254 @@
+package com.example.ejemplo.database;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.os.CancellationSignal;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.ejemplo.metricas.Metrics;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.ejemplo.database.DBHelper.COL_BORRADO;
+import static com.example.ejemplo.database.DBHelper.COL_ID;
+import static com.example.ejemplo.database.DBHelper.TABLE_USUARIO;
+
+/**
+ * `StorageMaintenance` es la limpieza de fondo de `ejemplo.db`: deja el archivo chico y las estadisticas
+ * del planificador al dia sin bloquear a la app. Pensada para correr cuando el telefono esta sin usar y
+ * cargando (ver MaintenanceJobService), en este orden:
+ *
+ * 1. Purga: borra de verdad las filas con borrado suave (ver DBHelper.setSoftDeletes) mas viejas que la
+ *    retencion, de a `LOTE_PURGA` por transaccion.
+ * 2. Pasa la base a `auto_vacuum = INCREMENTAL`, UNA sola vez: el cambio necesita un VACUUM completo (se
+ *    reescribe todo el archivo). Si la base esta ocupada se deja para la proxima.
+ * 3. Devuelve al sistema las paginas libres con `incremental_vacuum`, de a `PAGINAS_POR_PASO`: cada paso es
+ *    una escritura corta, no un VACUUM que tiene la base tomada hasta reescribirla entera.
+ * 4. ANALYZE: el planificador de SQLite elige indices con estas estadisticas.
+ * 5. Checkpoint del WAL (TRUNCATE): el archivo `-wal` vuelve a tamaño cero.
+ *
+ * Cada paso que escribe pasa por el `Writer` (DBAsync lo manda a su hilo de escritura: las escrituras de la
+ * app se intercalan entre paso y paso). La `CancellationSignal` se revisa entre pasos: cancelar deja la base
+ * bien, con lo que se llego a hacer.
+ *
+ * Uso: StorageMaintenance.Report r = new StorageMaintenance(dbHelper).run();
+ */
+public final class StorageMaintenance {
+
+    private static final String TAG = "StorageMaintenance";
+
+    public static final long DEFAULT_RETENTION_MS = TimeUnit.DAYS.toMillis(7);
+    static final int LOTE_PURGA = 500;
+    static final int PAGINAS_POR_PASO = 256; // 1 MB con paginas de 4 KB
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private static final String SQL_PURGAR = COL_ID + " IN (SELECT " + COL_ID + " FROM " + TABLE_USUARIO
+            + " WHERE " + COL_BORRADO + " < ? LIMIT " + LOTE_PURGA + ")";
+
+    /**
+     * Report:
+     * - Tamaño de la base (en paginas) antes y despues, cuantas estaban libres, cuantas filas se purgaron y
+     *   cuanto tardo todo.
+     */
+    public static final class Report {
+        public final long pageSize;
+        public final long pagesBefore;
+        public final long freePagesBefore;
+        public final long pagesAfter;
+        public final long freePagesAfter;
+        public final int purged;
+        public final boolean converted; // se hizo el VACUUM completo del paso 2
+        public final long durationMs;
+
+        Report(long pageSize, long pagesBefore, long freePagesBefore, long pagesAfter, long freePagesAfter,
+               int purged, boolean converted, long durationMs) {
+            this.pageSize = pageSize;
+            this.pagesBefore = pagesBefore;
+            this.freePagesBefore = freePagesBefore;
+            this.pagesAfter = pagesAfter;
+            this.freePagesAfter = freePagesAfter;
+            this.purged = purged;
+            this.converted = converted;
+            this.durationMs = durationMs;
+        }
+
+        public long bytesBefore() {
+            return pagesBefore * pageSize;
+        }
+
+        public long bytesAfter() {
+            return pagesAfter * pageSize;
+        }
+
+        public long reclaimedBytes() {
+            return bytesBefore() - bytesAfter();
+        }
+
+        /**
+         * freeRatioBefore:
+         * - Que parte del archivo eran paginas libres al empezar (0 a 1): espacio que ocupaba sin guardar nada.
+         */
+        public double freeRatioBefore() {
+            return pagesBefore == 0 ? 0 : (double) freePagesBefore / pagesBefore;
+        }
+
+        @Override
+        public String toString() {
+            return "Report{" + bytesBefore() / 1024 + " KB -> " + bytesAfter() / 1024 + " KB, libres "
+                    + freePagesBefore + " -> " + freePagesAfter + ", purgados=" + purged + ", convertida="
+                    + converted + ", " + durationMs + " ms}";
+        }
+    }
+
+    private final DBHelper helper;
+    private long retencionMs = DEFAULT_RETENTION_MS;
+    @Nullable private CancellationSignal senal;
+    private UserSync.Writer escritor = Callable::call;
+
+    public StorageMaintenance(DBHelper helper) {
+        this.helper = helper;
+    }
+
+    /**
+     * setRetention:
+     * - Cuanto se guarda una fila con borrado suave antes de purgarla (por defecto una semana). 0 purga
+     *   todas las borradas.
+     */
+    public StorageMaintenance setRetention(long retencionMs) {
+        if (retencionMs < 0) throw new IllegalArgumentException("retencion negativa: " + retencionMs);
+        this.retencionMs = retencionMs;
+        return this;
+    }
+
+    public StorageMaintenance setCancellationSignal(@Nullable CancellationSignal senal) {
+        this.senal = senal;
+        return this;
+    }
+
+    StorageMaintenance setWriter(UserSync.Writer escritor) {
+        this.escritor = escritor;
+        return this;
+    }
+
+    /**
+     * run:
+     * - Hace los cinco pasos (ver arriba) y devuelve el reporte.
+     * - Lanza OperationCanceledException si se cancela, e IOException si falla una escritura.
+     */
+    @WorkerThread
+    public Report run() throws IOException {
+        long inicio = SystemClock.elapsedRealtime();
+        long medicion = Metrics.begin(Metrics.Op.MAINTENANCE);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            long pageSize = pragma(db, "page_size");
+            long paginasAntes = pragma(db, "page_count");
+            long libresAntes = pragma(db, "freelist_count");
+
+            // 1. Purga
+            long corte = System.currentTimeMillis() - retencionMs;
+            int purgados = 0;
+            int lote;
+            do {
+                cancelada();
+                lote = escribir(() -> db.delete(TABLE_USUARIO, SQL_PURGAR, new String[]{String.valueOf(corte)}));
+                purgados += lote;
+            } while (lote == LOTE_PURGA);
+            Metrics.count(Metrics.Counter.ROWS_WRITTEN, purgados);
+
+            // 2. auto_vacuum incremental (una sola vez)
+            boolean convertida = false;
+            if (pragma(db, "auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+                cancelada();
+                convertida = escribir(() -> convertir(db));
+            }
+
+            // 3. Paginas libres de a poco (sin el paso 2 no hace nada: la base sigue sin auto_vacuum)
+            long libres = pragma(db, "freelist_count");
+            while (libres > 0 && pragma(db, "auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+                cancelada();
+                escribir(() -> {
+                    consumir(db, "PRAGMA incremental_vacuum(" + PAGINAS_POR_PASO + ")");
+                    return null;
+                });
+                long quedan = pragma(db, "freelist_count");
+                if (quedan >= libres) break; // otra escritura libero paginas mientras tanto: no perseguirla
+                libres = quedan;
+            }
+
+            // 4. Estadisticas del planificador
+            cancelada();
+            escribir(() -> {
+                db.execSQL("ANALYZE");
+                return null;
+            });
+
+            // 5. El WAL vuelve a cero
+            if (db.isWriteAheadLoggingEnabled()) {
+                cancelada();
+                escribir(() -> {
+                    consumir(db, "PRAGMA wal_checkpoint(TRUNCATE)");
+                    return null;
+                });
+            }
+
+            Report r = new Report(pageSize, paginasAntes, libresAntes, pragma(db, "page_count"),
+                    pragma(db, "freelist_count"), purgados, convertida, SystemClock.elapsedRealtime() - inicio);
+            Log.i(TAG, r.toString());
+            return r;
+        } finally {
+            Metrics.end(Metrics.Op.MAINTENANCE, medicion);
+        }
+    }
+
+    // VACUUM no puede correr dentro de una transaccion ni con otra conexion leyendo: si no se puede, la proxima
+    private static boolean convertir(SQLiteDatabase db) {
+        try {
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            return true;
+        } catch (SQLiteException e) {
+            Log.w(TAG, "No se pudo pasar a auto_vacuum incremental, se reintenta la proxima vez", e);
+            return false;
+        }
+    }
+
+    private static long pragma(SQLiteDatabase db, String nombre) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA " + nombre, null);
+    }
+
+    // Estos PRAGMA trabajan mientras se leen sus filas: hay que recorrer el cursor entero
+    private static void consumir(SQLiteDatabase db, String sql) {
+        try (Cursor c = db.rawQuery(sql, null)) {
+            while (c.moveToNext()) {
+                // nada: solo hay que avanzar
+            }
+        }
+    }
+
+    private void cancelada() {
+        if (senal != null) senal.throwIfCanceled();
+    }
+
+    private <T> T escribir(Callable<T> escritura) throws IOException {
+        try {
+            return escritor.write(escritura);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Mantenimiento interrumpido");
+        } catch (Exception e) {
+            throw new IOException("Fallo el mantenimiento de la base", e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.ejemplo.database;
+
+import androidx.annotation.Nullable;
+
+import java.util.Objects;
+
+/**
+ * `SyncChange` es el estado de UN usuario que viaja en la sincronizacion (ver UserSync):
+ *
+ * - `nombreUsuario`: la identidad del usuario entre dispositivos (los ids son locales de cada base).
+ * - `hash`: el hash de su contraseña (nunca texto plano), o null.
+ * - `deleted`: el usuario se borro.
+ * - `rev`: en un cambio del servidor, la revision que le dio el servidor (un contador que solo sube). En un
+ *   cambio local, la ultima revision del servidor que conocia este dispositivo al hacer el cambio: si el
+ *   servidor ya va por otra, alguien mas lo cambio mientras tanto (conflicto).
+ * - `modifiedAt`: cuando se hizo el cambio (ms desde 1970, reloj del que lo hizo). Solo para resolver
+ *   conflictos con LAST_WRITE_WINS.
+ *
+ * Los objetos son inmutables.
+ */
+public final class SyncChange {
+
+    private final String nombreUsuario;
+    @Nullable private final String hash;
+    private final boolean deleted;
+    private final long rev;
+    private final long modifiedAt;
+    final long seq; // posicion en el registro de cambios locales (0 en los del servidor)
+
+    public SyncChange(String nombreUsuario, @Nullable String hash, boolean deleted, long rev, long modifiedAt) {
+        this(nombreUsuario, hash, deleted, rev, modifiedAt, 0);
+    }
+
+    SyncChange(String nombreUsuario, @Nullable String hash, boolean deleted, long rev, long modifiedAt, long seq) {
+        this.nombreUsuario = nombreUsuario;
+        this.hash = deleted ? null : hash;
+        this.deleted = deleted;
+        this.rev = rev;
+        this.modifiedAt = modifiedAt;
+        this.seq = seq;
+    }
+
+    public String getNombreUsuario() {
+        return nombreUsuario;
+    }
+
+    @Nullable
+    public String getHash() {
+        return hash;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public long getRev() {
+        return rev;
+    }
+
+    public long getModifiedAt() {
+        return modifiedAt;
+    }
+
+    /**
+     * withRev:
+     * - El mismo cambio con otra revision.
+     */
+    SyncChange withRev(long nueva) {
+        return new SyncChange(nombreUsuario, hash, deleted, nueva, modifiedAt, seq);
+    }
+
+    /**
+     * sameContentAs:
+     * - true si los dos dejan al usuario igual (los dos lo borran, o le ponen el mismo hash): no hay
+     *   conflicto aunque las revisiones no coincidan.
+     */
+    boolean sameContentAs(SyncChange otro) {
+        return deleted == otro.deleted && Objects.equals(hash, otro.hash);
+    }
+
+    @Override
+    public String toString() {
+        return "SyncChange{" + nombreUsuario + (deleted ? ", borrado" : "") + ", rev=" + rev + "}";
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.ejemplo.database;
+
+import androidx.annotation.WorkerThread;
+
+import java.util.List;
+
+/**
+ * `SyncStore` es el lado local de la sincronizacion (ver UserSync): guarda los usuarios, anota que cambio
+ * aca desde la ultima vez que se envio, y hasta que revision del servidor ya se aplico (la marca).
+ *
+ * Implementaciones: `SqliteSyncStore` (la base de la app, ver `UserSync.forDatabase`). Las escrituras
+ * (`applyRemote`, `markPushed`) son cada una UNA transaccion.
+ */
+public interface SyncStore {
+
+    /**
+     * getWatermark:
+     * - La revision del servidor hasta la que ya se aplico todo (0 = nunca se sincronizo).
+     */
+    @WorkerThread
+    long getWatermark();
+
+    /**
+     * pendingChanges:
+     * - Los cambios locales sin enviar, del mas viejo al mas nuevo, como mucho `limit`. De cada usuario
+     *   solo el ultimo estado.
+     */
+    @WorkerThread
+    List<SyncChange> pendingChanges(int limit);
+
+    /**
+     * applyRemote:
+     * - Aplica cambios del servidor y deja la marca en `watermark`, todo en una transaccion (si se corta a
+     *   la mitad, la proxima vez se vuelve a pedir la misma pagina).
+     * - Si un usuario tiene un cambio local sin enviar y el del servidor es distinto, decide `politica`:
+     *   gana el servidor (el cambio local se descarta) o gana el local (se enviara pisando al servidor).
+     * - Lo que se aplica no queda anotado como cambio local (no se reenvia al servidor). Un cambio que ya
+     *   estaba aplicado (la fila local tiene esa revision o una mas nueva) se saltea.
+     * - Devuelve cuantos se aplicaron (`pulled`) y cuantos conflictos hubo.
+     */
+    @WorkerThread
+    UserSync.SyncResult applyRemote(List<SyncChange> remotos, long watermark, UserSync.ConflictPolicy politica);
+
+    /**
+     * markPushed:
+     * - El servidor acepto `locales[i]` con la revision `revs[i]`: dejan de estar pendientes. Si un usuario
+     *   cambio otra vez despues de armarse el envio, ese cambio nuevo sigue pendiente.
+     */
+    @WorkerThread
+    void markPushed(List<SyncChange> locales, long[] revs);
+}
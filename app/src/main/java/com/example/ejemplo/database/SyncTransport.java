@@ -0,0 +1,52 @@
+package com.example.ejemplo.database;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * `SyncTransport` es el directorio de usuarios remoto, visto desde UserSync. Solo se intercambian cambios:
+ *
+ * - `pull(since, limit)`: los usuarios que cambiaron en el servidor con revision mayor a `since`, ordenados
+ *   por revision, como mucho `limit`. De cada usuario llega solo su ultimo estado (tambien si se borro).
+ * - `push(cambios)`: los cambios de este dispositivo. Cada uno se acepta solo si su `rev` es la revision
+ *   actual de ese usuario en el servidor (0 si el servidor nunca lo tuvo); si no, hay conflicto y se
+ *   devuelve lo que tiene el servidor. El resultado va en el mismo orden que `cambios`.
+ *
+ * La implementacion es la que hable con el servidor de verdad (HTTP, etc.).
+ */
+public interface SyncTransport {
+
+    @WorkerThread
+    List<SyncChange> pull(long since, int limit) throws IOException;
+
+    @WorkerThread
+    List<PushResult> push(List<SyncChange> cambios) throws IOException;
+
+    /**
+     * PushResult:
+     * - `accepted`: el servidor guardo el cambio con la revision `rev`.
+     * - Si no, `current` es lo que tiene el servidor para ese usuario (con su revision).
+     */
+    final class PushResult {
+        public final boolean accepted;
+        public final long rev;
+        @Nullable public final SyncChange current;
+
+        private PushResult(boolean accepted, long rev, @Nullable SyncChange current) {
+            this.accepted = accepted;
+            this.rev = rev;
+            this.current = current;
+        }
+
+        public static PushResult accepted(long rev) {
+            return new PushResult(true, rev, null);
+        }
+
+        public static PushResult conflict(SyncChange current) {
+            return new PushResult(false, current.getRev(), current);
+        }
+    }
+}
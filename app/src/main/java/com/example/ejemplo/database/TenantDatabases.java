@@ -0,0 +1,87 @@
+package com.example.ejemplo.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.regex.Pattern;
+
+/**
+ * `TenantDatabases` da una base de usuarios por organizacion ("tenant") en los dispositivos compartidos.
+ *
+ * - Cada organizacion tiene su archivo (`ejemplo_<tenant>.db`, ver DBHelper.databaseName), copiado de la
+ *   plantilla `assets/databases/ejemplo.db` la primera vez que se abre y migrado como cualquier base. La
+ *   organizacion por defecto (`DEFAULT_TENANT`) es la `ejemplo.db` de siempre.
+ * - Las bases usadas hace poco quedan abiertas (como mucho `DEFAULT_MAX_OPEN`, ver TenantPool): volver a una
+ *   organizacion reciente no reabre el archivo, no vuelve a compilar las sentencias y conserva el cache de
+ *   paginas de SQLite. La usada hace mas tiempo se cierra cuando hace falta lugar.
+ * - Cerrar una base espera a sus escrituras pendientes (corre en el hilo de escritura de DBAsync despues de
+ *   confirmarlas, ver GroupCommitWriter.afterPending) y vacia sus caches de usuarios.
+ *
+ * Desde las pantallas se usa con DBAsync.switchTenant.
+ */
+public final class TenantDatabases {
+
+    private static final String TAG = "TenantDatabases";
+
+    public static final String DEFAULT_TENANT = "default";
+    public static final int DEFAULT_MAX_OPEN = 3;
+    // Va dentro del nombre de un archivo: nada de "/", "..", espacios, etc.
+    private static final Pattern TENANT_VALIDO = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final TenantPool<DBHelper> pool;
+
+    TenantDatabases(Context appContext, GroupCommitWriter escrituras) {
+        pool = new TenantPool<>(tenant -> {
+            checkTenant(tenant); // solo la primera vez: despues ya esta en el pool
+            return DEFAULT_TENANT.equals(tenant) ? DBHelper.getInstance(appContext) : new DBHelper(appContext, tenant);
+        }, helper -> escrituras.afterPending(helper, () -> {
+            Log.i(TAG, "Cerrando la base de " + helper.getTenant());
+            helper.close();
+        }), DEFAULT_MAX_OPEN);
+    }
+
+    /**
+     * get:
+     * - El DBHelper de `tenant`. Crearlo es barato: la copia y la apertura las hace su primera consulta.
+     * - Lanza IllegalArgumentException si `tenant` no es un nombre valido (letras, numeros, "_" y "-").
+     */
+    public DBHelper get(String tenant) {
+        return pool.get(tenant);
+    }
+
+    /**
+     * trim:
+     * - Cierra las bases abiertas menos la de `enUso`.
+     */
+    public void trim(String enUso) {
+        pool.trim(enUso);
+    }
+
+    public void closeAll() {
+        pool.closeAll();
+    }
+
+    /**
+     * setMaxOpen:
+     * - Cuantas bases pueden quedar abiertas (cada una con sus conexiones, su cache de paginas y sus
+     *   sentencias compiladas). Mas es cambiar mas rapido entre organizaciones; menos es menos memoria.
+     */
+    public void setMaxOpen(int maxAbiertas) {
+        pool.setMaxOpen(maxAbiertas);
+    }
+
+    public boolean isOpen(String tenant) {
+        return pool.isOpen(tenant);
+    }
+
+    static void checkTenant(String tenant) {
+        if (tenant == null || !TENANT_VALIDO.matcher(tenant).matches()) {
+            throw new IllegalArgumentException("Organizacion invalida: " + tenant);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pool.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.ejemplo.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * `TenantPool` decide que bases de organizaciones quedan abiertas (ver TenantDatabases): como mucho
+ * `maxAbiertas`, y cuando hace falta lugar se cierra la usada hace mas tiempo (LRU).
+ *
+ * - Hay UN recurso por organizacion para toda la vida del pool: cerrar no lo descarta, y volver a pedirlo
+ *   devuelve el mismo (que se reabre solo). Asi nunca hay dos DBHelper sobre el mismo archivo.
+ * - "Abierta" quiere decir "pedida desde la ultima vez que se cerro": la apertura real (archivo, migraciones)
+ *   la hace la primera consulta.
+ * - Los cierres se hacen fuera del lock, con `cerrar` (TenantDatabases lo deja para despues de las
+ *   escrituras pendientes de esa base).
+ *
+ * Generica en el recurso para poder probarla sin Android.
+ */
+final class TenantPool<T> {
+
+    private final Function<String, T> crear;
+    private final Consumer<T> cerrar;
+    private int maxAbiertas;
+
+    private final Map<String, T> creados = new HashMap<>();
+    private final LinkedHashMap<String, T> abiertas = new LinkedHashMap<>(16, 0.75f, true); // orden de uso
+    private long aciertos;
+    private long fallos;
+    private long desalojos;
+
+    TenantPool(Function<String, T> crear, Consumer<T> cerrar, int maxAbiertas) {
+        this.crear = crear;
+        this.cerrar = cerrar;
+        setMaxOpen(maxAbiertas);
+    }
+
+    /**
+     * get:
+     * - El recurso de `tenant`, que pasa a ser el usado mas recientemente. Si no estaba abierto (fallo del
+     *   pool) y ya hay `maxAbiertas`, se cierra el usado hace mas tiempo.
+     */
+    T get(String tenant) {
+        T recurso;
+        List<T> cerrados;
+        synchronized (this) {
+            recurso = abiertas.get(tenant);
+            if (recurso != null) {
+                aciertos++;
+                return recurso;
+            }
+            fallos++;
+            recurso = creados.get(tenant);
+            if (recurso == null) {
+                recurso = crear.apply(tenant);
+                creados.put(tenant, recurso);
+            }
+            abiertas.put(tenant, recurso);
+            cerrados = recortar(maxAbiertas, tenant);
+        }
+        cerrarTodos(cerrados);
+        return recurso;
+    }
+
+    /**
+     * trim:
+     * - Cierra todas las abiertas menos `conservar` (la que esta en uso). Para cuando falta memoria.
+     */
+    void trim(String conservar) {
+        List<T> cerrados;
+        synchronized (this) {
+            cerrados = recortar(abiertas.containsKey(conservar) ? 1 : 0, conservar);
+        }
+        cerrarTodos(cerrados);
+    }
+
+    /**
+     * closeAll:
+     * - Cierra todas (al terminar la app). Se pueden volver a pedir despues.
+     */
+    void closeAll() {
+        List<T> cerrados;
+        synchronized (this) {
+            cerrados = new ArrayList<>(abiertas.values());
+            abiertas.clear();
+        }
+        cerrarTodos(cerrados);
+    }
+
+    /**
+     * setMaxOpen:
+     * - Cuantas bases pueden estar abiertas a la vez (al menos 1). Si hay mas, se cierran las que sobran
+     *   la proxima vez que se pida una que no esta abierta.
+     */
+    synchronized void setMaxOpen(int maxAbiertas) {
+        if (maxAbiertas < 1) throw new IllegalArgumentException("maxAbiertas tiene que ser mayor a 0: " + maxAbiertas);
+        this.maxAbiertas = maxAbiertas;
+    }
+
+    synchronized boolean isOpen(String tenant) {
+        return abiertas.containsKey(tenant);
+    }
+
+    synchronized int openCount() {
+        return abiertas.size();
+    }
+
+    synchronized long hits() {
+        return aciertos;
+    }
+
+    synchronized long misses() {
+        return fallos;
+    }
+
+    synchronized long evictions() {
+        return desalojos;
+    }
+
+    // Saca (de la mas vieja a la mas nueva) hasta dejar `maximo`, sin tocar `conservar`. Se llama con el lock.
+    private List<T> recortar(int maximo, String conservar) {
+        List<T> cerrados = new ArrayList<>();
+        Iterator<Map.Entry<String, T>> it = abiertas.entrySet().iterator();
+        while (abiertas.size() > maximo && it.hasNext()) {
+            Map.Entry<String, T> e = it.next();
+            if (e.getKey().equals(conservar)) continue;
+            cerrados.add(e.getValue());
+            it.remove();
+            desalojos++;
+        }
+        return cerrados;
+    }
+
+    private void cerrarTodos(List<T> cerrados) {
+        for (T recurso : cerrados) cerrar.accept(recurso);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TenantPool{abiertas=" + abiertas.keySet() + "/" + maxAbiertas + ", aciertos=" + aciertos
+                + ", fallos=" + fallos + ", desalojos=" + desalojos + "}";
+    }
+}
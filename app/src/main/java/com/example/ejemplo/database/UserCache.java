@@ -0,0 +1,266 @@
+package com.example.ejemplo.database;
+
+import androidx.annotation.Nullable;
+
+import com.example.ejemplo.modelos.User;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * `UserCache` guarda en memoria los ultimos usuarios consultados para no ir al disco cada vez.
+ *
+ * - Se busca por nombre de usuario o por id.
+ * - Tiene un tamaño maximo: cuando se llena, descarta el usuario usado hace mas tiempo (LRU,
+ *   "Least Recently Used").
+ * - Tambien recuerda por un rato corto los nombres que NO existen (`id == -1`), asi un login fallido
+ *   repetido no vuelve a consultar la base de datos.
+ * - `DBHelper` la invalida cada vez que escribe un usuario, asi nunca devuelve datos viejos. Una consulta que
+ *   empezo antes de esa escritura tampoco puede volver a guardarlos (ver `generation()`).
+ * - Cuenta aciertos, fallos y descartes (ver `getStats()`) para poder elegir un buen tamaño.
+ *
+ * Es segura para usar desde varios hilos a la vez.
+ */
+public final class UserCache {
+
+    public static final int DEFAULT_MAX_SIZE = 500;
+    public static final long DEFAULT_NEGATIVE_TTL_MS = 5_000;
+    public static final long UNKNOWN = Long.MIN_VALUE; // ver getIdByUsername
+
+    /**
+     * Stats:
+     * - Foto de los contadores del cache en un momento dado.
+     */
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final long negativeHits;
+        public final long evictions;
+        public final int size;
+        public final int maxSize;
+
+        Stats(long hits, long misses, long negativeHits, long evictions, int size, int maxSize) {
+            this.hits = hits;
+            this.misses = misses;
+            this.negativeHits = negativeHits;
+            this.evictions = evictions;
+            this.size = size;
+            this.maxSize = maxSize;
+        }
+
+        public double hitRate() {
+            long total = hits + negativeHits + misses;
+            return total == 0 ? 0 : (double) (hits + negativeHits) / total;
+        }
+
+        @Override
+        public String toString() {
+            return "UserCache{hits=" + hits + ", negativeHits=" + negativeHits + ", misses=" + misses
+                    + ", evictions=" + evictions + ", size=" + size + "/" + maxSize + "}";
+        }
+    }
+
+    /**
+     * Entrada:
+     * - `user` es null cuando la entrada dice "este nombre no existe" (cache negativo).
+     * - `expiraNanos` solo se usa en las entradas negativas.
+     */
+    private static final class Entrada {
+        @Nullable final User user;
+        final long expiraNanos;
+
+        Entrada(@Nullable User user, long expiraNanos) {
+            this.user = user;
+            this.expiraNanos = expiraNanos;
+        }
+    }
+
+    private int maxSize;
+    private final long negativeTtlNanos;
+
+    // `accessOrder = true`: cada get() mueve la entrada al final, asi la primera es siempre la menos usada.
+    private final LinkedHashMap<String, Entrada> porNombre = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<Long, String> nombrePorId = new HashMap<>();
+
+    private long generacion; // sube con cada invalidacion
+    private long hits;
+    private long misses;
+    private long negativeHits;
+    private long evictions;
+
+    public UserCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_NEGATIVE_TTL_MS);
+    }
+
+    public UserCache(int maxSize, long negativeTtlMs) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize debe ser positivo: " + maxSize);
+        this.maxSize = maxSize;
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMs);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Lectura
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * getByUsername:
+     * - Devuelve una copia del usuario guardado, un User con id = -1 si sabemos que no existe,
+     *   o null si el cache no sabe nada (hay que ir a la base de datos).
+     */
+    @Nullable
+    public synchronized User getByUsername(String nombreUsuario) {
+        Entrada entrada = buscar(nombreUsuario);
+        if (entrada == null) return null;
+        if (entrada.user == null) {
+            User noEncontrado = new User();
+            noEncontrado.setId(-1);
+            return noEncontrado;
+        }
+        return copiar(entrada.user);
+    }
+
+    /**
+     * getIdByUsername:
+     * - Como getByUsername pero solo el id, sin copiar nada: el id, -1 si sabemos que no existe, o
+     *   `UNKNOWN` si el cache no sabe nada.
+     */
+    public synchronized long getIdByUsername(String nombreUsuario) {
+        Entrada entrada = buscar(nombreUsuario);
+        if (entrada == null) return UNKNOWN;
+        return entrada.user != null ? entrada.user.getId() : -1;
+    }
+
+    // La entrada de `nombreUsuario` (null si no hay o si era un "no existe" vencido), contando aciertos y fallos
+    @Nullable
+    private Entrada buscar(String nombreUsuario) {
+        Entrada entrada = porNombre.get(nombreUsuario);
+        if (entrada == null) {
+            misses++;
+            return null;
+        }
+        if (entrada.user == null) {
+            if (System.nanoTime() - entrada.expiraNanos > 0) {
+                porNombre.remove(nombreUsuario); // el "no existe" ya vencio
+                misses++;
+                return null;
+            }
+            negativeHits++;
+            return entrada;
+        }
+        hits++;
+        return entrada;
+    }
+
+    /**
+     * getById:
+     * - Igual que getByUsername pero buscando por id. Solo hay cache positivo por id.
+     */
+    @Nullable
+    public synchronized User getById(long id) {
+        String nombre = nombrePorId.get(id);
+        Entrada entrada = nombre != null ? porNombre.get(nombre) : null;
+        if (entrada == null || entrada.user == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copiar(entrada.user);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Escritura
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * put:
+     * - Guarda el resultado de una consulta. Si `user` tiene id = -1 se guarda como "no existe" por
+     *   un tiempo corto.
+     */
+    public synchronized void put(String nombreUsuario, User user) {
+        if (nombreUsuario == null || user == null) return;
+        if (user.getId() == -1) {
+            porNombre.put(nombreUsuario, new Entrada(null, System.nanoTime() + negativeTtlNanos));
+        } else {
+            Entrada anterior = porNombre.put(nombreUsuario, new Entrada(copiar(user), 0));
+            if (anterior != null && anterior.user != null && anterior.user.getId() != user.getId()) {
+                nombrePorId.remove(anterior.user.getId());
+            }
+            nombrePorId.put(user.getId(), nombreUsuario);
+        }
+        recortar();
+    }
+
+    /**
+     * generation:
+     * - Leerla ANTES de consultar la base y pasarsela a `put`. Si mientras tanto se invalido algo (una
+     *   escritura confirmo), lo leido puede ser de antes de esa escritura y `put` lo descarta: sin esto un
+     *   usuario borrado, o su hash viejo, quedaria en el cache hasta que el LRU lo saque.
+     * - Es una sola para todo el cache (una consulta por id no sabe el nombre de antemano). Lo que se pierde
+     *   es solo guardar alguna consulta que corrio al mismo tiempo que una escritura.
+     */
+    public synchronized long generation() {
+        return generacion;
+    }
+
+    /**
+     * put (con generacion):
+     * - Como `put`, salvo que hubo invalidaciones desde `generacion` (ver generation()): ahi no guarda nada.
+     */
+    public synchronized void put(String nombreUsuario, User user, long generacion) {
+        if (generacion != this.generacion) return;
+        put(nombreUsuario, user);
+    }
+
+    /**
+     * invalidate:
+     * - Olvida todo lo que se sabe de `nombreUsuario`. Se llama despues de insertar, actualizar o borrar.
+     */
+    public synchronized void invalidate(String nombreUsuario) {
+        if (nombreUsuario == null) return;
+        generacion++; // aunque no este: puede haber una consulta en curso que lo quiera guardar
+        Entrada entrada = porNombre.remove(nombreUsuario);
+        if (entrada != null && entrada.user != null) {
+            nombrePorId.remove(entrada.user.getId());
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generacion++;
+        porNombre.clear();
+        nombrePorId.clear();
+    }
+
+    /**
+     * resize:
+     * - Cambia el tamaño maximo. Si el nuevo es menor, descarta los usuarios menos usados.
+     */
+    public synchronized void resize(int nuevoMaximo) {
+        if (nuevoMaximo <= 0) throw new IllegalArgumentException("maxSize debe ser positivo: " + nuevoMaximo);
+        maxSize = nuevoMaximo;
+        recortar();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, negativeHits, evictions, porNombre.size(), maxSize);
+    }
+
+    private void recortar() {
+        Iterator<Map.Entry<String, Entrada>> it = porNombre.entrySet().iterator();
+        while (porNombre.size() > maxSize && it.hasNext()) {
+            Entrada masVieja = it.next().getValue();
+            it.remove();
+            if (masVieja.user != null) {
+                nombrePorId.remove(masVieja.user.getId());
+            }
+            evictions++;
+        }
+    }
+
+    // Los User son mutables: entregamos copias para que nadie modifique lo que esta guardado.
+    private static User copiar(User user) {
+        return new User(user.getId(), user.getNombreUsuario(), user.getPassword());
+    }
+}
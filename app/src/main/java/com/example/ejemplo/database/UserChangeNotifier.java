@@ -0,0 +1,158 @@
+package com.example.ejemplo.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * `UserChangeNotifier` avisa a las pantallas que `tabla_usuario` cambio, con los ids de las filas
+ * tocadas (ver `UserChanges`), para que refresquen solo lo necesario en lugar de recargar todo.
+ *
+ * - `DBHelper` publica cada insert/update/delete que hace, desde el hilo que sea.
+ * - Los cambios se juntan y se entregan UNA vez por frame en el hilo principal (`Choreographer`):
+ *   un lote de 1000 inserciones produce un solo aviso, no 1000.
+ * - Los observadores se registran con un `LifecycleOwner`: mientras la pantalla no esta visible
+ *   (antes de ON_START o despues de ON_STOP) los cambios se acumulan y se entregan juntos al volver;
+ *   en ON_DESTROY el observador se quita solo.
+ *
+ * Uso:
+ * DBAsync.getInstance(this).observeUsers(this, cambios -> adapter.refresh());
+ */
+public final class UserChangeNotifier {
+
+    public interface Observer {
+        @MainThread
+        void onUsersChanged(UserChanges cambios);
+    }
+
+    private final Handler hiloPrincipal = new Handler(Looper.getMainLooper());
+    private final Choreographer.FrameCallback alDibujar = frameTimeNanos -> entregar();
+
+    private final Object lock = new Object();
+    private UserChanges.Builder pendientes = new UserChanges.Builder();
+    private boolean programado;
+
+    private final List<Registro> registros = new ArrayList<>(); // solo se toca desde el hilo principal
+
+    // ---------------------------------------------------------------------------------------------
+    // Publicar (cualquier hilo)
+    // ---------------------------------------------------------------------------------------------
+
+    void publish(int tipo, long id) {
+        synchronized (lock) {
+            pendientes.add(tipo, id);
+            programar();
+        }
+    }
+
+    void publish(UserChanges cambios) {
+        if (cambios.isEmpty()) return;
+        synchronized (lock) {
+            pendientes.addAll(cambios);
+            programar();
+        }
+    }
+
+    void publishAll() {
+        synchronized (lock) {
+            pendientes.markAll();
+            programar();
+        }
+    }
+
+    // Se llama con `lock` tomado. El frame callback tiene que pedirse desde el hilo principal.
+    private void programar() {
+        if (programado) return;
+        programado = true;
+        hiloPrincipal.post(() -> Choreographer.getInstance().postFrameCallback(alDibujar));
+    }
+
+    @MainThread
+    private void entregar() {
+        UserChanges cambios;
+        synchronized (lock) {
+            programado = false;
+            if (pendientes.isEmpty()) return;
+            cambios = pendientes.build();
+            pendientes = new UserChanges.Builder();
+        }
+        // Copia: un observador puede quitarse (o agregar otro) mientras recibe el aviso
+        for (Registro registro : new ArrayList<>(registros)) {
+            registro.recibir(cambios);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Observar (hilo principal)
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * observe:
+     * - Registra `observer`. Con `owner` solo recibe avisos mientras la pantalla esta visible (los que
+     *   llegan mientras tanto se le entregan juntos en ON_START) y se quita solo en ON_DESTROY.
+     *   Sin `owner` recibe todos los avisos hasta que se llame a removeObserver.
+     */
+    @MainThread
+    public void observe(@Nullable LifecycleOwner owner, Observer observer) {
+        if (owner != null && owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) return;
+        Registro registro = new Registro(owner, observer);
+        registros.add(registro);
+        if (owner != null) owner.getLifecycle().addObserver(registro);
+    }
+
+    @MainThread
+    public void removeObserver(Observer observer) {
+        for (int i = registros.size() - 1; i >= 0; i--) {
+            Registro registro = registros.get(i);
+            if (registro.observer == observer) {
+                registros.remove(i);
+                if (registro.owner != null) registro.owner.getLifecycle().removeObserver(registro);
+            }
+        }
+    }
+
+    /**
+     * Registro:
+     * - Un observador y su pantalla. Guarda los cambios que llegaron mientras la pantalla no estaba visible.
+     */
+    private final class Registro implements LifecycleEventObserver {
+        @Nullable final LifecycleOwner owner;
+        final Observer observer;
+        @Nullable private UserChanges.Builder atrasados;
+
+        Registro(@Nullable LifecycleOwner owner, Observer observer) {
+            this.owner = owner;
+            this.observer = observer;
+        }
+
+        void recibir(UserChanges cambios) {
+            if (owner == null || owner.getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
+                observer.onUsersChanged(cambios);
+                return;
+            }
+            if (atrasados == null) atrasados = new UserChanges.Builder();
+            atrasados.addAll(cambios);
+        }
+
+        @Override
+        public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_START && atrasados != null) {
+                UserChanges juntos = atrasados.build();
+                atrasados = null;
+                if (!juntos.isEmpty()) observer.onUsersChanged(juntos);
+            } else if (event == Lifecycle.Event.ON_DESTROY) {
+                registros.remove(this);
+                source.getLifecycle().removeObserver(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.ejemplo.database;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * `UserChanges` describe que filas de `tabla_usuario` cambiaron desde el ultimo aviso: los ids insertados,
+ * actualizados y borrados (cada lista ordenada de menor a mayor).
+ *
+ * Varias escrituras seguidas sobre la misma fila se resumen en un solo cambio:
+ * - insertar y despues actualizar   -> insertada
+ * - insertar y despues borrar       -> nada (nadie llego a verla)
+ * - actualizar y despues borrar     -> borrada
+ *
+ * `isAll()` significa "cambio algo, pero no se sabe que filas": hay que recargar todo lo que se muestra.
+ *
+ * Los objetos son inmutables; se arman con `Builder`.
+ */
+public final class UserChanges {
+
+    static final int INSERT = 1;
+    static final int UPDATE = 2;
+    static final int DELETE = 3;
+
+    private static final long[] VACIO = new long[0];
+
+    private final long[] inserted;
+    private final long[] updated;
+    private final long[] deleted;
+    private final boolean all;
+
+    private UserChanges(long[] inserted, long[] updated, long[] deleted, boolean all) {
+        this.inserted = inserted;
+        this.updated = updated;
+        this.deleted = deleted;
+        this.all = all;
+    }
+
+    public long[] getInserted() {
+        return inserted.clone();
+    }
+
+    public long[] getUpdated() {
+        return updated.clone();
+    }
+
+    public long[] getDeleted() {
+        return deleted.clone();
+    }
+
+    public boolean isAll() {
+        return all;
+    }
+
+    public boolean isEmpty() {
+        return !all && inserted.length == 0 && updated.length == 0 && deleted.length == 0;
+    }
+
+    /**
+     * changesCount:
+     * - true si cambio la cantidad de filas (hubo inserciones o borrados, o no se sabe).
+     */
+    public boolean changesCount() {
+        return all || inserted.length > 0 || deleted.length > 0;
+    }
+
+    /**
+     * touches:
+     * - true si la fila `id` se inserto, actualizo o borro (o si no se sabe que filas cambiaron).
+     */
+    public boolean touches(long id) {
+        return all || Arrays.binarySearch(inserted, id) >= 0 || Arrays.binarySearch(updated, id) >= 0
+                || Arrays.binarySearch(deleted, id) >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return all ? "UserChanges{all}" : "UserChanges{insertados=" + inserted.length
+                + ", actualizados=" + updated.length + ", borrados=" + deleted.length + "}";
+    }
+
+    /**
+     * Builder:
+     * - Junta cambios (desde uno o varios hilos si se sincroniza desde afuera) y los resume por fila.
+     */
+    static final class Builder {
+        private final HashMap<Long, Integer> porId = new HashMap<>();
+        private boolean all;
+
+        void add(int tipo, long id) {
+            if (all || id < 0) return;
+            Integer anterior = porId.get(id);
+            int resultado = anterior == null ? tipo : resumir(anterior, tipo);
+            if (resultado == 0) {
+                porId.remove(id);
+            } else {
+                porId.put(id, resultado);
+            }
+        }
+
+        void addAll(UserChanges cambios) {
+            if (cambios.all) {
+                markAll();
+                return;
+            }
+            for (long id : cambios.inserted) add(INSERT, id);
+            for (long id : cambios.updated) add(UPDATE, id);
+            for (long id : cambios.deleted) add(DELETE, id);
+        }
+
+        /**
+         * markAll:
+         * - Para escrituras que tocan filas sin saber cuales (por ejemplo un DELETE con WHERE amplio).
+         */
+        void markAll() {
+            all = true;
+            porId.clear();
+        }
+
+        boolean isEmpty() {
+            return !all && porId.isEmpty();
+        }
+
+        UserChanges build() {
+            if (all) return new UserChanges(VACIO, VACIO, VACIO, true);
+            int[] cantidades = new int[4];
+            for (int tipo : porId.values()) cantidades[tipo]++;
+
+            long[] ins = new long[cantidades[INSERT]];
+            long[] upd = new long[cantidades[UPDATE]];
+            long[] del = new long[cantidades[DELETE]];
+            int i = 0, u = 0, d = 0;
+            for (Map.Entry<Long, Integer> e : porId.entrySet()) {
+                switch (e.getValue()) {
+                    case INSERT: ins[i++] = e.getKey(); break;
+                    case UPDATE: upd[u++] = e.getKey(); break;
+                    default: del[d++] = e.getKey(); break;
+                }
+            }
+            Arrays.sort(ins);
+            Arrays.sort(upd);
+            Arrays.sort(del);
+            return new UserChanges(ins, upd, del, false);
+        }
+
+        // Devuelve el cambio resultante de `anterior` seguido de `nuevo`, o 0 si se anulan.
+        private static int resumir(int anterior, int nuevo) {
+            switch (anterior) {
+                case INSERT:
+                    return nuevo == DELETE ? 0 : INSERT;
+                case UPDATE:
+                    return nuevo == DELETE ? DELETE : UPDATE;
+                case DELETE:
+                default:
+                    return nuevo == INSERT ? UPDATE : DELETE; // borrada y vuelta a insertar: cambio su contenido
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.ejemplo.database;
+
+import androidx.annotation.Nullable;
+
+import com.example.ejemplo.modelos.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * `UserList` es una lista de usuarios (id + nombre, sin contraseña) guardada en arreglos en lugar de un
+ * objeto `User` por fila. Es lo que usa la lista de `Principal`.
+ *
+ * - Los ids van en un `long[]` y TODOS los nombres, uno detras de otro, en un solo `char[]`; `fines[i]`
+ *   dice donde termina el nombre de la fila i (negado con `~` si la fila no tiene nombre). Por fila se
+ *   guardan ~12 bytes mas las letras del nombre, contra ~80 bytes de un `User` con su `String` (objeto,
+ *   encabezados, referencias).
+ * - Se llena desde el cursor copiando las letras directo al arreglo (`DBHelper.leerLista`), sin crear
+ *   un `String` por fila.
+ * - El adaptador muestra el nombre pasandole a `TextView.setText(char[], int, int)` el pedazo del arreglo:
+ *   dibujar una fila no reserva memoria, y el recolector de basura no frena el scroll.
+ *
+ * No es segura para usar desde varios hilos: la llena un hilo y despues se la pasa a otro (como hace
+ * `DBAsync` con los resultados), o la usa siempre el mismo (como `UserPager` en el hilo principal).
+ */
+public final class UserList {
+
+    private long[] ids;
+    private int[] fines;
+    private char[] letras;
+    private int size;
+    private int largo; // letras usadas
+
+    public UserList() {
+        this(16, 16 * 12);
+    }
+
+    public UserList(int filas, int letrasEstimadas) {
+        ids = new long[Math.max(1, filas)];
+        fines = new int[Math.max(1, filas)];
+        letras = new char[Math.max(1, letrasEstimadas)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getId(int i) {
+        comprobar(i);
+        return ids[i];
+    }
+
+    /**
+     * getNameChars / getNameStart / getNameLength:
+     * - El nombre de la fila i es `getNameChars()[getNameStart(i) .. getNameStart(i) + getNameLength(i))`.
+     * - El arreglo es el interno: se lee, no se modifica, y deja de ser valido si la lista cambia.
+     */
+    public char[] getNameChars() {
+        return letras;
+    }
+
+    public int getNameStart(int i) {
+        comprobar(i);
+        return finHasta(i);
+    }
+
+    public int getNameLength(int i) {
+        comprobar(i);
+        return fin(i) - finHasta(i);
+    }
+
+    public boolean hasName(int i) {
+        comprobar(i);
+        return fines[i] >= 0;
+    }
+
+    /**
+     * getName:
+     * - El nombre como `String`. Crea un objeto nuevo: para dibujar filas usar getNameChars.
+     */
+    @Nullable
+    public String getName(int i) {
+        return hasName(i) ? new String(letras, getNameStart(i), getNameLength(i)) : null;
+    }
+
+    /**
+     * sameName:
+     * - true si la fila i de esta lista y la fila j de `otra` tienen el mismo nombre (sin crear Strings).
+     */
+    public boolean sameName(int i, UserList otra, int j) {
+        if (hasName(i) != otra.hasName(j)) return false;
+        int inicio = getNameStart(i), largoNombre = getNameLength(i);
+        int otroInicio = otra.getNameStart(j);
+        if (largoNombre != otra.getNameLength(j)) return false;
+        for (int k = 0; k < largoNombre; k++) {
+            if (letras[inicio + k] != otra.letras[otroInicio + k]) return false;
+        }
+        return true;
+    }
+
+    public boolean containsId(long id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) return true;
+        }
+        return false;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Modificar
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * add:
+     * - Agrega una fila al final copiando `cantidad` letras de `nombre` desde `desde` (null = sin nombre).
+     */
+    public void add(long id, @Nullable char[] nombre, int desde, int cantidad) {
+        asegurarFilas(size + 1);
+        ids[size] = id;
+        if (nombre == null) {
+            fines[size] = ~largo;
+        } else {
+            asegurarLetras(largo + cantidad);
+            System.arraycopy(nombre, desde, letras, largo, cantidad);
+            largo += cantidad;
+            fines[size] = largo;
+        }
+        size++;
+    }
+
+    public void add(long id, @Nullable String nombre) {
+        if (nombre == null) {
+            add(id, null, 0, 0);
+            return;
+        }
+        asegurarLetras(largo + nombre.length());
+        nombre.getChars(0, nombre.length(), letras, largo);
+        asegurarFilas(size + 1);
+        ids[size] = id;
+        largo += nombre.length();
+        fines[size] = largo;
+        size++;
+    }
+
+    public void addAll(UserList otra) {
+        insertar(size, otra);
+    }
+
+    /**
+     * addAllAtStart:
+     * - Agrega las filas de `otra` ANTES de las actuales (al cargar la pagina de arriba).
+     */
+    public void addAllAtStart(UserList otra) {
+        insertar(0, otra);
+    }
+
+    public void removeFirst(int cantidad) {
+        cantidad = Math.min(cantidad, size);
+        if (cantidad == 0) return;
+        int letrasQuitadas = finHasta(cantidad);
+        System.arraycopy(ids, cantidad, ids, 0, size - cantidad);
+        System.arraycopy(letras, letrasQuitadas, letras, 0, largo - letrasQuitadas);
+        for (int i = cantidad; i < size; i++) {
+            fines[i - cantidad] = correr(fines[i], -letrasQuitadas);
+        }
+        size -= cantidad;
+        largo -= letrasQuitadas;
+    }
+
+    public void removeLast(int cantidad) {
+        cantidad = Math.min(cantidad, size);
+        size -= cantidad;
+        largo = finHasta(size);
+    }
+
+    public void clear() {
+        size = 0;
+        largo = 0;
+    }
+
+    public UserList copy() {
+        UserList copia = new UserList(size, largo);
+        copia.addAll(this);
+        return copia;
+    }
+
+    /**
+     * toUsers:
+     * - Convierte a objetos `User` (sin contraseña), para el codigo que todavia trabaja con listas de User.
+     */
+    public List<User> toUsers() {
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(new User(ids[i], getName(i), null));
+        }
+        return users;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Implementacion
+    // ---------------------------------------------------------------------------------------------
+
+    private void insertar(int posicion, UserList otra) {
+        if (otra.size == 0) return;
+        int filas = otra.size, agregadas = otra.largo;
+        int letraPos = finHasta(posicion);
+        asegurarFilas(size + filas);
+        asegurarLetras(largo + agregadas);
+
+        // Se corre lo que queda despues de `posicion` para hacer lugar
+        System.arraycopy(ids, posicion, ids, posicion + filas, size - posicion);
+        System.arraycopy(fines, posicion, fines, posicion + filas, size - posicion);
+        System.arraycopy(letras, letraPos, letras, letraPos + agregadas, largo - letraPos);
+        for (int i = posicion + filas; i < size + filas; i++) {
+            fines[i] = correr(fines[i], agregadas);
+        }
+
+        System.arraycopy(otra.ids, 0, ids, posicion, filas);
+        System.arraycopy(otra.letras, 0, letras, letraPos, agregadas);
+        for (int i = 0; i < filas; i++) {
+            fines[posicion + i] = correr(otra.fines[i], letraPos);
+        }
+        size += filas;
+        largo += agregadas;
+    }
+
+    // Letras usadas por las primeras `filas` filas
+    private int finHasta(int filas) {
+        return filas == 0 ? 0 : fin(filas - 1);
+    }
+
+    private int fin(int i) {
+        return fines[i] >= 0 ? fines[i] : ~fines[i];
+    }
+
+    // Mueve un fin `delta` letras sin perder la marca de "sin nombre"
+    private static int correr(int fin, int delta) {
+        return fin >= 0 ? fin + delta : ~(~fin + delta);
+    }
+
+    private void asegurarFilas(int minimo) {
+        if (minimo <= ids.length) return;
+        int nuevo = Math.max(minimo, ids.length * 2);
+        ids = Arrays.copyOf(ids, nuevo);
+        fines = Arrays.copyOf(fines, nuevo);
+    }
+
+    private void asegurarLetras(int minimo) {
+        if (minimo <= letras.length) return;
+        letras = Arrays.copyOf(letras, Math.max(minimo, letras.length * 2));
+    }
+
+    private void comprobar(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("indice " + i + ", tamaño " + size);
+    }
+}
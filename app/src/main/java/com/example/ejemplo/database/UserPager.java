@@ -0,0 +1,305 @@
+package com.example.ejemplo.database;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.lifecycle.LifecycleOwner;
+
+/**
+ * `UserPager` carga la tabla de usuarios "de a pedazos" (paginas) a medida que el usuario hace scroll.
+ *
+ * En lugar de traer TODA la tabla a una lista en memoria (lo que hace `getAllUsersSafe`), solo mantiene
+ * una "ventana" de usuarios contiguos alrededor de la posicion visible:
+ * - Agranda la ventana de a paginas de tamaño fijo usando paginacion por clave
+ *   (`id_usuario > ultimoId LIMIT n` hacia abajo, `id_usuario < primerId` hacia arriba).
+ * - Se adelanta: carga la pagina siguiente antes de que el usuario llegue al final de la ventana (prefetch).
+ * - Recorta la ventana por el extremo que quedo lejos de la pantalla, asi la memoria usada no depende
+ *   del tamaño de la tabla.
+ *
+ * La ventana es una `UserList` (ids y nombres en arreglos, no un objeto por fila): el adaptador lee de ahi
+ * directamente con `indexOf(position)`. Las posiciones fuera de la ventana dan -1 (el adaptador muestra
+ * un "cargando").
+ * Toda la clase se usa desde el hilo principal; las consultas corren en `DBAsync`.
+ *
+ * Uso:
+ * UserPager pager = new UserPager(DBAsync.getInstance(this), this);
+ * pager.setListener(...);
+ * pager.start();
+ */
+@MainThread
+public final class UserPager {
+
+    /**
+     * Listener:
+     * - `onSizeChanged`: se conoce (o cambio por completo) la cantidad total de usuarios.
+     * - `onPageLoaded`: ya hay datos para las posiciones [start, start + count).
+     */
+    public interface Listener {
+        void onSizeChanged(int size);
+
+        void onPageLoaded(int start, int count);
+    }
+
+    /**
+     * Differ:
+     * - Compara la ventana vieja con la nueva durante un `refresh(...)`. Se ejecuta en un hilo secundario,
+     *   asi el calculo (que puede ser costoso) nunca frena la pantalla.
+     */
+    public interface Differ<D> {
+        @WorkerThread
+        D diff(UserList viejos, UserList nuevos);
+    }
+
+    /**
+     * RefreshCallback:
+     * - Recibe, en el hilo principal, como cambio la lista despues de un `refresh(...)`:
+     *   la ventana empezaba en `oldStart` y ahora empieza en `newStart`, el total paso de `oldSize` a
+     *   `newSize` y `diff` describe los cambios DENTRO de la ventana.
+     */
+    public interface RefreshCallback<D> {
+        void onRefreshed(int oldStart, int oldCount, int oldSize, int newStart, int newCount, int newSize, D diff);
+    }
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int PAGINAS_ADELANTE = 1;   // cuantas paginas antes del borde se dispara la carga
+    private static final int PAGINAS_RESIDENTES = 8; // tamaño maximo de la ventana, en paginas
+
+    private final DBAsync db;
+    @Nullable private final LifecycleOwner owner;
+    private final int pageSize;
+
+    // Ventana de usuarios contiguos ya cargados: ocupa las posiciones [inicio, inicio + ventana.size()).
+    private final UserList ventana = new UserList(DEFAULT_PAGE_SIZE * 2, DEFAULT_PAGE_SIZE * 24);
+    private int inicio;
+
+    private int size;
+    private boolean cargandoAbajo;
+    private boolean cargandoArriba;
+    private boolean refrescando;
+    private int version; // cambia en cada salto o refresh: descarta respuestas de consultas viejas
+    @Nullable private Listener listener;
+
+    public UserPager(DBAsync db, @Nullable LifecycleOwner owner) {
+        this(db, owner, DEFAULT_PAGE_SIZE);
+    }
+
+    public UserPager(DBAsync db, @Nullable LifecycleOwner owner, int pageSize) {
+        this.db = db;
+        this.owner = owner;
+        this.pageSize = pageSize;
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * start:
+     * - Cuenta los usuarios y carga la primera pagina. Lo que tarda en aparecer la primera pantalla no
+     *   depende del tamaño de la tabla.
+     */
+    public void start() {
+        final int ver = reiniciar();
+        db.read(owner, () -> (int) db.getRepository().countUsers(), total -> {
+            if (ver != version) return;
+            size = total;
+            if (listener != null) listener.onSizeChanged(size);
+            saltarA(0);
+        });
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * isAffectedBy:
+     * - true si `cambios` puede cambiar lo que muestra la lista: cambio la cantidad de usuarios o se
+     *   actualizo alguno de los que estan cargados en la ventana.
+     */
+    public boolean isAffectedBy(UserChanges cambios) {
+        if (cambios.changesCount()) return true;
+        for (int i = 0; i < ventana.size(); i++) {
+            if (cambios.touches(ventana.getId(i))) return true;
+        }
+        return false;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * getWindow / indexOf:
+     * - `indexOf` devuelve en que fila de `getWindow()` esta la posicion `position`, o -1 si todavia no
+     *   se cargo. No dispara ninguna consulta: para eso esta `loadAround`.
+     * - La ventana cambia con cada pagina que llega: no guardar indices de un frame para el siguiente.
+     *
+     * Uso: int i = pager.indexOf(position); if (i >= 0) { long id = pager.getWindow().getId(i); ... }
+     */
+    public UserList getWindow() {
+        return ventana;
+    }
+
+    public int indexOf(int position) {
+        int indice = position - inicio;
+        return indice >= 0 && indice < ventana.size() ? indice : -1;
+    }
+
+    /**
+     * loadAround:
+     * - Se llama cada vez que se muestra la posicion `position`.
+     * - Si la posicion esta cerca de un borde de la ventana, carga la pagina siguiente (o anterior).
+     *   Si esta lejos (por ejemplo al arrastrar la barra de scroll), reemplaza la ventana entera.
+     */
+    public void loadAround(int position) {
+        if (size == 0 || refrescando) return;
+        int fin = inicio + ventana.size();
+        int margen = pageSize * PAGINAS_ADELANTE;
+
+        if (ventana.isEmpty() || position < inicio - margen || position >= fin + margen) {
+            saltarA(position);
+            return;
+        }
+        if (position + margen >= fin && fin < size) {
+            cargarAbajo();
+        }
+        if (position - margen < inicio && inicio > 0) {
+            cargarArriba();
+        }
+        recortar(position);
+    }
+
+    /**
+     * refresh:
+     * - Vuelve a leer el total y la ventana visible (por ejemplo despues de insertar o borrar usuarios)
+     *   sin perder la posicion del scroll.
+     * - `differ` compara la ventana vieja con la nueva en segundo plano y `callback` recibe el resultado
+     *   en el hilo principal, ya aplicado al pager.
+     */
+    public <D> void refresh(Differ<D> differ, RefreshCallback<D> callback) {
+        if (ventana.isEmpty()) {
+            start();
+            return;
+        }
+        final int ver = ++version;
+        refrescando = true;
+        cargandoAbajo = false;
+        cargandoArriba = false;
+
+        final UserList viejos = ventana.copy();
+        final int viejoInicio = inicio;
+        final int viejoSize = size;
+        final long primerId = viejos.getId(0);
+
+        db.read(owner, () -> {
+            UserRepository helper = db.getRepository();
+            Refresco<D> r = new Refresco<>();
+            r.size = (int) helper.countUsers();
+            r.inicio = (int) helper.countUsersBefore(primerId);
+            r.usuarios = helper.getUserListPage(primerId - 1, viejos.size());
+            r.diff = differ.diff(viejos, r.usuarios);
+            return r;
+        }, r -> {
+            if (ver != version) return;
+            refrescando = false;
+            ventana.clear();
+            ventana.addAll(r.usuarios);
+            inicio = r.inicio;
+            size = r.size;
+            callback.onRefreshed(viejoInicio, viejos.size(), viejoSize, inicio, ventana.size(), size, r.diff);
+        });
+    }
+
+    private static final class Refresco<D> {
+        int size;
+        int inicio;
+        UserList usuarios;
+        D diff;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Carga de paginas
+    // ---------------------------------------------------------------------------------------------
+
+    private int reiniciar() {
+        ventana.clear();
+        inicio = 0;
+        cargandoAbajo = false;
+        cargandoArriba = false;
+        refrescando = false;
+        return ++version;
+    }
+
+    /**
+     * saltarA:
+     * - Descarta la ventana y carga una nueva centrada en `position`. Como no conocemos el id de esa
+     *   posicion usamos OFFSET una sola vez; desde ahi se sigue por clave.
+     */
+    private void saltarA(int position) {
+        final int ver = reiniciar();
+        final int desde = Math.max(0, Math.min(position, size - 1) - pageSize / 2);
+        inicio = desde;
+        cargandoAbajo = true;
+
+        db.read(owner, () -> db.getRepository().getUserListAtOffset(desde, pageSize * 2), users -> {
+            if (ver != version) return;
+            cargandoAbajo = false;
+            ventana.addAll(users);
+            if (listener != null) listener.onPageLoaded(desde, users.size());
+        });
+    }
+
+    private void cargarAbajo() {
+        if (cargandoAbajo) return;
+        cargandoAbajo = true;
+        final int ver = version;
+        final long ultimoId = ventana.getId(ventana.size() - 1);
+
+        db.read(owner, () -> db.getRepository().getUserListPage(ultimoId, pageSize), users -> {
+            if (ver != version) return;
+            cargandoAbajo = false;
+            // recortar saco el final mientras tanto: la pagina ya no sigue a la ventana
+            if (ventana.isEmpty() || ventana.getId(ventana.size() - 1) != ultimoId) return;
+            int desde = inicio + ventana.size();
+            ventana.addAll(users);
+            if (listener != null) listener.onPageLoaded(desde, users.size());
+        });
+    }
+
+    private void cargarArriba() {
+        if (cargandoArriba) return;
+        cargandoArriba = true;
+        final int ver = version;
+        final long primerId = ventana.getId(0);
+
+        db.read(owner, () -> db.getRepository().getUserListPageBefore(primerId, pageSize), users -> {
+            if (ver != version) return;
+            cargandoArriba = false;
+            // idem con el principio: quedaria un hueco y `inicio` saldria mal
+            if (ventana.isEmpty() || ventana.getId(0) != primerId) return;
+            ventana.addAllAtStart(users);
+            inicio = Math.max(0, inicio - users.size());
+            if (listener != null) listener.onPageLoaded(inicio, users.size());
+        });
+    }
+
+    /**
+     * recortar:
+     * - Si la ventana supera el maximo, se liberan paginas enteras del extremo mas lejano a `position`.
+     * - No cambia `version`: una pagina pedida para el extremo que se recorto se descarta al llegar, porque
+     *   el id desde el que se pidio ya no es el borde de la ventana (ver cargarAbajo / cargarArriba).
+     */
+    private void recortar(int position) {
+        int maximo = pageSize * PAGINAS_RESIDENTES;
+        while (ventana.size() > maximo) {
+            int centro = inicio + ventana.size() / 2;
+            if (position >= centro) {
+                ventana.removeFirst(pageSize);
+                inicio += pageSize;
+            } else {
+                ventana.removeLast(pageSize);
+            }
+        }
+    }
+}
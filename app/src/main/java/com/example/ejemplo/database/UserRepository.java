@@ -0,0 +1,216 @@
+package com.example.ejemplo.database;
+
+import android.os.CancellationSignal;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.ejemplo.modelos.User;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * `UserRepository` es todo lo que las pantallas pueden hacer con los usuarios, sin decir DONDE estan
+ * guardados. `DBAsync`, `UserPager` y `UserSearcher` solo conocen esta interfaz.
+ *
+ * Implementaciones:
+ * - `DBHelper`: la base SQLite de siempre (la que usa la app).
+ * - `InMemoryUserRepository`: todo en memoria, sin disco. Para pruebas y benchmarks de pantallas.
+ * - `CompositeUserRepository`: una capa en memoria con los usuarios mas consultados, delante de otro
+ *   repositorio (normalmente `DBHelper`).
+ *
+ * Para cambiar cual se usa: `DBAsync.getInstance(ctx).setRepository(...)`.
+ *
+ * Todos los metodos son bloqueantes (pueden leer del disco o calcular un hash): se llaman desde hilos
+ * secundarios, como hace DBAsync. Los "no encontrado" se devuelven como un User con id = -1.
+ */
+public interface UserRepository {
+
+    // ---------------------------------------------------------------------------------------------
+    // Lecturas
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * comprobarUsuarioLocal:
+     * - El usuario `nombreUsuario` (sin contraseña) si `password` es la correcta; si no, id = -1.
+     */
+    @WorkerThread
+    User comprobarUsuarioLocal(String nombreUsuario, String password);
+
+    @WorkerThread
+    User getUserByUsername(String nombreUsuario);
+
+    @WorkerThread
+    User getUserById(long id);
+
+    /**
+     * existsByUsername / idByUsername:
+     * - Solo si el nombre existe, o su id (-1 si no existe), sin traer la fila entera: es lo que hay que
+     *   usar para comprobar si un usuario existe, no getUserByUsername.
+     */
+    @WorkerThread
+    boolean existsByUsername(String nombreUsuario);
+
+    @WorkerThread
+    long idByUsername(String nombreUsuario);
+
+    @WorkerThread
+    long countUsers();
+
+    /**
+     * countUsersBefore:
+     * - Cuantos usuarios tienen id menor a `id` (su posicion en la lista ordenada por id).
+     */
+    @WorkerThread
+    long countUsersBefore(long id);
+
+    @WorkerThread
+    UserList getAllUsersList();
+
+    /**
+     * getUserListPage / getUserListPageBefore / getUserListAtOffset:
+     * - Paginas de la lista ordenada por id (ascendente): despues de `afterId`, antes de `beforeId`, o
+     *   desde la posicion `offset`.
+     */
+    @WorkerThread
+    UserList getUserListPage(long afterId, int limit);
+
+    @WorkerThread
+    UserList getUserListPageBefore(long beforeId, int limit);
+
+    @WorkerThread
+    UserList getUserListAtOffset(int offset, int limit);
+
+    /**
+     * searchUsers:
+     * - Usuarios (sin contraseña) con alguna palabra del nombre que empiece con cada palabra de `texto`.
+     * - Si `senal` se cancela, lanza OperationCanceledException.
+     */
+    @WorkerThread
+    List<User> searchUsers(String texto, int offset, int limit, @Nullable CancellationSignal senal);
+
+    /**
+     * forEachUser:
+     * - Le pasa a `visitor` TODOS los usuarios, con el hash de su contraseña, en orden de id y de a uno, sin
+     *   juntarlos en una lista: la memoria que usa no depende del tamaño de la tabla (ver UserTransfer).
+     * - Si `visitor` devuelve false se deja de recorrer. Si `senal` se cancela, lanza OperationCanceledException.
+     */
+    @WorkerThread
+    void forEachUser(UserVisitor visitor, @Nullable CancellationSignal senal);
+
+    // ---------------------------------------------------------------------------------------------
+    // Escrituras
+    // ---------------------------------------------------------------------------------------------
+
+    @WorkerThread
+    long addUser(User user);
+
+    @WorkerThread
+    DBHelper.BatchResult addUsers(Iterator<User> users);
+
+    @WorkerThread
+    boolean updatePassword(String nombreUsuario, String nuevaPassword);
+
+    @WorkerThread
+    int deleteUser(String nombreUsuario);
+
+    /**
+     * Escrituras en dos pasos:
+     * - El hash de la contraseña (lento, ver PasswordHasher) se calcula primero con `getPasswordHasher()`
+     *   o `prepareUsers`, en cualquier hilo; despues la escritura en si recibe el hash ya calculado.
+     *   Asi `DBAsync` no ocupa su hilo de escritura mientras se calcula un PBKDF2.
+     * - Los valores que reciben `addUserHashed` y `updatePasswordHash` TIENEN que ser hashes de ese
+     *   mismo PasswordHasher (o null): se guardan tal cual.
+     */
+    PasswordHasher getPasswordHasher();
+
+    @WorkerThread
+    long addUserHashed(String nombreUsuario, @Nullable String hash);
+
+    @WorkerThread
+    boolean updatePasswordHash(String nombreUsuario, @Nullable String hash);
+
+    /**
+     * prepareUsers:
+     * - Descarta los usuarios que ya existen o vienen vacios y calcula el hash de los demas. El lote
+     *   resultante se inserta con addPreparedUsers.
+     */
+    @WorkerThread
+    PreparedBatch prepareUsers(Iterator<User> users);
+
+    @WorkerThread
+    DBHelper.BatchResult addPreparedUsers(PreparedBatch lote);
+
+    /**
+     * applyWrites:
+     * - Aplica varias escrituras (con el hash ya calculado) en orden y todas juntas: en DBHelper es UNA
+     *   transaccion, un solo commit para todo el grupo en lugar de uno por escritura (ver GroupCommitWriter).
+     * - Devuelve el resultado de cada una, en el mismo orden: el id nuevo para INSERT (-1 si no se inserto),
+     *   1 / 0 para UPDATE y las filas borradas para DELETE.
+     */
+    @WorkerThread
+    long[] applyWrites(List<Write> escrituras);
+
+    /**
+     * getChangeNotifier:
+     * - Donde se publican las filas que cambian con cada escritura (ver UserChangeNotifier).
+     */
+    UserChangeNotifier getChangeNotifier();
+
+    /**
+     * UserVisitor:
+     * - Recibe cada fila de forEachUser. Devuelve false para dejar de recorrer.
+     */
+    interface UserVisitor {
+        boolean visit(long id, @Nullable String nombreUsuario, @Nullable String hash);
+    }
+
+    /**
+     * PreparedBatch:
+     * - Usuarios listos para insertar (con la contraseña ya convertida en hash) y cuantos se descartaron
+     *   antes de calcular nada. Solo lo arman los repositorios (`prepareUsers`).
+     */
+    final class PreparedBatch {
+        final List<User> users;
+        final int skipped;
+
+        PreparedBatch(List<User> users, int skipped) {
+            this.users = users;
+            this.skipped = skipped;
+        }
+
+        public int size() {
+            return users.size();
+        }
+    }
+
+    /**
+     * Write:
+     * - Una escritura de applyWrites: `tipo` es UserChanges.INSERT, UPDATE o DELETE. `hash` es la
+     *   contraseña ya convertida en hash (como en addUserHashed); en DELETE no se usa.
+     */
+    final class Write {
+        final int tipo;
+        final String nombreUsuario;
+        @Nullable final String hash;
+
+        private Write(int tipo, String nombreUsuario, @Nullable String hash) {
+            this.tipo = tipo;
+            this.nombreUsuario = nombreUsuario;
+            this.hash = hash;
+        }
+
+        static Write insert(String nombreUsuario, @Nullable String hash) {
+            return new Write(UserChanges.INSERT, nombreUsuario, hash);
+        }
+
+        static Write update(String nombreUsuario, @Nullable String hash) {
+            return new Write(UserChanges.UPDATE, nombreUsuario, hash);
+        }
+
+        static Write delete(String nombreUsuario) {
+            return new Write(UserChanges.DELETE, nombreUsuario, null);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.ejemplo.database;
+
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+import static com.example.ejemplo.database.DBHelper.COL_ID;
+import static com.example.ejemplo.database.DBHelper.COL_NOMBRE;
+import static com.example.ejemplo.database.DBHelper.TABLE_USUARIO;
+import static com.example.ejemplo.database.DBHelper.TABLE_USUARIO_FTS;
+import static com.example.ejemplo.database.DBHelper.VIVO;
+
+/**
+ * `UserSearch` arma las consultas de busqueda por nombre de usuario sobre el indice de texto completo
+ * (`usuario_fts`, ver la migracion 3 en SchemaMigrations).
+ *
+ * El indice parte cada nombre en palabras ("juan_perez" -> "juan", "perez") y guarda tambien sus prefijos
+ * cortos, asi "ju" encuentra a "juan_perez" sin recorrer la tabla. Lo que escribe el usuario se parte igual
+ * y cada palabra se busca como prefijo ("ju pe" -> `ju* pe*`, tienen que estar las dos).
+ *
+ * Orden de los resultados:
+ * 1. El nombre exacto.
+ * 2. Los nombres que empiezan con el texto buscado.
+ * 3. Los nombres mas cortos (se parecen mas a lo buscado).
+ * 4. Alfabetico.
+ */
+final class UserSearch {
+
+    /** Mas palabras que esto no mejoran la busqueda y solo hacen mas cara la consulta. */
+    static final int MAX_PALABRAS = 8;
+
+    static final String SQL_SEARCH = "SELECT " + COL_ID + ", " + COL_NOMBRE + " FROM " + TABLE_USUARIO
+            + " WHERE " + COL_ID + " IN (SELECT docid FROM " + TABLE_USUARIO_FTS + " WHERE " + TABLE_USUARIO_FTS + " MATCH ?)"
+            + " AND " + VIVO
+            + " ORDER BY lower(" + COL_NOMBRE + ") = ? DESC,"
+            + " substr(lower(" + COL_NOMBRE + "), 1, ?) = ? DESC,"
+            + " length(" + COL_NOMBRE + "), " + COL_NOMBRE
+            + " LIMIT ? OFFSET ?";
+
+    private UserSearch() {
+    }
+
+    /**
+     * normalizar:
+     * - Texto buscado sin espacios en los extremos y en minusculas (para comparar en el ORDER BY).
+     */
+    static String normalizar(@Nullable String texto) {
+        return texto == null ? "" : texto.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * matchQuery:
+     * - Convierte lo que escribio el usuario en una consulta MATCH de prefijos: "Juan Pe" -> "juan* pe*".
+     * - Solo deja letras y numeros, asi nada de lo escrito se interpreta como sintaxis de FTS (comillas,
+     *   guiones, parentesis, etc.).
+     * - Devuelve null si no queda ninguna palabra para buscar.
+     */
+    @Nullable
+    static String matchQuery(@Nullable String texto) {
+        StringBuilder match = new StringBuilder();
+        int palabras = 0;
+        for (String palabra : normalizar(texto).split("[^\\p{L}\\p{N}]+")) {
+            if (palabra.isEmpty()) continue;
+            if (match.length() > 0) match.append(' ');
+            match.append(palabra).append('*');
+            if (++palabras == MAX_PALABRAS) break;
+        }
+        return palabras == 0 ? null : match.toString();
+    }
+
+    /**
+     * args:
+     * - Parametros de SQL_SEARCH, en orden.
+     */
+    static String[] args(String match, String normalizado, int offset, int limit) {
+        return new String[]{match, normalizado, String.valueOf(normalizado.length()), normalizado,
+                String.valueOf(limit), String.valueOf(offset)};
+    }
+}
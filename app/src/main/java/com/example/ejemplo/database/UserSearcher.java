@@ -0,0 +1,186 @@
+package com.example.ejemplo.database;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.example.ejemplo.modelos.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * `UserSearcher` busca usuarios mientras se escribe ("type-ahead"), usando `DBHelper.searchUsers`.
+ *
+ * - Espera `DEBOUNCE_MS` desde la ultima tecla antes de consultar: escribir "juan" rapido hace UNA
+ *   consulta, no cuatro.
+ * - Si llega texto nuevo mientras una consulta esta corriendo, la cancela (SQLite la corta a mitad de
+ *   camino) y descarta su resultado: nunca se muestran resultados de un texto viejo.
+ * - Trae los resultados de a paginas; la siguiente se pide al acercarse al final (`loadAround`).
+ * - Mientras llega la respuesta se siguen mostrando los resultados anteriores (no parpadea la lista).
+ *
+ * Toda la clase se usa desde el hilo principal; las consultas corren en `DBAsync`.
+ *
+ * Uso:
+ * UserSearcher searcher = new UserSearcher(DBAsync.getInstance(this), this);
+ * searcher.setListener(...);
+ * searcher.setQuery(textoEscrito);
+ */
+@MainThread
+public final class UserSearcher {
+
+    /**
+     * Listener:
+     * - `onResultsReplaced`: hay una lista de resultados nueva (otro texto, o el mismo refrescado).
+     * - `onResultsAppended`: llego la pagina siguiente, en las posiciones [start, start + count).
+     */
+    public interface Listener {
+        void onResultsReplaced(String texto);
+
+        void onResultsAppended(int start, int count);
+    }
+
+    public static final long DEBOUNCE_MS = 250;
+
+    private final DBAsync db;
+    @Nullable private final LifecycleOwner owner;
+    private final int pageSize;
+    private final Handler hiloPrincipal = new Handler(Looper.getMainLooper());
+    private final Runnable buscarPendiente = () -> buscar(0);
+
+    private String texto = "";
+    private final ArrayList<User> resultados = new ArrayList<>();
+    private boolean hayMas;
+    @Nullable private Future<List<User>> enCurso;
+    private int version; // cambia con cada texto nuevo: descarta respuestas de consultas viejas
+    @Nullable private Listener listener;
+
+    public UserSearcher(DBAsync db, @Nullable LifecycleOwner owner) {
+        this(db, owner, UserPager.DEFAULT_PAGE_SIZE);
+    }
+
+    public UserSearcher(DBAsync db, @Nullable LifecycleOwner owner, int pageSize) {
+        this.db = db;
+        this.owner = owner;
+        this.pageSize = pageSize;
+        if (owner != null) {
+            owner.getLifecycle().addObserver((LifecycleEventObserver) (source, event) -> {
+                if (event == Lifecycle.Event.ON_DESTROY) cancel();
+            });
+        }
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    public String getQuery() {
+        return texto;
+    }
+
+    public boolean isSearching() {
+        return !texto.isEmpty();
+    }
+
+    public int size() {
+        return resultados.size();
+    }
+
+    public User get(int position) {
+        return resultados.get(position);
+    }
+
+    /**
+     * setQuery:
+     * - Cambia el texto buscado. La consulta sale `DEBOUNCE_MS` despues, salvo que antes llegue otro texto.
+     * - Con texto vacio se limpian los resultados enseguida (no hace falta ir a la base).
+     */
+    public void setQuery(@Nullable String nuevo) {
+        String limpio = nuevo == null ? "" : nuevo.trim();
+        if (limpio.equals(texto)) return;
+
+        cancelar();
+        texto = limpio;
+
+        if (limpio.isEmpty()) {
+            resultados.clear();
+            hayMas = false;
+            if (listener != null) listener.onResultsReplaced(texto);
+            return;
+        }
+        hiloPrincipal.postDelayed(buscarPendiente, DEBOUNCE_MS);
+    }
+
+    /**
+     * refresh:
+     * - Vuelve a buscar el texto actual desde el principio (por ejemplo al volver a la pantalla).
+     */
+    public void refresh() {
+        if (!isSearching()) return;
+        cancelar();
+        buscar(0);
+    }
+
+    /**
+     * loadAround:
+     * - Avisa que se esta mostrando `position`: si esta cerca del final, se pide la pagina siguiente.
+     */
+    public void loadAround(int position) {
+        if (!hayMas || enCurso != null) return;
+        if (position >= resultados.size() - pageSize / 2) {
+            buscar(resultados.size());
+        }
+    }
+
+    /**
+     * cancel:
+     * - Descarta la busqueda pendiente y corta la que este corriendo. Se llama sola al destruirse el owner.
+     */
+    public void cancel() {
+        cancelar();
+    }
+
+    private void cancelar() {
+        hiloPrincipal.removeCallbacks(buscarPendiente);
+        if (enCurso != null) {
+            enCurso.cancel(true);
+            enCurso = null;
+        }
+        version++;
+    }
+
+    private void buscar(int offset) {
+        final int ver = version;
+        final String consulta = texto;
+        enCurso = db.searchUsers(owner, consulta, offset, pageSize, new DBAsync.Callback<List<User>>() {
+            @Override
+            public void onResult(List<User> encontrados) {
+                if (ver != version) return;
+                enCurso = null;
+                hayMas = encontrados.size() == pageSize;
+
+                if (offset == 0) {
+                    resultados.clear();
+                    resultados.addAll(encontrados);
+                    if (listener != null) listener.onResultsReplaced(consulta);
+                } else {
+                    int inicio = resultados.size();
+                    resultados.addAll(encontrados);
+                    if (listener != null && !encontrados.isEmpty()) listener.onResultsAppended(inicio, encontrados.size());
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                DBAsync.Callback.super.onError(error);
+                if (ver == version) enCurso = null; // que la proxima tecla o scroll pueda reintentar
+            }
+        });
+    }
+}
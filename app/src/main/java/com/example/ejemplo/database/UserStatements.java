@@ -0,0 +1,153 @@
+package com.example.ejemplo.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.Closeable;
+
+import static com.example.ejemplo.database.DBHelper.COL_ID;
+import static com.example.ejemplo.database.DBHelper.COL_NOMBRE;
+import static com.example.ejemplo.database.DBHelper.COL_PASSWORD;
+import static com.example.ejemplo.database.DBHelper.TABLE_USUARIO;
+import static com.example.ejemplo.database.DBHelper.VIVO;
+
+/**
+ * `UserStatements` guarda las sentencias SQL de `tabla_usuario` ya compiladas.
+ *
+ * Compilar una sentencia significa que SQLite la lee, la analiza y arma su plan de ejecucion. Con
+ * `rawQuery` o `compileStatement` eso se repite en cada llamada; aca se hace UNA vez por conexion y despues
+ * solo se cambian los parametros (`?`).
+ *
+ * Se usa para las consultas que devuelven un solo valor (contar, existe, id por nombre) y para la
+ * insercion en lote: no crean `Cursor` ni `CursorWindow`, devuelven directamente un numero.
+ *
+ * Un `SQLiteStatement` no se puede usar desde dos hilos a la vez, por eso cada uso se sincroniza sobre
+ * la propia sentencia.
+ */
+final class UserStatements implements Closeable {
+
+    static final String SQL_COUNT = "SELECT COUNT(*) FROM " + TABLE_USUARIO + " WHERE " + VIVO;
+    static final String SQL_COUNT_BEFORE = "SELECT COUNT(*) FROM " + TABLE_USUARIO + " WHERE " + COL_ID + " < ? AND " + VIVO;
+    static final String SQL_EXISTS_BY_NAME = "SELECT EXISTS(SELECT 1 FROM " + TABLE_USUARIO + " WHERE " + COL_NOMBRE
+            + " = ? AND " + VIVO + ")";
+    static final String SQL_ID_BY_NAME = "SELECT " + COL_ID + " FROM " + TABLE_USUARIO + " WHERE " + COL_NOMBRE
+            + " = ? AND " + VIVO;
+    static final String SQL_INSERT_OR_IGNORE = "INSERT OR IGNORE INTO " + TABLE_USUARIO
+            + " (" + COL_NOMBRE + ", " + COL_PASSWORD + ") VALUES (?, ?)";
+
+    private final SQLiteDatabase db;
+
+    private SQLiteStatement count;
+    private SQLiteStatement countBefore;
+    private SQLiteStatement existsByName;
+    private SQLiteStatement idByName;
+    private SQLiteStatement insertOrIgnore;
+
+    UserStatements(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Las sentencias pertenecen a una conexion: si la base se cerro y se volvio a abrir hay que compilarlas de nuevo.
+     */
+    boolean isFor(SQLiteDatabase otra) {
+        return db == otra && db.isOpen();
+    }
+
+    long count() {
+        SQLiteStatement st = sentencia(Tipo.COUNT);
+        synchronized (st) {
+            return st.simpleQueryForLong();
+        }
+    }
+
+    long countBefore(long id) {
+        SQLiteStatement st = sentencia(Tipo.COUNT_BEFORE);
+        synchronized (st) {
+            st.bindLong(1, id);
+            try {
+                return st.simpleQueryForLong();
+            } finally {
+                st.clearBindings();
+            }
+        }
+    }
+
+    boolean existsByName(String nombreUsuario) {
+        SQLiteStatement st = sentencia(Tipo.EXISTS_BY_NAME);
+        synchronized (st) {
+            st.bindString(1, nombreUsuario);
+            try {
+                return st.simpleQueryForLong() != 0;
+            } finally {
+                st.clearBindings();
+            }
+        }
+    }
+
+    /**
+     * idByName:
+     * - Devuelve el id del usuario o -1 si no existe.
+     */
+    long idByName(String nombreUsuario) {
+        SQLiteStatement st = sentencia(Tipo.ID_BY_NAME);
+        synchronized (st) {
+            st.bindString(1, nombreUsuario);
+            try {
+                return st.simpleQueryForLong();
+            } catch (SQLiteDoneException e) {
+                return -1; // la consulta no devolvio ninguna fila
+            } finally {
+                st.clearBindings();
+            }
+        }
+    }
+
+    /**
+     * insertOrIgnore:
+     * - Devuelve la sentencia de insercion para usarla en un bucle. Quien la usa debe sincronizarse sobre
+     *   ella mientras dure el lote.
+     */
+    SQLiteStatement insertOrIgnore() {
+        return sentencia(Tipo.INSERT_OR_IGNORE);
+    }
+
+    private enum Tipo { COUNT, COUNT_BEFORE, EXISTS_BY_NAME, ID_BY_NAME, INSERT_OR_IGNORE }
+
+    // Cada sentencia se compila la primera vez que se necesita.
+    private synchronized SQLiteStatement sentencia(Tipo tipo) {
+        switch (tipo) {
+            case COUNT:
+                if (count == null) count = db.compileStatement(SQL_COUNT);
+                return count;
+            case COUNT_BEFORE:
+                if (countBefore == null) countBefore = db.compileStatement(SQL_COUNT_BEFORE);
+                return countBefore;
+            case EXISTS_BY_NAME:
+                if (existsByName == null) existsByName = db.compileStatement(SQL_EXISTS_BY_NAME);
+                return existsByName;
+            case ID_BY_NAME:
+                if (idByName == null) idByName = db.compileStatement(SQL_ID_BY_NAME);
+                return idByName;
+            case INSERT_OR_IGNORE:
+            default:
+                if (insertOrIgnore == null) insertOrIgnore = db.compileStatement(SQL_INSERT_OR_IGNORE);
+                return insertOrIgnore;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        cerrar(count);
+        cerrar(countBefore);
+        cerrar(existsByName);
+        cerrar(idByName);
+        cerrar(insertOrIgnore);
+        count = countBefore = existsByName = idByName = insertOrIgnore = null;
+    }
+
+    private static void cerrar(SQLiteStatement st) {
+        if (st != null) st.close();
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.ejemplo.database;
+
+import android.os.CancellationSignal;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * `UserSync` mantiene `tabla_usuario` igual a un directorio de usuarios remoto intercambiando solo lo que
+ * cambio desde la ultima vez, en lugar de bajar y subir la tabla entera.
+ *
+ * 1. Traer: pide al servidor los cambios con revision mayor a la marca guardada, de a `pageSize`. Cada pagina
+ *    se aplica en UNA transaccion junto con la marca nueva: si la sincronizacion se corta (sin red, la app se
+ *    cierra) no queda nada a medias y la proxima empieza en la pagina que fallo.
+ * 2. Enviar: manda los cambios locales anotados (ver migracion 4), tambien de a `pageSize`. Los aceptados
+ *    dejan de estar pendientes; los rechazados son conflictos.
+ * 3. Conflictos: el mismo usuario cambio aca y en el servidor. Si los dos lo dejaron igual no hay nada que
+ *    hacer; si no, decide la `ConflictPolicy` (por defecto gana el servidor).
+ *
+ * El usuario se identifica por su nombre (los ids son locales de cada base) y solo viaja el hash de la
+ * contraseña. Bloquea (red y disco): desde las pantallas se usa con DBAsync.sync.
+ *
+ * Uso:
+ *   UserSync.SyncResult r = UserSync.forDatabase(dbHelper, transporte)
+ *           .setConflictPolicy(UserSync.ConflictPolicy.LAST_WRITE_WINS)
+ *           .sync();
+ */
+public final class UserSync {
+
+    /**
+     * ConflictPolicy:
+     * - `keepLocal(local, remoto)`: true para quedarse con el cambio local (y enviarlo pisando al servidor),
+     *   false para quedarse con el del servidor (el local se descarta).
+     */
+    public interface ConflictPolicy {
+        boolean keepLocal(SyncChange local, SyncChange remoto);
+
+        ConflictPolicy REMOTE_WINS = (local, remoto) -> false;
+        ConflictPolicy LOCAL_WINS = (local, remoto) -> true;
+        /** Gana el cambio mas reciente segun el reloj de quien lo hizo (empate: el servidor). */
+        ConflictPolicy LAST_WRITE_WINS = (local, remoto) -> local.getModifiedAt() > remoto.getModifiedAt();
+    }
+
+    /**
+     * SyncResult:
+     * - Cuantos cambios del servidor se aplicaron (`pulled`), cuantos locales acepto el servidor (`pushed`) y
+     *   cuantos conflictos hubo.
+     */
+    public static final class SyncResult {
+        public final int pulled;
+        public final int pushed;
+        public final int conflicts;
+
+        public SyncResult(int pulled, int pushed, int conflicts) {
+            this.pulled = pulled;
+            this.pushed = pushed;
+            this.conflicts = conflicts;
+        }
+
+        @Override
+        public String toString() {
+            return "traidos=" + pulled + " enviados=" + pushed + " conflictos=" + conflicts;
+        }
+    }
+
+    /**
+     * Writer:
+     * - Quien ejecuta cada escritura en la base. Por defecto el mismo hilo; DBAsync lo cambia para que pase
+     *   por su hilo de escritura (entre pagina y pagina se intercalan las demas escrituras de la app).
+     */
+    interface Writer {
+        <T> T write(Callable<T> escritura) throws Exception;
+    }
+
+    public static final int DEFAULT_PAGE_SIZE = 500;
+    // Envios seguidos sin que el servidor acepte nada (otro dispositivo cambia lo mismo sin parar): se deja
+    // para la proxima sincronizacion en lugar de insistir para siempre.
+    static final int MAX_RONDAS_SIN_AVANCE = 3;
+
+    private final SyncStore store;
+    private final SyncTransport transporte;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private ConflictPolicy politica = ConflictPolicy.REMOTE_WINS;
+    @Nullable private CancellationSignal senal;
+    private Writer escritor = Callable::call;
+
+    public UserSync(SyncStore store, SyncTransport transporte) {
+        this.store = store;
+        this.transporte = transporte;
+    }
+
+    /**
+     * forDatabase:
+     * - Sincroniza la base de la app (ver SqliteSyncStore).
+     */
+    public static UserSync forDatabase(DBHelper helper, SyncTransport transporte) {
+        return new UserSync(new SqliteSyncStore(helper), transporte);
+    }
+
+    /**
+     * setPageSize:
+     * - Cambios por pedido al servidor y por transaccion. Paginas mas grandes son menos viajes pero mas
+     *   trabajo que se repite si la red se corta a la mitad.
+     */
+    public UserSync setPageSize(int pageSize) {
+        if (pageSize < 1) throw new IllegalArgumentException("pageSize tiene que ser mayor a 0: " + pageSize);
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public UserSync setConflictPolicy(ConflictPolicy politica) {
+        this.politica = politica;
+        return this;
+    }
+
+    public UserSync setCancellationSignal(@Nullable CancellationSignal senal) {
+        this.senal = senal;
+        return this;
+    }
+
+    UserSync setWriter(Writer escritor) {
+        this.escritor = escritor;
+        return this;
+    }
+
+    /**
+     * sync:
+     * - Trae y despues envia (ver arriba). Primero se trae para que los conflictos se resuelvan aca, con la
+     *   politica, en lugar de que el servidor rechace el envio.
+     * - Si falla la red lanza IOException; lo ya aplicado (paginas traidas, envios aceptados) queda guardado.
+     *   Tambien si el servidor devuelve una pagina que no avanza la revision (no cumple SyncTransport.pull).
+     */
+    @WorkerThread
+    public SyncResult sync() throws IOException {
+        int pulled = 0;
+        int pushed = 0;
+        int conflicts = 0;
+
+        // 1. Traer
+        while (true) {
+            cancelada();
+            long marca = store.getWatermark();
+            List<SyncChange> pagina = transporte.pull(marca, pageSize);
+            if (pagina.isEmpty()) break;
+
+            long nueva = marca;
+            for (SyncChange c : pagina) nueva = Math.max(nueva, c.getRev());
+            if (nueva <= marca) {
+                // Nada mas nuevo que lo pedido: se volveria a pedir la misma pagina para siempre
+                throw new IOException("El servidor devolvio " + pagina.size() + " cambios sin revisiones mayores a "
+                        + marca);
+            }
+            long marcaNueva = nueva;
+            SyncResult r = escribir(() -> store.applyRemote(pagina, marcaNueva, politica));
+            pulled += r.pulled;
+            conflicts += r.conflicts;
+            if (pagina.size() < pageSize) break;
+        }
+
+        // 2. Enviar
+        int sinAvance = 0;
+        while (sinAvance < MAX_RONDAS_SIN_AVANCE) {
+            cancelada();
+            List<SyncChange> pendientes = store.pendingChanges(pageSize);
+            if (pendientes.isEmpty()) break;
+            List<SyncTransport.PushResult> resultados = transporte.push(pendientes);
+            if (resultados.size() != pendientes.size()) {
+                throw new IOException("El servidor respondio " + resultados.size() + " resultados para "
+                        + pendientes.size() + " cambios");
+            }
+
+            List<SyncChange> aceptados = new ArrayList<>();
+            long[] revs = new long[pendientes.size()];
+            List<SyncChange> delServidor = new ArrayList<>();
+            for (int i = 0; i < pendientes.size(); i++) {
+                SyncTransport.PushResult r = resultados.get(i);
+                if (r.accepted) {
+                    revs[aceptados.size()] = r.rev;
+                    aceptados.add(pendientes.get(i));
+                } else if (r.current != null) {
+                    delServidor.add(r.current);
+                }
+            }
+
+            if (!aceptados.isEmpty()) {
+                escribir(() -> {
+                    store.markPushed(aceptados, revs);
+                    return null;
+                });
+            }
+            // Rechazados: se resuelven igual que al traer (el local gana y se reenvia, o se pisa con el del servidor)
+            if (!delServidor.isEmpty()) {
+                long marca = store.getWatermark();
+                SyncResult r = escribir(() -> store.applyRemote(delServidor, marca, politica));
+                pulled += r.pulled;
+                conflicts += r.conflicts;
+            }
+
+            pushed += aceptados.size();
+            sinAvance = aceptados.isEmpty() ? sinAvance + 1 : 0;
+        }
+
+        return new SyncResult(pulled, pushed, conflicts);
+    }
+
+    private void cancelada() {
+        if (senal != null) senal.throwIfCanceled();
+    }
+
+    private <T> T escribir(Callable<T> escritura) throws IOException {
+        try {
+            return escritor.write(escritura);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Sincronizacion interrumpida");
+        } catch (Exception e) {
+            throw new IOException("No se pudieron guardar los cambios sincronizados", e);
+        }
+    }
+}
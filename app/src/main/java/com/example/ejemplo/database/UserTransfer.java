@@ -0,0 +1,619 @@
+package com.example.ejemplo.database;
+
+import android.os.CancellationSignal;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.ejemplo.modelos.User;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * `UserTransfer` exporta e importa la tabla de usuarios en archivos CSV o JSON, para llevar cuentas de un
+ * dispositivo a otro o armar datos de prueba.
+ *
+ * - Todo va "de a poco": exportar escribe cada fila apenas la lee (ver UserRepository.forEachUser) e importar
+ *   lee el archivo de a pedazos y va insertando lotes de `batchSize` usuarios, cada lote en una transaccion.
+ *   La memoria usada depende del tamaño del lote, no del archivo: da lo mismo 100 que 500.000 usuarios.
+ * - Se exporta el hash de cada contraseña, nunca la contraseña. Al importar, los valores que ya son hashes
+ *   (ver PasswordHasher) se guardan tal cual; los que vienen en texto plano (datos de prueba escritos a
+ *   mano) se convierten en hash antes de guardarlos, y eso si es lento (PBKDF2 por fila).
+ * - Los ids del archivo se ignoran: cada base numera sus propias filas. Los nombres que ya existen y las
+ *   filas sin nombre se omiten (cuentan en `skipped`).
+ * - `setProgress` recibe cuantas filas se llevan y el porcentaje (-1 si no se sabe el total).
+ * - `setCancellationSignal` permite cortar a mitad de camino (OperationCanceledException). Exportando a un
+ *   archivo no queda nada escrito; importando quedan guardados los lotes ya confirmados.
+ *
+ * Formatos (UTF-8, las columnas con los mismos nombres que en la tabla):
+ *   CSV:  id_usuario,nombre_usuario,password
+ *         1,ana,pbkdf2-sha256$...
+ *         Comillas dobles si el valor tiene , " o saltos de linea (RFC 4180). Un campo vacio sin comillas es
+ *         null; "" es el texto vacio. Al importar, el encabezado dice en que columna esta cada dato.
+ *   JSON: [{"id_usuario":1,"nombre_usuario":"ana","password":"pbkdf2-sha256$..."}, ...]
+ *         Un objeto por linea al exportar; al importar se ignoran los campos desconocidos.
+ *
+ * Bloquea (lee y escribe archivos y la base): desde las pantallas se usa con DBAsync.exportUsers / importUsers.
+ *
+ * Uso:
+ *   long filas = new UserTransfer(repo).exportUsers(archivo, UserTransfer.Format.CSV);
+ *   DBHelper.BatchResult r = new UserTransfer(repo).setBatchSize(1_000).importUsers(archivo, UserTransfer.Format.JSON);
+ */
+public final class UserTransfer {
+
+    public enum Format {
+        CSV, JSON;
+
+        /**
+         * fromFileName:
+         * - El formato segun la extension del archivo: ".json" es JSON, cualquier otra CSV.
+         */
+        public static Format fromFileName(String nombre) {
+            return nombre.toLowerCase(Locale.ROOT).endsWith(".json") ? JSON : CSV;
+        }
+    }
+
+    /**
+     * Progress:
+     * - `filas` leidas (o escritas) hasta ahora y el porcentaje del total, o -1 si no se sabe.
+     */
+    public interface Progress {
+        void onProgress(long filas, int porcentaje);
+    }
+
+    /**
+     * BatchWriter:
+     * - Quien guarda cada lote importado. Por defecto el mismo repositorio; DBAsync lo cambia para que la
+     *   escritura pase por su hilo de escritura.
+     */
+    interface BatchWriter {
+        DBHelper.BatchResult write(UserRepository.PreparedBatch lote) throws Exception;
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    static final int MAX_CAMPO = 64 * 1024; // letras por valor: un archivo roto no puede llenar la memoria
+    private static final int AVISAR_CADA = 1_000; // filas entre avisos de progreso al exportar
+    private static final int BUFFER = 64 * 1024;
+
+    private final UserRepository repo;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    @Nullable private Progress progreso;
+    @Nullable private CancellationSignal senal;
+    private BatchWriter escritor;
+
+    public UserTransfer(UserRepository repo) {
+        this.repo = repo;
+        this.escritor = repo::addPreparedUsers;
+    }
+
+    /**
+     * setBatchSize:
+     * - Usuarios por transaccion al importar. Lotes mas grandes escriben menos veces en disco pero tienen
+     *   el hilo de escritura ocupado mas tiempo seguido (y mas filas en memoria).
+     */
+    public UserTransfer setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize tiene que ser mayor a 0: " + batchSize);
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public UserTransfer setProgress(@Nullable Progress progreso) {
+        this.progreso = progreso;
+        return this;
+    }
+
+    public UserTransfer setCancellationSignal(@Nullable CancellationSignal senal) {
+        this.senal = senal;
+        return this;
+    }
+
+    UserTransfer setBatchWriter(BatchWriter escritor) {
+        this.escritor = escritor;
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Exportar
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * exportUsers:
+     * - Escribe todos los usuarios en `archivo` y devuelve cuantos. Primero escribe un archivo temporal y
+     *   recien al terminar lo renombra: si falla o se cancela, `archivo` queda como estaba.
+     */
+    @WorkerThread
+    public long exportUsers(File archivo, Format formato) throws IOException {
+        File temporal = new File(archivo.getPath() + ".tmp");
+        boolean listo = false;
+        try {
+            long filas;
+            try (Writer out = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(temporal), StandardCharsets.UTF_8), BUFFER)) {
+                filas = exportUsers(out, formato);
+            }
+            if (!temporal.renameTo(archivo)) throw new IOException("No se pudo reemplazar " + archivo);
+            listo = true;
+            return filas;
+        } finally {
+            if (!listo) temporal.delete();
+        }
+    }
+
+    /**
+     * exportUsers:
+     * - Lo mismo sobre cualquier `Writer` (no lo cierra). Conviene que tenga buffer.
+     */
+    @WorkerThread
+    public long exportUsers(Writer out, Format formato) throws IOException {
+        Exportacion exportacion = new Exportacion(out, formato, repo.countUsers());
+        exportacion.empezar();
+        repo.forEachUser(exportacion, senal);
+        if (exportacion.error != null) throw exportacion.error;
+        exportacion.terminar();
+        out.flush();
+        return exportacion.filas;
+    }
+
+    /**
+     * Exportacion:
+     * - Escribe cada fila que le pasa forEachUser. Un error de escritura corta el recorrido y se relanza
+     *   despues (el visitor no puede lanzar IOException).
+     */
+    private final class Exportacion implements UserRepository.UserVisitor {
+        private final Writer out;
+        private final Format formato;
+        private final long total;
+        long filas;
+        @Nullable IOException error;
+
+        Exportacion(Writer out, Format formato, long total) {
+            this.out = out;
+            this.formato = formato;
+            this.total = total;
+        }
+
+        void empezar() throws IOException {
+            if (formato == Format.JSON) {
+                out.write('[');
+            } else {
+                out.write(DBHelper.COL_ID + "," + DBHelper.COL_NOMBRE + "," + DBHelper.COL_PASSWORD + "\n");
+            }
+        }
+
+        @Override
+        public boolean visit(long id, @Nullable String nombreUsuario, @Nullable String hash) {
+            try {
+                if (formato == Format.JSON) {
+                    out.write(filas == 0 ? "\n{\"" : ",\n{\"");
+                    out.write(DBHelper.COL_ID);
+                    out.write("\":");
+                    out.write(Long.toString(id));
+                    out.write(",\"" + DBHelper.COL_NOMBRE + "\":");
+                    escribirJson(out, nombreUsuario);
+                    out.write(",\"" + DBHelper.COL_PASSWORD + "\":");
+                    escribirJson(out, hash);
+                    out.write('}');
+                } else {
+                    out.write(Long.toString(id));
+                    out.write(',');
+                    escribirCsv(out, nombreUsuario);
+                    out.write(',');
+                    escribirCsv(out, hash);
+                    out.write('\n');
+                }
+            } catch (IOException e) {
+                error = e;
+                return false;
+            }
+            filas++;
+            if (filas % AVISAR_CADA == 0) avisar(filas, porcentaje(filas, total));
+            return true;
+        }
+
+        void terminar() throws IOException {
+            if (formato == Format.JSON) out.write(filas == 0 ? "]\n" : "\n]\n");
+            avisar(filas, 100);
+        }
+    }
+
+    private static void escribirCsv(Writer out, @Nullable String valor) throws IOException {
+        if (valor == null) return; // campo vacio
+        boolean comillas = valor.isEmpty();
+        for (int i = 0; i < valor.length() && !comillas; i++) {
+            char c = valor.charAt(i);
+            comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!comillas) {
+            out.write(valor);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') out.write('"'); // "" dentro de las comillas
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    private static void escribirJson(Writer out, @Nullable String valor) throws IOException {
+        if (valor == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Importar
+    // ---------------------------------------------------------------------------------------------
+
+    @WorkerThread
+    public DBHelper.BatchResult importUsers(File archivo, Format formato) throws IOException {
+        try (Reader in = new InputStreamReader(new FileInputStream(archivo), StandardCharsets.UTF_8)) {
+            return importUsers(in, formato, archivo.length());
+        }
+    }
+
+    /**
+     * importUsers:
+     * - Lee usuarios de `in` (no lo cierra) y los inserta de a `batchSize` por transaccion.
+     * - `largo` es el tamaño aproximado de la entrada, solo para el porcentaje (-1 si no se sabe).
+     * - Un archivo mal formado lanza IOException con el numero de linea; los lotes anteriores ya quedaron
+     *   guardados.
+     */
+    @WorkerThread
+    public DBHelper.BatchResult importUsers(Reader in, Format formato, long largo) throws IOException {
+        Lector lector = formato == Format.JSON ? new LectorJson(in) : new LectorCsv(in);
+        PasswordHasher hasher = repo.getPasswordHasher();
+        List<User> lote = new ArrayList<>(Math.min(batchSize, 4_096));
+        int inserted = 0;
+        int skipped = 0;
+        int omitidas = 0; // filas sin nombre del lote actual
+        long filas = 0;
+
+        while (lector.siguiente()) {
+            if (senal != null) senal.throwIfCanceled();
+            filas++;
+            String password = lector.password;
+            if (lector.nombre == null) {
+                omitidas++;
+                continue;
+            }
+            if (password != null && !PasswordHasher.isHash(password)) password = hasher.hash(password);
+            lote.add(new User(0, lector.nombre, password));
+
+            if (lote.size() == batchSize) {
+                DBHelper.BatchResult r = escribir(lote, omitidas);
+                inserted += r.inserted;
+                skipped += r.skipped;
+                omitidas = 0;
+                lote.clear(); // escribir ya termino: la lista se reutiliza para el lote siguiente
+                avisar(filas, porcentaje(lector.leidos, largo));
+            }
+        }
+        if (!lote.isEmpty() || omitidas > 0) {
+            DBHelper.BatchResult r = escribir(lote, omitidas);
+            inserted += r.inserted;
+            skipped += r.skipped;
+        }
+        avisar(filas, 100);
+        return new DBHelper.BatchResult(inserted, skipped);
+    }
+
+    private DBHelper.BatchResult escribir(List<User> lote, int omitidas) throws IOException {
+        try {
+            return escritor.write(new UserRepository.PreparedBatch(lote, omitidas));
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Importacion interrumpida");
+        } catch (Exception e) {
+            throw new IOException("No se pudo guardar un lote de usuarios", e);
+        }
+    }
+
+    private void avisar(long filas, int porcentaje) {
+        if (progreso != null) progreso.onProgress(filas, porcentaje);
+    }
+
+    private static int porcentaje(long hechos, long total) {
+        return total > 0 ? (int) Math.min(100, hechos * 100 / total) : -1;
+    }
+
+    /**
+     * Lector:
+     * - Lee la entrada de a bloques de `BUFFER` letras, sin cargarla entera, y deja en `nombre` y `password`
+     *   los datos de cada fila. Los valores se arman en un solo StringBuilder reutilizado.
+     */
+    private abstract static class Lector {
+        private final Reader in;
+        private final char[] buf = new char[BUFFER];
+        private int pos;
+        private int fin;
+        private int linea = 1;
+        final StringBuilder campo = new StringBuilder(64);
+        long leidos; // letras leidas de `in` hasta ahora (para el porcentaje)
+
+        @Nullable String nombre;
+        @Nullable String password;
+
+        Lector(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * siguiente:
+         * - Lee la proxima fila. false al llegar al final.
+         */
+        abstract boolean siguiente() throws IOException;
+
+        final int leer() throws IOException {
+            int c = mirar();
+            if (c != -1) {
+                pos++;
+                if (c == '\n') linea++;
+            }
+            return c;
+        }
+
+        final int mirar() throws IOException {
+            if (pos == fin) {
+                int n = in.read(buf);
+                if (n <= 0) return -1;
+                pos = leidos == 0 && buf[0] == '\uFEFF' ? 1 : 0; // marca BOM al principio del archivo
+                fin = n;
+                leidos += n;
+                if (pos == fin) return mirar();
+            }
+            return buf[pos];
+        }
+
+        final void agregar(char c) throws IOException {
+            if (campo.length() >= MAX_CAMPO) throw error("valor de mas de " + MAX_CAMPO + " letras");
+            campo.append(c);
+        }
+
+        final IOException error(String mensaje) {
+            return new IOException("linea " + linea + ": " + mensaje);
+        }
+    }
+
+    private static final class LectorCsv extends Lector {
+        private final List<String> valores = new ArrayList<>(3);
+        private boolean primera = true;
+        private int colNombre = 1;
+        private int colPassword = 2;
+
+        LectorCsv(Reader in) {
+            super(in);
+        }
+
+        @Override
+        boolean siguiente() throws IOException {
+            while (leerRegistro()) {
+                if (primera) {
+                    primera = false;
+                    if (leerEncabezado()) continue;
+                }
+                if (valores.size() == 1 && valores.get(0) == null) continue; // linea vacia
+                nombre = valor(colNombre);
+                password = valor(colPassword);
+                return true;
+            }
+            return false;
+        }
+
+        // Si la primera fila es el encabezado, de ahi salen las columnas; si no, son las de exportUsers
+        private boolean leerEncabezado() {
+            int nombreEn = -1, passwordEn = -1;
+            for (int i = 0; i < valores.size(); i++) {
+                String v = valores.get(i);
+                if (DBHelper.COL_NOMBRE.equalsIgnoreCase(v)) nombreEn = i;
+                if (DBHelper.COL_PASSWORD.equalsIgnoreCase(v)) passwordEn = i;
+            }
+            if (nombreEn == -1) return false;
+            colNombre = nombreEn;
+            colPassword = passwordEn;
+            return true;
+        }
+
+        @Nullable
+        private String valor(int columna) {
+            return columna >= 0 && columna < valores.size() ? valores.get(columna) : null;
+        }
+
+        private boolean leerRegistro() throws IOException {
+            valores.clear();
+            if (mirar() == -1) return false;
+            while (true) {
+                campo.setLength(0);
+                boolean comillas = false;
+                int c = leer();
+                if (c == '"') {
+                    comillas = true;
+                    while (true) {
+                        c = leer();
+                        if (c == -1) throw error("faltan cerrar las comillas");
+                        if (c == '"') {
+                            if (mirar() != '"') break;
+                            leer(); // "" es una comilla
+                        }
+                        agregar((char) c);
+                    }
+                    c = leer();
+                    if (c != ',' && c != '\n' && c != '\r' && c != -1) throw error("texto despues de las comillas");
+                } else {
+                    while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                        agregar((char) c);
+                        c = leer();
+                    }
+                }
+                valores.add(comillas || campo.length() > 0 ? campo.toString() : null);
+                if (c == ',') continue;
+                if (c == '\r' && mirar() == '\n') leer();
+                return true;
+            }
+        }
+    }
+
+    private static final class LectorJson extends Lector {
+        private boolean empezado;
+        private boolean terminado;
+
+        LectorJson(Reader in) {
+            super(in);
+        }
+
+        @Override
+        boolean siguiente() throws IOException {
+            if (terminado) return false;
+            int c = saltarEspacios();
+            if (!empezado) {
+                empezado = true;
+                if (c != '[') throw error("se esperaba '[' al principio");
+                c = saltarEspacios();
+            } else if (c == ',') {
+                c = saltarEspacios();
+            } else if (c != ']') {
+                throw error("se esperaba ',' o ']'");
+            }
+            if (c == ']') {
+                terminado = true;
+                return false;
+            }
+            if (c != '{') throw error("se esperaba un objeto");
+            leerObjeto();
+            return true;
+        }
+
+        private void leerObjeto() throws IOException {
+            nombre = null;
+            password = null;
+            int c = saltarEspacios();
+            if (c == '}') return;
+            while (true) {
+                if (c != '"') throw error("se esperaba el nombre de un campo");
+                String clave = leerTexto();
+                if (saltarEspacios() != ':') throw error("se esperaba ':'");
+                c = saltarEspacios();
+                if (DBHelper.COL_NOMBRE.equals(clave)) {
+                    nombre = leerTextoONull(c);
+                } else if (DBHelper.COL_PASSWORD.equals(clave)) {
+                    password = leerTextoONull(c);
+                } else {
+                    saltarValor(c);
+                }
+                c = saltarEspacios();
+                if (c == '}') return;
+                if (c != ',') throw error("se esperaba ',' o '}'");
+                c = saltarEspacios();
+            }
+        }
+
+        @Nullable
+        private String leerTextoONull(int c) throws IOException {
+            if (c == '"') return leerTexto();
+            if (c == 'n' && leer() == 'u' && leer() == 'l' && leer() == 'l') return null;
+            throw error("se esperaba un texto o null");
+        }
+
+        // Despues de la comilla que abre
+        private String leerTexto() throws IOException {
+            campo.setLength(0);
+            while (true) {
+                int c = leer();
+                if (c == -1) throw error("faltan cerrar las comillas");
+                if (c == '"') return campo.toString();
+                if (c == '\\') {
+                    c = leer();
+                    switch (c) {
+                        case '"': case '\\': case '/': break;
+                        case 'b': c = '\b'; break;
+                        case 'f': c = '\f'; break;
+                        case 'n': c = '\n'; break;
+                        case 'r': c = '\r'; break;
+                        case 't': c = '\t'; break;
+                        case 'u': c = leerHex(); break;
+                        default: throw error("escape invalido");
+                    }
+                }
+                agregar((char) c);
+            }
+        }
+
+        private int leerHex() throws IOException {
+            int valor = 0;
+            for (int i = 0; i < 4; i++) {
+                int digito = Character.digit(leer(), 16);
+                if (digito < 0) throw error("escape \\u invalido");
+                valor = valor * 16 + digito;
+            }
+            return valor;
+        }
+
+        // Numeros, true/false/null, textos, objetos y listas que no interesan (por ejemplo el id)
+        private void saltarValor(int c) throws IOException {
+            if (c == '"') {
+                leerTexto();
+            } else if (c == '{' || c == '[') {
+                int profundidad = 1;
+                while (profundidad > 0) {
+                    c = leer();
+                    if (c == -1) throw error("el archivo termina en la mitad de un valor");
+                    if (c == '"') leerTexto();
+                    else if (c == '{' || c == '[') profundidad++;
+                    else if (c == '}' || c == ']') profundidad--;
+                }
+            } else if (c == -1 || c == ',' || c == '}' || c == ']') {
+                throw error("falta un valor");
+            } else {
+                while (true) {
+                    int siguiente = mirar();
+                    if (siguiente == -1 || siguiente == ',' || siguiente == '}' || siguiente == ']'
+                            || Character.isWhitespace(siguiente)) break;
+                    leer();
+                }
+            }
+        }
+
+        private int saltarEspacios() throws IOException {
+            int c;
+            do {
+                c = leer();
+            } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+            return c;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.ejemplo.metricas;
+
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * `FileExporter` agrega cada foto de las metricas al final de un archivo de texto. Si el archivo pasa de
+ * `maxBytes` se empieza de nuevo, asi nunca crece sin limite.
+ *
+ * Para bajarlo del telefono (compilacion debug):
+ *   adb shell run-as com.example.ejemplo cat files/metricas.txt
+ */
+public final class FileExporter implements MetricsExporter {
+
+    private static final String TAG = "FileExporter";
+    public static final long DEFAULT_MAX_BYTES = 256 * 1024;
+
+    private final File archivo;
+    private final long maxBytes;
+
+    public FileExporter(File archivo) {
+        this(archivo, DEFAULT_MAX_BYTES);
+    }
+
+    public FileExporter(File archivo, long maxBytes) {
+        this.archivo = archivo;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized void export(MetricsSnapshot snapshot) {
+        boolean agregar = archivo.length() < maxBytes;
+        try (Writer salida = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(archivo, agregar), StandardCharsets.UTF_8))) {
+            String fecha = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ROOT)
+                    .format(new Date(snapshot.timestampMillis));
+            salida.write("--- " + fecha + " ---\n");
+            for (String linea : snapshot.toLines()) {
+                salida.write(linea);
+                salida.write('\n');
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "No se pudieron guardar las metricas en " + archivo, e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.ejemplo.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * `LatencyHistogram` cuenta cuantas mediciones cayeron en cada rango de tiempo, para poder dar la mediana
+ * y los percentiles (p90, p99) sin guardar cada medicion.
+ *
+ * Los rangos crecen de forma exponencial: cada potencia de 2 de nanosegundos se parte en 4. Asi un
+ * percentil tiene como mucho ~25% de error, tanto para 3 µs como para 3 segundos, con un arreglo fijo
+ * de 256 contadores (2 KB) que nunca crece.
+ *
+ * `record` no reserva memoria ni toma locks: se puede llamar desde cualquier hilo en el camino caliente.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_RANGOS = 4; // partes por potencia de 2
+    private static final int BITS_SUB = 2;   // log2(SUB_RANGOS)
+    static final int RANGOS = 256;
+
+    private final AtomicLongArray cuentas = new AtomicLongArray(RANGOS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sumaNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        cuentas.incrementAndGet(rango(nanos));
+        total.incrementAndGet();
+        sumaNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // otro hilo subio el maximo al mismo tiempo: se vuelve a comparar
+        }
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    public long meanNanos() {
+        long n = total.get();
+        return n == 0 ? 0 : sumaNanos.get() / n;
+    }
+
+    /**
+     * percentileNanos:
+     * - Valor por debajo del cual quedo la fraccion `p` (0..1) de las mediciones. Devuelve el limite
+     *   superior del rango donde cae, nunca mas que el maximo medido.
+     */
+    public long percentileNanos(double p) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long objetivo = Math.max(1, (long) Math.ceil(p * n));
+        long acumuladas = 0;
+        for (int i = 0; i < RANGOS; i++) {
+            acumuladas += cuentas.get(i);
+            if (acumuladas >= objetivo) return Math.min(limiteSuperior(i), maxNanos.get());
+        }
+        return maxNanos.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < RANGOS; i++) cuentas.set(i, 0);
+        total.set(0);
+        sumaNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Rangos
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * rango:
+     * - 0..3 ns van cada uno en su propio rango. A partir de ahi, el exponente (posicion del bit mas
+     *   alto) elige la potencia de 2 y los 2 bits siguientes eligen la cuarta parte.
+     */
+    static int rango(long nanos) {
+        if (nanos < SUB_RANGOS) return (int) nanos;
+        int exponente = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponente - BITS_SUB)) & (SUB_RANGOS - 1);
+        return (exponente - 1) * SUB_RANGOS + sub;
+    }
+
+    static long limiteSuperior(int rango) {
+        if (rango < SUB_RANGOS) return rango;
+        int exponente = rango / SUB_RANGOS + 1;
+        long sub = rango % SUB_RANGOS;
+        long ancho = 1L << (exponente - BITS_SUB);
+        return (SUB_RANGOS + sub) * ancho + ancho - 1;
+    }
+}
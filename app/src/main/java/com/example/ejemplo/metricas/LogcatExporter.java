@@ -0,0 +1,20 @@
+package com.example.ejemplo.metricas;
+
+import android.util.Log;
+
+/**
+ * `LogcatExporter` escribe cada foto de las metricas en el logcat, una linea por metrica.
+ *
+ * Para verlas: adb logcat -s Metrics
+ */
+public final class LogcatExporter implements MetricsExporter {
+
+    private static final String TAG = "Metrics";
+
+    @Override
+    public void export(MetricsSnapshot snapshot) {
+        for (String linea : snapshot.toLines()) {
+            Log.i(TAG, linea);
+        }
+    }
+}
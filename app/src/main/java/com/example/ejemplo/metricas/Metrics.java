@@ -0,0 +1,313 @@
+package com.example.ejemplo.metricas;
+
+import android.app.Activity;
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * `Metrics` mide donde se va el tiempo de la app: cuanto tarda cada operacion de la base de datos, cuantas
+ * filas se leen y escriben, cuantas consultas resuelve el cache y cuanto tardan las pantallas en mostrarse.
+ *
+ * - Cada operacion (`Op`) tiene su histograma de latencias (ver LatencyHistogram): cantidad, promedio,
+ *   p50, p90, p99 y maximo.
+ * - Cada medicion es ademas una seccion de Trace con el nombre de la operacion, asi aparece en los
+ *   trazados del sistema (Perfetto / Android Studio Profiler) junto con lo que hacia el resto del telefono.
+ * - `export()` le pasa una foto de todo a los exportadores registrados (ver LogcatExporter y FileExporter).
+ *
+ * Apagado (el valor inicial) cuesta una lectura de un booleano por operacion: no mide la hora, no
+ * reserva memoria y no escribe secciones de Trace. `EjemploApp` lo enciende en las compilaciones debug.
+ *
+ * Uso tipico:
+ *   long inicio = Metrics.begin(Metrics.Op.QUERY);
+ *   try { ... } finally { Metrics.end(Metrics.Op.QUERY, inicio); }
+ */
+public final class Metrics {
+
+    /**
+     * Op:
+     * - Las operaciones que se miden. `seccion` es el nombre que se ve en el trazado del sistema.
+     */
+    public enum Op {
+        OPEN("db.open"),
+        QUERY("db.query"),
+        INSERT("db.insert"),
+        UPDATE("db.update"),
+        DELETE("db.delete"),
+        COPY("db.copy"),
+        GROUP_COMMIT("db.group_commit"),
+        MAINTENANCE("db.maintenance"),
+        TTFF_MAIN("ui.ttff.MainActivity"),
+        TTFF_PRINCIPAL("ui.ttff.Principal"),
+        LOGIN("ui.login");
+
+        final String seccion;
+
+        Op(String seccion) {
+            this.seccion = seccion;
+        }
+    }
+
+    /**
+     * Counter:
+     * - Contadores simples (solo suman).
+     */
+    public enum Counter {
+        ROWS_READ,
+        ROWS_WRITTEN,
+        CURSOR_WINDOW_FILLS,
+        CACHE_HITS,
+        CACHE_MISSES,
+        LOGIN_CACHE_HITS, // logins que no recalcularon PBKDF2 (ver PasswordVerifierCache)
+        WRITES_COALESCED // escrituras que no llegaron a la base: otra posterior del mismo grupo las reemplazo
+    }
+
+    private static final Op[] OPS = Op.values();
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private static volatile boolean enabled;
+
+    private static final LatencyHistogram[] histogramas = new LatencyHistogram[OPS.length];
+    private static final AtomicLongArray contadores = new AtomicLongArray(COUNTERS.length);
+    private static final AtomicLongArray pendientes = new AtomicLongArray(OPS.length); // inicio de beginAsync
+    private static final List<MetricsExporter> exportadores = new CopyOnWriteArrayList<>();
+
+    static {
+        for (int i = 0; i < histogramas.length; i++) histogramas[i] = new LatencyHistogram();
+    }
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean activo) {
+        enabled = activo;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Operaciones sincronicas (empiezan y terminan en el mismo hilo)
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * begin:
+     * - Empieza a medir `op` y abre su seccion de Trace. Devuelve la hora de inicio, o 0 si las metricas
+     *   estan apagadas. Siempre se cierra con `end` (en un finally) pasando lo que devolvio.
+     */
+    public static long begin(Op op) {
+        if (!enabled) return 0;
+        Trace.beginSection(op.seccion);
+        return System.nanoTime();
+    }
+
+    public static void end(Op op, long inicio) {
+        if (inicio == 0) return; // begin se llamo con las metricas apagadas
+        histogramas[op.ordinal()].record(System.nanoTime() - inicio);
+        Trace.endSection();
+    }
+
+    public static void count(Counter counter, long cantidad) {
+        if (!enabled || cantidad == 0) return;
+        contadores.addAndGet(counter.ordinal(), cantidad);
+    }
+
+    public static void increment(Counter counter) {
+        if (!enabled) return;
+        contadores.incrementAndGet(counter.ordinal());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Operaciones que empiezan en un lugar y terminan en otro (por ejemplo en otra pantalla)
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * beginAsync / endAsync:
+     * - Para operaciones que no terminan en el mismo metodo (el login empieza con el click en MainActivity
+     *   y termina cuando Principal dibuja). Hay una sola medicion en curso por `op`: volver a empezarla
+     *   descarta la anterior, y `endAsync` sin un `beginAsync` previo no hace nada.
+     */
+    public static void beginAsync(Op op) {
+        if (!enabled) return;
+        long anterior = pendientes.getAndSet(op.ordinal(), System.nanoTime());
+        if (anterior != 0) terminarSeccionAsync(op);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) Trace.beginAsyncSection(op.seccion, op.ordinal());
+    }
+
+    public static void endAsync(Op op) {
+        long inicio = pendientes.getAndSet(op.ordinal(), 0);
+        if (inicio == 0) return;
+        histogramas[op.ordinal()].record(System.nanoTime() - inicio);
+        terminarSeccionAsync(op);
+    }
+
+    /**
+     * cancelAsync:
+     * - Descarta una medicion en curso sin registrarla (por ejemplo, un login con la contraseña equivocada).
+     */
+    public static void cancelAsync(Op op) {
+        if (pendientes.getAndSet(op.ordinal(), 0) != 0) terminarSeccionAsync(op);
+    }
+
+    private static void terminarSeccionAsync(Op op) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) Trace.endAsyncSection(op.seccion, op.ordinal());
+    }
+
+    /**
+     * trackFirstFrame:
+     * - Mide cuanto tarda `activity` en dibujar su primer frame desde este momento (llamar al principio de
+     *   onCreate) y lo registra en `pantalla`. Si se pasa `pendiente`, ese mismo frame termina tambien esa
+     *   medicion asincronica (ver beginAsync).
+     */
+    @MainThread
+    public static void trackFirstFrame(Activity activity, Op pantalla, @Nullable Op pendiente) {
+        if (!enabled) return;
+        beginAsync(pantalla);
+        View decor = activity.getWindow().getDecorView();
+        Handler hiloPrincipal = new Handler(Looper.getMainLooper());
+        decor.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean dibujado;
+
+            @Override
+            public void onDraw() {
+                if (dibujado) return;
+                dibujado = true;
+                endAsync(pantalla);
+                if (pendiente != null) endAsync(pendiente);
+                // No se puede quitar un OnDrawListener mientras se esta dibujando
+                hiloPrincipal.post(() -> decor.getViewTreeObserver().removeOnDrawListener(this));
+            }
+        });
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Cursores
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * watchCursor:
+     * - Devuelve un contador para recorrer un cursor, o null si las metricas estan apagadas.
+     *
+     * Uso:
+     *   Metrics.CursorWatch w = Metrics.watchCursor();
+     *   do { if (w != null) w.row(cursor); ... } while (cursor.moveToNext());
+     *   Metrics.endQuery(inicio, w);
+     */
+    @Nullable
+    public static CursorWatch watchCursor() {
+        return enabled ? new CursorWatch() : null;
+    }
+
+    /**
+     * endQuery:
+     * - `end(Op.QUERY, inicio)` mas las filas leidas y las veces que se lleno la ventana del cursor.
+     */
+    public static void endQuery(long inicio, @Nullable CursorWatch watch) {
+        if (watch != null) {
+            count(Counter.ROWS_READ, watch.filas);
+            count(Counter.CURSOR_WINDOW_FILLS, watch.llenados);
+        }
+        end(Op.QUERY, inicio);
+    }
+
+    /**
+     * CursorWatch:
+     * - Cuenta las filas recorridas y cuantas veces el cursor tuvo que volver a llenar su ventana (el
+     *   bloque de ~2 MB de filas que SQLite copia de una vez). Muchos llenados por consulta indican que
+     *   se estan leyendo mas filas o columnas de las que hacen falta.
+     */
+    public static final class CursorWatch {
+        private int filas;
+        private int llenados;
+        private int inicioVentana = -1;
+
+        private CursorWatch() {
+        }
+
+        public void row(Cursor cursor) {
+            filas++;
+            if (cursor instanceof AbstractWindowedCursor) {
+                CursorWindow ventana = ((AbstractWindowedCursor) cursor).getWindow();
+                int inicio = ventana != null ? ventana.getStartPosition() : 0;
+                if (inicio != inicioVentana) {
+                    inicioVentana = inicio;
+                    llenados++;
+                }
+            } else if (filas == 1) {
+                llenados = 1;
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Exportar
+    // ---------------------------------------------------------------------------------------------
+
+    public static void addExporter(MetricsExporter exportador) {
+        exportadores.add(exportador);
+    }
+
+    public static void removeExporter(MetricsExporter exportador) {
+        exportadores.remove(exportador);
+    }
+
+    /**
+     * snapshot:
+     * - Foto de todas las metricas en este momento (las operaciones sin mediciones no aparecen).
+     */
+    public static MetricsSnapshot snapshot() {
+        MetricsSnapshot.Builder foto = new MetricsSnapshot.Builder();
+        for (Op op : OPS) {
+            LatencyHistogram h = histogramas[op.ordinal()];
+            if (h.count() > 0) foto.op(op.seccion, h);
+        }
+        for (Counter c : COUNTERS) {
+            foto.counter(c.name(), contadores.get(c.ordinal()));
+        }
+        return foto.build();
+    }
+
+    public static void reset() {
+        for (LatencyHistogram h : histogramas) h.reset();
+        for (int i = 0; i < COUNTERS.length; i++) contadores.set(i, 0);
+    }
+
+    /**
+     * export:
+     * - Le pasa una foto de las metricas a cada exportador, en un hilo secundario (los exportadores pueden
+     *   escribir archivos). Si estan apagadas no hace nada.
+     */
+    public static void export() {
+        if (!enabled || exportadores.isEmpty()) return;
+        MetricsSnapshot foto = snapshot();
+        Exportador.HILO.execute(() -> {
+            for (MetricsExporter exportador : exportadores) exportador.export(foto);
+        });
+    }
+
+    // El hilo de exportar se crea recien la primera vez que se exporta
+    private static final class Exportador {
+        static final ExecutorService HILO = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-export");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.ejemplo.metricas;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * `MetricsExporter` recibe las fotos de las metricas para mandarlas a algun lado (logcat, un archivo,
+ * un servidor...). Se registran con `Metrics.addExporter` y se llaman desde un hilo secundario.
+ */
+public interface MetricsExporter {
+    @WorkerThread
+    void export(MetricsSnapshot snapshot);
+}
@@ -0,0 +1,94 @@
+package com.example.ejemplo.metricas;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * `MetricsSnapshot` es una foto de las metricas en un momento dado (ver Metrics.snapshot). Es inmutable:
+ * los exportadores la pueden leer desde cualquier hilo mientras la app sigue midiendo.
+ */
+public final class MetricsSnapshot {
+
+    /**
+     * OpStats:
+     * - Resumen de las latencias de una operacion, en nanosegundos.
+     */
+    public static final class OpStats {
+        public final String name;
+        public final long count;
+        public final long meanNanos;
+        public final long p50Nanos;
+        public final long p90Nanos;
+        public final long p99Nanos;
+        public final long maxNanos;
+
+        OpStats(String name, LatencyHistogram h) {
+            this.name = name;
+            this.count = h.count();
+            this.meanNanos = h.meanNanos();
+            this.p50Nanos = h.percentileNanos(0.50);
+            this.p90Nanos = h.percentileNanos(0.90);
+            this.p99Nanos = h.percentileNanos(0.99);
+            this.maxNanos = h.maxNanos();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-22s n=%-7d media=%s p50=%s p90=%s p99=%s max=%s",
+                    name, count, ms(meanNanos), ms(p50Nanos), ms(p90Nanos), ms(p99Nanos), ms(maxNanos));
+        }
+
+        private static String ms(long nanos) {
+            return String.format(Locale.ROOT, "%.3fms", nanos / 1e6);
+        }
+    }
+
+    public final long timestampMillis;
+    public final List<OpStats> ops;
+    public final Map<String, Long> counters;
+
+    private MetricsSnapshot(long timestampMillis, List<OpStats> ops, Map<String, Long> counters) {
+        this.timestampMillis = timestampMillis;
+        this.ops = Collections.unmodifiableList(ops);
+        this.counters = Collections.unmodifiableMap(counters);
+    }
+
+    /**
+     * toLines:
+     * - Una linea por operacion y una por contador, listas para el logcat o un archivo de texto.
+     */
+    public List<String> toLines() {
+        List<String> lineas = new ArrayList<>(ops.size() + counters.size());
+        for (OpStats op : ops) lineas.add(op.toString());
+        for (Map.Entry<String, Long> c : counters.entrySet()) {
+            lineas.add(String.format(Locale.ROOT, "%-22s %d", c.getKey(), c.getValue()));
+        }
+        return lineas;
+    }
+
+    @Override
+    public String toString() {
+        return String.join("\n", toLines());
+    }
+
+    static final class Builder {
+        private final List<OpStats> ops = new ArrayList<>();
+        private final Map<String, Long> counters = new LinkedHashMap<>();
+
+        void op(String nombre, LatencyHistogram h) {
+            ops.add(new OpStats(nombre, h));
+        }
+
+        void counter(String nombre, long valor) {
+            counters.put(nombre, valor);
+        }
+
+        MetricsSnapshot build() {
+            return new MetricsSnapshot(System.currentTimeMillis(), ops, counters);
+        }
+    }
+}
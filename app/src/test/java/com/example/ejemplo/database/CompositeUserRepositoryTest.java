@@ -0,0 +1,71 @@
+package com.example.ejemplo.database;
+
+import com.example.ejemplo.modelos.User;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de la capa en memoria de `CompositeUserRepository` (con otro repositorio en memoria
+ * haciendo de "disco", para poder cambiarlo por detras).
+ */
+public class CompositeUserRepositoryTest {
+
+    @Test
+    public void loLeidoQuedaEnMemoria() {
+        InMemoryUserRepository disco = TestRepositories.inMemory();
+        disco.addUser(new User(0, "ana", "x"));
+        CompositeUserRepository repo = new CompositeUserRepository(disco);
+
+        assertEquals(1, repo.getUserByUsername("ana").getId());
+        disco.put(1, "ana-renombrada", null); // cambio por detras: la memoria no se entera
+        assertEquals("ana", repo.getUserById(1).getNombreUsuario());
+    }
+
+    @Test
+    public void lasEscriturasPasanPorElDiscoYActualizanLaMemoria() {
+        InMemoryUserRepository disco = TestRepositories.inMemory();
+        CompositeUserRepository repo = new CompositeUserRepository(disco);
+
+        long id = repo.addUser(new User(0, "bruno", "clave"));
+        assertEquals(id, disco.getUserByUsername("bruno").getId());
+        assertEquals(id, repo.comprobarUsuarioLocal("bruno", "clave").getId());
+
+        assertTrue(repo.updatePassword("bruno", "nueva"));
+        assertEquals(-1, repo.comprobarUsuarioLocal("bruno", "clave").getId());
+        assertEquals(disco.getUserById(id).getPassword(), repo.getUserById(id).getPassword());
+
+        assertEquals(1, repo.deleteUser("bruno"));
+        assertEquals(-1, repo.getUserByUsername("bruno").getId());
+        assertEquals(-1, repo.getUserById(id).getId());
+    }
+
+    @Test
+    public void lasEscriturasAgrupadasTambienActualizanLaMemoria() {
+        InMemoryUserRepository disco = TestRepositories.inMemory();
+        disco.addUserHashed("ana", "h0");
+        CompositeUserRepository repo = new CompositeUserRepository(disco);
+        assertEquals("h0", repo.getUserByUsername("ana").getPassword()); // queda en memoria
+
+        long[] r = repo.applyWrites(Arrays.asList(UserRepository.Write.update("ana", "h1"),
+                UserRepository.Write.insert("bruno", "h2")));
+
+        assertEquals(1, r[0]);
+        assertEquals("h1", repo.getUserByUsername("ana").getPassword());
+        assertEquals(r[1], repo.getUserByUsername("bruno").getId());
+    }
+
+    @Test
+    public void laMemoriaSeVaciaAlLlenarse() {
+        InMemoryUserRepository disco = TestRepositories.inMemory();
+        for (int i = 0; i < 5; i++) disco.addUser(new User(0, "u" + i, "x"));
+        CompositeUserRepository repo = new CompositeUserRepository(disco, 2);
+
+        for (int i = 1; i <= 5; i++) assertEquals(i, repo.getUserById(i).getId());
+        disco.put(1, "cambiado", null);
+        assertEquals("cambiado", repo.getUserById(1).getNombreUsuario()); // ya no estaba en memoria
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.ejemplo.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.ejemplo.modelos.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Benchmarks de `DBHelper` que corren en la PC (JVM comun) con el SQLite nativo de Robolectric.
+ *
+ * No corren con `./gradlew test`: hay que pedirlos indicando los tamaños de tabla a probar.
+ *
+ * ./gradlew :app:testDebugUnitTest --tests '*DBHelperBenchmark' -Pbench.sizes=1k,10k,100k,1m
+ *
+ * Otras propiedades (opcionales):
+ * - bench.iterations (2000), bench.warmup (200), bench.maxSeconds (10): cuanto medir cada operacion.
+ * - bench.pbkdf2 (1): iteraciones de PBKDF2 para las contraseñas. Por defecto 1, para medir la base de
+ *   datos y no el hash (el costo del hash se calibra aparte en cada dispositivo, ver PasswordHasher).
+ * - bench.baseline=ruta/a/un/csv/anterior y bench.tolerance (0.20): falla si alguna mediana empeora
+ *   mas que la tolerancia respecto de esa corrida.
+ *
+ * Los resultados se imprimen y se guardan en `app/build/reports/benchmarks/dbhelper.csv`.
+ *
+ * Los tiempos sirven para comparar corridas entre si en la misma maquina, NO como tiempos de un
+ * telefono. Los bytes por operacion son los del heap de Java (no cuentan la memoria nativa de SQLite).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DBHelperBenchmark {
+
+    private static final String PASSWORD = "clave";
+    private static final int LOTE = 1_000;
+
+    private DBHelper helper;
+    private MicroBench bench;
+    private final Random random = new Random(42); // misma semilla: mismas consultas en cada corrida
+
+    @Before
+    public void setUp() {
+        assumeTrue("Benchmarks desactivados (usar -Pbench.sizes=...)", !tamanios().isEmpty());
+
+        Context context = ApplicationProvider.getApplicationContext();
+        helper = DBHelper.getInstance(context);
+        helper.getPasswordHasher().useIterations(Integer.getInteger("bench.pbkdf2", 1));
+        bench = new MicroBench(new MicroBench.Config(
+                Integer.getInteger("bench.warmup", 200),
+                Integer.getInteger("bench.iterations", 2_000),
+                Integer.getInteger("bench.maxSeconds", 10)));
+    }
+
+    @Test
+    public void operacionesDeUsuario() throws Exception {
+        for (int filas : tamanios()) {
+            poblar(filas);
+            medirLecturas(filas);
+            medirEscrituras(filas);
+        }
+
+        bench.escribirCsv(new File("build/reports/benchmarks/dbhelper.csv"));
+
+        String baseline = System.getProperty("bench.baseline");
+        if (baseline != null && !baseline.isEmpty()) {
+            double tolerancia = Double.parseDouble(System.getProperty("bench.tolerance", "0.20"));
+            List<String> peores = bench.regresiones(new File(baseline), tolerancia);
+            assertTrue("Regresiones de rendimiento:\n" + String.join("\n", peores), peores.isEmpty());
+        }
+    }
+
+    private void medirLecturas(int filas) throws Exception {
+        UserCache cache = helper.getUserCache();
+
+        // Login repetido del mismo usuario: lo resuelve el cache
+        bench.medir("login (cache)", filas, null,
+                i -> helper.comprobarUsuarioLocal("usuario_7", PASSWORD));
+
+        // Login de usuarios al azar con el cache vacio: siempre va a la base
+        bench.medir("login (disco)", filas, i -> cache.invalidateAll(),
+                i -> helper.comprobarUsuarioLocal(nombreAlAzar(filas), PASSWORD));
+
+        bench.medir("login inexistente", filas, i -> cache.invalidateAll(),
+                i -> helper.comprobarUsuarioLocal("no_existe_" + i, PASSWORD));
+
+        // Comprobar si existe: fila entera con Cursor contra sentencia compilada que devuelve un numero
+        bench.medir("existe (getUserByUsername)", filas, i -> cache.invalidateAll(),
+                i -> helper.getUserByUsername(nombreAlAzar(filas)));
+        bench.medir("existe (existsByUsername)", filas, i -> cache.invalidateAll(),
+                i -> helper.existsByUsername(nombreAlAzar(filas)));
+
+        // Busqueda mientras se escribe: prefijos de distinto largo sobre el indice FTS
+        String[] prefijos = {"usuario_1", "usuario_12", "usuario_123"};
+        bench.medir("busqueda (50)", filas, null,
+                i -> helper.searchUsers(prefijos[Math.abs(i) % prefijos.length], 0, 50, null));
+
+        bench.medir("lista completa", filas, null, i -> helper.getAllUsersSafe());
+        bench.medir("lista completa (UserList)", filas, null, i -> helper.getAllUsersList());
+    }
+
+    private void medirEscrituras(int filas) throws Exception {
+        bench.medir("update", filas, null,
+                i -> helper.updatePassword(nombreAlAzar(filas), PASSWORD));
+
+        bench.medir("insert", filas, null,
+                i -> helper.addUser(new User(0, "nuevo_" + i, PASSWORD)));
+        borrarConPrefijo("nuevo_");
+
+        List<List<User>> lote = new ArrayList<>(1);
+        bench.medir("insert lote " + LOTE, filas,
+                i -> {
+                    lote.clear();
+                    lote.add(usuarios("lote_" + i + "_", LOTE));
+                },
+                i -> helper.addUsers(lote.get(0)));
+        borrarConPrefijo("lote_");
+
+        // La fila a borrar se inserta antes (sin medir) para que cada delete borre algo
+        bench.medir("delete", filas,
+                i -> helper.addUser(new User(0, "borrar_" + i, PASSWORD)),
+                i -> helper.deleteUser("borrar_" + i));
+        borrarConPrefijo("borrar_");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Datos
+    // ---------------------------------------------------------------------------------------------
+
+    private void poblar(int filas) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.delete(DBHelper.TABLE_USUARIO, null, null);
+        helper.addUsers(new Iterator<User>() {
+            int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < filas;
+            }
+
+            @Override
+            public User next() {
+                return new User(0, "usuario_" + i++, PASSWORD);
+            }
+        });
+        helper.getUserCache().invalidateAll();
+        db.execSQL("ANALYZE");
+        System.out.println(String.format(Locale.ROOT, "--- %d filas ---", filas));
+    }
+
+    private void borrarConPrefijo(String prefijo) {
+        helper.getWritableDatabase().delete(DBHelper.TABLE_USUARIO,
+                DBHelper.COL_NOMBRE + " LIKE ?", new String[]{prefijo + "%"});
+        helper.getUserCache().invalidateAll();
+    }
+
+    private String nombreAlAzar(int filas) {
+        return "usuario_" + random.nextInt(filas);
+    }
+
+    private static List<User> usuarios(String prefijo, int cantidad) {
+        List<User> users = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            users.add(new User(0, prefijo + i, PASSWORD));
+        }
+        return users;
+    }
+
+    /**
+     * tamanios:
+     * - Lee `bench.sizes` ("1k,10k,100k,1m") y devuelve la cantidad de filas de cada corrida.
+     */
+    private static List<Integer> tamanios() {
+        List<Integer> tamanios = new ArrayList<>();
+        String valor = System.getProperty("bench.sizes", "").trim().toLowerCase(Locale.ROOT);
+        for (String parte : valor.split(",")) {
+            parte = parte.trim();
+            if (parte.isEmpty()) continue;
+            int multiplicador = 1;
+            if (parte.endsWith("k")) multiplicador = 1_000;
+            if (parte.endsWith("m")) multiplicador = 1_000_000;
+            if (multiplicador != 1) parte = parte.substring(0, parte.length() - 1);
+            tamanios.add(Integer.parseInt(parte) * multiplicador);
+        }
+        return tamanios;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.ejemplo.database;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales del agrupado de escrituras, sobre el repositorio en memoria. El "hilo de escritura" es una
+ * cola que la prueba vacia a mano, asi se sabe exactamente que grupos se arman.
+ */
+public class GroupCommitWriterTest {
+
+    private final InMemoryUserRepository real = TestRepositories.inMemory();
+    private final List<List<UserRepository.Write>> grupos = new ArrayList<>(); // cada llamada a applyWrites
+    private final ArrayDeque<Runnable> hiloDeEscritura = new ArrayDeque<>();
+
+    // El repositorio real, anotando cada grupo que recibe (y fallando si el grupo trae a "roto")
+    private UserRepository espia() {
+        return (UserRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, metodo, args) -> {
+                    if (metodo.getName().equals("applyWrites")) {
+                        @SuppressWarnings("unchecked")
+                        List<UserRepository.Write> grupo = new ArrayList<>((List<UserRepository.Write>) args[0]);
+                        grupos.add(grupo);
+                        for (UserRepository.Write w : grupo) {
+                            if (w.nombreUsuario.equals("roto")) throw new IllegalStateException("disco lleno");
+                        }
+                    }
+                    try {
+                        return metodo.invoke(real, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private GroupCommitWriter grupo(int maxLote) {
+        UserRepository repo = espia();
+        return new GroupCommitWriter(hiloDeEscritura::add, () -> repo, 0, maxLote);
+    }
+
+    private void vaciar() {
+        while (!hiloDeEscritura.isEmpty()) hiloDeEscritura.poll().run();
+    }
+
+    @Test
+    public void lasEscriturasSeguidasVanEnUnSoloGrupo() {
+        GroupCommitWriter grupo = grupo(GroupCommitWriter.DEFAULT_MAX_LOTE);
+        CompletableFuture<Long> ana = grupo.submit(UserRepository.Write.insert("ana", "h"));
+        CompletableFuture<Long> bruno = grupo.submit(UserRepository.Write.insert("bruno", "h"));
+        CompletableFuture<Long> repetido = grupo.submit(UserRepository.Write.insert("ana", "h"));
+        CompletableFuture<Long> nadie = grupo.submit(UserRepository.Write.delete("nadie"));
+
+        assertEquals(1, hiloDeEscritura.size()); // un solo vaciado encolado para las cuatro
+        assertFalse(ana.isDone());
+        vaciar();
+
+        assertEquals(1, grupos.size());
+        assertEquals(4, grupos.get(0).size());
+        assertEquals(real.idByUsername("ana"), (long) ana.join());
+        assertEquals(real.idByUsername("bruno"), (long) bruno.join());
+        assertEquals(-1, (long) repetido.join());
+        assertEquals(0, (long) nadie.join());
+    }
+
+    @Test
+    public void variosUpdatesDelMismoUsuarioSeReducenAlUltimo() {
+        real.addUserHashed("ana", "h0");
+        GroupCommitWriter grupo = grupo(GroupCommitWriter.DEFAULT_MAX_LOTE);
+        CompletableFuture<Long> primero = grupo.submit(UserRepository.Write.update("ana", "h1"));
+        CompletableFuture<Long> otro = grupo.submit(UserRepository.Write.update("nadie", "x"));
+        CompletableFuture<Long> ultimo = grupo.submit(UserRepository.Write.update("ana", "h2"));
+        vaciar();
+
+        assertEquals(2, grupos.get(0).size()); // el primer update de ana no llego al repositorio
+        assertEquals("h2", real.getUserByUsername("ana").getPassword());
+        assertEquals(1, (long) primero.join());
+        assertEquals(0, (long) otro.join());
+        assertEquals(1, (long) ultimo.join());
+    }
+
+    @Test
+    public void updateSeguidoDeBorradoQuedaSoloElBorrado() {
+        real.addUserHashed("ana", "h0");
+        GroupCommitWriter grupo = grupo(GroupCommitWriter.DEFAULT_MAX_LOTE);
+        CompletableFuture<Long> update = grupo.submit(UserRepository.Write.update("ana", "h1"));
+        CompletableFuture<Long> borrado = grupo.submit(UserRepository.Write.delete("ana"));
+        CompletableFuture<Long> alta = grupo.submit(UserRepository.Write.insert("ana", "h2"));
+        CompletableFuture<Long> updateNuevo = grupo.submit(UserRepository.Write.update("ana", "h3"));
+        vaciar();
+
+        List<UserRepository.Write> aplicadas = grupos.get(0);
+        assertEquals(3, aplicadas.size());
+        assertEquals(UserChanges.DELETE, aplicadas.get(0).tipo);
+        assertEquals(1, (long) update.join());
+        assertEquals(1, (long) borrado.join());
+        assertNotEquals(-1, (long) alta.join()); // el alta despues del borrado no se toca
+        assertEquals(1, (long) updateNuevo.join());
+        assertEquals("h3", real.getUserByUsername("ana").getPassword());
+    }
+
+    @Test
+    public void losGruposNoPasanDelMaximo() {
+        GroupCommitWriter grupo = grupo(2);
+        List<CompletableFuture<Long>> futuros = new ArrayList<>();
+        for (int i = 0; i < 5; i++) futuros.add(grupo.submit(UserRepository.Write.insert("u" + i, "h")));
+        vaciar();
+
+        assertEquals(3, grupos.size());
+        assertEquals(2, grupos.get(0).size());
+        assertEquals(2, grupos.get(1).size());
+        assertEquals(1, grupos.get(2).size());
+        for (CompletableFuture<Long> f : futuros) assertNotEquals(-1, (long) f.join());
+        assertEquals(5, real.countUsers());
+    }
+
+    @Test
+    public void cadaEscrituraVaAlRepositorioEnQueSePidio() {
+        GroupCommitWriter grupo = grupo(GroupCommitWriter.DEFAULT_MAX_LOTE);
+        InMemoryUserRepository otro = TestRepositories.inMemory(); // otra organizacion
+        CompletableFuture<Long> ana = grupo.submit(UserRepository.Write.insert("ana", "h"));
+        CompletableFuture<Long> bruno = grupo.submit(otro, UserRepository.Write.insert("bruno", "h"));
+        CompletableFuture<Long> carla = grupo.submit(UserRepository.Write.insert("carla", "h"));
+        vaciar();
+
+        assertEquals(2, grupos.size()); // "ana" y "carla" van por el espia, cada una en su tramo
+        assertEquals(real.idByUsername("ana"), (long) ana.join());
+        assertEquals(otro.idByUsername("bruno"), (long) bruno.join());
+        assertNotEquals(-1, (long) carla.join());
+        assertFalse(real.existsByUsername("bruno"));
+        assertFalse(otro.existsByUsername("ana"));
+    }
+
+    @Test
+    public void cerrarUnaOrganizacionEsperaTodasSusEscrituras() {
+        GroupCommitWriter grupo = grupo(2);
+        UserRepository a = espia();
+        List<Integer> gruposAlCerrar = new ArrayList<>(); // cuantos grupos se habian confirmado al cerrar
+        TenantPool<UserRepository> pool = new TenantPool<>(tenant -> tenant.equals("a") ? a : TestRepositories.inMemory(),
+                repo -> grupo.afterPending(repo, () -> gruposAlCerrar.add(grupos.size())), 1);
+
+        List<CompletableFuture<Long>> futuros = new ArrayList<>();
+        for (int i = 0; i < 5; i++) futuros.add(grupo.submit(pool.get("a"), UserRepository.Write.insert("u" + i, "h")));
+        pool.get("b"); // desaloja "a" con mas escrituras pendientes que maxLote
+        assertTrue(gruposAlCerrar.isEmpty());
+        vaciar();
+
+        assertEquals(3, grupos.size());
+        assertEquals(Collections.singletonList(3), gruposAlCerrar); // despues del ultimo grupo, no del primero
+        for (CompletableFuture<Long> f : futuros) assertNotEquals(-1, (long) f.join());
+        assertEquals(5, real.countUsers());
+
+        // Sin escrituras pendientes ("b") se cierra igual, en el hilo de escritura
+        pool.get("a");
+        assertEquals(1, gruposAlCerrar.size());
+        assertEquals(1, hiloDeEscritura.size());
+        vaciar();
+        assertEquals(2, gruposAlCerrar.size());
+    }
+
+    @Test
+    public void cerrarUnaOrganizacionEsperaLasEscriturasQueCalculanElHash() {
+        GroupCommitWriter grupo = grupo(GroupCommitWriter.DEFAULT_MAX_LOTE);
+        UserRepository a = espia();
+        List<Integer> gruposAlCerrar = new ArrayList<>();
+        TenantPool<UserRepository> pool = new TenantPool<>(tenant -> tenant.equals("a") ? a : TestRepositories.inMemory(),
+                repo -> grupo.afterPending(repo, () -> gruposAlCerrar.add(grupos.size())), 1);
+
+        // Como DBAsync.addUser: se reserva al pedirla y se encola con el hash listo
+        GroupCommitWriter.Reserva alta = grupo.reserve(pool.get("a"));
+        GroupCommitWriter.Reserva fallida = grupo.reserve(pool.get("a"));
+        pool.get("b"); // desaloja "a" mientras se calculan los hash
+        vaciar();
+        assertTrue(gruposAlCerrar.isEmpty());
+
+        CompletableFuture<Long> ana = alta.submit(UserRepository.Write.insert("ana", "h"));
+        vaciar();
+        assertTrue(gruposAlCerrar.isEmpty()); // todavia falta la otra
+        assertTrue(ana.isDone());
+
+        fallida.cancel(); // el hash fallo: no hay nada que encolar
+        fallida.cancel();
+        vaciar();
+        assertEquals(Collections.singletonList(1), gruposAlCerrar);
+        assertTrue(real.existsByUsername("ana"));
+    }
+
+    @Test
+    public void unErrorSoloLeLlegaAQuienLoCauso() {
+        GroupCommitWriter grupo = grupo(GroupCommitWriter.DEFAULT_MAX_LOTE);
+        CompletableFuture<Long> ana = grupo.submit(UserRepository.Write.insert("ana", "h"));
+        CompletableFuture<Long> roto = grupo.submit(UserRepository.Write.insert("roto", "h"));
+        CompletableFuture<Long> bruno = grupo.submit(UserRepository.Write.update("bruno", "h"));
+        vaciar();
+
+        assertEquals(4, grupos.size()); // el grupo fallo y se reintento de a una
+        assertEquals(real.idByUsername("ana"), (long) ana.join());
+        assertEquals(0, (long) bruno.join());
+        try {
+            roto.join();
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.ejemplo.database;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * `InMemorySyncServer` es un directorio de usuarios remoto que vive dentro del proceso, para probar la
+ * sincronizacion sin red.
+ *
+ * Se comporta como el servidor que espera `SyncTransport`: una revision global que sube con cada cambio,
+ * los usuarios borrados quedan como "lapidas" (para que los demas dispositivos se enteren del borrado) y
+ * un envio solo se acepta si parte de la revision actual del usuario.
+ *
+ * Se puede extender para simular fallas (por ejemplo, que `pull` lance IOException a la tercera pagina).
+ */
+class InMemorySyncServer implements SyncTransport {
+
+    private final Map<String, SyncChange> usuarios = new HashMap<>(); // ultimo estado por nombre (lapidas tambien)
+    private final TreeMap<Long, String> porRevision = new TreeMap<>(); // para pull sin recorrer todo
+    private long revision;
+
+    @Override
+    public synchronized List<SyncChange> pull(long since, int limit) {
+        List<SyncChange> cambios = new ArrayList<>(Math.min(limit, porRevision.size()));
+        for (String nombre : porRevision.tailMap(since, false).values()) {
+            if (cambios.size() == limit) break;
+            cambios.add(usuarios.get(nombre));
+        }
+        return cambios;
+    }
+
+    @Override
+    public synchronized List<PushResult> push(List<SyncChange> cambios) {
+        List<PushResult> resultados = new ArrayList<>(cambios.size());
+        for (SyncChange c : cambios) {
+            SyncChange actual = usuarios.get(c.getNombreUsuario());
+            if (actual != null && actual.getRev() != c.getRev()) {
+                resultados.add(PushResult.conflict(actual));
+            } else {
+                resultados.add(PushResult.accepted(guardar(c.getNombreUsuario(), c.getHash(), c.isDeleted(),
+                        c.getModifiedAt())));
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * putUser / deleteUser:
+     * - Cambios hechos "en el servidor" (por otro dispositivo). Devuelven la revision nueva.
+     */
+    public synchronized long putUser(String nombreUsuario, @Nullable String hash) {
+        return guardar(nombreUsuario, hash, false, System.currentTimeMillis());
+    }
+
+    public synchronized long deleteUser(String nombreUsuario) {
+        return guardar(nombreUsuario, null, true, System.currentTimeMillis());
+    }
+
+    /**
+     * getUser:
+     * - El ultimo estado del usuario (borrado incluido), o null si el servidor nunca lo tuvo.
+     */
+    @Nullable
+    public synchronized SyncChange getUser(String nombreUsuario) {
+        return usuarios.get(nombreUsuario);
+    }
+
+    public synchronized long currentRevision() {
+        return revision;
+    }
+
+    private long guardar(String nombre, @Nullable String hash, boolean borrado, long modificado) {
+        SyncChange anterior = usuarios.put(nombre, new SyncChange(nombre, hash, borrado, ++revision, modificado));
+        if (anterior != null) porRevision.remove(anterior.getRev());
+        porRevision.put(revision, nombre);
+        return revision;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.ejemplo.database;
+
+import com.example.ejemplo.modelos.User;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales del repositorio en memoria: se tiene que comportar como la tabla de usuarios.
+ */
+public class InMemoryUserRepositoryTest {
+
+    @Test
+    public void nombresUnicosEIdsCrecientes() {
+        InMemoryUserRepository repo = TestRepositories.inMemory("ana", "bruno");
+        assertEquals(2, repo.countUsers());
+        assertEquals(-1, repo.addUser(new User(0, "ana", "otra")));
+        assertEquals(3, repo.addUser(new User(0, "carla", "x")));
+
+        User bruno = repo.getUserByUsername("bruno");
+        assertEquals(2, bruno.getId());
+        assertEquals("bruno", repo.getUserById(2).getNombreUsuario());
+        assertEquals(-1, repo.getUserByUsername("nadie").getId());
+        assertTrue(repo.existsByUsername("bruno"));
+        assertFalse(repo.existsByUsername("nadie"));
+        assertEquals(3, repo.idByUsername("carla"));
+        assertEquals(-1, repo.idByUsername("nadie"));
+    }
+
+    @Test
+    public void guardaHashYCompruebaLogin() {
+        InMemoryUserRepository repo = TestRepositories.inMemory("ana");
+        assertTrue(PasswordHasher.isHash(repo.getUserByUsername("ana").getPassword()));
+
+        User ok = repo.comprobarUsuarioLocal("ana", "clave-ana");
+        assertEquals(1, ok.getId());
+        assertNull(ok.getPassword());
+        assertEquals(-1, repo.comprobarUsuarioLocal("ana", "mal").getId());
+
+        assertTrue(repo.updatePassword("ana", "nueva"));
+        assertEquals(-1, repo.comprobarUsuarioLocal("ana", "clave-ana").getId());
+        assertEquals(1, repo.comprobarUsuarioLocal("ana", "nueva").getId());
+    }
+
+    @Test
+    public void paginaPorIdComoLaBase() {
+        InMemoryUserRepository repo = TestRepositories.inMemory("a", "b", "c", "d", "e", "f");
+        assertEquals(1, repo.deleteUser("c"));
+        assertEquals(0, repo.deleteUser("c"));
+
+        UserList pagina = repo.getUserListPage(2, 2);
+        assertEquals(2, pagina.size());
+        assertEquals(4, pagina.getId(0));
+        assertEquals("e", pagina.getName(1));
+
+        UserList antes = repo.getUserListPageBefore(5, 10);
+        assertEquals(3, antes.size());
+        assertEquals(1, antes.getId(0));
+
+        assertEquals(2, repo.countUsersBefore(4));
+        assertEquals(2, repo.countUsersBefore(3)); // id borrado: su lugar sigue contando
+        assertEquals(4, repo.getUserListAtOffset(2, 10).getId(0));
+        assertEquals(5, repo.getAllUsersList().size());
+    }
+
+    @Test
+    public void insertaLotesSaltandoRepetidos() {
+        InMemoryUserRepository repo = TestRepositories.inMemory("ana");
+        DBHelper.BatchResult r = repo.addUsers(Arrays.asList(
+                new User(0, "ana", "x"), new User(0, "bruno", "x"), new User(0, "bruno", "y"), new User(0, null, "z")).iterator());
+        assertEquals(1, r.inserted);
+        assertEquals(3, r.skipped);
+        assertEquals(2, repo.countUsers());
+    }
+
+    @Test
+    public void buscaPorPrincipioDePalabra() {
+        InMemoryUserRepository repo = TestRepositories.inMemory("juan perez", "juana", "maria juan", "pedro");
+        List<User> encontrados = repo.searchUsers("jua", 0, 10, null);
+        assertEquals(3, encontrados.size());
+        assertEquals("juana", encontrados.get(0).getNombreUsuario()); // empieza con, y mas corto
+        assertNull(encontrados.get(0).getPassword());
+
+        assertEquals(1, repo.searchUsers("juan pe", 0, 10, null).size());
+        assertTrue(repo.searchUsers("uan", 0, 10, null).isEmpty());
+        assertEquals(1, repo.searchUsers("jua", 2, 10, null).size());
+    }
+
+    @Test
+    public void recorreTodoDeATandas() {
+        InMemoryUserRepository repo = TestRepositories.inMemory();
+        for (int i = 0; i < 600; i++) repo.addUserHashed("u" + i, null);
+        long[] anterior = {0};
+        int[] vistos = {0};
+        repo.forEachUser((id, nombre, hash) -> {
+            assertEquals(anterior[0] + 1, id); // en orden, sin repetir ni saltear entre tandas
+            anterior[0] = id;
+            return ++vistos[0] < 500;
+        }, null);
+        assertEquals(500, vistos[0]);
+    }
+}
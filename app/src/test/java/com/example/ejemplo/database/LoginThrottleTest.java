@@ -0,0 +1,88 @@
+package com.example.ejemplo.database;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de la cuenta de logins fallidos (con un reloj falso).
+ */
+public class LoginThrottleTest {
+
+    private long ahora = 1_000_000;
+
+    private LoginThrottle throttle() {
+        return new LoginThrottle(null, () -> ahora);
+    }
+
+    private static void fallar(LoginThrottle t, String nombre, int veces) {
+        for (int i = 0; i < veces; i++) t.recordFailure(nombre);
+    }
+
+    @Test
+    public void laEsperaSeDuplicaConCadaFallo() {
+        LoginThrottle t = throttle();
+        for (int i = 0; i < LoginThrottle.FALLOS_LIBRES; i++) assertEquals(0, t.recordFailure("ana"));
+        assertEquals(0, t.remainingMs("ana"));
+
+        assertEquals(1_000, t.recordFailure("ana"));
+        assertEquals(2_000, t.recordFailure("ana"));
+        assertEquals(4_000, t.recordFailure("ana"));
+        assertEquals(4_000, t.remainingMs("ana"));
+
+        ahora += 1_500;
+        assertEquals(2_500, t.remainingMs("ana"));
+        assertEquals(0, t.remainingMs("bruno")); // cada usuario tiene su cuenta
+
+        assertEquals(LoginThrottle.ESPERA_MAX_MS, LoginThrottle.espera(LoginThrottle.FALLOS_BLOQUEO - 1));
+        assertEquals(LoginThrottle.BLOQUEO_MS, LoginThrottle.espera(LoginThrottle.FALLOS_BLOQUEO));
+    }
+
+    @Test
+    public void unLoginCorrectoOElTiempoBorranLosFallos() {
+        LoginThrottle t = throttle();
+        fallar(t, "ana", LoginThrottle.FALLOS_BLOQUEO);
+        assertEquals(LoginThrottle.BLOQUEO_MS, t.remainingMs("ana"));
+        t.recordSuccess("ana");
+        assertEquals(0, t.remainingMs("ana"));
+
+        fallar(t, "bruno", LoginThrottle.FALLOS_LIBRES);
+        ahora += LoginThrottle.OLVIDAR_MS + 1;
+        assertEquals(0, t.recordFailure("bruno")); // empieza a contar de nuevo
+    }
+
+    @Test
+    public void laHoraAtrasadaNoAlargaElBloqueo() {
+        LoginThrottle t = throttle();
+        fallar(t, "ana", LoginThrottle.FALLOS_BLOQUEO);
+        ahora -= 24 * 60 * 60_000L;
+        assertEquals(LoginThrottle.BLOQUEO_MS, t.remainingMs("ana"));
+    }
+
+    @Test
+    public void nombresInventadosNoBorranUnBloqueo() {
+        LoginThrottle t = throttle();
+        fallar(t, "admin", LoginThrottle.FALLOS_BLOQUEO);
+        for (int i = 0; i < LoginThrottle.MAX_USUARIOS * 2; i++) t.recordFailure("falso" + i);
+        assertEquals(LoginThrottle.BLOQUEO_MS, t.remainingMs("admin"));
+        assertTrue(t.estado().size() <= LoginThrottle.MAX_USUARIOS);
+    }
+
+    @Test
+    public void guardaYRecuperaElEstado() {
+        LoginThrottle t = throttle();
+        fallar(t, "ana", LoginThrottle.FALLOS_LIBRES + 2);
+        fallar(t, "a:b", 1);
+        Map<String, String> estado = t.estado();
+
+        LoginThrottle otra = throttle();
+        estado.put("roto", "x:1");
+        otra.restaurar(estado);
+        assertEquals(2_000, otra.remainingMs("ana"));
+        assertEquals(4_000, otra.recordFailure("ana")); // sigue contando desde donde estaba
+        assertEquals(0, otra.recordFailure("a:b"));
+        assertFalse(otra.estado().containsKey("roto"));
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.ejemplo.database;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * `MicroBench` es un arnes de medicion chico al estilo JMH para las pruebas locales.
+ *
+ * Para cada operacion:
+ * - Hace un calentamiento (el JIT compila el codigo caliente y SQLite llena su cache de paginas).
+ * - Mide cada llamada por separado con `System.nanoTime()`, hasta `iteraciones` o hasta agotar el
+ *   tiempo maximo, lo que pase primero (siempre al menos `MIN_ITERACIONES`).
+ * - Cuenta los bytes reservados en el heap por el hilo que mide (si la JVM lo permite).
+ * - Devuelve operaciones por segundo, percentiles de latencia y bytes por operacion.
+ *
+ * La `Preparacion` corre antes de cada llamada y NO se mide (por ejemplo, insertar la fila que despues
+ * se va a borrar).
+ */
+final class MicroBench {
+
+    static final int MIN_ITERACIONES = 5;
+
+    interface Operacion {
+        void run(int i) throws Exception;
+    }
+
+    static final class Config {
+        final int calentamiento;
+        final int iteraciones;
+        final long maxNanos;
+
+        Config(int calentamiento, int iteraciones, long maxSegundos) {
+            this.calentamiento = calentamiento;
+            this.iteraciones = iteraciones;
+            this.maxNanos = TimeUnit.SECONDS.toNanos(maxSegundos);
+        }
+    }
+
+    static final class Resultado {
+        final String nombre;
+        final int filas;
+        final int ops;
+        final double opsPorSegundo;
+        final long p50;
+        final long p90;
+        final long p99;
+        final long max;
+        final long bytesPorOp; // -1 si la JVM no informa reservas por hilo
+
+        Resultado(String nombre, int filas, int ops, double opsPorSegundo,
+                  long p50, long p90, long p99, long max, long bytesPorOp) {
+            this.nombre = nombre;
+            this.filas = filas;
+            this.ops = ops;
+            this.opsPorSegundo = opsPorSegundo;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+            this.bytesPorOp = bytesPorOp;
+        }
+
+        String clave() {
+            return nombre + "@" + filas;
+        }
+
+        static final String CSV_CABECERA = "operacion,filas,ops,ops_s,p50_us,p90_us,p99_us,max_us,bytes_op";
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%d",
+                    nombre, filas, ops, opsPorSegundo, us(p50), us(p90), us(p99), us(max), bytesPorOp);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-22s %9d filas  %10.1f ops/s  p50=%9.1fus  p90=%9.1fus  p99=%9.1fus  max=%10.1fus  %s",
+                    nombre, filas, opsPorSegundo, us(p50), us(p90), us(p99), us(max),
+                    bytesPorOp < 0 ? "bytes/op=?" : "bytes/op=" + bytesPorOp);
+        }
+
+        private static double us(long nanos) {
+            return nanos / 1_000.0;
+        }
+    }
+
+    private final Config config;
+    private final List<Resultado> resultados = new ArrayList<>();
+
+    MicroBench(Config config) {
+        this.config = config;
+    }
+
+    List<Resultado> resultados() {
+        return resultados;
+    }
+
+    Resultado medir(String nombre, int filas, Operacion preparacion, Operacion operacion) throws Exception {
+        long limiteCalentamiento = System.nanoTime() + config.maxNanos / 5;
+        for (int i = 0; i < config.calentamiento && System.nanoTime() - limiteCalentamiento < 0; i++) {
+            if (preparacion != null) preparacion.run(-1 - i);
+            operacion.run(-1 - i);
+        }
+
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean reservas = mx instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) mx).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) mx : null;
+        long hilo = Thread.currentThread().getId();
+
+        long[] tiempos = new long[config.iteraciones];
+        long bytes = 0;
+        long medido = 0;
+        long limite = System.nanoTime() + config.maxNanos;
+        int n = 0;
+        while (n < config.iteraciones && (n < MIN_ITERACIONES || System.nanoTime() - limite < 0)) {
+            if (preparacion != null) preparacion.run(n);
+
+            long antesBytes = reservas != null ? reservas.getThreadAllocatedBytes(hilo) : 0;
+            long inicio = System.nanoTime();
+            operacion.run(n);
+            long duracion = System.nanoTime() - inicio;
+            if (reservas != null) bytes += reservas.getThreadAllocatedBytes(hilo) - antesBytes;
+
+            tiempos[n++] = duracion;
+            medido += duracion;
+        }
+
+        long[] ordenados = Arrays.copyOf(tiempos, n);
+        Arrays.sort(ordenados);
+        Resultado r = new Resultado(nombre, filas, n,
+                medido == 0 ? 0 : n * 1e9 / medido,
+                percentil(ordenados, 0.50), percentil(ordenados, 0.90), percentil(ordenados, 0.99),
+                ordenados[n - 1], reservas != null ? bytes / n : -1);
+        resultados.add(r);
+        System.out.println(r);
+        return r;
+    }
+
+    private static long percentil(long[] ordenados, double p) {
+        int indice = (int) Math.ceil(p * ordenados.length) - 1;
+        return ordenados[Math.max(0, indice)];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Reporte y comparacion contra una corrida anterior
+    // ---------------------------------------------------------------------------------------------
+
+    void escribirCsv(File archivo) throws IOException {
+        File carpeta = archivo.getParentFile();
+        if (carpeta != null && !carpeta.exists() && !carpeta.mkdirs()) {
+            throw new IOException("No se pudo crear " + carpeta);
+        }
+        try (PrintWriter salida = new PrintWriter(new FileWriter(archivo))) {
+            salida.println(Resultado.CSV_CABECERA);
+            for (Resultado r : resultados) salida.println(r.toCsv());
+        }
+    }
+
+    /**
+     * regresiones:
+     * - Compara la mediana (p50) de cada operacion con la de un CSV anterior y devuelve las que
+     *   empeoraron mas que `tolerancia` (0.20 = 20% mas lenta).
+     */
+    List<String> regresiones(File baseline, double tolerancia) throws IOException {
+        Map<String, Double> anteriores = new HashMap<>();
+        try (BufferedReader entrada = new BufferedReader(new FileReader(baseline))) {
+            String linea = entrada.readLine(); // cabecera
+            while ((linea = entrada.readLine()) != null) {
+                String[] campos = linea.split(",");
+                if (campos.length < 5) continue;
+                anteriores.put(campos[0] + "@" + campos[1], Double.parseDouble(campos[4]));
+            }
+        }
+
+        List<String> peores = new ArrayList<>();
+        for (Resultado r : resultados) {
+            Double antes = anteriores.get(r.clave());
+            double ahora = r.p50 / 1_000.0;
+            if (antes != null && antes > 0 && ahora > antes * (1 + tolerancia)) {
+                peores.add(String.format(Locale.ROOT, "%s: p50 %.1fus -> %.1fus (+%.0f%%)",
+                        r.clave(), antes, ahora, (ahora / antes - 1) * 100));
+            }
+        }
+        return peores;
+    }
+}
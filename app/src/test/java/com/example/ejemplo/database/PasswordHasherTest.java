@@ -0,0 +1,80 @@
+package com.example.ejemplo.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales del hash de contraseñas y del cache de logins verificados.
+ */
+public class PasswordHasherTest {
+
+    private static PasswordHasher hasher(int iteraciones) {
+        PasswordHasher hasher = new PasswordHasher(null);
+        hasher.useIterations(iteraciones);
+        return hasher;
+    }
+
+    @Test
+    public void verificaSoloLaContrasenaCorrecta() {
+        PasswordHasher hasher = hasher(1_000);
+        String guardado = hasher.hash("secreta");
+
+        assertTrue(PasswordHasher.isHash(guardado));
+        assertTrue(hasher.verify("secreta", guardado));
+        assertFalse(hasher.verify("Secreta", guardado));
+        assertFalse(hasher.verify(null, guardado));
+    }
+
+    @Test
+    public void cadaHashTieneSuPropiaSal() {
+        PasswordHasher hasher = hasher(1_000);
+        assertNotEquals(hasher.hash("igual"), hasher.hash("igual"));
+    }
+
+    @Test
+    public void reconoceContrasenasEnTextoPlano() {
+        assertFalse(PasswordHasher.isHash("pass1"));
+        assertFalse(PasswordHasher.isHash(null));
+        assertFalse(PasswordHasher.isHash("pbkdf2-sha256$x$00$00"));
+        assertFalse(hasher(1_000).verify("pass1", "pass1"));
+    }
+
+    @Test
+    public void pideRehacerHashesConMenosIteraciones() {
+        String viejo = hasher(1_000).hash("secreta");
+        PasswordHasher actual = hasher(2_000);
+
+        assertTrue(actual.needsRehash(viejo));
+        assertTrue(actual.verify("secreta", viejo)); // el hash viejo sigue sirviendo hasta rehacerlo
+        assertFalse(actual.needsRehash(actual.hash("secreta")));
+    }
+
+    @Test
+    public void calibraDentroDeLosLimites() {
+        int iteraciones = new PasswordHasher(null).getIterations();
+        assertTrue(iteraciones >= PasswordHasher.MIN_ITERACIONES);
+        assertTrue(iteraciones <= PasswordHasher.MAX_ITERACIONES);
+    }
+
+    @Test
+    public void elCacheDeVerificadosDependeDelHashGuardado() {
+        PasswordVerifierCache cache = new PasswordVerifierCache(60_000, 4);
+        cache.put("ana", "hash1", "secreta");
+
+        assertTrue(cache.matches("ana", "hash1", "secreta"));
+        assertFalse(cache.matches("ana", "hash1", "otra"));
+        assertFalse(cache.matches("ana", "hash2", "secreta")); // la contraseña cambio en la base
+
+        cache.invalidate("ana");
+        assertFalse(cache.matches("ana", "hash1", "secreta"));
+    }
+
+    @Test
+    public void elCacheDeVerificadosVence() throws InterruptedException {
+        PasswordVerifierCache cache = new PasswordVerifierCache(1, 4);
+        cache.put("ana", "hash1", "secreta");
+        Thread.sleep(5);
+        assertFalse(cache.matches("ana", "hash1", "secreta"));
+    }
+}
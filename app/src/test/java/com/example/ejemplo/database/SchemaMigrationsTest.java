@@ -0,0 +1,87 @@
+package com.example.ejemplo.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de las migraciones sobre una base en memoria (SQLite nativo de Robolectric), partiendo de la tabla
+ * tal como viene en `assets/databases/ejemplo.db` (esquema 1).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SchemaMigrationsTest {
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE tabla_usuario (id_usuario INTEGER NOT NULL, nombre_usuario TEXT, password TEXT, "
+                + "PRIMARY KEY(id_usuario AUTOINCREMENT))");
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    private void insertar(String... nombres) {
+        for (String nombre : nombres) {
+            db.execSQL("INSERT INTO tabla_usuario(nombre_usuario, password) VALUES (?, 'x')", new Object[]{nombre});
+        }
+    }
+
+    // "id:nombre" de todas las filas, por id
+    private List<String> filas() {
+        List<String> filas = new ArrayList<>();
+        try (Cursor c = db.rawQuery("SELECT id_usuario, nombre_usuario FROM tabla_usuario ORDER BY id_usuario", null)) {
+            while (c.moveToNext()) filas.add(c.getLong(0) + ":" + c.getString(1));
+        }
+        return filas;
+    }
+
+    @Test
+    public void indiceUnicoRenombraLosRepetidosSinBorrarNingunUsuario() {
+        insertar("admin", "ana", null, "admin", null, "admin", null, "bea");
+
+        SchemaMigrations.migrate(db, 1, 2);
+
+        List<String> esperadas = new ArrayList<>();
+        esperadas.add("1:admin");
+        esperadas.add("2:ana");
+        esperadas.add("3:null"); // los NULL no se juntan ni se tocan
+        esperadas.add("4:admin#4");
+        esperadas.add("5:null");
+        esperadas.add("6:admin#6");
+        esperadas.add("7:null");
+        esperadas.add("8:bea");
+        assertEquals(esperadas, filas());
+    }
+
+    @Test
+    public void siElNombreNuevoYaExisteLaMigracionFallaSinTocarNada() {
+        insertar("admin", "admin", "admin#2");
+        List<String> antes = filas();
+
+        try {
+            SchemaMigrations.migrate(db, 1, 2);
+            fail();
+        } catch (SQLiteConstraintException esperado) {
+            // el indice unico no se pudo crear
+        }
+        assertEquals(antes, filas());
+    }
+}
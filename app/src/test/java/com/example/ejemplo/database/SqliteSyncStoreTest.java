@@ -0,0 +1,165 @@
+package com.example.ejemplo.database;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.ejemplo.modelos.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de `SqliteSyncStore` sobre una base de verdad (SQLite nativo de Robolectric): los cambios locales
+ * los anotan los triggers de `usuario_cambios`, no la prueba.
+ *
+ * Cada prueba usa su propio archivo (una organizacion de prueba) y lo borra al terminar.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SqliteSyncStoreTest {
+
+    private static final String TENANT = "sync_test";
+
+    private Context context;
+    private DBHelper helper;
+    private InMemorySyncServer servidor;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DBHelper.databaseName(TENANT));
+        helper = new DBHelper(context, TENANT);
+        helper.getPasswordHasher().useIterations(1); // se prueba la base, no el hash
+        servidor = new InMemorySyncServer();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DBHelper.databaseName(TENANT));
+    }
+
+    private UserSync.SyncResult sync() throws IOException {
+        return sync(servidor);
+    }
+
+    private UserSync.SyncResult sync(SyncTransport transporte) throws IOException {
+        return UserSync.forDatabase(helper, transporte).setPageSize(3).sync();
+    }
+
+    private List<SyncChange> pendientes() {
+        return new SqliteSyncStore(helper).pendingChanges(100);
+    }
+
+    private String hashLocal(String nombre) {
+        return helper.getUserByUsername(nombre).getPassword();
+    }
+
+    @Test
+    public void borrarYVolverAAgregarConAddUsersNoBorraEnElServidor() throws IOException {
+        helper.addUser(new User(0, "ana", "clave"));
+        sync();
+
+        helper.deleteUser("ana");
+        // addUsers inserta con INSERT OR IGNORE: no puede cambiar lo que hacen los triggers
+        helper.addUsers(Collections.singletonList(new User(0, "ana", "otra")));
+
+        List<SyncChange> p = pendientes();
+        assertEquals(1, p.size());
+        assertFalse(p.get(0).isDeleted());
+
+        UserSync.SyncResult r = sync();
+        assertEquals(1, r.pushed);
+        assertFalse(servidor.getUser("ana").isDeleted());
+        assertEquals(hashLocal("ana"), servidor.getUser("ana").getHash());
+        assertTrue(pendientes().isEmpty());
+    }
+
+    @Test
+    public void renombrarBorraElNombreViejoYCreaElNuevo() throws IOException {
+        helper.addUser(new User(0, "ana", "clave"));
+        sync();
+
+        helper.getWritableDatabase().execSQL("UPDATE " + DBHelper.TABLE_USUARIO + " SET " + DBHelper.COL_NOMBRE
+                + " = ? WHERE " + DBHelper.COL_NOMBRE + " = ?", new Object[]{"bea", "ana"});
+        List<SyncChange> p = pendientes();
+        assertEquals(2, p.size());
+        for (SyncChange c : p) {
+            // La revision de la fila era de "ana": "bea" el servidor nunca lo tuvo, parte de 0
+            assertEquals(c.getNombreUsuario().equals("ana") ? 1 : 0, c.getRev());
+        }
+
+        UserSync.SyncResult r = sync();
+        assertEquals(2, r.pushed);
+        assertTrue(servidor.getUser("ana").isDeleted());
+        assertEquals(hashLocal("bea"), servidor.getUser("bea").getHash());
+    }
+
+    @Test
+    public void borradoSuaveSeEnviaYVolverACrearloTambien() throws IOException {
+        helper.setSoftDeletes(true);
+        helper.addUser(new User(0, "ana", "clave"));
+        sync();
+
+        helper.deleteUser("ana");
+        sync();
+        assertTrue(servidor.getUser("ana").isDeleted());
+
+        helper.addUsers(Collections.singletonList(new User(0, "ana", "otra")));
+        UserSync.SyncResult r = sync();
+        assertEquals(1, r.pushed);
+        assertFalse(servidor.getUser("ana").isDeleted());
+        assertEquals(hashLocal("ana"), servidor.getUser("ana").getHash());
+    }
+
+    @Test
+    public void cambioLocalDuranteElPullSeEnvia() throws IOException {
+        helper.addUser(new User(0, "ana", "clave"));
+        servidor.putUser("bea", "h0");
+        sync();
+        servidor.putUser("bea", "h1");
+
+        // El usuario cambia su contraseña mientras se trae la pagina que toca a "bea"
+        SyncTransport transporte = new SyncTransport() {
+            @Override
+            public List<SyncChange> pull(long since, int limit) {
+                List<SyncChange> pagina = servidor.pull(since, limit);
+                if (!pagina.isEmpty()) helper.updatePassword("ana", "nueva");
+                return pagina;
+            }
+
+            @Override
+            public List<PushResult> push(List<SyncChange> cambios) {
+                return servidor.push(cambios);
+            }
+        };
+        UserSync.SyncResult r = sync(transporte);
+
+        assertEquals(1, r.pulled);
+        assertEquals(1, r.pushed); // "ana"; lo traido de "bea" no se reenvia
+        assertEquals("h1", hashLocal("bea"));
+        assertEquals(hashLocal("ana"), servidor.getUser("ana").getHash());
+        assertTrue(pendientes().isEmpty());
+    }
+
+    @Test
+    public void dosCambiosAntesDeEnviarViajaSoloElUltimo() throws IOException {
+        helper.addUser(new User(0, "ana", "clave"));
+        helper.updatePassword("ana", "otra");
+
+        assertEquals(1, pendientes().size());
+        assertEquals(1, sync().pushed);
+        assertEquals(hashLocal("ana"), servidor.getUser("ana").getHash());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.ejemplo.database;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de los perfiles de ajustes de SQLite (sin abrir ninguna base).
+ */
+public class SqliteTuningTest {
+
+    @Test
+    public void perfilesPorNombre() {
+        assertSame(SqliteTuning.LOW_MEMORY, SqliteTuning.forName("low_memory"));
+        assertSame(SqliteTuning.BALANCED, SqliteTuning.forName("balanced"));
+        assertSame(SqliteTuning.HIGH_END, SqliteTuning.forName("high_end"));
+        assertSame(SqliteTuning.DURABLE, SqliteTuning.forName("durable"));
+        try {
+            SqliteTuning.forName("rapidisimo");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("rapidisimo"));
+        }
+    }
+
+    @Test
+    public void autoSegunLaMemoria() {
+        assertSame(SqliteTuning.LOW_MEMORY, SqliteTuning.forMemoryClass(512, true)); // Android dice que es de poca memoria
+        assertSame(SqliteTuning.LOW_MEMORY, SqliteTuning.forMemoryClass(SqliteTuning.MEMORIA_BAJA_MB, false));
+        assertSame(SqliteTuning.BALANCED, SqliteTuning.forMemoryClass(192, false));
+        assertSame(SqliteTuning.HIGH_END, SqliteTuning.forMemoryClass(SqliteTuning.MEMORIA_ALTA_MB, false));
+    }
+
+    @Test
+    public void pragmasDelPerfil() {
+        assertEquals(Arrays.asList(
+                "PRAGMA synchronous = NORMAL",
+                "PRAGMA cache_size = -8192",
+                "PRAGMA mmap_size = 67108864",
+                "PRAGMA temp_store = MEMORY"), SqliteTuning.HIGH_END.pragmas(true));
+        // Sin mmap (Android anterior a 11)
+        assertEquals(Arrays.asList(
+                "PRAGMA synchronous = FULL",
+                "PRAGMA cache_size = -2048",
+                "PRAGMA temp_store = DEFAULT"), SqliteTuning.DURABLE.pragmas(false));
+    }
+
+    @Test
+    public void builderCopiaYCambiaSoloLoIndicado() {
+        SqliteTuning propio = new SqliteTuning.Builder(SqliteTuning.LOW_MEMORY)
+                .synchronous(SqliteTuning.Synchronous.FULL)
+                .optimizeOnClose(false)
+                .build();
+        assertEquals("low_memory+", propio.getName());
+        assertEquals(SqliteTuning.Synchronous.FULL, propio.getSynchronous());
+        assertFalse(propio.isOptimizeOnClose());
+        assertEquals(SqliteTuning.LOW_MEMORY.getCacheSizeKb(), propio.getCacheSizeKb());
+        assertEquals(SqliteTuning.LOW_MEMORY.getTempStore(), propio.getTempStore());
+        assertTrue(propio.isWal());
+        assertEquals(SqliteTuning.Synchronous.NORMAL, SqliteTuning.LOW_MEMORY.getSynchronous()); // el original no cambia
+
+        try {
+            new SqliteTuning.Builder("x").cacheSizeKb(-1);
+            fail();
+        } catch (IllegalArgumentException esperado) {
+            // ok
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.ejemplo.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales del reporte del mantenimiento y de su configuracion (los pasos en si necesitan SQLite).
+ */
+public class StorageMaintenanceTest {
+
+    @Test
+    public void elReporteCalculaLoRecuperado() {
+        StorageMaintenance.Report r = new StorageMaintenance.Report(4_096, 1_000, 250, 760, 10, 42, true, 5);
+
+        assertEquals(4_096_000, r.bytesBefore());
+        assertEquals(3_112_960, r.bytesAfter());
+        assertEquals(983_040, r.reclaimedBytes());
+        assertEquals(0.25, r.freeRatioBefore(), 1e-9);
+    }
+
+    @Test
+    public void baseVaciaNoTieneEspacioLibre() {
+        StorageMaintenance.Report r = new StorageMaintenance.Report(4_096, 0, 0, 0, 0, 0, false, 0);
+        assertEquals(0, r.freeRatioBefore(), 0);
+        assertEquals(0, r.reclaimedBytes());
+    }
+
+    @Test
+    public void retencionNegativaNoSeAcepta() {
+        StorageMaintenance mantenimiento = new StorageMaintenance(null).setRetention(0);
+        try {
+            mantenimiento.setRetention(-1);
+            fail();
+        } catch (IllegalArgumentException esperado) {
+            // ok
+        }
+    }
+}
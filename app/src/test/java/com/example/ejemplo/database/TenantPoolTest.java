@@ -0,0 +1,117 @@
+package com.example.ejemplo.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales del pool de bases por organizacion. El "recurso" es un objeto que cuenta sus cierres; los
+ * cierres se anotan en una lista en lugar de ir a un hilo.
+ */
+public class TenantPoolTest {
+
+    private static final class Base {
+        final String tenant;
+        int cierres;
+
+        Base(String tenant) {
+            this.tenant = tenant;
+        }
+    }
+
+    private final List<String> creadas = new ArrayList<>();
+    private final List<String> cerradas = new ArrayList<>();
+
+    private TenantPool<Base> pool(int maxAbiertas) {
+        return new TenantPool<>(tenant -> {
+            creadas.add(tenant);
+            return new Base(tenant);
+        }, base -> {
+            base.cierres++;
+            cerradas.add(base.tenant);
+        }, maxAbiertas);
+    }
+
+    @Test
+    public void volverAUnaRecienteEsUnAcierto() {
+        TenantPool<Base> pool = pool(2);
+        Base a = pool.get("a");
+        pool.get("b");
+
+        assertSame(a, pool.get("a"));
+        assertEquals(1, pool.hits());
+        assertEquals(2, pool.misses());
+        assertTrue(cerradas.isEmpty());
+    }
+
+    @Test
+    public void alLlenarseCierraLaUsadaHaceMasTiempo() {
+        TenantPool<Base> pool = pool(2);
+        pool.get("a");
+        pool.get("b");
+        pool.get("a"); // ahora la mas vieja es "b"
+        pool.get("c");
+
+        assertEquals(List.of("b"), cerradas);
+        assertFalse(pool.isOpen("b"));
+        assertTrue(pool.isOpen("a"));
+        assertTrue(pool.isOpen("c"));
+        assertEquals(2, pool.openCount());
+        assertEquals(1, pool.evictions());
+    }
+
+    @Test
+    public void unaCerradaSeReusaSinCrearOtra() {
+        TenantPool<Base> pool = pool(1);
+        Base a = pool.get("a");
+        pool.get("b");
+
+        assertSame(a, pool.get("a")); // mismo objeto: nunca dos sobre el mismo archivo
+        assertEquals(List.of("a", "b"), creadas);
+        assertEquals(1, a.cierres);
+    }
+
+    @Test
+    public void trimDejaSoloLaQueEstaEnUso() {
+        TenantPool<Base> pool = pool(3);
+        pool.get("a");
+        pool.get("b");
+        pool.get("c");
+
+        pool.trim("b");
+
+        assertEquals(List.of("a", "c"), cerradas);
+        assertTrue(pool.isOpen("b"));
+        assertEquals(1, pool.openCount());
+
+        pool.closeAll();
+        assertEquals(0, pool.openCount());
+        assertEquals(3, cerradas.size());
+    }
+
+    @Test
+    public void bajarElMaximoCierraAlPedirOtra() {
+        TenantPool<Base> pool = pool(3);
+        pool.get("a");
+        pool.get("b");
+        pool.get("c");
+        pool.setMaxOpen(1);
+        assertTrue(cerradas.isEmpty());
+
+        pool.get("d");
+        assertEquals(List.of("a", "b", "c"), cerradas);
+    }
+
+    @Test
+    public void maximoInvalido() {
+        try {
+            pool(0);
+            fail();
+        } catch (IllegalArgumentException esperado) {
+            // ok
+        }
+    }
+}
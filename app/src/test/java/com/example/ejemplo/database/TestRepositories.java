@@ -0,0 +1,25 @@
+package com.example.ejemplo.database;
+
+import com.example.ejemplo.modelos.User;
+
+/**
+ * `TestRepositories` arma los repositorios en memoria de las pruebas locales, con el hash en 1 iteracion
+ * (rapido: en esas pruebas no se prueba el hash, para eso esta PasswordHasherTest).
+ */
+final class TestRepositories {
+
+    /**
+     * inMemory:
+     * - Un repositorio vacio, o con `nombres` ya dados de alta (contraseña "clave-" + nombre).
+     */
+    static InMemoryUserRepository inMemory(String... nombres) {
+        PasswordHasher hasher = new PasswordHasher(null);
+        hasher.useIterations(1);
+        InMemoryUserRepository repo = new InMemoryUserRepository(hasher);
+        for (String nombre : nombres) repo.addUser(new User(0, nombre, "clave-" + nombre));
+        return repo;
+    }
+
+    private TestRepositories() {
+    }
+}
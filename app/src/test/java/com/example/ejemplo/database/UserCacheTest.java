@@ -0,0 +1,103 @@
+package com.example.ejemplo.database;
+
+import com.example.ejemplo.modelos.User;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales (corren en la PC, sin Android) del cache de usuarios.
+ */
+public class UserCacheTest {
+
+    @Test
+    public void devuelveCopiaDelUsuarioGuardado() {
+        UserCache cache = new UserCache(10, 1_000);
+        cache.put("ana", new User(1, "ana", "secreta"));
+
+        User leido = cache.getByUsername("ana");
+        assertNotNull(leido);
+        assertEquals(1, leido.getId());
+
+        leido.setPassword("otra");
+        assertEquals("secreta", cache.getByUsername("ana").getPassword());
+        assertEquals("ana", cache.getById(1).getNombreUsuario());
+    }
+
+    @Test
+    public void descartaElMenosUsadoAlLlenarse() {
+        UserCache cache = new UserCache(2, 1_000);
+        cache.put("a", new User(1, "a", null));
+        cache.put("b", new User(2, "b", null));
+        cache.getByUsername("a"); // "b" pasa a ser el menos usado
+        cache.put("c", new User(3, "c", null));
+
+        assertNull(cache.getByUsername("b"));
+        assertNull(cache.getById(2));
+        assertNotNull(cache.getByUsername("a"));
+        assertEquals(1, cache.getStats().evictions);
+    }
+
+    @Test
+    public void recuerdaLosNombresInexistentesHastaQueVencen() throws InterruptedException {
+        UserCache cache = new UserCache(10, 50);
+        User noEncontrado = new User();
+        noEncontrado.setId(-1);
+        cache.put("fantasma", noEncontrado);
+
+        assertEquals(-1, cache.getByUsername("fantasma").getId());
+        assertEquals(1, cache.getStats().negativeHits);
+
+        Thread.sleep(80);
+        assertNull(cache.getByUsername("fantasma"));
+    }
+
+    @Test
+    public void unaLecturaAnteriorAUnaEscrituraNoGuardaLoViejo() {
+        UserCache cache = new UserCache(10, 1_000);
+
+        long lectura = cache.generation(); // la lectura empieza: lee la fila de antes
+        cache.invalidate("ana"); // mientras tanto se confirma un borrado de "ana"
+        cache.put("ana", new User(1, "ana", "hashViejo"), lectura);
+        assertNull(cache.getByUsername("ana"));
+        assertNull(cache.getById(1));
+
+        // Lo mismo con un "no existe" leido antes de un alta
+        lectura = cache.generation();
+        cache.invalidate("bruno");
+        User noEncontrado = new User();
+        noEncontrado.setId(-1);
+        cache.put("bruno", noEncontrado, lectura);
+        assertNull(cache.getByUsername("bruno"));
+
+        // Una lectura que empieza despues de la escritura si se guarda
+        lectura = cache.generation();
+        cache.put("ana", new User(2, "ana", "hashNuevo"), lectura);
+        assertEquals("hashNuevo", cache.getByUsername("ana").getPassword());
+    }
+
+    @Test
+    public void invalidateOlvidaNombreEId() {
+        UserCache cache = new UserCache(10, 1_000);
+        cache.put("ana", new User(1, "ana", "x"));
+        cache.invalidate("ana");
+
+        assertNull(cache.getByUsername("ana"));
+        assertNull(cache.getById(1));
+    }
+
+    @Test
+    public void elIdSaleSinCopiarElUsuario() {
+        UserCache cache = new UserCache(10, 1_000);
+        cache.put("ana", new User(7, "ana", "secreta"));
+        User noEncontrado = new User();
+        noEncontrado.setId(-1);
+        cache.put("nadie", noEncontrado);
+
+        assertEquals(7, cache.getIdByUsername("ana"));
+        assertEquals(-1, cache.getIdByUsername("nadie"));
+        assertEquals(UserCache.UNKNOWN, cache.getIdByUsername("otro"));
+        assertEquals(1, cache.getStats().negativeHits);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.ejemplo.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de como se resumen los cambios de la tabla antes de avisar a las pantallas.
+ */
+public class UserChangesTest {
+
+    @Test
+    public void agrupaPorTipoYOrdenaLosIds() {
+        UserChanges.Builder builder = new UserChanges.Builder();
+        builder.add(UserChanges.INSERT, 9);
+        builder.add(UserChanges.INSERT, 3);
+        builder.add(UserChanges.UPDATE, 5);
+        builder.add(UserChanges.DELETE, 1);
+
+        UserChanges cambios = builder.build();
+        assertArrayEquals(new long[]{3, 9}, cambios.getInserted());
+        assertArrayEquals(new long[]{5}, cambios.getUpdated());
+        assertArrayEquals(new long[]{1}, cambios.getDeleted());
+        assertTrue(cambios.touches(5));
+        assertFalse(cambios.touches(4));
+    }
+
+    @Test
+    public void resumeVariasEscriturasSobreLaMismaFila() {
+        UserChanges.Builder builder = new UserChanges.Builder();
+        builder.add(UserChanges.INSERT, 1);
+        builder.add(UserChanges.UPDATE, 1);   // sigue siendo una insercion
+        builder.add(UserChanges.INSERT, 2);
+        builder.add(UserChanges.DELETE, 2);   // insertada y borrada: nadie la vio
+        builder.add(UserChanges.UPDATE, 3);
+        builder.add(UserChanges.DELETE, 3);   // termina borrada
+
+        UserChanges cambios = builder.build();
+        assertArrayEquals(new long[]{1}, cambios.getInserted());
+        assertArrayEquals(new long[0], cambios.getUpdated());
+        assertArrayEquals(new long[]{3}, cambios.getDeleted());
+    }
+
+    @Test
+    public void soloActualizacionesNoCambianLaCantidad() {
+        UserChanges.Builder builder = new UserChanges.Builder();
+        for (long id = 0; id < 1_000; id++) builder.add(UserChanges.UPDATE, id);
+
+        UserChanges cambios = builder.build();
+        assertFalse(cambios.changesCount());
+        assertEquals(1_000, cambios.getUpdated().length);
+    }
+
+    @Test
+    public void marcarTodoGanaSobreLosIds() {
+        UserChanges.Builder builder = new UserChanges.Builder();
+        builder.add(UserChanges.INSERT, 1);
+        builder.markAll();
+        builder.add(UserChanges.DELETE, 2);
+
+        UserChanges cambios = builder.build();
+        assertTrue(cambios.isAll());
+        assertTrue(cambios.changesCount());
+        assertTrue(cambios.touches(42));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.ejemplo.database;
+
+import com.example.ejemplo.modelos.User;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de la lista compacta que usa la ventana de `UserPager`.
+ */
+public class UserListTest {
+
+    private static UserList lista(long desde, String... nombres) {
+        UserList users = new UserList(1, 1); // chica a proposito: obliga a crecer
+        for (int i = 0; i < nombres.length; i++) users.add(desde + i, nombres[i]);
+        return users;
+    }
+
+    @Test
+    public void guardaIdsYNombres() {
+        UserList users = lista(1, "ana", null, "bruno");
+        assertEquals(3, users.size());
+        assertEquals(2, users.getId(1));
+        assertEquals("ana", users.getName(0));
+        assertNull(users.getName(1));
+        assertEquals(0, users.getNameLength(1));
+        assertEquals("bruno", users.getName(2));
+        assertEquals("bruno", new String(users.getNameChars(), users.getNameStart(2), users.getNameLength(2)));
+    }
+
+    @Test
+    public void agregaAlPrincipioYAlFinal() {
+        UserList users = lista(10, "carla", "diego");
+        users.addAllAtStart(lista(8, "ana", null));
+        users.addAll(lista(12, "eva"));
+
+        List<User> todos = users.toUsers();
+        assertEquals(5, todos.size());
+        assertEquals(8, todos.get(0).getId());
+        assertNull(todos.get(1).getNombreUsuario());
+        assertEquals("carla", todos.get(2).getNombreUsuario());
+        assertEquals("eva", todos.get(4).getNombreUsuario());
+        assertNull(todos.get(4).getPassword());
+    }
+
+    @Test
+    public void quitaPaginasDeLosExtremos() {
+        UserList users = lista(1, "ana", null, "carla", "diego", "eva");
+        users.removeFirst(2);
+        assertEquals(3, users.getId(0));
+        assertEquals("carla", users.getName(0));
+
+        users.removeLast(1);
+        assertEquals(2, users.size());
+        assertEquals("diego", users.getName(1));
+
+        users.add(9, "zoe"); // lo agregado despues de quitar no pisa ni arrastra letras viejas
+        assertEquals("zoe", users.getName(2));
+        assertEquals("diego", users.getName(1));
+    }
+
+    @Test
+    public void comparaNombresSinCrearStrings() {
+        UserList a = lista(1, "ana", "bruno", null);
+        UserList b = lista(1, "ana", "bruna", null);
+        assertTrue(a.sameName(0, b, 0));
+        assertFalse(a.sameName(1, b, 1));
+        assertTrue(a.sameName(2, b, 2));
+        assertFalse(a.sameName(0, b, 2));
+
+        UserList copia = a.copy();
+        a.removeFirst(1);
+        assertEquals("ana", copia.getName(0)); // la copia no depende de la original
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.ejemplo.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de como se arma la consulta de busqueda a partir de lo que escribe el usuario.
+ */
+public class UserSearchTest {
+
+    @Test
+    public void cadaPalabraSeBuscaComoPrefijo() {
+        assertEquals("juan* pe*", UserSearch.matchQuery("  Juan Pe "));
+        assertEquals("usuario* 7*", UserSearch.matchQuery("usuario_7"));
+    }
+
+    @Test
+    public void descartaLaSintaxisDeFts() {
+        assertEquals("a* or* b*", UserSearch.matchQuery("\"a\" OR -b*"));
+        assertEquals("ñandú*", UserSearch.matchQuery("Ñandú"));
+    }
+
+    @Test
+    public void sinPalabrasNoHayConsulta() {
+        assertNull(UserSearch.matchQuery(null));
+        assertNull(UserSearch.matchQuery("   "));
+        assertNull(UserSearch.matchQuery("_-*()"));
+    }
+
+    @Test
+    public void limitaLaCantidadDePalabras() {
+        String match = UserSearch.matchQuery("a b c d e f g h i j k");
+        assertEquals(UserSearch.MAX_PALABRAS, match.split(" ").length);
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.ejemplo.database;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de la sincronizacion (paginas, envios, conflictos) contra el servidor en memoria. La base
+ * es `Dispositivo`, un SyncStore en memoria al que cada prueba le dice que cambios locales tiene; como los
+ * anota la base de verdad se prueba en SqliteSyncStoreTest.
+ */
+public class UserSyncTest {
+
+    /**
+     * Dispositivo:
+     * - Usuarios (hash + revision del servidor), cambios sin enviar (uno por nombre, con el `seq` del
+     *   ultimo) y la marca.
+     */
+    private static final class Dispositivo implements SyncStore {
+        final Map<String, SyncChange> usuarios = new HashMap<>(); // rev = rev_remota de la fila
+        final Map<String, SyncChange> registro = new HashMap<>();
+        long marca;
+        long seq;
+        long reloj = 1_000;
+
+        // Un cambio local sin enviar (hash null = borrado), hecho sobre la revision que tiene la fila
+        void cambioLocal(String nombre, String hash) {
+            SyncChange fila = usuarios.get(nombre);
+            long rev = fila == null ? 0 : fila.getRev();
+            if (hash == null) {
+                usuarios.remove(nombre);
+            } else {
+                usuarios.put(nombre, new SyncChange(nombre, hash, false, rev, 0));
+            }
+            registro.put(nombre, new SyncChange(nombre, hash, hash == null, rev, reloj++, ++seq));
+        }
+
+        String hash(String nombre) {
+            SyncChange fila = usuarios.get(nombre);
+            return fila == null ? null : fila.getHash();
+        }
+
+        @Override
+        public long getWatermark() {
+            return marca;
+        }
+
+        @Override
+        public List<SyncChange> pendingChanges(int limit) {
+            List<SyncChange> pendientes = new ArrayList<>(registro.values());
+            pendientes.sort(Comparator.comparingLong(c -> c.seq));
+            return new ArrayList<>(pendientes.subList(0, Math.min(limit, pendientes.size())));
+        }
+
+        @Override
+        public UserSync.SyncResult applyRemote(List<SyncChange> remotos, long watermark, UserSync.ConflictPolicy politica) {
+            int aplicados = 0;
+            int conflictos = 0;
+            for (SyncChange remoto : remotos) {
+                String nombre = remoto.getNombreUsuario();
+                SyncChange fila = usuarios.get(nombre);
+                if (fila != null && fila.getRev() >= remoto.getRev()) continue;
+
+                SyncChange local = registro.get(nombre);
+                if (local != null) {
+                    if (local.getRev() >= remoto.getRev()) continue;
+                    if (!local.sameContentAs(remoto)) {
+                        conflictos++;
+                        if (politica.keepLocal(local, remoto)) {
+                            registro.put(nombre, local.withRev(remoto.getRev()));
+                            continue;
+                        }
+                    }
+                    registro.remove(nombre);
+                }
+
+                if (fila == null && remoto.isDeleted()) continue;
+                if (remoto.isDeleted()) {
+                    usuarios.remove(nombre);
+                } else {
+                    usuarios.put(nombre, new SyncChange(nombre, remoto.getHash(), false, remoto.getRev(), 0));
+                }
+                aplicados++;
+            }
+            marca = watermark;
+            return new UserSync.SyncResult(aplicados, 0, conflictos);
+        }
+
+        @Override
+        public void markPushed(List<SyncChange> locales, long[] revs) {
+            for (int i = 0; i < locales.size(); i++) {
+                SyncChange local = locales.get(i);
+                String nombre = local.getNombreUsuario();
+                SyncChange pendiente = registro.get(nombre);
+                if (pendiente != null && pendiente.seq == local.seq) {
+                    registro.remove(nombre);
+                } else if (pendiente != null) {
+                    registro.put(nombre, pendiente.withRev(revs[i]));
+                }
+                SyncChange fila = usuarios.get(nombre);
+                if (!local.isDeleted() && fila != null) usuarios.put(nombre, fila.withRev(revs[i]));
+            }
+        }
+    }
+
+    // Servidor que cuenta los pedidos y puede fallar en el pedido numero `fallarEn`
+    private static class Servidor extends InMemorySyncServer {
+        int pulls;
+        int fallarEn = -1;
+
+        List<SyncChange> pullOrFail(long since, int limit) throws IOException {
+            if (++pulls == fallarEn) throw new IOException("sin red");
+            return super.pull(since, limit);
+        }
+    }
+
+    private static UserSync sync(Dispositivo dispositivo, Servidor servidor) {
+        SyncTransport transporte = new SyncTransport() {
+            @Override
+            public List<SyncChange> pull(long since, int limit) throws IOException {
+                return servidor.pullOrFail(since, limit);
+            }
+
+            @Override
+            public List<PushResult> push(List<SyncChange> cambios) {
+                return servidor.push(cambios);
+            }
+        };
+        return new UserSync(dispositivo, transporte).setPageSize(3);
+    }
+
+    @Test
+    public void traePorPaginasYGuardaLaMarca() throws IOException {
+        Servidor servidor = new Servidor();
+        for (int i = 0; i < 7; i++) servidor.putUser("u" + i, "h" + i);
+        Dispositivo dispositivo = new Dispositivo();
+
+        UserSync.SyncResult r = sync(dispositivo, servidor).sync();
+
+        assertEquals(7, r.pulled);
+        assertEquals(0, r.pushed);
+        assertEquals(3, servidor.pulls); // 3 + 3 + 1
+        assertEquals(7, dispositivo.getWatermark());
+        assertEquals("h6", dispositivo.hash("u6"));
+        assertTrue(dispositivo.registro.isEmpty()); // lo traido no se reenvia
+
+        // La siguiente solo trae lo nuevo
+        servidor.putUser("u2", "h2b");
+        servidor.deleteUser("u3");
+        r = sync(dispositivo, servidor).sync();
+        assertEquals(2, r.pulled);
+        assertEquals("h2b", dispositivo.hash("u2"));
+        assertFalse(dispositivo.usuarios.containsKey("u3"));
+        assertEquals(9, dispositivo.getWatermark());
+    }
+
+    @Test
+    public void enviaLosCambiosLocalesUnaSolaVez() throws IOException {
+        Servidor servidor = new Servidor();
+        servidor.putUser("viejo", "h");
+        Dispositivo dispositivo = new Dispositivo();
+        sync(dispositivo, servidor).sync();
+
+        dispositivo.cambioLocal("ana", "h2");
+        dispositivo.cambioLocal("viejo", null);
+        UserSync.SyncResult r = sync(dispositivo, servidor).sync();
+
+        assertEquals(2, r.pushed);
+        assertEquals(0, r.conflicts);
+        assertEquals("h2", servidor.getUser("ana").getHash());
+        assertTrue(servidor.getUser("viejo").isDeleted());
+        assertTrue(dispositivo.registro.isEmpty());
+
+        // Al traer vuelven los propios cambios: ya estan aplicados, no cuentan
+        r = sync(dispositivo, servidor).sync();
+        assertEquals(0, r.pulled);
+        assertEquals(0, r.pushed);
+        assertEquals(servidor.currentRevision(), dispositivo.getWatermark());
+    }
+
+    // "ana" cambia en el servidor y aca antes de sincronizar
+    private static Dispositivo conConflicto(Servidor servidor) throws IOException {
+        servidor.putUser("ana", "h0");
+        Dispositivo dispositivo = new Dispositivo();
+        sync(dispositivo, servidor).sync();
+        servidor.putUser("ana", "remoto");
+        dispositivo.cambioLocal("ana", "local");
+        return dispositivo;
+    }
+
+    @Test
+    public void conflictoGanaElServidorPorDefecto() throws IOException {
+        Servidor servidor = new Servidor();
+        Dispositivo dispositivo = conConflicto(servidor);
+
+        UserSync.SyncResult r = sync(dispositivo, servidor).sync();
+
+        assertEquals(1, r.conflicts);
+        assertEquals(0, r.pushed);
+        assertEquals("remoto", dispositivo.hash("ana"));
+        assertEquals("remoto", servidor.getUser("ana").getHash());
+        assertTrue(dispositivo.registro.isEmpty());
+    }
+
+    @Test
+    public void conflictoGanaElLocal() throws IOException {
+        Servidor servidor = new Servidor();
+        Dispositivo dispositivo = conConflicto(servidor);
+
+        UserSync.SyncResult r = sync(dispositivo, servidor).setConflictPolicy(UserSync.ConflictPolicy.LOCAL_WINS).sync();
+
+        assertEquals(1, r.conflicts);
+        assertEquals(1, r.pushed);
+        assertEquals("local", dispositivo.hash("ana"));
+        assertEquals("local", servidor.getUser("ana").getHash());
+    }
+
+    @Test
+    public void conflictoGanaElMasReciente() throws IOException {
+        Servidor servidor = new Servidor();
+        Dispositivo dispositivo = conConflicto(servidor);
+        // El cambio local tiene reloj 1000: el del servidor (System.currentTimeMillis) es posterior
+        UserSync.SyncResult r = sync(dispositivo, servidor)
+                .setConflictPolicy(UserSync.ConflictPolicy.LAST_WRITE_WINS).sync();
+        assertEquals(1, r.conflicts);
+        assertEquals("remoto", dispositivo.hash("ana"));
+
+        dispositivo.reloj = Long.MAX_VALUE - 1;
+        dispositivo.cambioLocal("ana", "local");
+        servidor.putUser("ana", "remoto2");
+        sync(dispositivo, servidor).setConflictPolicy(UserSync.ConflictPolicy.LAST_WRITE_WINS).sync();
+        assertEquals("local", servidor.getUser("ana").getHash());
+    }
+
+    @Test
+    public void mismoContenidoNoEsConflicto() throws IOException {
+        Servidor servidor = new Servidor();
+        servidor.putUser("ana", "h0");
+        Dispositivo dispositivo = new Dispositivo();
+        sync(dispositivo, servidor).sync();
+        servidor.putUser("ana", "igual");
+        dispositivo.cambioLocal("ana", "igual");
+
+        UserSync.SyncResult r = sync(dispositivo, servidor).sync();
+
+        assertEquals(0, r.conflicts);
+        assertEquals(0, r.pushed);
+        assertTrue(dispositivo.registro.isEmpty());
+    }
+
+    @Test
+    public void conflictoAlEnviarSeResuelveConLaPolitica() throws IOException {
+        // El servidor cambia DESPUES de traer (entre el pull y el push): lo rechaza el envio
+        Servidor servidor = new Servidor() {
+            @Override
+            List<SyncChange> pullOrFail(long since, int limit) throws IOException {
+                List<SyncChange> pagina = super.pullOrFail(since, limit);
+                if (pulls == 1 && getUser("ana") != null) putUser("ana", "remoto");
+                return pagina;
+            }
+        };
+        servidor.putUser("ana", "h0");
+        Dispositivo dispositivo = new Dispositivo();
+        dispositivo.marca = 1;
+        dispositivo.usuarios.put("ana", new SyncChange("ana", "h0", false, 1, 0));
+        dispositivo.cambioLocal("ana", "local");
+
+        UserSync.SyncResult r = sync(dispositivo, servidor).setConflictPolicy(UserSync.ConflictPolicy.LOCAL_WINS).sync();
+
+        assertEquals(1, r.conflicts);
+        assertEquals(1, r.pushed);
+        assertEquals("local", servidor.getUser("ana").getHash());
+    }
+
+    @Test
+    public void siFallaLaRedLoTraidoQuedaYSeSigueDespues() throws IOException {
+        Servidor servidor = new Servidor();
+        for (int i = 0; i < 7; i++) servidor.putUser("u" + i, "h" + i);
+        Dispositivo dispositivo = new Dispositivo();
+        dispositivo.cambioLocal("mio", "h");
+        servidor.fallarEn = 2;
+
+        try {
+            sync(dispositivo, servidor).sync();
+            fail();
+        } catch (IOException esperado) {
+            // sin red
+        }
+        assertEquals(3, dispositivo.getWatermark()); // la primera pagina quedo
+        assertEquals(3, dispositivo.usuarios.size() - 1);
+        assertNull(servidor.getUser("mio")); // no se llego a enviar
+
+        UserSync.SyncResult r = sync(dispositivo, servidor).sync();
+        assertEquals(4, r.pulled);
+        assertEquals(1, r.pushed);
+        assertEquals("h", servidor.getUser("mio").getHash());
+    }
+
+    @Test
+    public void servidorQueNoAvanzaLaRevisionNoQuedaEnUnBucle() throws IOException {
+        // Siempre la misma pagina completa, con revisiones que ya no son mayores a la marca
+        Servidor servidor = new Servidor() {
+            @Override
+            List<SyncChange> pullOrFail(long since, int limit) throws IOException {
+                if (++pulls > 10) throw new AssertionError("pull sin fin");
+                List<SyncChange> pagina = new ArrayList<>();
+                for (int i = 0; i < limit; i++) pagina.add(new SyncChange("u" + i, "h", false, 1 + i % 2, 0));
+                return pagina;
+            }
+        };
+        Dispositivo dispositivo = new Dispositivo();
+
+        try {
+            sync(dispositivo, servidor).sync();
+            fail();
+        } catch (IOException esperado) {
+            // la primera pagina avanza la marca a 2; la segunda no
+        }
+        assertEquals(2, servidor.pulls);
+        assertEquals(2, dispositivo.getWatermark());
+    }
+
+    @Test
+    public void tamanoDePaginaInvalido() {
+        try {
+            new UserSync(new Dispositivo(), new InMemorySyncServer()).setPageSize(0);
+            fail();
+        } catch (IllegalArgumentException esperado) {
+            // ok
+        }
+    }
+}
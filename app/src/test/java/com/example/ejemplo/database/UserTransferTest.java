@@ -0,0 +1,152 @@
+package com.example.ejemplo.database;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de la exportacion / importacion, sobre el repositorio en memoria.
+ */
+public class UserTransferTest {
+
+    private static final String[] NOMBRES_RAROS = {"ana", "perez, juan", "el \"tano\"", "dos\nlineas", "ñandú ☃", ""};
+
+    private static InMemoryUserRepository conUsuarios(String... nombres) {
+        InMemoryUserRepository repo = TestRepositories.inMemory(nombres);
+        repo.addUserHashed("sin-clave", null);
+        return repo;
+    }
+
+    private static String exportar(UserRepository repo, UserTransfer.Format formato) throws IOException {
+        StringWriter out = new StringWriter();
+        new UserTransfer(repo).exportUsers(out, formato);
+        return out.toString();
+    }
+
+    private static DBHelper.BatchResult importar(UserRepository repo, String texto, UserTransfer.Format formato)
+            throws IOException {
+        return new UserTransfer(repo).setBatchSize(2).importUsers(new StringReader(texto), formato, texto.length());
+    }
+
+    private static void comprobarCopia(InMemoryUserRepository origen, InMemoryUserRepository copia) {
+        assertEquals(origen.countUsers(), copia.countUsers());
+        for (String nombre : NOMBRES_RAROS) {
+            // El hash viaja tal cual: la misma contraseña sigue sirviendo en la otra base
+            assertEquals(origen.getUserByUsername(nombre).getPassword(), copia.getUserByUsername(nombre).getPassword());
+            assertNotEquals(-1, copia.comprobarUsuarioLocal(nombre, "clave-" + nombre).getId());
+        }
+        assertNull(copia.getUserByUsername("sin-clave").getPassword());
+    }
+
+    @Test
+    public void csvIdaYVuelta() throws IOException {
+        InMemoryUserRepository origen = conUsuarios(NOMBRES_RAROS);
+        String csv = exportar(origen, UserTransfer.Format.CSV);
+        assertTrue(csv.startsWith("id_usuario,nombre_usuario,password\n1,ana,pbkdf2-"));
+
+        InMemoryUserRepository copia = TestRepositories.inMemory();
+        DBHelper.BatchResult r = importar(copia, csv, UserTransfer.Format.CSV);
+        assertEquals(NOMBRES_RAROS.length + 1, r.inserted);
+        assertEquals(0, r.skipped);
+        comprobarCopia(origen, copia);
+    }
+
+    @Test
+    public void jsonIdaYVuelta() throws IOException {
+        InMemoryUserRepository origen = conUsuarios(NOMBRES_RAROS);
+        String json = exportar(origen, UserTransfer.Format.JSON);
+        assertTrue(json.startsWith("[\n{\"id_usuario\":1,\"nombre_usuario\":\"ana\",\"password\":\"pbkdf2-"));
+
+        InMemoryUserRepository copia = TestRepositories.inMemory();
+        assertEquals(NOMBRES_RAROS.length + 1, importar(copia, json, UserTransfer.Format.JSON).inserted);
+        comprobarCopia(origen, copia);
+
+        assertEquals("[]\n", exportar(TestRepositories.inMemory(), UserTransfer.Format.JSON));
+    }
+
+    @Test
+    public void csvConOtrasColumnasYTextoPlano() throws IOException {
+        InMemoryUserRepository repo = conUsuarios("ana");
+        String csv = "\uFEFFpassword,x,nombre_usuario\r\n" // BOM y columnas en otro orden
+                + "secreta,1,bruno\r\n"
+                + "\r\n"
+                + "otra,2,ana\r\n" // ya existe
+                + "nada,3,\r\n"    // sin nombre
+                + ",4,carla";
+        DBHelper.BatchResult r = importar(repo, csv, UserTransfer.Format.CSV);
+        assertEquals(2, r.inserted);
+        assertEquals(2, r.skipped);
+        assertEquals(4, repo.countUsers());
+        assertNotEquals(-1, repo.comprobarUsuarioLocal("bruno", "secreta").getId()); // texto plano -> hash
+        assertNull(repo.getUserByUsername("carla").getPassword());
+    }
+
+    @Test
+    public void jsonIgnoraCamposDesconocidos() throws IOException {
+        InMemoryUserRepository repo = TestRepositories.inMemory();
+        String json = " [ {\"extra\": {\"a\": [1, \"}\"]}, \"nombre_usuario\": \"d\\u00e1vid\\n\", \"id_usuario\": 7,"
+                + " \"activo\": true, \"password\": \"texto\"}, {\"nombre_usuario\": null} ] ";
+        DBHelper.BatchResult r = importar(repo, json, UserTransfer.Format.JSON);
+        assertEquals(1, r.inserted);
+        assertEquals(1, r.skipped);
+        assertEquals(1, repo.comprobarUsuarioLocal("dávid\n", "texto").getId()); // se guardo como hash
+        assertTrue(PasswordHasher.isHash(repo.getUserByUsername("dávid\n").getPassword()));
+    }
+
+    @Test
+    public void importaDeALotesYAvisaElProgreso() throws IOException {
+        StringBuilder csv = new StringBuilder("nombre_usuario,password\n");
+        for (int i = 0; i < 7; i++) csv.append("u").append(i).append(",\n");
+        List<Integer> lotes = new ArrayList<>();
+        List<Integer> porcentajes = new ArrayList<>();
+
+        InMemoryUserRepository repo = TestRepositories.inMemory();
+        DBHelper.BatchResult r = new UserTransfer(repo)
+                .setBatchSize(3)
+                .setProgress((filas, porcentaje) -> porcentajes.add(porcentaje))
+                .setBatchWriter(lote -> {
+                    lotes.add(lote.size());
+                    return repo.addPreparedUsers(lote);
+                })
+                .importUsers(new StringReader(csv.toString()), UserTransfer.Format.CSV, -1);
+
+        assertEquals(7, r.inserted);
+        assertEquals(Arrays.asList(3, 3, 1), lotes);
+        assertEquals(Arrays.asList(-1, -1, 100), porcentajes);
+    }
+
+    @Test
+    public void errorDeFormatoConLinea() {
+        try {
+            importar(TestRepositories.inMemory(), "nombre_usuario\nana\n\"sin cerrar\n", UserTransfer.Format.CSV);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("linea 4:"));
+        }
+        try {
+            importar(TestRepositories.inMemory(), "[{\"nombre_usuario\": \"ana\"} {", UserTransfer.Format.JSON);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("','"));
+        }
+    }
+
+    @Test
+    public void unValorEnormeNoLlenaLaMemoria() {
+        StringBuilder csv = new StringBuilder("\"");
+        for (int i = 0; i <= UserTransfer.MAX_CAMPO; i++) csv.append('x');
+        try {
+            importar(TestRepositories.inMemory(), csv.toString(), UserTransfer.Format.CSV);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("letras"));
+        }
+    }
+}
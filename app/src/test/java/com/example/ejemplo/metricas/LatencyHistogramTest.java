@@ -0,0 +1,46 @@
+package com.example.ejemplo.metricas;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de los rangos del histograma y de los percentiles que se calculan con ellos.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void cadaValorCaeEnUnRangoQueLoContiene() {
+        long[] valores = {0, 1, 3, 4, 5, 7, 8, 1_000, 65_535, 1_000_000, 123_456_789, Long.MAX_VALUE};
+        for (long valor : valores) {
+            int rango = LatencyHistogram.rango(valor);
+            assertTrue("rango fuera del arreglo para " + valor, rango < LatencyHistogram.RANGOS);
+            assertTrue(valor + " pasa el limite de su rango", valor <= LatencyHistogram.limiteSuperior(rango));
+            if (rango > 0) {
+                assertTrue(valor + " entraba en el rango anterior", valor > LatencyHistogram.limiteSuperior(rango - 1));
+            }
+        }
+    }
+
+    @Test
+    public void percentilesConErrorAcotado() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1_000; i++) h.record(i * 1_000L); // 1 µs .. 1 ms
+
+        assertEquals(1_000, h.count());
+        assertEquals(1_000_000, h.maxNanos());
+        assertEquals(500_500, h.meanNanos());
+        assertEquals(500_000, h.percentileNanos(0.50), 500_000 * 0.25);
+        assertEquals(990_000, h.percentileNanos(0.99), 990_000 * 0.25);
+        assertTrue(h.percentileNanos(1.0) <= h.maxNanos());
+    }
+
+    @Test
+    public void resetVuelveACero() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(42);
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentileNanos(0.5));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.ejemplo.baselineprofile;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Genera el baseline profile (y el startup profile) de :app recorriendo el arranque y un login.
+ *
+ * Correr con: ./gradlew :app:generateBaselineProfile
+ * El plugin copia el resultado a app/src/release/generated/baselineProfiles/; ese archivo se sube al
+ * repositorio, y conviene regenerarlo cuando cambia el camino de arranque.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule regla = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        regla.collect(
+                Recorridos.PAQUETE,
+                15,    // maxIterations
+                3,     // stableIterations
+                null,  // outputFilePrefix
+                true,  // includeInStartupProfile: tambien ordena el dex para el arranque (con R8)
+                false, // strictStability
+                nombreClase -> true,
+                scope -> {
+                    scope.pressHome();
+                    scope.startActivityAndWait();
+                    Recorridos.esperarBotonHabilitado(scope);
+                    Recorridos.intentarLogin(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.ejemplo.baselineprofile;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+/**
+ * `Recorridos` son los pasos por la app que comparten las mediciones (StartupBenchmarks) y el generador
+ * del perfil (BaselineProfileGenerator): lo que se recorre al generar es lo que queda compilado, y lo que
+ * se mide tiene que ser ese mismo camino.
+ */
+final class Recorridos {
+
+    static final String PAQUETE = "com.example.ejemplo";
+    private static final long ESPERA_MAX_MS = 10_000;
+
+    private Recorridos() {
+    }
+
+    /**
+     * esperarBotonHabilitado:
+     * - El boton "Ingresar" se habilita cuando la base termino de prepararse (ver MainActivity); es el
+     *   mismo momento en que la app llama a reportFullyDrawn.
+     */
+    static void esperarBotonHabilitado(MacrobenchmarkScope scope) {
+        boolean listo = scope.getDevice().wait(
+                Until.hasObject(By.res(PAQUETE, "main__button_ingresar").enabled(true)), ESPERA_MAX_MS);
+        if (!listo) throw new AssertionError("El boton Ingresar no se habilito en " + ESPERA_MAX_MS + " ms");
+    }
+
+    /**
+     * intentarLogin:
+     * - Completa usuario y contraseña y toca "Ingresar". Con la base de release (sin usuarios) el login
+     *   falla, pero recorre lo mismo que uno correcto: LoginController, la consulta y el PBKDF2.
+     */
+    static void intentarLogin(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 usuario = device.findObject(By.res(PAQUETE, "main__input_usuario"));
+        UiObject2 contrasena = device.findObject(By.res(PAQUETE, "main__input_contrasena"));
+        usuario.setText("usuario_test1");
+        contrasena.setText("pass1");
+        device.findObject(By.res(PAQUETE, "main__button_ingresar")).click();
+        device.waitForIdle();
+    }
+}
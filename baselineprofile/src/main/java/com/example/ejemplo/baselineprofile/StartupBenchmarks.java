@@ -0,0 +1,85 @@
+package com.example.ejemplo.baselineprofile;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Mide cuanto tarda en arrancar la app (compilacion release, en un dispositivo real o emulador):
+ * - timeToInitialDisplayMs: hasta el primer frame de MainActivity.
+ * - timeToFullDisplayMs: hasta que el boton "Ingresar" se habilita (la base ya esta lista, ver reportFullyDrawn).
+ *
+ * Cada medicion se repite sin compilar nada y con el baseline profile, para ver cuanto aporta el perfil.
+ * Correr con: ./gradlew :baselineprofile:connectedBenchmarkReleaseAndroidTest
+ * (los resultados quedan en baselineprofile/build/outputs/connected_android_test_additional_output).
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class StartupBenchmarks {
+
+    private static final int REPETICIONES = 10;
+
+    @Rule
+    public MacrobenchmarkRule regla = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStartWithoutCompilation() {
+        arrancar(new CompilationMode.None(), StartupMode.COLD, false);
+    }
+
+    @Test
+    public void coldStartWithBaselineProfile() {
+        arrancar(new CompilationMode.Partial(BaselineProfileMode.Require), StartupMode.COLD, false);
+    }
+
+    @Test
+    public void warmStartWithBaselineProfile() {
+        arrancar(new CompilationMode.Partial(BaselineProfileMode.Require), StartupMode.WARM, false);
+    }
+
+    /**
+     * El primer arranque despues de instalar: ademas de todo lo anterior, copia la base desde assets.
+     */
+    @Test
+    public void firstStartWithBaselineProfile() {
+        arrancar(new CompilationMode.Partial(BaselineProfileMode.Require), StartupMode.COLD, true);
+    }
+
+    private void arrancar(CompilationMode compilacion, StartupMode modo, boolean borrarDatos) {
+        regla.measureRepeated(
+                Recorridos.PAQUETE,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilacion,
+                modo,
+                REPETICIONES,
+                scope -> {
+                    scope.pressHome();
+                    if (borrarDatos) {
+                        try {
+                            scope.getDevice().executeShellCommand("pm clear " + Recorridos.PAQUETE);
+                        } catch (IOException e) {
+                            throw new AssertionError("No se pudieron borrar los datos de la app", e);
+                        }
+                    }
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    Recorridos.esperarBotonHabilitado(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}